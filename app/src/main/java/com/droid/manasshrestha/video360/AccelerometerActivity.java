@@ -2,19 +2,26 @@ package com.droid.manasshrestha.video360;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.droid.manasshrestha.video360.sensor.SensorPump;
+import com.droid.manasshrestha.video360.sensor.SensorRing;
+import com.droid.manasshrestha.video360.sensor.TiltDirection;
+
 public class AccelerometerActivity extends Activity implements
-        SensorEventListener {
+        SensorRing.Sink {
 
  private SensorManager mSensorManager;
  private Sensor mAccelerometer;
+ private final SensorPump mSensorPump = new SensorPump("accelerometer", 3, this);
+ private final TiltDirection mTilt = new TiltDirection();
+ private final Drawable[] mDirectionDrawables = new Drawable[TiltDirection.COUNT];
  TextView title;
  ImageView iv;
 
@@ -27,48 +34,42 @@ public class AccelerometerActivity extends Activity implements
     .getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
   title = (TextView) findViewById(R.id.txt);
   iv = (ImageView) findViewById(R.id.imageView1);
+  loadDirectionDrawables();
+  // already slower than the idle rate, lying still only adds batching
+  mSensorPump.setIdleRate(SensorPump.IDLE_DELAY, SensorPump.IDLE_REPORT_LATENCY_US);
  }
 
  @Override
- public void onAccuracyChanged(Sensor arg0, int arg1) {
-  // TODO Auto-generated method stub
+ public void onSample(int type, long timestampNs, float[] values, int offset) {
+  if (mTilt.onAccelerometer(values[offset], values[offset + 1])) {
+   iv.setImageDrawable(mDirectionDrawables[mTilt.getDirection()]);
+  }
  }
 
- @Override
- public void onSensorChanged(SensorEvent event) {
-  float x = event.values[0];
-  float y = event.values[1];
-  float z = event.values[2];
-  if (Math.abs(x) > Math.abs(y)) {
-   if (x < 0) {
-    iv.setImageResource(R.drawable.right);
-   }
-   if (x > 0) {
-    iv.setImageResource(R.drawable.left);
-   }
-  } else {
-   if (y < 0) {
-    iv.setImageResource(R.drawable.top);
-   }
-   if (y > 0) {
-    iv.setImageResource(R.drawable.bottom);
-   }
-  }
-  if (x > (-2) && x < (2) && y > (-2) && y < (2)) {
-   iv.setImageResource(R.drawable.center);
-  }
+ /**
+  * Decodes the direction images once, switching between them only swaps the reference.
+  */
+ @SuppressWarnings("deprecation")
+ private void loadDirectionDrawables() {
+  Resources resources = getResources();
+  mDirectionDrawables[TiltDirection.CENTER] = resources.getDrawable(R.drawable.center);
+  mDirectionDrawables[TiltDirection.LEFT] = resources.getDrawable(R.drawable.left);
+  mDirectionDrawables[TiltDirection.RIGHT] = resources.getDrawable(R.drawable.right);
+  mDirectionDrawables[TiltDirection.TOP] = resources.getDrawable(R.drawable.top);
+  mDirectionDrawables[TiltDirection.BOTTOM] = resources.getDrawable(R.drawable.bottom);
  }
 
  @Override
  protected void onResume() {
   super.onResume();
-  mSensorManager.registerListener(this, mAccelerometer,
-    SensorManager.SENSOR_DELAY_NORMAL);
+  mTilt.reset();
+  iv.setImageDrawable(mDirectionDrawables[TiltDirection.CENTER]);
+  mSensorPump.start(mSensorManager, SensorManager.SENSOR_DELAY_NORMAL, mAccelerometer);
  }
 
  @Override
  protected void onPause() {
   super.onPause();
-  mSensorManager.unregisterListener(this);
+  mSensorPump.stop(mSensorManager);
  }
 }
@@ -4,8 +4,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.util.Log;
@@ -13,18 +11,38 @@ import android.view.Display;
 import android.view.Surface;
 import android.view.WindowManager;
 
+import com.droid.manasshrestha.video360.sensor.MagnetometerCalibration;
+import com.droid.manasshrestha.video360.sensor.OrientationFusion;
+import com.droid.manasshrestha.video360.sensor.SensorPump;
+import com.droid.manasshrestha.video360.sensor.SensorRing;
+import com.droid.manasshrestha.video360.sensor.SensorTrace;
+
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Created by ManasShrestha on 5/31/16.
  */
-public class GyroscopeActivity extends Activity implements SensorEventListener{
+public class GyroscopeActivity extends Activity implements SensorRing.Sink {
     private static final String TAG = GyroscopeActivity.class.getSimpleName();
+    /**
+     * Boolean extra, records every sensor sample to a {@link SensorTrace} in the app's external
+     * files directory while the activity is started.
+     */
+    public static final String EXTRA_TRACE_SENSORS = "trace_sensors";
+    /**
+     * About a minute of samples from three sensors at the fastest rate.
+     */
+    private static final int TRACE_CAPACITY = 3 * 200 * 60;
     private SensorManager mSensorManager;
     private WindowManager mWindowManager;
-    private float[] mAccelGravityData = new float[3];
-    private float[] mGeomagneticData = new float[3];
+    private final OrientationFusion mFusion = new OrientationFusion();
+    private final SensorPump mSensorPump = new SensorPump("orientation", 3, this);
     private float[] mRotationMatrix = new float[16];
-    private float[] bufferedAccelGData = new float[3];
-    private float[] bufferedMagnetData = new float[3];
+    private final MagnetometerCalibration mCalibration = new MagnetometerCalibration();
+    private final float[] mMagnet = new float[3];
+    private boolean mFieldDisturbed;
+    private SensorTrace mTrace;
 
 
     @Override
@@ -33,77 +51,51 @@ public class GyroscopeActivity extends Activity implements SensorEventListener{
         setContentView(R.layout.activity_main);
         mSensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         mWindowManager = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
+        mSensorPump.setSkipUnreliable(true);
+        mSensorPump.setIdleRate(SensorPump.IDLE_DELAY, SensorPump.IDLE_REPORT_LATENCY_US);
     }
 
     @Override
     protected void onStart() {
-        mSensorManager.registerListener(this, mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER), SensorManager.SENSOR_DELAY_GAME );
-        mSensorManager.registerListener(this, mSensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD), SensorManager.SENSOR_DELAY_GAME);
+        // the display can't rotate without restarting the activity, decide once instead of per event
+        mFusion.setRemap(needsRemap(mWindowManager.getDefaultDisplay()));
+        if (getIntent().getBooleanExtra(EXTRA_TRACE_SENSORS, false)) {
+            startTrace();
+        }
+        mSensorPump.start(mSensorManager, SensorManager.SENSOR_DELAY_GAME,
+                mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
+                mSensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD),
+                mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE));
 
         super.onStart();
     }
 
     @Override
     protected void onStop() {
-        mSensorManager.unregisterListener(this);
+        mSensorPump.stop(mSensorManager);
+        mFusion.reset();
+        // the offset belongs to the device, keep it for the next start
+        Log.d(TAG, "magnetometer calibration " + mCalibration);
+        if (mTrace != null) {
+            Log.d(TAG, "trace " + mTrace.size() + " samples, dropped " + mTrace.getDropped());
+            mTrace.force();
+            mTrace = null;
+        }
         super.onStop();
     }
 
-    private void loadNewSensorData(SensorEvent event) {
-        final int type = event.sensor.getType();
-        if (type == Sensor.TYPE_ACCELEROMETER) {
-            //Smoothing the sensor data a bit
-            mAccelGravityData[0]=(mAccelGravityData[0]*2+event.values[0])*0.33334f;
-            mAccelGravityData[1]=(mAccelGravityData[1]*2+event.values[1])*0.33334f;
-            mAccelGravityData[2]=(mAccelGravityData[2]*2+event.values[2])*0.33334f;
-        }
-        if (type == Sensor.TYPE_MAGNETIC_FIELD) {
-            //Smoothing the sensor data a bit
-            mGeomagneticData[0]=(mGeomagneticData[0]*1+event.values[0])*0.5f;
-            mGeomagneticData[1]=(mGeomagneticData[1]*1+event.values[1])*0.5f;
-            mGeomagneticData[2]=(mGeomagneticData[2]*1+event.values[2])*0.5f;
-
-            float x = mGeomagneticData[0];
-            float y = mGeomagneticData[1];
-            float z = mGeomagneticData[2];
-            double field = Math.sqrt(x*x+y*y+z*z);
-            if (field>25 && field<65){
-                Log.e(TAG, "loadNewSensorData : wrong magnetic data, need a recalibration field = " + field);
+    /**
+     * Warns once whenever the field becomes disturbed, the fusion runs on the gyroscope meanwhile.
+     */
+    private void checkMagneticField(boolean usable) {
+        if (usable == mFieldDisturbed) {
+            mFieldDisturbed = !usable;
+            if (mFieldDisturbed) {
+                Log.w(TAG, "checkMagneticField : disturbed magnetic data, calibration " + mCalibration);
             }
         }
     }
 
-    private void rootMeanSquareBuffer(float[] target, float[] values) {
-
-        final float amplification = 200.0f;
-        float buffer = 20.0f;
-
-        target[0] += amplification;
-        target[1] += amplification;
-        target[2] += amplification;
-        values[0] += amplification;
-        values[1] += amplification;
-        values[2] += amplification;
-
-        target[0] = (float) (Math
-                .sqrt((target[0] * target[0] * buffer + values[0] * values[0])
-                        / (1 + buffer)));
-        target[1] = (float) (Math
-                .sqrt((target[1] * target[1] * buffer + values[1] * values[1])
-                        / (1 + buffer)));
-        target[2] = (float) (Math
-                .sqrt((target[2] * target[2] * buffer + values[2] * values[2])
-                        / (1 + buffer)));
-
-        target[0] -= amplification;
-        target[1] -= amplification;
-        target[2] -= amplification;
-        values[0] -= amplification;
-        values[1] -= amplification;
-        values[2] -= amplification;
-    }
-
-
     /*
      * Tablets have LANDSCAPE as default orientation, so screen rotation is 0 or 180 when the orientation is LANDSCAPE, and smartphones have PORTRAIT.
      * I use the next code to difference between tablets and smartphones:
@@ -123,95 +115,68 @@ public class GyroscopeActivity extends Activity implements SensorEventListener{
         return orientation;
     }
 
-    private void debugSensorData(SensorEvent event) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("--- SENSOR ---");
-        builder.append("\nName: ");
-        Sensor sensor = event.sensor;
-        builder.append(sensor.getName());
-        builder.append("\nType: ");
-        builder.append(sensor.getType());
-        builder.append("\nVendor: ");
-        builder.append(sensor.getVendor());
-        builder.append("\nVersion: ");
-        builder.append(sensor.getVersion());
-        builder.append("\nMaximum Range: ");
-        builder.append(sensor.getMaximumRange());
-        builder.append("\nPower: ");
-        builder.append(sensor.getPower());
-        builder.append("\nResolution: ");
-        builder.append(sensor.getResolution());
-
-        builder.append("\n\n--- EVENT ---");
-        builder.append("\nAccuracy: ");
-        builder.append(event.accuracy);
-        builder.append("\nTimestamp: ");
-        builder.append(event.timestamp);
-        builder.append("\nValues:\n");
-        for (int i = 0; i < event.values.length; i++) {
-            // ...
-            builder.append("   [");
-            builder.append(i);
-            builder.append("] = ");
-            builder.append(event.values[i]);
-            builder.append("\n");
-        }
+    private static boolean needsRemap(Display display) {
+        int orientation = getScreenOrientation(display);
+        int rotation = display.getRotation();
 
-//        Log.d(TAG, builder.toString());
+        boolean dontRemapCoordinates  = (orientation == Configuration.ORIENTATION_LANDSCAPE && rotation == Surface.ROTATION_0) ||
+                (orientation == Configuration.ORIENTATION_LANDSCAPE && rotation == Surface.ROTATION_180) ||
+                (orientation == Configuration.ORIENTATION_PORTRAIT && rotation == Surface.ROTATION_90) ||
+                (orientation == Configuration.ORIENTATION_PORTRAIT && rotation == Surface.ROTATION_270);
+        return !dontRemapCoordinates;
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // TODO Auto-generated method stub
-
+    private void startTrace() {
+        File file = new File(getExternalFilesDir(null), "trace-" + System.currentTimeMillis() + SensorTrace.EXTENSION);
+        try {
+            mTrace = SensorTrace.create(file, 3, TRACE_CAPACITY);
+            Log.d(TAG, "tracing sensors to " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "startTrace: cannot create " + file, e);
+        }
     }
 
     /* Sensor Processing/Rotation Matrix
-     * Each time a sensor update happens the onSensorChanged method is called.
-     * This is where we receive the raw sensor data.
-     * First of all we want to take the sensor data from the accelerometer and magnetometer and smooth it out to reduce jitters.
-     * From there we can call the getRotationMatrix function with our smoothed accelerometer and magnetometer data.
+     * Sensor events arrive on the sensor thread and are handed to onSample in batches, once per frame on the main thread.
+     * Unreliable events have already been dropped by the sensor pump.
+     * Magnetometer samples are corrected by the streaming hard-iron calibration, disturbed ones are left out of the fusion.
+     * The accelerometer and magnetometer samples give an absolute orientation, the same one getRotationMatrix computes,
+     * and the gyroscope (if there is one) tracks the orientation between them. OrientationFusion blends the two, which smooths out the jitter.
      * The rotation matrix that this outputs is mapped to have the y axis pointing out the top of the phone, so when the phone is flat on a table facing north, it will read {0,0,0}.
      * We need it to read {0,0,0} when pointing north, but sitting vertical. To achieve this we simply remap the co-ordinates system so the X axis is negative.
-     * The following code example shows how this is acheived.
+     * Whether to remap only depends on the display, so it is decided in onStart.
      */
     @Override
-    public void onSensorChanged(SensorEvent event) {
-
-        if (event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-            return;
+    public void onSample(int type, long timestampNs, float[] values, int offset) {
+        if (mTrace != null) {
+            mTrace.record(type, timestampNs, values, offset);
         }
-
-        loadNewSensorData(event);
-        int type=event.sensor.getType();
-
-        if (mAccelGravityData != null && mGeomagneticData != null) {
-
-            if ((type==Sensor.TYPE_MAGNETIC_FIELD) || (type==Sensor.TYPE_ACCELEROMETER)) {
-                rootMeanSquareBuffer(bufferedAccelGData, mAccelGravityData);
-                rootMeanSquareBuffer(bufferedMagnetData, mGeomagneticData);
-                if (SensorManager.getRotationMatrix(mRotationMatrix, null, bufferedAccelGData, bufferedMagnetData)){
-
-                    Display display = mWindowManager.getDefaultDisplay();
-                    int orientation = getScreenOrientation(display);
-                    int rotation = display.getRotation();
-
-                    boolean dontRemapCoordinates  = (orientation == Configuration.ORIENTATION_LANDSCAPE && rotation == Surface.ROTATION_0) ||
-                            (orientation == Configuration.ORIENTATION_LANDSCAPE && rotation == Surface.ROTATION_180) ||
-                            (orientation == Configuration.ORIENTATION_PORTRAIT && rotation == Surface.ROTATION_90) ||
-                            (orientation == Configuration.ORIENTATION_PORTRAIT && rotation == Surface.ROTATION_270);
-
-                    if( !dontRemapCoordinates){
-                        SensorManager.remapCoordinateSystem(
-                                mRotationMatrix,
-                                SensorManager.AXIS_Y,
-                                SensorManager.AXIS_MINUS_X,
-                                mRotationMatrix);
-                    }
-                    debugSensorData(event);
+        float x = values[offset];
+        float y = values[offset + 1];
+        float z = values[offset + 2];
+        switch (type) {
+            case Sensor.TYPE_ACCELEROMETER:
+                mFusion.onAccelerometer(x, y, z);
+                break;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                boolean usable = mCalibration.onMagnetometer(x, y, z, mMagnet);
+                checkMagneticField(usable);
+                if (!usable) {
+                    // an orientation computed from it would be wrong anyway
+                    mFusion.clearMagnetometer();
+                    return;
                 }
-            }
+                mFusion.onMagnetometer(mMagnet[0], mMagnet[1], mMagnet[2]);
+                break;
+            case Sensor.TYPE_GYROSCOPE:
+                mFusion.onGyroscope(timestampNs, x, y, z);
+                break;
+            default:
+                return;
         }
 
+        if (mFusion.isInitialized()) {
+            mFusion.getRotationMatrix(mRotationMatrix);
+        }
     }
 }
@@ -7,10 +7,13 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import com.immersion.videoplayer.metrics.SeekMetrics;
+
 public class PlayerActivity extends Activity implements MediaPlayer.OnPreparedListener {
 
     private static final int PICK_VIDEO_REQUEST = 1001;
@@ -18,6 +21,7 @@ public class PlayerActivity extends Activity implements MediaPlayer.OnPreparedLi
     private MediaPlayer mMediaPlayer;
     private SurfaceHolder mFirstSurface;
     private Uri mVideoUri;
+    private final SeekMetrics mSeekMetrics = new SeekMetrics("seek test");
 
     Handler handler = new Handler(new Handler.Callback() {
         @Override
@@ -57,6 +61,7 @@ public class PlayerActivity extends Activity implements MediaPlayer.OnPreparedLi
                     @Override
                     public void onSeekComplete(MediaPlayer mp) {
                         Log.e("seek complete","seek complete");
+                        mSeekMetrics.onSeekComplete(SystemClock.uptimeMillis());
 //                        mMediaPlayer.seekTo(mMediaPlayer.getCurrentPosition() + 200);
                     }
                 });
@@ -83,6 +88,7 @@ public class PlayerActivity extends Activity implements MediaPlayer.OnPreparedLi
             new Handler().postDelayed(new Runnable() {
                 @Override
                 public void run() {
+                    mSeekMetrics.onSeekIssued(SystemClock.uptimeMillis());
                     mMediaPlayer.seekTo(mMediaPlayer.getCurrentPosition()+200);
                 }
             }, i*150);
@@ -97,6 +103,7 @@ public class PlayerActivity extends Activity implements MediaPlayer.OnPreparedLi
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        Log.d(TAG, "seek metrics " + mSeekMetrics);
         if (mMediaPlayer != null) {
             mMediaPlayer.release();
             mMediaPlayer = null;
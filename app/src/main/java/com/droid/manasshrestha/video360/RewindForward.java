@@ -3,16 +3,17 @@ package com.droid.manasshrestha.video360;
 import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
@@ -22,81 +23,460 @@ import android.widget.Button;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
-
-import java.util.Calendar;
+import com.droid.manasshrestha.video360.media.CaptureOrientation;
+import com.droid.manasshrestha.video360.media.KeyframeIndex;
+import com.droid.manasshrestha.video360.scrub.OrientationTimelineMapper;
+import com.droid.manasshrestha.video360.scrub.ScrubReadiness;
+import com.droid.manasshrestha.video360.scrub.SeekPredictor;
+import com.droid.manasshrestha.video360.scrub.SeekScheduler;
+import com.droid.manasshrestha.video360.scrub.TiltScrub;
+import com.droid.manasshrestha.video360.scrub.TurntableSpin;
+import com.droid.manasshrestha.video360.sensor.SensorPump;
+import com.droid.manasshrestha.video360.sensor.SensorRing;
+import com.droid.manasshrestha.video360.sensor.SensorTrace;
+import com.droid.manasshrestha.video360.strip.FramePrefetcher;
+import com.droid.manasshrestha.video360.strip.FrameStrip;
+import com.droid.manasshrestha.video360.strip.FrameStripBuilder;
+import com.droid.manasshrestha.video360.strip.FrameStripFile;
+import com.droid.manasshrestha.video360.strip.RetrieverFrameDecoder;
+import com.immersion.videoplayer.metrics.SeekMetrics;
+
+import java.io.File;
+import java.io.IOException;
 
 public class RewindForward extends Activity implements MediaPlayer.OnPreparedListener,
-        SensorEventListener {
+        SensorRing.Sink {
 
     private static final String TAG = "SurfaceSwitch";
+    /**
+     * Boolean extra: append the seek metrics to a file in the app's external files dir on stop.
+     */
+    public static final String EXTRA_DUMP_SEEK_METRICS = "dump_seek_metrics";
+    /**
+     * Boolean extra, records the gyroscope samples to a {@link SensorTrace} in the app's external
+     * files directory while scrubbing, for replaying the scrub off the device.
+     */
+    public static final String EXTRA_TRACE_SENSORS = GyroscopeActivity.EXTRA_TRACE_SENSORS;
+    /**
+     * About a minute of gyroscope samples at the fastest rate.
+     */
+    private static final int TRACE_CAPACITY = 200 * 60;
+    /**
+     * Rates and drift fields of TYPE_GYROSCOPE_UNCALIBRATED.
+     */
+    private static final int SAMPLE_WIDTH = 6;
+    /**
+     * Frame strip geometry: two slots per degree of the default sweep, 240px wide frames. Also
+     * used by {@link VideoCapture}, which builds the strip while recording.
+     */
+    static final int STRIP_FRAMES = 180;
+    static final int STRIP_FRAME_WIDTH = 240;
+    /**
+     * With the orientation recorded during capture, each strip slot covers this much of the pan
+     * instead, up to {@link #STRIP_MAX_FRAMES} slots.
+     */
+    static final float STRIP_BIN = (float) Math.toRadians(1);
+    static final int STRIP_MAX_FRAMES = 360;
+    /**
+     * The automatic spin covers the sweep in this fraction of the clip's duration.
+     */
+    private static final float SPIN_TIME_SCALE = 0.6f;
     private MediaPlayer mMediaPlayer;
+    private SeekScheduler mSeekScheduler;
+    private FrameStrip mStrip;
+    private FrameStripBuilder mStripBuilder;
+    private FramePrefetcher mPrefetcher;
+    private Bitmap mStripBitmap;
+    private int mShownSlot = -1;
+    private long mStripLookups;
+    private long mStripLookupNanos;
     private SurfaceHolder mFirstSurface;
     private Uri mVideoUri;
+    private String mVideoPath;
+    private ScrubReadiness mReadiness;
+    /**
+     * Whether the capture orientation is known, set or missing, so the strip can be laid out.
+     */
+    private boolean mCaptureKnown;
+    private ProgressDialog mProgressDialog;
+    private boolean mStarted;
     private Handler repeatUpdateHandler = new Handler();
-    public int mValue;           //increment
-    private boolean mAutoIncrement = false;          //for fast foward in real time
-    private boolean mAutoDecrement = false;         // for rewind in real time
+    private final OrientationTimelineMapper mTimeline = new OrientationTimelineMapper();
+    private final SeekPredictor mPredictor = new SeekPredictor(mTimeline);
+    private final SeekMetrics mSeekMetrics = new SeekMetrics("scrub");
+    private final SeekScheduler.Listener mSeekLanded = new SeekScheduler.Listener() {
+        @Override
+        public void onSeekLanded(int target, long latencyMs) {
+            mPredictor.onLanded(target);
+        }
+    };
+    private final RptUpdater mRptUpdater = new RptUpdater();
+    private final TurntableSpin mSpin = new TurntableSpin(mTimeline, 1f);
+    private final TiltScrub mScrub = new TiltScrub(mTimeline, mSpin, mPredictor);
+    private final Choreographer.FrameCallback mSpinFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mScrub.onSpinFrame(frameTimeNanos)) {
+                mRptUpdater.run();
+            }
+            if (mSpin.isRunning()) {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+    };
     private SensorManager mSensorManager;
+    /**
+     * Delivers the gyroscope's rates and drift fields in batches once per frame.
+     */
+    private final SensorPump mSensorPump = new SensorPump("gyroscope", SAMPLE_WIDTH, this);
     private WindowManager mWindowManager;
-    long lastUpdate = 0;
+    private SensorTrace mTrace;
     ImageView imageView;
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        float x = event.values[0];
-        float y = event.values[1];
-        float z = event.values[2];
+    public void onSample(int type, long timestampNs, float[] values, int offset) {
+        if (mTrace != null) {
+            mTrace.record(type, timestampNs, values, offset);
+        }
+        int step = mScrub.onRate(timestampNs, values, offset);
+        if ((step & TiltScrub.SPIN_PAUSED) != 0) {
+            // the user took over
+            Choreographer.getInstance().removeFrameCallback(mSpinFrame);
+        }
+        if ((step & TiltScrub.MOVED) != 0) {
+            // sensor timestamps count from boot like elapsedRealtime, the metrics use uptime
+            long age = Math.max(0, SystemClock.elapsedRealtime() - timestampNs / 1000000);
+            mSeekMetrics.onMotion(SystemClock.uptimeMillis() - age);
+            repeatUpdateHandler.removeCallbacks(mRptUpdater);
+            repeatUpdateHandler.post(mRptUpdater);
+        }
+    }
 
-        if (y < -0.05) {
-            if (Calendar.getInstance().getTimeInMillis() - lastUpdate > 100) {
-                Log.e("# tilt right # ", y + "");
-                lastUpdate = Calendar.getInstance().getTimeInMillis();
-                mAutoDecrement = true;
-                mAutoIncrement = false;
-                repeatUpdateHandler.post(new RptUpdater());
+    private class RptUpdater implements Runnable {
+        public void run() {
+            if (mStrip != null && showStripFrame(stripAngle())) {
+                mSeekMetrics.onFrameShown(SystemClock.uptimeMillis());
+                return;
+            }
+            if (mSeekScheduler != null) {
+                mSeekScheduler.seekTo(mScrub.seekTarget(SystemClock.uptimeMillis(),
+                        mSeekScheduler.getExpectedDelay()));
             }
         }
+    }
+
+    /**
+     * Starts the automatic spin, delivering it one frame callback per display frame until it
+     * stops.
+     */
+    private void startSpin() {
+        if (mSpin.start()) {
+            Choreographer.getInstance().postFrameCallback(mSpinFrame);
+        }
+    }
+
+    private void pauseSpin() {
+        if (mSpin.isRunning()) {
+            mSpin.pause();
+            Choreographer.getInstance().removeFrameCallback(mSpinFrame);
+        }
+    }
 
-        if (y > 0.05) {
-            if (Calendar.getInstance().getTimeInMillis() - lastUpdate > 100) {
-                Log.e("# tilt right # ", y + "");
-                lastUpdate = Calendar.getInstance().getTimeInMillis();
-                mAutoIncrement = true;
-                mAutoDecrement = false;
-                repeatUpdateHandler.post(new RptUpdater());
+    /**
+     * Parses the keyframe index of the clip off the main thread. Until it is available seeks
+     * go to the exact angle position.
+     */
+    private void loadKeyframeIndex(final String videoPath) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                KeyframeIndex index = null;
+                try {
+                    index = KeyframeIndex.fromFile(new File(videoPath));
+                    Log.d(TAG, "keyframes " + index.size() + " of " + index.getSampleCount() + " samples");
+                } catch (IOException e) {
+                    Log.w(TAG, "no keyframe index for " + videoPath, e);
+                } catch (RuntimeException e) {
+                    // a corrupt file the parser didn't catch must not keep the scrub waiting
+                    Log.w(TAG, "no keyframe index for " + videoPath, e);
+                }
+                final KeyframeIndex loaded = index;
+                repeatUpdateHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loaded != null) {
+                            mScrub.setKeyframes(loaded);
+                        }
+                        mReadiness.onKeyframesDone(SystemClock.uptimeMillis());
+                    }
+                });
             }
+        }, "keyframe-index").start();
+    }
+
+    /**
+     * Reads the orientation recorded with the clip off the main thread. Until it is available,
+     * or for clips without one, angles map linearly onto the clip.
+     *
+     * @param then Run on the main thread once the orientation is set or known to be missing.
+     */
+    private void loadCaptureOrientation(final String videoPath, final Runnable then) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final File file = CaptureOrientation.fileFor(new File(videoPath));
+                CaptureOrientation loaded = null;
+                if (file.exists()) {
+                    try {
+                        loaded = CaptureOrientation.open(file);
+                        Log.d(TAG, "capture orientation " + loaded);
+                    } catch (IOException e) {
+                        Log.w(TAG, "discarding capture orientation " + file, e);
+                    }
+                }
+                final CaptureOrientation capture = loaded;
+                repeatUpdateHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (capture != null) {
+                            mTimeline.setCaptureOrientation(capture);
+                        }
+                        then.run();
+                    }
+                });
+            }
+        }, "capture-orientation").start();
+    }
+
+    /**
+     * @return Number of strip slots for a clip: one per {@link #STRIP_BIN} of the recorded pan,
+     * or {@link #STRIP_FRAMES} spaced evenly in time without a capture orientation.
+     */
+    static int stripFramesFor(CaptureOrientation capture) {
+        if (capture == null || capture.getPan() <= 0) {
+            return STRIP_FRAMES;
         }
+        return Math.max(2, Math.min(STRIP_MAX_FRAMES, (int) Math.ceil(capture.getPan() / STRIP_BIN) + 1));
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        //Not going to use this
+    /**
+     * @return Slot times spacing the strip's slots evenly over the recorded pan, or null to space
+     * them evenly in time.
+     */
+    static int[] stripTimesFor(CaptureOrientation capture, int frames, int duration) {
+        if (capture == null || capture.getPan() <= 0) {
+            return null;
+        }
+        return capture.timesForEvenPan(frames, duration);
     }
 
-    private class RptUpdater implements Runnable {
-        public void run() {
-            if (mAutoIncrement) {
-                mValue += 30; //change this value to control how much to forward
-                mMediaPlayer.seekTo(mMediaPlayer.getCurrentPosition() + mValue);
-//                repeatUpdateHandler.postDelayed(new RptUpdater(), 50);
-            } else if (mAutoDecrement) {
-                mValue -= 30; //change this value to control how much to rewind
-                mMediaPlayer.seekTo(mMediaPlayer.getCurrentPosition() - mValue);
-//                repeatUpdateHandler.postDelayed(new RptUpdater(), 50);
+    /**
+     * @return Angle of the current position in the frame strip. Its slots are spaced by time or
+     * by the recorded pan independently of how the timeline maps angles, so go by the position.
+     */
+    private float stripAngle() {
+        if (mTimeline.getDuration() == 0) {
+            return mTimeline.getAngle();
+        }
+        return mStrip.angleForTime(mTimeline.getPosition());
+    }
+
+    /**
+     * @return Height of strip frames keeping the clip's aspect ratio, 3:2 if it is unknown.
+     */
+    static int stripFrameHeight(int videoWidth, int videoHeight) {
+        return videoWidth > 0 ? STRIP_FRAME_WIDTH * videoHeight / videoWidth : STRIP_FRAME_WIDTH * 2 / 3;
+    }
+
+    /**
+     * Shows the pre-decoded frame for the given angle, if the strip has one near it.
+     *
+     * @return false if the frame has to come from the player instead.
+     */
+    private boolean showStripFrame(float angle) {
+        long start = System.nanoTime();
+        int slot;
+        if (mPrefetcher != null) {
+            slot = mPrefetcher.lookup(angle);
+            mPrefetcher.onScrub(angle, mScrub.getAngularVelocity());
+        } else {
+            slot = mStrip.lookup(angle);
+        }
+        if (slot < 0) {
+            return false;
+        }
+        if (slot != mShownSlot) {
+            mStripBitmap.copyPixelsFromBuffer(mStrip.frame(slot));
+            imageView.invalidate();
+            mShownSlot = slot;
+        }
+        mStripLookups++;
+        mStripLookupNanos += System.nanoTime() - start;
+
+        if (imageView.getVisibility() != View.VISIBLE) {
+            imageView.setVisibility(View.VISIBLE);
+        }
+        return true;
+    }
+
+    /**
+     * Reopens the strip saved next to the clip, or decodes the clip into a new one when there is
+     * no usable strip file.
+     */
+    private void openFrameStrip(final String videoPath, int duration, int videoWidth, int videoHeight) {
+        final File video = new File(videoPath);
+        final File stripFile = FrameStripFile.fileFor(video);
+        if (stripFile.exists()) {
+            try {
+                showFrameStrip(FrameStripFile.open(stripFile, video));
+                Log.d(TAG, "reopened frame strip " + stripFile);
+                mReadiness.onStripProgress(mStrip.getFrameCount(), mStrip.getFrameCount(), true,
+                        SystemClock.uptimeMillis());
+                verifyFrameStrip(stripFile, mStrip, videoPath, duration, videoWidth, videoHeight);
+                return;
+            } catch (IOException e) {
+                Log.w(TAG, "discarding frame strip " + stripFile, e);
+                stripFile.delete();
             }
+        }
+        buildFrameStrip(videoPath, duration, videoWidth, videoHeight);
+    }
 
+    /**
+     * Checks the frames of a reopened strip in the background. A corrupt strip is dropped in favour
+     * of the source video and rebuilt.
+     */
+    private void verifyFrameStrip(final File stripFile, final FrameStrip strip, final String videoPath,
+                                  final int duration, final int videoWidth, final int videoHeight) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int corrupt;
+                try {
+                    corrupt = FrameStripFile.verifyFrames(stripFile, strip);
+                } catch (IOException e) {
+                    corrupt = 0;
+                }
+                if (corrupt < 0) {
+                    return;
+                }
+                Log.w(TAG, "frame strip " + stripFile + " corrupt at slot " + corrupt + ", rebuilding");
+                repeatUpdateHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mStrip != strip || isFinishing()) {
+                            return;
+                        }
+                        mStrip = null;
+                        mShownSlot = -1;
+                        imageView.setVisibility(View.GONE);
+                        stripFile.delete();
+                        buildFrameStrip(videoPath, duration, videoWidth, videoHeight);
+                    }
+                });
+            }
+        }, "frame-strip-verify").start();
+    }
+
+    private void showFrameStrip(FrameStrip strip) {
+        if (mStripBitmap == null || mStripBitmap.getWidth() != strip.getWidth()
+                || mStripBitmap.getHeight() != strip.getHeight()) {
+            mStripBitmap = Bitmap.createBitmap(strip.getWidth(), strip.getHeight(), Bitmap.Config.RGB_565);
+            imageView.setImageBitmap(mStripBitmap);
         }
+        mShownSlot = -1;
+        mStrip = strip;
+    }
+
+    /**
+     * Decodes the clip once into an angle indexed strip on a background thread and saves it next
+     * to the clip. Scrubbing falls back to seeking the player for angles whose frames are not
+     * decoded yet. The decoders open the clip on their own threads, a clip that can't be opened
+     * fails the build through {@link FrameStripBuilder.Listener#onError}.
+     */
+    private void buildFrameStrip(String videoPath, int duration, int videoWidth, int videoHeight) {
+        final File video = new File(videoPath);
+        RetrieverFrameDecoder decoder = new RetrieverFrameDecoder(videoPath);
+        // the prefetcher decodes on its own thread and needs its own retriever
+        RetrieverFrameDecoder prefetchDecoder = new RetrieverFrameDecoder(videoPath);
+
+        CaptureOrientation capture = mTimeline.getCaptureOrientation();
+        int frames = stripFramesFor(capture);
+        FrameStrip strip = new FrameStrip(frames, STRIP_FRAME_WIDTH, stripFrameHeight(videoWidth, videoHeight),
+                mTimeline.getSweep(), duration, stripTimesFor(capture, frames, duration));
+        showFrameStrip(strip);
+        final FramePrefetcher prefetcher = new FramePrefetcher(strip, prefetchDecoder, FramePrefetcher.DEFAULT_WINDOW);
+        mPrefetcher = prefetcher;
+
+        mStripBuilder = new FrameStripBuilder(strip, decoder, new FrameStripBuilder.Listener() {
+            @Override
+            public void onProgress(final FrameStrip strip, final int decoded, final boolean coarse) {
+                repeatUpdateHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mReadiness.onStripProgress(decoded, strip.getFrameCount(), coarse,
+                                SystemClock.uptimeMillis());
+                    }
+                });
+            }
+
+            @Override
+            public void onComplete(FrameStrip strip, final int decoded, long elapsedNanos) {
+                repeatUpdateHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (decoded > 0) {
+                            mReadiness.onStripDone(SystemClock.uptimeMillis());
+                        } else {
+                            mReadiness.onStripFailed(SystemClock.uptimeMillis());
+                        }
+                        Log.d(TAG, "prefetch " + prefetcher);
+                        prefetcher.shutdown();
+                        if (mPrefetcher == prefetcher) {
+                            mPrefetcher = null;
+                        }
+                    }
+                });
+                Log.d(TAG, "frame strip " + decoded + " of " + strip.getFrameCount() + " frames, "
+                        + strip.getBytesPerFrame() + " bytes/frame, " + strip.getFootprint() + " bytes, decoded in "
+                        + elapsedNanos / 1000000 + "ms");
+                try {
+                    FrameStripFile.write(strip, FrameStripFile.fileFor(video), video);
+                } catch (IOException e) {
+                    Log.w(TAG, "cannot save frame strip for " + video, e);
+                }
+            }
+
+            @Override
+            public void onError(FrameStrip strip, IOException e) {
+                Log.w(TAG, "frame strip decode failed after " + strip.getReadyCount() + " frames", e);
+                repeatUpdateHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mReadiness.onStripFailed(SystemClock.uptimeMillis());
+                        prefetcher.shutdown();
+                        if (mPrefetcher == prefetcher) {
+                            mPrefetcher = null;
+                        }
+                    }
+                });
+            }
+        });
+        new Thread(mStripBuilder, "frame-strip").start();
     }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.rewind_forward);
+        mReadiness = new ScrubReadiness(SystemClock.uptimeMillis(), new ReadinessListener());
 
         mSensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         mWindowManager = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
+        mSensorPump.setIdleRate(SensorPump.IDLE_DELAY, SensorPump.IDLE_REPORT_LATENCY_US);
 
         SurfaceView first = (SurfaceView) findViewById(R.id.firstSurface);
+        imageView = (ImageView) findViewById(R.id.stripFrame);
 
         first.getHolder().addCallback(new SurfaceHolder.Callback() {
             @Override
@@ -104,45 +484,50 @@ public class RewindForward extends Activity implements MediaPlayer.OnPreparedLis
                 Log.d(TAG, "First surface created!");
                 mFirstSurface = surfaceHolder;
 
-                if (getIntent().hasExtra("video_name")) {
-                    String timeStamp = getIntent().getStringExtra("video_name");
-                    mVideoUri = Uri.parse(Environment.getExternalStorageDirectory() + timeStamp);
+                if (mVideoPath == null) {
+                    String videoPath;
+                    if (getIntent().hasExtra("video_name")) {
+                        String timeStamp = getIntent().getStringExtra("video_name");
+                        videoPath = Environment.getExternalStorageDirectory() + timeStamp;
 
-                    Log.e("file", String.valueOf(timeStamp));
-                } else {
-                    mVideoUri = Uri.parse(Environment.getExternalStorageDirectory() + "/video.mp4");
-                    Log.e("file", "NA");
+                        Log.e("file", String.valueOf(timeStamp));
+                    } else {
+                        videoPath = Environment.getExternalStorageDirectory() + "/video.mp4";
+                        Log.e("file", "NA");
+                    }
+                    mVideoPath = videoPath;
+                    // what is read from the clip outlives the surface, load it once
+                    loadKeyframeIndex(videoPath);
+                    // the strip's slots depend on the capture orientation, open it once that is known
+                    loadCaptureOrientation(videoPath, new Runnable() {
+                        @Override
+                        public void run() {
+                            mCaptureKnown = true;
+                            startFrameStrip();
+                        }
+                    });
                 }
+                mVideoUri = Uri.parse(mVideoPath);
 
                 mMediaPlayer = MediaPlayer.create(getApplicationContext(),
                         mVideoUri, mFirstSurface);
                 mMediaPlayer.start();
                 mMediaPlayer.pause();
+                mSeekScheduler = new SeekScheduler(mMediaPlayer);
+                mSeekScheduler.setListener(mSeekLanded);
+                mSeekScheduler.setMetrics(mSeekMetrics);
                 Log.e("+++", "total duration " + mMediaPlayer.getDuration());
-                for (int i = 0; i < 6 * (mMediaPlayer.getDuration() / 1000); i++) {
-                    final int finalI = i;
-                    new Handler().postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-
-                            if (Calendar.getInstance().getTimeInMillis() - lastUpdate > 100) {
-                                lastUpdate = Calendar.getInstance().getTimeInMillis();
-                                mAutoIncrement = true;
-                                mAutoDecrement = false;
-                                repeatUpdateHandler.post(new RptUpdater());
-                            }
-
-                        }
-                    }, i * 100);
+                mTimeline.setDuration(mMediaPlayer.getDuration());
+                mTimeline.reset(mMediaPlayer.getCurrentPosition());
+                mReadiness.onPlayerReady(SystemClock.uptimeMillis());
+                startFrameStrip();
+
+                if (mMediaPlayer.getDuration() > 0) {
+                    mSpin.setSweepTime((int) (mMediaPlayer.getDuration() * SPIN_TIME_SCALE));
+                    startSpin();
                 }
 
-                mMediaPlayer.setOnSeekCompleteListener(new MediaPlayer.OnSeekCompleteListener() {
-                    @Override
-                    public void onSeekComplete(MediaPlayer mp) {
-                        Log.e("seek complete", "seek complete");
-//                        mMediaPlayer.seekTo(mMediaPlayer.getCurrentPosition() + 200);
-                    }
-                });
+                mMediaPlayer.setOnSeekCompleteListener(mSeekScheduler);
 
             }
 
@@ -154,6 +539,7 @@ public class RewindForward extends Activity implements MediaPlayer.OnPreparedLis
             @Override
             public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
                 Log.d(TAG, "First surface destroyed!");
+                releasePlayback();
             }
         });
     }
@@ -167,6 +553,43 @@ public class RewindForward extends Activity implements MediaPlayer.OnPreparedLis
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        releasePlayback();
+    }
+
+    /**
+     * Opens or builds the frame strip once both the player and the capture orientation are there,
+     * unless the current surface has one already.
+     */
+    private void startFrameStrip() {
+        if (!mCaptureKnown || mMediaPlayer == null || mStrip != null || isFinishing()) {
+            return;
+        }
+        openFrameStrip(mVideoPath, mMediaPlayer.getDuration(), mMediaPlayer.getVideoWidth(),
+                mMediaPlayer.getVideoHeight());
+    }
+
+    /**
+     * Releases what surfaceCreated set up: the player, its seeks, and the strip with the threads
+     * decoding it. A strip not decoded completely is rebuilt with the next surface.
+     */
+    private void releasePlayback() {
+        pauseSpin();
+        repeatUpdateHandler.removeCallbacks(mRptUpdater);
+        if (mStripBuilder != null) {
+            mStripBuilder.cancel();
+            mStripBuilder = null;
+        }
+        if (mPrefetcher != null) {
+            mPrefetcher.shutdown();
+            mPrefetcher = null;
+        }
+        mStrip = null;
+        mShownSlot = -1;
+        imageView.setVisibility(View.GONE);
+        if (mSeekScheduler != null) {
+            mSeekScheduler.reset();
+            mSeekScheduler = null;
+        }
         if (mMediaPlayer != null) {
             mMediaPlayer.release();
             mMediaPlayer = null;
@@ -179,28 +602,113 @@ public class RewindForward extends Activity implements MediaPlayer.OnPreparedLis
         mMediaPlayer.start();
     }
 
-    @Override
-    protected void onStart() {
-        final ProgressDialog progressDialog = new ProgressDialog(this);
-        progressDialog.show();
-        progressDialog.setTitle("Processing");
-        progressDialog.setMessage("Processing");
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                mSensorManager.registerListener(RewindForward.this, mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE_UNCALIBRATED), SensorManager.SENSOR_DELAY_GAME);
-                Log.e("regostered", "registered");
-                progressDialog.cancel();
+    private void startTrace() {
+        File file = new File(getExternalFilesDir(null), "scrub-" + System.currentTimeMillis() + SensorTrace.EXTENSION);
+        try {
+            mTrace = SensorTrace.create(file, SAMPLE_WIDTH, TRACE_CAPACITY);
+            Log.d(TAG, "tracing sensors to " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "startTrace: cannot create " + file, e);
+        }
+    }
+
+    private void dumpSeekMetrics() {
+        File file = new File(getExternalFilesDir(null), "seek-metrics.txt");
+        try {
+            mSeekMetrics.dump(file);
+            Log.d(TAG, "seek metrics appended to " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "dumpSeekMetrics: cannot write " + file, e);
+        }
+    }
+
+    /**
+     * Shows preparation progress until the capture can be scrubbed, then hands over to the sensor.
+     */
+    private class ReadinessListener implements ScrubReadiness.Listener {
+
+        @Override
+        public void onProgress(int percent) {
+            if (mProgressDialog != null) {
+                mProgressDialog.setProgress(percent);
             }
-        }, 10000);
+        }
 
+        @Override
+        public void onInteractive(long elapsedMs) {
+            Log.d(TAG, "time to interactive " + elapsedMs + "ms for " + mVideoPath);
+            if (mStarted) {
+                enableScrubbing();
+            }
+        }
 
+        @Override
+        public void onComplete(long elapsedMs) {
+            Log.d(TAG, "prepared " + mVideoPath + " in " + elapsedMs + "ms");
+        }
+    }
+
+    private void enableScrubbing() {
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+        mScrub.reset();
+        if (getIntent().getBooleanExtra(EXTRA_TRACE_SENSORS, false) && mTrace == null) {
+            startTrace();
+        }
+        mSensorPump.start(mSensorManager, SensorManager.SENSOR_DELAY_GAME,
+                mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE_UNCALIBRATED));
+    }
+
+    @Override
+    protected void onStart() {
         super.onStart();
+        mStarted = true;
+        if (mReadiness.isInteractive()) {
+            enableScrubbing();
+            return;
+        }
+        mProgressDialog = new ProgressDialog(this);
+        mProgressDialog.setTitle("Processing");
+        mProgressDialog.setMessage("Processing");
+        mProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        mProgressDialog.setMax(100);
+        mProgressDialog.setProgress(mReadiness.getProgress());
+        mProgressDialog.show();
     }
 
     @Override
     protected void onStop() {
-        mSensorManager.unregisterListener(this);
+        mStarted = false;
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+        mSensorPump.stop(mSensorManager);
+        pauseSpin();
+        Log.d(TAG, "sensor overruns " + mSensorPump.getOverruns());
+        if (mTrace != null) {
+            Log.d(TAG, "trace " + mTrace.size() + " samples, dropped " + mTrace.getDropped());
+            mTrace.force();
+            mTrace = null;
+        }
+        if (mSeekScheduler != null) {
+            Log.d(TAG, "seeks " + mSeekScheduler);
+            Log.d(TAG, "seek prediction " + mPredictor);
+        }
+        Log.d(TAG, "seek metrics " + mSeekMetrics);
+        if (getIntent().getBooleanExtra(EXTRA_DUMP_SEEK_METRICS, false)) {
+            dumpSeekMetrics();
+        }
+        if (mStripLookups > 0 && mStrip != null) {
+            Log.d(TAG, "strip lookups " + mStripLookups + ", avg " + mStripLookupNanos / mStripLookups
+                    + "ns, " + mStrip.getBytesPerFrame() + " bytes/frame");
+        }
+        if (mPrefetcher != null) {
+            Log.d(TAG, "prefetch " + mPrefetcher);
+        }
+        Log.d(TAG, "readiness " + mReadiness);
         super.onStop();
     }
 
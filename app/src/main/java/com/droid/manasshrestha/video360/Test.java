@@ -2,8 +2,6 @@ package com.droid.manasshrestha.video360;
 
 import android.app.Activity;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.media.MediaPlayer;
 import android.net.Uri;
@@ -14,9 +12,13 @@ import android.util.Log;
 import android.widget.TextView;
 import android.widget.VideoView;
 
-public class Test extends Activity implements SensorEventListener {
+import com.droid.manasshrestha.video360.sensor.SensorPump;
+import com.droid.manasshrestha.video360.sensor.SensorRing;
+
+public class Test extends Activity implements SensorRing.Sink {
     private SensorManager mgr;
     private Sensor gyro;
+    private final SensorPump mSensorPump = new SensorPump("gyroscope", 3, this);
     VideoView videoView;
     TextView textView;
 
@@ -53,26 +55,22 @@ public class Test extends Activity implements SensorEventListener {
 
     @Override
     protected void onResume() {
-        mgr.registerListener(this, gyro, SensorManager.SENSOR_DELAY_GAME);
+        mSensorPump.start(mgr, SensorManager.SENSOR_DELAY_GAME, gyro);
         super.onResume();
     }
 
     @Override
     protected void onPause() {
-        mgr.unregisterListener(this, gyro);
+        mSensorPump.stop(mgr);
         super.onPause();
     }
 
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-
-    }
-
     long lastUpdate;
 
-    public void onSensorChanged(SensorEvent sensorEvent) {
-        float x = sensorEvent.values[0];
-        float y = sensorEvent.values[1];
-        float z = sensorEvent.values[2];
+    public void onSample(int type, long timestampNs, float[] values, int offset) {
+        float x = values[offset];
+        float y = values[offset + 1];
+        float z = values[offset + 2];
 
         long curTime = System.currentTimeMillis();
 
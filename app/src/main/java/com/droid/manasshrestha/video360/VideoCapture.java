@@ -1,12 +1,19 @@
 package com.droid.manasshrestha.video360;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
 import android.media.CamcorderProfile;
 import android.media.MediaRecorder;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
@@ -14,11 +21,66 @@ import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 
+import com.droid.manasshrestha.video360.media.CaptureOrientation;
+import com.droid.manasshrestha.video360.media.CaptureOrientationRecorder;
+import com.droid.manasshrestha.video360.scrub.OrientationTimelineMapper;
+import com.droid.manasshrestha.video360.sensor.SensorPump;
+import com.droid.manasshrestha.video360.strip.CaptureStripRecorder;
+import com.droid.manasshrestha.video360.strip.FrameStrip;
+import com.droid.manasshrestha.video360.strip.FrameStripFile;
+
+import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Random;
 
-public class VideoCapture extends Activity implements View.OnClickListener, SurfaceHolder.Callback {
+public class VideoCapture extends Activity implements View.OnClickListener, SurfaceHolder.Callback,
+        Camera.PreviewCallback {
+    private static final String TAG = "VideoCapture";
+    /**
+     * Preview buffers cycled through the camera, one being downscaled while the others fill.
+     */
+    private static final int PREVIEW_BUFFERS = 3;
+    /**
+     * Preview frames kept for the strip: one and a half per slot, a frame every 125ms at the 30s
+     * maximum. At least a frame time apart.
+     */
+    private static final int STRIP_POOL_FRAMES = RewindForward.STRIP_FRAMES * 3 / 2;
+    private static final int STRIP_POOL_INTERVAL_MS = 33;
+    /**
+     * Preview frames kept further apart than this, or as far from either end of the capture, mean
+     * the preview callbacks stopped during the recording.
+     */
+    private static final int STRIP_MAX_GAP_MS = 1000;
+    /**
+     * Orientation samples kept per capture: the 30s maximum at the game rate, with room to spare.
+     */
+    private static final int ORIENTATION_CAPACITY = 3000;
+    private SensorManager mSensorManager;
+    private final CaptureOrientationRecorder mOrientation = new CaptureOrientationRecorder(ORIENTATION_CAPACITY);
+    /**
+     * Delivers the rotation vector, x, y, z and w, to the orientation recorder.
+     */
+    private final SensorPump mOrientationPump = new SensorPump("capture-orientation", 4, mOrientation);
+    /**
+     * Camera shared with the recorder so its preview frames can be downscaled into the frame strip
+     * while recording, null if it can't be opened and the recorder uses the camera on its own.
+     * <p/>
+     * Many devices stop the preview callbacks once the camera is unlocked for the recorder. The
+     * strip is then not saved with the capture, and RewindForward decodes it from the finished
+     * file instead, as for any clip without a strip file.
+     */
+    private Camera mCamera;
+    private int mPreviewWidth;
+    private int mPreviewHeight;
+    private int mStripFrameHeight;
+    /**
+     * Pool of downscaled preview frames, several MB off the heap: allocated when the first
+     * recording starts, dropped when the activity pauses.
+     */
+    private CaptureStripRecorder mStripRecorder;
+    private long mRecordStartMs;
+    private boolean mSavingStrip;
     MediaRecorder recorder;
     SurfaceHolder holder;
     boolean recording = false;
@@ -35,8 +97,12 @@ public class VideoCapture extends Activity implements View.OnClickListener, Surf
         int i1 = (r.nextInt(80) + 65);
         timeStamp = "/test" + String.valueOf(i1)+".mp4";
 
+        mSensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+        openCamera();
         recorder = new MediaRecorder();
-        initRecorder();
+        if (mCamera == null) {
+            initRecorder();
+        }
         setContentView(R.layout.video_camera);
 
         SurfaceView cameraView = (SurfaceView) findViewById(R.id.camera);
@@ -52,8 +118,12 @@ public class VideoCapture extends Activity implements View.OnClickListener, Surf
     String timeStamp;
 
     private void initRecorder() {
+        if (mCamera != null) {
+            recorder.setCamera(mCamera);
+        }
         recorder.setAudioSource(MediaRecorder.AudioSource.DEFAULT);
-        recorder.setVideoSource(MediaRecorder.VideoSource.DEFAULT);
+        recorder.setVideoSource(mCamera != null ? MediaRecorder.VideoSource.CAMERA
+                : MediaRecorder.VideoSource.DEFAULT);
 
         CamcorderProfile cpHigh = CamcorderProfile
                 .get(CamcorderProfile.QUALITY_480P);
@@ -81,25 +151,251 @@ public class VideoCapture extends Activity implements View.OnClickListener, Surf
     }
 
     public void onClick(View v) {
+        if (mSavingStrip) {
+            return;
+        }
         if (recording) {
             recorder.stop();
             recording = false;
+            int duration = (int) (SystemClock.elapsedRealtime() - mRecordStartMs);
+            File orientation = stopOrientation(true);
 
             // Let's initRecorder so we can record again
             initRecorder();
             Intent intent = new Intent(this, RewindForward.class);
             intent.putExtra("video_name", timeStamp);
-            startActivity(intent);
+            saveCaptureStrip(duration, orientation, intent);
             return;
 
 //            prepareRecorder();
         } else {
             recording = true;
+            startOrientation();
+            startStripPool();
             recorder.start();
+            mRecordStartMs = SystemClock.elapsedRealtime();
+            mOrientation.markStart(sensorClockNanos());
+        }
+    }
+
+    /**
+     * Opens the camera for the recorder, previewing NV21 frames into a few reused buffers at the
+     * recording size if the camera supports it.
+     */
+    private void openCamera() {
+        try {
+            mCamera = Camera.open();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "cannot open the camera, recording without a frame strip", e);
+        }
+        if (mCamera == null) {
+            return;
+        }
+        CamcorderProfile profile = CamcorderProfile.get(CamcorderProfile.QUALITY_480P);
+        Camera.Parameters parameters = mCamera.getParameters();
+        for (Camera.Size size : parameters.getSupportedPreviewSizes()) {
+            if (size.width == profile.videoFrameWidth && size.height == profile.videoFrameHeight) {
+                parameters.setPreviewSize(size.width, size.height);
+                break;
+            }
+        }
+        parameters.setPreviewFormat(ImageFormat.NV21);
+        mCamera.setParameters(parameters);
+        Camera.Size preview = mCamera.getParameters().getPreviewSize();
+        mPreviewWidth = preview.width;
+        mPreviewHeight = preview.height;
+
+        int bufferSize = mPreviewWidth * mPreviewHeight * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+        for (int i = 0; i < PREVIEW_BUFFERS; i++) {
+            mCamera.addCallbackBuffer(new byte[bufferSize]);
+        }
+        mStripFrameHeight = RewindForward.stripFrameHeight(profile.videoFrameWidth, profile.videoFrameHeight);
+        mCamera.setPreviewCallbackWithBuffer(this);
+    }
+
+    /**
+     * Empties the strip pool for a new recording, allocating it the first time.
+     */
+    private void startStripPool() {
+        if (mCamera == null) {
+            return;
+        }
+        if (mStripRecorder == null) {
+            mStripRecorder = new CaptureStripRecorder(RewindForward.STRIP_FRAME_WIDTH, mStripFrameHeight,
+                    STRIP_POOL_FRAMES, STRIP_POOL_INTERVAL_MS);
+            Log.d(TAG, "strip pool " + mStripRecorder.getFootprint() + " bytes");
+        }
+        mStripRecorder.reset();
+    }
+
+    private void releaseCamera() {
+        if (mCamera == null) {
+            return;
+        }
+        mCamera.setPreviewCallbackWithBuffer(null);
+        try {
+            mCamera.lock();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "cannot lock the camera", e);
+        }
+        mCamera.stopPreview();
+        mCamera.release();
+        mCamera = null;
+    }
+
+    @Override
+    public void onPreviewFrame(byte[] data, Camera camera) {
+        if (recording && mStripRecorder != null) {
+            mStripRecorder.onPreviewFrame(data, mPreviewWidth, mPreviewHeight,
+                    (int) (SystemClock.elapsedRealtime() - mRecordStartMs));
+        }
+        // hand the buffer back, the frame has been copied into the strip pool
+        camera.addCallbackBuffer(data);
+    }
+
+    /**
+     * Fills a frame strip from the preview frames kept while recording and saves it next to the
+     * capture on a background thread, so RewindForward reopens it instead of decoding the clip.
+     * With the orientation sidecar the slots are spaced evenly over the pan, as RewindForward
+     * would decode them.
+     *
+     * <p/>
+     * If the preview frames don't cover the capture, nothing is saved and RewindForward decodes
+     * the strip from the clip.
+     *
+     * @param orientation The orientation sidecar written for the capture, or null.
+     * @param next        Started once the strip is saved, or right away without preview frames.
+     */
+    private void saveCaptureStrip(final int durationMs, final File orientation, final Intent next) {
+        if (mStripRecorder == null || !mStripRecorder.covers(durationMs, STRIP_MAX_GAP_MS)) {
+            if (mStripRecorder != null) {
+                Log.w(TAG, "preview frames stopped, " + mStripRecorder.size() + " kept of "
+                        + mStripRecorder.getReceived() + ", the strip will be decoded from the clip");
+            }
+            if (next != null) {
+                startActivity(next);
+            }
+            return;
+        }
+        final File video = new File(Environment.getExternalStorageDirectory() + timeStamp);
+        final CaptureStripRecorder frames = mStripRecorder;
+        mSavingStrip = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.uptimeMillis();
+                CaptureOrientation capture = null;
+                if (orientation != null) {
+                    try {
+                        capture = CaptureOrientation.open(orientation);
+                    } catch (IOException e) {
+                        Log.w(TAG, "frame strip spaced in time, cannot read " + orientation, e);
+                    }
+                }
+                int count = RewindForward.stripFramesFor(capture);
+                FrameStrip strip = new FrameStrip(count, frames.getWidth(), frames.getHeight(),
+                        OrientationTimelineMapper.DEFAULT_SWEEP, durationMs,
+                        RewindForward.stripTimesFor(capture, count, durationMs));
+                frames.fill(strip);
+                try {
+                    FrameStripFile.write(strip, FrameStripFile.fileFor(video), video);
+                    Log.d(TAG, "frame strip from " + frames.size() + " of " + frames.getReceived()
+                            + " preview frames saved in " + (SystemClock.uptimeMillis() - start) + "ms");
+                } catch (IOException e) {
+                    Log.w(TAG, "cannot save the frame strip for " + video, e);
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mSavingStrip = false;
+                        if (next != null) {
+                            startActivity(next);
+                        }
+                    }
+                });
+            }
+        }, "capture-strip").start();
+    }
+
+    /**
+     * Starts sampling the rotation vector ahead of the recorder, so the orientation at its start
+     * is known.
+     */
+    private void startOrientation() {
+        mOrientation.reset();
+        if (!mOrientationPump.start(mSensorManager, SensorManager.SENSOR_DELAY_GAME,
+                mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR))) {
+            Log.w(TAG, "no rotation vector, recording without orientation");
+        }
+    }
+
+    /**
+     * @param save Whether to write the orientation sidecar next to the capture.
+     * @return The sidecar written, null if there is none.
+     */
+    private File stopOrientation(boolean save) {
+        mOrientationPump.stop(mSensorManager);
+        mOrientationPump.drain();
+        if (!save || mOrientation.size() == 0) {
+            return null;
+        }
+        try {
+            File file = mOrientation.write(new File(Environment.getExternalStorageDirectory() + timeStamp));
+            Log.d(TAG, mOrientation.size() + " orientation samples written to " + file
+                    + ", " + mOrientation.getDropped() + " dropped");
+            return file;
+        } catch (IOException e) {
+            Log.w(TAG, "cannot write orientation for " + timeStamp, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return Now, in the clock of the sensor event timestamps.
+     */
+    private static long sensorClockNanos() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+        return SystemClock.elapsedRealtime() * 1000000L;
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (!recording) {
+            // a recording is stopped and its frames saved when the surface goes
+            releaseStripPool();
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        releaseStripPool();
+        super.onDestroy();
+    }
+
+    /**
+     * Drops the strip pool, a strip still being saved keeps its frames until it is written.
+     */
+    private void releaseStripPool() {
+        mStripRecorder = null;
+    }
+
     public void surfaceCreated(SurfaceHolder holder) {
+        if (mCamera != null) {
+            try {
+                mCamera.setPreviewDisplay(holder);
+                mCamera.startPreview();
+                mCamera.unlock();
+                initRecorder();
+            } catch (IOException e) {
+                Log.w(TAG, "cannot preview, recording without a frame strip", e);
+                mCamera.release();
+                mCamera = null;
+                initRecorder();
+            }
+        }
         prepareRecorder();
     }
 
@@ -111,8 +407,11 @@ public class VideoCapture extends Activity implements View.OnClickListener, Surf
         if (recording) {
             recorder.stop();
             recording = false;
+            int duration = (int) (SystemClock.elapsedRealtime() - mRecordStartMs);
+            saveCaptureStrip(duration, stopOrientation(true), null);
         }
         recorder.release();
+        releaseCamera();
         finish();
     }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package com.droid.manasshrestha.video360.media;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Camera orientation recorded alongside a capture, stored as a {@code .p3do} sidecar next to it.
+ * <p/>
+ * Layout, big endian:
+ * <pre>
+ *  0  int    magic "P3DO"
+ *  4  int    format version
+ *  8  int    sample count
+ * 12  int    reserved
+ * 16  long   sensor timestamp in ns at which the recorder started, media time 0
+ * 24  ...    samples: int media time ms, float yaw rad, float pitch rad
+ * </pre>
+ * The yaw is the compass bearing of the view, unwrapped so it is continuous over whole turns;
+ * the pitch is positive looking up.
+ * <p/>
+ * Playback maps the angle turned from the start of the capture onto media time through the pan
+ * profile: the samples at which the yaw first reached a new extreme in the direction the capture
+ * panned. Its angles and times both increase, kept in primitive arrays, so either direction of
+ * the mapping is a binary search plus an interpolation, no allocation. Going back over an arc
+ * already filmed doesn't move the profile, the first pass over an angle is the one shown; the
+ * segment that goes on past the old extreme starts where the camera crossed it again.
+ */
+public class CaptureOrientation {
+
+    public static final String EXTENSION = ".p3do";
+
+    static final int MAGIC = 0x5033444F;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int SAMPLE_SIZE = 12;
+
+    private final long mStartNs;
+    private final int[] mTimes;
+    private final float[] mYaws;
+    private final float[] mPitches;
+
+    // pan profile, both strictly increasing, and when the camera set out from the previous angle
+    private final float[] mPanAngles;
+    private final int[] mPanTimes;
+    private final int[] mPanStartTimes;
+
+    CaptureOrientation(long startNs, int[] times, float[] yaws, float[] pitches) {
+        if (times.length == 0) {
+            throw new IllegalArgumentException("No samples");
+        }
+        mStartNs = startNs;
+        mTimes = times;
+        mYaws = yaws;
+        mPitches = pitches;
+
+        int count = times.length;
+        float direction = yaws[count - 1] < yaws[0] ? -1 : 1;
+        float[] angles = new float[count];
+        int[] panTimes = new int[count];
+        int[] startTimes = new int[count];
+        panTimes[0] = startTimes[0] = times[0];
+        int size = 1;
+        float previous = 0;
+        for (int i = 1; i < count; i++) {
+            float angle = (yaws[i] - yaws[0]) * direction;
+            float last = angles[size - 1];
+            if (angle > last && times[i] > panTimes[size - 1]) {
+                int start = times[i - 1];
+                if (previous < last) {
+                    // coming back from a retreat: when the camera crossed the old extreme again
+                    start += Math.round((last - previous) / (angle - previous) * (times[i] - start));
+                }
+                angles[size] = angle;
+                panTimes[size] = times[i];
+                startTimes[size] = start;
+                size++;
+            }
+            previous = angle;
+        }
+        mPanAngles = Arrays.copyOf(angles, size);
+        mPanTimes = Arrays.copyOf(panTimes, size);
+        mPanStartTimes = Arrays.copyOf(startTimes, size);
+    }
+
+    /**
+     * @return The sidecar belonging to the given capture.
+     */
+    public static File fileFor(File video) {
+        String name = video.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(video.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+
+    /**
+     * Reads a sidecar.
+     *
+     * @throws IOException if the file is missing, corrupt or holds no samples.
+     */
+    public static CaptureOrientation open(File file) throws IOException {
+        MappedByteBuffer map = MappedFiles.mapReadOnly(file);
+
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not an orientation sidecar: " + file);
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported orientation version " + map.getInt(4));
+        }
+        int count = map.getInt(8);
+        if (count < 1 || count > (map.capacity() - HEADER_SIZE) / SAMPLE_SIZE) {
+            throw new IOException("Orientation sidecar truncated, " + count + " samples in "
+                    + map.capacity() + " bytes");
+        }
+        long startNs = map.getLong(16);
+        int[] times = new int[count];
+        float[] yaws = new float[count];
+        float[] pitches = new float[count];
+        map.position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            times[i] = map.getInt();
+            yaws[i] = map.getFloat();
+            pitches[i] = map.getFloat();
+            if (i > 0 && times[i] < times[i - 1]) {
+                throw new IOException("Orientation samples out of order at " + i);
+            }
+        }
+        return new CaptureOrientation(startNs, times, yaws, pitches);
+    }
+
+    /**
+     * Writes the first {@code count} samples to a temporary name and renames it, so a sidecar is
+     * either complete or absent.
+     */
+    static void write(File target, long startNs, int[] times, float[] yaws, float[] pitches,
+                      int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * SAMPLE_SIZE);
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(count)
+                .putInt(0)
+                .putLong(startNs);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(times[i])
+                    .putFloat(yaws[i])
+                    .putFloat(pitches[i]);
+        }
+        buffer.flip();
+
+        File temp = new File(target.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + target);
+        }
+    }
+
+    public int size() {
+        return mTimes.length;
+    }
+
+    /**
+     * @return Media time of the i-th sample in milliseconds, negative if it was taken just
+     * before the recorder started.
+     */
+    public int getTime(int i) {
+        return mTimes[i];
+    }
+
+    /**
+     * @return Unwrapped yaw of the i-th sample in radians.
+     */
+    public float getYaw(int i) {
+        return mYaws[i];
+    }
+
+    /**
+     * @return Pitch of the i-th sample in radians.
+     */
+    public float getPitch(int i) {
+        return mPitches[i];
+    }
+
+    /**
+     * @return Sensor timestamp in nanoseconds of media time 0.
+     */
+    public long getStartTimestamp() {
+        return mStartNs;
+    }
+
+    /**
+     * @return Angle in radians the capture panned over, 0 if it never turned.
+     */
+    public float getPan() {
+        return mPanAngles[mPanAngles.length - 1];
+    }
+
+    /**
+     * @param angle Angle turned from the start of the capture in its pan direction, radians.
+     * @return Media time in milliseconds at which the camera first pointed there, clamped to the
+     * pan profile.
+     */
+    public int timeForPan(float angle) {
+        int last = mPanAngles.length - 1;
+        if (angle <= 0 || last == 0) {
+            return mPanTimes[0];
+        }
+        if (angle >= mPanAngles[last]) {
+            return mPanTimes[last];
+        }
+        int i = Arrays.binarySearch(mPanAngles, angle);
+        if (i >= 0) {
+            return mPanTimes[i];
+        }
+        int hi = -i - 1;
+        int lo = hi - 1;
+        float f = (angle - mPanAngles[lo]) / (mPanAngles[hi] - mPanAngles[lo]);
+        return mPanStartTimes[hi] + Math.round(f * (mPanTimes[hi] - mPanStartTimes[hi]));
+    }
+
+    /**
+     * Resamples the pan profile at evenly spaced angles, e.g. for slots each covering the same arc.
+     *
+     * @param count      Number of angles, the first at the start and the last at the end of the pan.
+     * @param durationMs Length of the clip, times are clamped to it.
+     * @return Non decreasing media times in milliseconds at which the camera first pointed there.
+     */
+    public int[] timesForEvenPan(int count, int durationMs) {
+        int[] times = new int[count];
+        float pan = getPan();
+        for (int i = 0; i < count; i++) {
+            float angle = count == 1 ? 0 : pan * i / (count - 1);
+            times[i] = Math.max(0, Math.min(durationMs, timeForPan(angle)));
+        }
+        return times;
+    }
+
+    /**
+     * Inverse of {@link #timeForPan(float)}.
+     *
+     * @return Angle in radians the capture had panned to by the given media time.
+     */
+    public float panForTime(int timeMs) {
+        int last = mPanTimes.length - 1;
+        if (timeMs <= mPanTimes[0] || last == 0) {
+            return 0;
+        }
+        if (timeMs >= mPanTimes[last]) {
+            return mPanAngles[last];
+        }
+        int i = Arrays.binarySearch(mPanTimes, timeMs);
+        if (i >= 0) {
+            return mPanAngles[i];
+        }
+        int hi = -i - 1;
+        int lo = hi - 1;
+        if (timeMs <= mPanStartTimes[hi]) {
+            // still on its way back to the extreme reached before
+            return mPanAngles[lo];
+        }
+        float f = (float) (timeMs - mPanStartTimes[hi]) / (mPanTimes[hi] - mPanStartTimes[hi]);
+        return mPanAngles[lo] + f * (mPanAngles[hi] - mPanAngles[lo]);
+    }
+
+    @Override
+    public String toString() {
+        return size() + " samples, pan " + (float) Math.toDegrees(getPan()) + " deg over "
+                + mPanTimes[mPanTimes.length - 1] + "ms";
+    }
+}
@@ -0,0 +1,139 @@
+package com.droid.manasshrestha.video360.media;
+
+import com.droid.manasshrestha.video360.sensor.SensorRing;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records the camera orientation from rotation vector samples while a clip is being captured,
+ * for {@link CaptureOrientation}.
+ * <p/>
+ * The recorder sits behind a {@link com.droid.manasshrestha.video360.sensor.SensorPump} started
+ * before the media recorder; {@link #markStart(long)} then fixes media time 0. Of the samples
+ * before it only the newest is kept, as the orientation the clip starts with. Each sample is
+ * converted to the yaw and pitch of the camera's view, the device's -z axis, and stored in
+ * preallocated primitive arrays; samples beyond the capacity are counted as dropped. Main thread
+ * only.
+ */
+public class CaptureOrientationRecorder implements SensorRing.Sink {
+
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final int[] mTimes;
+    private final float[] mYaws;
+    private final float[] mPitches;
+    private int mCount;
+    private long mDropped;
+
+    private long mStartNs;
+    private long mBeforeStartNs;
+    private boolean mStarted;
+    private float mLastYaw;
+
+    /**
+     * @param capacity Samples kept, e.g. the longest capture at the sampling rate used.
+     */
+    public CaptureOrientationRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        mTimes = new int[capacity];
+        mYaws = new float[capacity];
+        mPitches = new float[capacity];
+    }
+
+    /**
+     * Sets media time 0.
+     *
+     * @param timestampNs Time the recorder started, in the clock of the sensor timestamps.
+     */
+    public void markStart(long timestampNs) {
+        mStartNs = timestampNs;
+        mStarted = true;
+        if (mCount == 1) {
+            mTimes[0] = toMediaTime(mBeforeStartNs);
+        }
+    }
+
+    @Override
+    public void onSample(int type, long timestampNs, float[] values, int offset) {
+        onRotationVector(timestampNs, values[offset], values[offset + 1], values[offset + 2],
+                values[offset + 3]);
+    }
+
+    /**
+     * @param x Rotation vector, the unit quaternion's x, y and z.
+     * @param w The quaternion's scalar part, 0 if the sensor doesn't report it.
+     */
+    public void onRotationVector(long timestampNs, float x, float y, float z, float w) {
+        if (w == 0) {
+            w = (float) Math.sqrt(Math.max(0, 1 - x * x - y * y - z * z));
+        }
+        // view direction: the device's -z axis in world coordinates (x east, y north, z up)
+        float viewX = -2 * (x * z + w * y);
+        float viewY = -2 * (y * z - w * x);
+        float viewZ = -(1 - 2 * (x * x + y * y));
+        float yaw = (float) Math.atan2(viewX, viewY);
+        float pitch = (float) Math.asin(Math.max(-1, Math.min(1, viewZ)));
+
+        int index;
+        if (!mStarted) {
+            // before the start only the newest sample matters
+            index = 0;
+            mCount = 1;
+            mBeforeStartNs = timestampNs;
+        } else {
+            if (mCount == mTimes.length) {
+                mDropped++;
+                return;
+            }
+            index = mCount++;
+            mTimes[index] = toMediaTime(timestampNs);
+        }
+        if (index > 0) {
+            // unwrap across +-pi so a full turn keeps counting
+            double delta = yaw - mLastYaw;
+            yaw -= (float) (TWO_PI * Math.round(delta / TWO_PI));
+        }
+        mYaws[index] = yaw;
+        mPitches[index] = pitch;
+        mLastYaw = yaw;
+    }
+
+    private int toMediaTime(long timestampNs) {
+        return (int) ((timestampNs - mStartNs) / 1000000L);
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public long getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * Writes the recorded samples as the sidecar of the given capture.
+     *
+     * @throws IOException if nothing was recorded since the start or the file can't be written.
+     */
+    public File write(File video) throws IOException {
+        if (!mStarted || mCount == 0) {
+            throw new IOException("No orientation recorded");
+        }
+        File file = CaptureOrientation.fileFor(video);
+        CaptureOrientation.write(file, mStartNs, mTimes, mYaws, mPitches, mCount);
+        return file;
+    }
+
+    /**
+     * Forgets all samples and the start, for the next capture.
+     */
+    public void reset() {
+        mCount = 0;
+        mDropped = 0;
+        mStarted = false;
+        mStartNs = 0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.droid.manasshrestha.video360.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sync sample (keyframe) index of the video track of an MP4 clip.
+ * <p/>
+ * Seeking to a keyframe is the cheapest seek the decoder can do, anything else has to decode
+ * forward from the previous keyframe. The index keeps the presentation time, sample number and
+ * file offset of every keyframe in parallel primitive arrays so the scrub path can snap or bias
+ * its targets without allocating.
+ */
+public class KeyframeIndex {
+
+    private final int[] mTimes;
+    private final int[] mSamples;
+    private final long[] mOffsets;
+    private final int mSampleCount;
+    private final int mDuration;
+
+    KeyframeIndex(int[] times, int[] samples, long[] offsets, int sampleCount, int duration) {
+        mTimes = times;
+        mSamples = samples;
+        mOffsets = offsets;
+        mSampleCount = sampleCount;
+        mDuration = duration;
+    }
+
+    /**
+     * Memory maps and parses the given clip.
+     *
+     * @throws IOException if the file can't be read or is not a usable MP4.
+     */
+    public static KeyframeIndex fromFile(File file) throws IOException {
+        return Mp4BoxParser.parse(file);
+    }
+
+    /**
+     * @return Number of keyframes.
+     */
+    public int size() {
+        return mTimes.length;
+    }
+
+    /**
+     * @return Presentation time of the i-th keyframe in milliseconds.
+     */
+    public int getTime(int i) {
+        return mTimes[i];
+    }
+
+    /**
+     * @return 1-based sample number of the i-th keyframe.
+     */
+    public int getSample(int i) {
+        return mSamples[i];
+    }
+
+    /**
+     * @return Byte offset of the i-th keyframe in the file.
+     */
+    public long getOffset(int i) {
+        return mOffsets[i];
+    }
+
+    /**
+     * @return Total number of samples in the video track.
+     */
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return Duration of the video track in milliseconds.
+     */
+    public int getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * @return Index of the last keyframe at or before the given time, 0 if there is none.
+     */
+    public int floorIndex(int timeMs) {
+        int i = Arrays.binarySearch(mTimes, timeMs);
+        if (i >= 0) {
+            return i;
+        }
+        i = -i - 2;
+        return i < 0 ? 0 : i;
+    }
+
+    /**
+     * @return Index of the keyframe closest to the given time.
+     */
+    public int nearestIndex(int timeMs) {
+        int i = floorIndex(timeMs);
+        if (i + 1 < mTimes.length && mTimes[i + 1] - timeMs < Math.abs(timeMs - mTimes[i])) {
+            return i + 1;
+        }
+        return i;
+    }
+
+    /**
+     * @return Time of the last keyframe at or before the given time.
+     */
+    public int floor(int timeMs) {
+        return mTimes.length == 0 ? timeMs : mTimes[floorIndex(timeMs)];
+    }
+
+    /**
+     * Snaps a seek target onto the closest keyframe if one is within the tolerance, otherwise
+     * returns the target unchanged.
+     *
+     * @param timeMs      Requested position in milliseconds.
+     * @param toleranceMs Maximum distance the target may be moved.
+     */
+    public int snap(int timeMs, int toleranceMs) {
+        if (mTimes.length == 0) {
+            return timeMs;
+        }
+        int keyframe = mTimes[nearestIndex(timeMs)];
+        return Math.abs(keyframe - timeMs) <= toleranceMs ? keyframe : timeMs;
+    }
+}
@@ -0,0 +1,53 @@
+package com.droid.manasshrestha.video360.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Maps whole files into memory. The file is closed before returning: the mapping stays valid
+ * after its channel is closed, and is released when the buffer is garbage collected.
+ */
+public final class MappedFiles {
+
+    private MappedFiles() {
+    }
+
+    /**
+     * Maps an existing file read only.
+     *
+     * @throws IOException if the file can't be read or is too large for one buffer.
+     */
+    public static MappedByteBuffer mapReadOnly(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long length = in.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File is too large: " + file);
+            }
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Creates the file, replacing any existing one, at the given length filled with zeros and
+     * maps it read write.
+     */
+    public static MappedByteBuffer create(File file, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File is too large: " + length + " bytes");
+        }
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(0);
+            out.setLength(length);
+            return out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            out.close();
+        }
+    }
+}
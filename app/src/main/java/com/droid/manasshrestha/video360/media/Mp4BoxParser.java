@@ -0,0 +1,346 @@
+package com.droid.manasshrestha.video360.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Minimal ISO base media (MP4) box parser building a {@link KeyframeIndex}.
+ * <p/>
+ * The file is memory mapped and only the box headers and the sample tables of the first video
+ * track (stts, ctts, stss, stsz, stsc, stco/co64) are touched, the tables are read in place
+ * without being copied. Edit lists are ignored, as MediaRecorder doesn't write any.
+ * <p/>
+ * Every table's entry count is checked against the size of its box before it is walked, so a
+ * truncated or corrupt file fails with an {@link IOException} rather than reading out of bounds.
+ */
+class Mp4BoxParser {
+
+    private static final int BOX_MOOV = fourCc("moov");
+    private static final int BOX_TRAK = fourCc("trak");
+    private static final int BOX_MDIA = fourCc("mdia");
+    private static final int BOX_MINF = fourCc("minf");
+    private static final int BOX_STBL = fourCc("stbl");
+    private static final int BOX_MDHD = fourCc("mdhd");
+    private static final int BOX_HDLR = fourCc("hdlr");
+    private static final int BOX_STTS = fourCc("stts");
+    private static final int BOX_CTTS = fourCc("ctts");
+    private static final int BOX_STSS = fourCc("stss");
+    private static final int BOX_STSZ = fourCc("stsz");
+    private static final int BOX_STSC = fourCc("stsc");
+    private static final int BOX_STCO = fourCc("stco");
+    private static final int BOX_CO64 = fourCc("co64");
+    private static final int HANDLER_VIDE = fourCc("vide");
+
+    private static final int NONE = -1;
+
+    private Mp4BoxParser() {
+    }
+
+    static KeyframeIndex parse(File file) throws IOException {
+        return parse(MappedFiles.mapReadOnly(file));
+    }
+
+    static KeyframeIndex parse(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        Track video = null;
+
+        int moov = findBox(data, data.position(), data.limit(), BOX_MOOV);
+        if (moov == NONE) {
+            throw new IOException("No moov box");
+        }
+        int moovEnd = moov + boxSize(data, moov);
+        int pos = moov + headerSize(data, moov);
+        while (video == null && pos < moovEnd) {
+            int size = boxSize(data, pos);
+            if (data.getInt(pos + 4) == BOX_TRAK) {
+                Track track = new Track();
+                parseContainer(data, pos + headerSize(data, pos), pos + size, track);
+                if (track.handler == HANDLER_VIDE) {
+                    video = track;
+                }
+            }
+            pos += size;
+        }
+        if (video == null) {
+            throw new IOException("No video track");
+        }
+        return buildIndex(data, video);
+    }
+
+    /**
+     * Sample table locations of a single track, as offsets into the mapped file, each with the
+     * end of its box.
+     */
+    private static class Track {
+        int handler;
+        long timescale;
+        int stts = NONE;
+        int sttsEnd;
+        int ctts = NONE;
+        int cttsEnd;
+        int stss = NONE;
+        int stssEnd;
+        int stsz = NONE;
+        int stszEnd;
+        int stsc = NONE;
+        int stscEnd;
+        int stco = NONE;
+        int stcoEnd;
+        boolean co64;
+    }
+
+    private static void parseContainer(ByteBuffer data, int start, int end, Track track)
+            throws IOException {
+        int pos = start;
+        while (pos < end) {
+            int size = boxSize(data, pos);
+            int type = data.getInt(pos + 4);
+            int body = pos + headerSize(data, pos);
+            if (pos + size > end) {
+                throw new IOException("Box overruns its parent at " + pos);
+            }
+
+            if (type == BOX_MDIA || type == BOX_MINF || type == BOX_STBL) {
+                parseContainer(data, body, pos + size, track);
+            } else if (type == BOX_MDHD) {
+                require(body, 1, pos + size, "mdhd");
+                int timescale = (data.get(body) & 0xff) == 1 ? body + 20 : body + 12;
+                require(timescale, 4, pos + size, "mdhd");
+                track.timescale = uint(data, timescale);
+            } else if (type == BOX_HDLR) {
+                require(body, 12, pos + size, "hdlr");
+                track.handler = data.getInt(body + 8);
+            } else if (type == BOX_STTS) {
+                track.stts = body;
+                track.sttsEnd = pos + size;
+            } else if (type == BOX_CTTS) {
+                track.ctts = body;
+                track.cttsEnd = pos + size;
+            } else if (type == BOX_STSS) {
+                track.stss = body;
+                track.stssEnd = pos + size;
+            } else if (type == BOX_STSZ) {
+                track.stsz = body;
+                track.stszEnd = pos + size;
+            } else if (type == BOX_STSC) {
+                track.stsc = body;
+                track.stscEnd = pos + size;
+            } else if (type == BOX_STCO) {
+                track.stco = body;
+                track.stcoEnd = pos + size;
+            } else if (type == BOX_CO64) {
+                track.stco = body;
+                track.stcoEnd = pos + size;
+                track.co64 = true;
+            }
+            pos += size;
+        }
+    }
+
+    /**
+     * Walks every sample once, advancing a cursor per run-length table, and records the
+     * presentation time and file offset of the sync samples.
+     */
+    private static KeyframeIndex buildIndex(ByteBuffer data, Track track) throws IOException {
+        if (track.timescale <= 0 || track.stts == NONE || track.stsz == NONE) {
+            throw new IOException("Incomplete video sample table");
+        }
+        boolean hasOffsets = track.stsc != NONE && track.stco != NONE;
+
+        require(track.stsz, 12, track.stszEnd, "stsz");
+        int fixedSize = data.getInt(track.stsz + 4);
+        int sampleCount = entries(data, track.stsz + 8, track.stszEnd, fixedSize == 0 ? 4 : 0, "stsz");
+        int sizes = track.stsz + 12;
+        int keyCount = track.stss == NONE ? sampleCount
+                : entries(data, track.stss + 4, track.stssEnd, 4, "stss");
+        if (keyCount > sampleCount) {
+            throw new IOException("Corrupt sample table");
+        }
+
+        int[] times = new int[keyCount];
+        int[] samples = new int[keyCount];
+        long[] offsets = new long[keyCount];
+
+        // stts cursor
+        int sttsEntries = entries(data, track.stts + 4, track.sttsEnd, 8, "stts");
+        int sttsPos = track.stts + 8;
+        int sttsLeft = 0;
+        long delta = 0;
+        long dts = 0;
+
+        // ctts cursor
+        int cttsEntries = track.ctts == NONE ? 0 : entries(data, track.ctts + 4, track.cttsEnd, 8, "ctts");
+        int cttsPos = track.ctts + 8;
+        int cttsLeft = 0;
+        long compositionOffset = 0;
+
+        // stss cursor
+        int stssPos = track.stss + 8;
+        int keyIndex = 0;
+        int nextSync = keyCount > 0 ? nextSync(data, track, stssPos, keyIndex) : NONE;
+
+        // stsc / stco cursor
+        int stscEntries = hasOffsets ? entries(data, track.stsc + 4, track.stscEnd, 12, "stsc") : 0;
+        int stscIndex = 0;
+        int chunkCount = hasOffsets
+                ? entries(data, track.stco + 4, track.stcoEnd, track.co64 ? 8 : 4, "stco") : 0;
+        int chunk = 0;
+        int samplesPerChunk = 0;
+        int nextRunChunk = hasOffsets && stscEntries > 0 ? data.getInt(track.stsc + 8) - 1 : 0;
+        int leftInChunk = 0;
+        long offset = 0;
+
+        for (int sample = 1; sample <= sampleCount; sample++) {
+            while (sttsLeft == 0) {
+                if (sttsEntries-- == 0) {
+                    throw new IOException("stts shorter than stsz");
+                }
+                sttsLeft = data.getInt(sttsPos);
+                delta = uint(data, sttsPos + 4);
+                sttsPos += 8;
+            }
+            if (cttsEntries > 0 || cttsLeft > 0) {
+                while (cttsLeft == 0 && cttsEntries > 0) {
+                    cttsEntries--;
+                    cttsLeft = data.getInt(cttsPos);
+                    // version 1 offsets are signed, version 0 ones never exceed 2^31 in practice
+                    compositionOffset = data.getInt(cttsPos + 4);
+                    cttsPos += 8;
+                }
+                cttsLeft--;
+            }
+            if (hasOffsets && leftInChunk == 0) {
+                while (stscIndex < stscEntries && chunk == nextRunChunk) {
+                    samplesPerChunk = data.getInt(track.stsc + 12 + stscIndex * 12);
+                    stscIndex++;
+                    nextRunChunk = stscIndex < stscEntries
+                            ? data.getInt(track.stsc + 8 + stscIndex * 12) - 1 : Integer.MAX_VALUE;
+                }
+                if (samplesPerChunk <= 0) {
+                    throw new IOException("Corrupt stsc at chunk " + (chunk + 1));
+                }
+                if (chunk >= chunkCount) {
+                    throw new IOException("Sample " + sample + " beyond last chunk");
+                }
+                offset = track.co64
+                        ? data.getLong(track.stco + 8 + chunk * 8)
+                        : uint(data, track.stco + 8 + chunk * 4);
+                leftInChunk = samplesPerChunk;
+                chunk++;
+            }
+
+            if (sample == nextSync) {
+                long pts = dts + compositionOffset;
+                times[keyIndex] = (int) (pts * 1000 / track.timescale);
+                samples[keyIndex] = sample;
+                offsets[keyIndex] = hasOffsets ? offset : -1;
+                keyIndex++;
+                nextSync = keyIndex < keyCount ? nextSync(data, track, stssPos, keyIndex) : NONE;
+            }
+
+            offset += fixedSize != 0 ? fixedSize : uint(data, sizes + (sample - 1) * 4);
+            leftInChunk--;
+            dts += delta;
+            sttsLeft--;
+        }
+
+        if (keyIndex != keyCount) {
+            throw new IOException("stss references missing samples");
+        }
+        sortByTime(times, samples, offsets);
+        return new KeyframeIndex(times, samples, offsets, sampleCount,
+                (int) (dts * 1000 / track.timescale));
+    }
+
+    /**
+     * Reads the entry count of a table, checked against the bytes left in its box.
+     *
+     * @param count     Position of the count, the entries follow it.
+     * @param entrySize Bytes per entry, 0 if the box holds no entries.
+     */
+    private static int entries(ByteBuffer data, int count, int end, int entrySize, String type)
+            throws IOException {
+        require(count, 4, end, type);
+        int entries = data.getInt(count);
+        if (entries < 0 || (long) entries * entrySize > end - count - 4) {
+            throw new IOException(type + " claims " + entries + " entries, more than its box holds");
+        }
+        return entries;
+    }
+
+    private static void require(int pos, int length, int end, String type) throws IOException {
+        if (pos + length > end) {
+            throw new IOException("Truncated " + type + " box at " + pos);
+        }
+    }
+
+    private static int nextSync(ByteBuffer data, Track track, int stssPos, int keyIndex) {
+        return track.stss == NONE ? keyIndex + 1 : data.getInt(stssPos + keyIndex * 4);
+    }
+
+    /**
+     * Keyframes come in decode order, which with reordered frames may differ from presentation
+     * order. They are nearly sorted, so insertion sort is cheap.
+     */
+    private static void sortByTime(int[] times, int[] samples, long[] offsets) {
+        for (int i = 1; i < times.length; i++) {
+            int time = times[i];
+            int sample = samples[i];
+            long offset = offsets[i];
+            int j = i - 1;
+            while (j >= 0 && times[j] > time) {
+                times[j + 1] = times[j];
+                samples[j + 1] = samples[j];
+                offsets[j + 1] = offsets[j];
+                j--;
+            }
+            times[j + 1] = time;
+            samples[j + 1] = sample;
+            offsets[j + 1] = offset;
+        }
+    }
+
+    private static int findBox(ByteBuffer data, int start, int end, int type) throws IOException {
+        int pos = start;
+        while (pos + 8 <= end) {
+            if (data.getInt(pos + 4) == type) {
+                return pos;
+            }
+            pos += boxSize(data, pos);
+        }
+        return NONE;
+    }
+
+    private static int boxSize(ByteBuffer data, int pos) throws IOException {
+        if (pos + 8 > data.limit()) {
+            throw new IOException("Truncated box header at " + pos);
+        }
+        long size = uint(data, pos);
+        if (size == 1) {
+            if (pos + 16 > data.limit()) {
+                throw new IOException("Truncated box header at " + pos);
+            }
+            size = data.getLong(pos + 8);
+        } else if (size == 0) {
+            size = data.limit() - pos;
+        }
+        if (size < 8 || pos + size > data.limit()) {
+            throw new IOException("Invalid box size " + size + " at " + pos);
+        }
+        return (int) size;
+    }
+
+    private static int headerSize(ByteBuffer data, int pos) {
+        return data.getInt(pos) == 1 ? 16 : 8;
+    }
+
+    private static long uint(ByteBuffer data, int pos) {
+        return data.getInt(pos) & 0xffffffffL;
+    }
+
+    static int fourCc(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+}
@@ -0,0 +1,190 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import com.droid.manasshrestha.video360.media.CaptureOrientation;
+
+/**
+ * Maps the device orientation onto the media timeline.
+ * <p/>
+ * Angular rate samples (rad/s) are integrated into an absolute angle using the sensor event
+ * timestamps, and that angle is mapped linearly onto the clip: {@code 0} rad is the start of the
+ * clip and {@link #getSweep()} rad is its end. Since the position is derived from the angle and
+ * not accumulated step by step, pointing the device back to where it started always lands on the
+ * same frame.
+ * <p/>
+ * With the {@link CaptureOrientation} recorded with the clip the mapping follows how the camera
+ * actually panned instead: the sweep stands for the whole pan, and each angle maps to the time
+ * the camera pointed there, so arcs filmed slowly no longer take up more of the sweep.
+ * <p/>
+ * Pure Java, no allocation per sample.
+ */
+public class OrientationTimelineMapper {
+
+    /**
+     * Rates below this magnitude (rad/s) are treated as sensor noise, same threshold the tilt
+     * detection used before.
+     */
+    public static final float DEFAULT_DEAD_BAND = 0.05f;
+
+    /**
+     * Default angle covering the whole clip, a quarter turn.
+     */
+    public static final float DEFAULT_SWEEP = (float) (Math.PI / 2);
+
+    /**
+     * Gaps longer than this (e.g. after the listener was unregistered) are not integrated.
+     */
+    private static final long MAX_STEP_NS = 200000000L;
+
+    private static final double NS_TO_S = 1e-9;
+
+    private final float mSweep;
+    private final float mDeadBand;
+
+    private int mDuration;
+    private double mAngle;
+    private CaptureOrientation mCapture;
+    private long mLastTimestamp;
+
+    /**
+     * @param sweep    Angle in radians that covers the whole clip.
+     * @param deadBand Minimum absolute angular rate in rad/s that is integrated.
+     */
+    public OrientationTimelineMapper(float sweep, float deadBand) {
+        if (sweep <= 0) {
+            throw new IllegalArgumentException("sweep must be positive: " + sweep);
+        }
+        mSweep = sweep;
+        mDeadBand = deadBand;
+    }
+
+    public OrientationTimelineMapper() {
+        this(DEFAULT_SWEEP, DEFAULT_DEAD_BAND);
+    }
+
+    /**
+     * @param durationMs Length of the clip in milliseconds.
+     */
+    public void setDuration(int durationMs) {
+        mDuration = durationMs < 0 ? 0 : durationMs;
+    }
+
+    public int getDuration() {
+        return mDuration;
+    }
+
+    public float getSweep() {
+        return mSweep;
+    }
+
+    /**
+     * Maps angles through the orientation recorded with the clip, or linearly again for null.
+     * The current position is kept.
+     */
+    public void setCaptureOrientation(CaptureOrientation capture) {
+        int position = getPosition();
+        mCapture = capture != null && capture.getPan() > 0 ? capture : null;
+        mAngle = angleForPosition(position);
+    }
+
+    public CaptureOrientation getCaptureOrientation() {
+        return mCapture;
+    }
+
+    /**
+     * Integrates one angular rate sample.
+     *
+     * @param timestampNs Sensor event timestamp in nanoseconds.
+     * @param rate        Angular rate around the scrub axis in rad/s.
+     * @return true if the angle changed.
+     */
+    public boolean onRate(long timestampNs, float rate) {
+        long last = mLastTimestamp;
+        mLastTimestamp = timestampNs;
+
+        long dt = timestampNs - last;
+        if (last == 0 || dt <= 0 || dt > MAX_STEP_NS) {
+            return false;
+        }
+        if (rate < mDeadBand && rate > -mDeadBand) {
+            return false;
+        }
+        return setAngleInternal(mAngle + rate * (dt * NS_TO_S));
+    }
+
+    /**
+     * Rotates the current angle by the given amount, e.g. for an automatic spin.
+     *
+     * @return true if the angle changed.
+     */
+    public boolean rotateBy(float radians) {
+        return setAngleInternal(mAngle + radians);
+    }
+
+    /**
+     * Anchors the angle so that the current orientation shows the given position. The next rate
+     * sample starts a fresh integration step.
+     */
+    public void reset(int positionMs) {
+        mLastTimestamp = 0;
+        mAngle = angleForPosition(positionMs);
+    }
+
+    public float getAngle() {
+        return (float) mAngle;
+    }
+
+    /**
+     * @return Media position for the current angle in milliseconds.
+     */
+    public int getPosition() {
+        return positionForAngle(mAngle);
+    }
+
+    /**
+     * @return Media position in milliseconds the given angle maps to, clamped to the clip.
+     */
+    public int positionForAngle(double angle) {
+        if (angle <= 0) {
+            return 0;
+        }
+        if (angle >= mSweep) {
+            return mCapture != null ? clampPosition(mCapture.timeForPan(mCapture.getPan())) : mDuration;
+        }
+        if (mCapture != null) {
+            return clampPosition(mCapture.timeForPan((float) (angle / mSweep * mCapture.getPan())));
+        }
+        return (int) (angle / mSweep * mDuration + 0.5);
+    }
+
+    private double angleForPosition(int positionMs) {
+        if (mDuration <= 0) {
+            return 0;
+        }
+        int position = clampPosition(positionMs);
+        if (mCapture != null) {
+            return (double) mCapture.panForTime(position) / mCapture.getPan() * mSweep;
+        }
+        return (double) position / mDuration * mSweep;
+    }
+
+    private boolean setAngleInternal(double angle) {
+        // Clamp instead of winding up past the ends so reversing direction reacts immediately
+        if (angle < 0) {
+            angle = 0;
+        } else if (angle > mSweep) {
+            angle = mSweep;
+        }
+        if (angle == mAngle) {
+            return false;
+        }
+        mAngle = angle;
+        return true;
+    }
+
+    private int clampPosition(int positionMs) {
+        if (positionMs < 0) {
+            return 0;
+        }
+        return positionMs > mDuration ? mDuration : positionMs;
+    }
+}
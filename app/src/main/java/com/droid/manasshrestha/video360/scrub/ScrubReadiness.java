@@ -0,0 +1,182 @@
+package com.droid.manasshrestha.video360.scrub;
+
+/**
+ * Tracks the preparation of a capture for scrubbing and decides when it becomes interactive.
+ * <p/>
+ * Preparation runs in three stages that report independently, usually from different threads
+ * through the main thread:
+ * <ol>
+ * <li>{@link #STAGE_PLAYER}: the container is opened and its duration known,</li>
+ * <li>{@link #STAGE_KEYFRAMES}: the sample tables are parsed into the keyframe index,</li>
+ * <li>{@link #STAGE_STRIP}: the frame strip is decoded, reported frame by frame.</li>
+ * </ol>
+ * The capture is interactive as soon as the player is ready and the strip covers the whole sweep
+ * coarsely, or the strip failed and scrubbing has to seek the player. The keyframe index only
+ * makes seeks cheaper, nothing waits for it.
+ * <p/>
+ * Not thread safe, times are passed in so the tracker can run on the JVM.
+ */
+public class ScrubReadiness {
+
+    public static final int STAGE_PLAYER = 0;
+    public static final int STAGE_KEYFRAMES = 1;
+    public static final int STAGE_STRIP = 2;
+
+    /**
+     * Share of the overall progress per stage, in percent. Decoding dominates.
+     */
+    private static final int[] WEIGHTS = {5, 10, 85};
+
+    public interface Listener {
+
+        /**
+         * @param percent Overall preparation progress, 0 to 100.
+         */
+        void onProgress(int percent);
+
+        /**
+         * The capture can be scrubbed from now on.
+         */
+        void onInteractive(long elapsedMs);
+
+        /**
+         * Every stage is done.
+         */
+        void onComplete(long elapsedMs);
+    }
+
+    private final Listener mListener;
+    private final long mStartMs;
+
+    /**
+     * Progress of each stage, 0 to 1.
+     */
+    private final float[] mStageProgress = new float[WEIGHTS.length];
+    private boolean mStripUsable;
+    private int mPercent = -1;
+    private long mInteractiveMs = -1;
+    private long mCompleteMs = -1;
+
+    /**
+     * @param startMs Time preparation started, on the same clock as the stage reports.
+     */
+    public ScrubReadiness(long startMs, Listener listener) {
+        mStartMs = startMs;
+        mListener = listener;
+    }
+
+    public void onPlayerReady(long nowMs) {
+        finish(STAGE_PLAYER, nowMs);
+    }
+
+    /**
+     * The keyframe index is loaded, or can't be, which makes no difference to readiness.
+     */
+    public void onKeyframesDone(long nowMs) {
+        finish(STAGE_KEYFRAMES, nowMs);
+    }
+
+    /**
+     * @param ready  Frames decoded so far.
+     * @param total  Frames in the strip.
+     * @param usable Whether the decoded frames already cover the sweep.
+     */
+    public void onStripProgress(int ready, int total, boolean usable, long nowMs) {
+        if (total <= 0 || mCompleteMs >= 0) {
+            return;
+        }
+        mStageProgress[STAGE_STRIP] = Math.min(1f, (float) ready / total);
+        mStripUsable |= usable || ready >= total;
+        update(nowMs);
+    }
+
+    /**
+     * The strip is built as far as it goes, frames the decoder couldn't produce are left to
+     * seeking the player.
+     */
+    public void onStripDone(long nowMs) {
+        finish(STAGE_STRIP, nowMs);
+    }
+
+    /**
+     * The strip won't be built, scrubbing falls back to seeking the player.
+     */
+    public void onStripFailed(long nowMs) {
+        mStripUsable = true;
+        finish(STAGE_STRIP, nowMs);
+    }
+
+    public boolean isInteractive() {
+        return mInteractiveMs >= 0;
+    }
+
+    public boolean isComplete() {
+        return mCompleteMs >= 0;
+    }
+
+    /**
+     * @return Milliseconds from the start until the capture became interactive, or -1.
+     */
+    public long getTimeToInteractive() {
+        return mInteractiveMs;
+    }
+
+    /**
+     * @return Milliseconds from the start until every stage was done, or -1.
+     */
+    public long getTimeToComplete() {
+        return mCompleteMs;
+    }
+
+    /**
+     * @return Overall progress in percent.
+     */
+    public int getProgress() {
+        return Math.max(mPercent, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "progress=" + getProgress() + "% interactive=" + mInteractiveMs + "ms complete=" + mCompleteMs + "ms";
+    }
+
+    private void finish(int stage, long nowMs) {
+        if (mCompleteMs >= 0) {
+            return;
+        }
+        mStageProgress[stage] = 1f;
+        if (stage == STAGE_STRIP) {
+            mStripUsable = true;
+        }
+        update(nowMs);
+    }
+
+    private void update(long nowMs) {
+        float sum = 0;
+        boolean complete = true;
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            sum += WEIGHTS[i] * mStageProgress[i];
+            complete &= mStageProgress[i] >= 1f;
+        }
+        int percent = complete ? 100 : Math.min(99, (int) sum);
+        if (percent != mPercent) {
+            mPercent = percent;
+            if (mListener != null) {
+                mListener.onProgress(percent);
+            }
+        }
+
+        if (mInteractiveMs < 0 && mStageProgress[STAGE_PLAYER] >= 1f && mStripUsable) {
+            mInteractiveMs = nowMs - mStartMs;
+            if (mListener != null) {
+                mListener.onInteractive(mInteractiveMs);
+            }
+        }
+        if (complete) {
+            mCompleteMs = nowMs - mStartMs;
+            if (mListener != null) {
+                mListener.onComplete(mCompleteMs);
+            }
+        }
+    }
+}
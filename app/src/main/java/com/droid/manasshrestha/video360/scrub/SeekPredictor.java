@@ -0,0 +1,211 @@
+package com.droid.manasshrestha.video360.scrub;
+
+/**
+ * Aims seeks at where the timeline will be when they land instead of where it is now.
+ * <p/>
+ * A seek takes a while to show its frame, and meanwhile the user keeps turning. The predictor
+ * extrapolates the timeline angle over the expected seek delay from the angular velocity and an
+ * estimate of the angular acceleration, scaled by a gain. When a seek lands, the angle the user
+ * actually reached is compared with the aimed one and the gain is nudged towards what would have
+ * hit it, so a device whose seeks land earlier or later than expected, or a user who habitually
+ * slows down before stopping, is tuned for over time.
+ * <p/>
+ * Two errors are tracked, in milliseconds of media: the prediction error between the reached and
+ * the aimed position, and the perceived lag between the reached position and the one seen
+ * without prediction. Pure Java, times are passed in. Main thread only.
+ */
+public class SeekPredictor {
+
+    /**
+     * Delays are capped at this, a longer extrapolation is a guess.
+     */
+    public static final long MAX_LEAD_MS = 400;
+
+    public static final float MIN_GAIN = 0.2f;
+    public static final float MAX_GAIN = 1.5f;
+
+    /**
+     * How far the gain moves towards the ideal one per landed seek.
+     */
+    private static final float ADAPT_RATE = 0.1f;
+
+    /**
+     * Time constant of the acceleration estimate.
+     */
+    private static final float ACCEL_TIME_S = 0.1f;
+
+    /**
+     * Velocity samples further apart than this don't give an acceleration.
+     */
+    private static final long MAX_STEP_MS = 200;
+
+    /**
+     * Leads shorter than this (rad) say nothing about the gain.
+     */
+    private static final float MIN_LEAD_ANGLE = 1e-3f;
+
+    private static final int HISTORY = 8;
+
+    private final OrientationTimelineMapper mTimeline;
+
+    private float mGain = 1;
+    private long mLastTimeMs;
+    private float mLastVelocity;
+    private float mAcceleration;
+
+    private float mLastNaive;
+    private float mLastAim;
+
+    // recently requested targets with the angles they were aimed from and at, newest at mNewest
+    private final int[] mTargets = new int[HISTORY];
+    private final float[] mNaiveAngles = new float[HISTORY];
+    private final float[] mAimedAngles = new float[HISTORY];
+    private int mNewest = -1;
+    private int mRecorded;
+
+    private long mLanded;
+    private double mErrorSum;
+    private double mLagSum;
+
+    public SeekPredictor(OrientationTimelineMapper timeline) {
+        mTimeline = timeline;
+    }
+
+    /**
+     * Predicts the timeline angle after the given delay.
+     *
+     * @param nowMs    Current time.
+     * @param velocity Current angular velocity of the timeline in rad/s.
+     * @param delayMs  Expected time until a seek issued now shows its frame.
+     * @return Angle to seek to, clamped to the sweep.
+     */
+    public float aim(long nowMs, float velocity, long delayMs) {
+        long dtMs = nowMs - mLastTimeMs;
+        if (mLastTimeMs == 0 || dtMs <= 0 || dtMs > MAX_STEP_MS) {
+            mAcceleration = 0;
+        } else {
+            float dt = dtMs / 1000f;
+            float k = dt / (ACCEL_TIME_S + dt);
+            mAcceleration += ((velocity - mLastVelocity) / dt - mAcceleration) * k;
+        }
+        if (dtMs != 0) {
+            mLastTimeMs = nowMs;
+            mLastVelocity = velocity;
+        }
+
+        float lead = Math.min(Math.max(delayMs, 0), MAX_LEAD_MS) / 1000f;
+        float travel = velocity * lead + 0.5f * mAcceleration * lead * lead;
+        if (travel * velocity < 0) {
+            // decelerating: the user stops before then, not turns around
+            travel = 0;
+        }
+        float angle = mTimeline.getAngle();
+        float aim = angle + mGain * travel;
+        mLastNaive = angle;
+        mLastAim = Math.max(0, Math.min(mTimeline.getSweep(), aim));
+        return mLastAim;
+    }
+
+    /**
+     * Remembers that a seek to the target was requested for the last {@link #aim}, after any
+     * snapping, so its landing can be matched to it.
+     */
+    public void onRequested(int target) {
+        if (mNewest >= 0 && mTargets[mNewest] == target) {
+            return;
+        }
+        mNewest = (mNewest + 1) % HISTORY;
+        mTargets[mNewest] = target;
+        mNaiveAngles[mNewest] = mLastNaive;
+        mAimedAngles[mNewest] = mLastAim;
+        mRecorded = Math.min(mRecorded + 1, HISTORY);
+    }
+
+    /**
+     * Compares where the user is now with where a landed seek was aimed, and tunes the gain.
+     *
+     * @param target Position the seek landed at.
+     */
+    public void onLanded(int target) {
+        for (int i = 0; i < mRecorded; i++) {
+            int index = (mNewest - i + HISTORY) % HISTORY;
+            if (mTargets[index] == target) {
+                land(mNaiveAngles[index], mAimedAngles[index]);
+                return;
+            }
+        }
+    }
+
+    private void land(float naive, float aimed) {
+        float actual = mTimeline.getAngle();
+        mLanded++;
+        mErrorSum += distanceMs(actual, aimed);
+        mLagSum += distanceMs(actual, naive);
+
+        float lead = aimed - naive;
+        if (Math.abs(lead) < MIN_LEAD_ANGLE) {
+            return;
+        }
+        // 1 if the aim was right, 0 if the user stopped where the seek was requested
+        float ratio = Math.max(0, Math.min(2, (actual - naive) / lead));
+        float ideal = Math.max(MIN_GAIN, Math.min(MAX_GAIN, mGain * ratio));
+        mGain += (ideal - mGain) * ADAPT_RATE;
+    }
+
+    /**
+     * @return Media time between the positions the angles map to, which follows a recorded capture
+     * orientation instead of assuming angles map linearly onto the clip.
+     */
+    private int distanceMs(float from, float to) {
+        return Math.abs(mTimeline.positionForAngle(from) - mTimeline.positionForAngle(to));
+    }
+
+    public float getGain() {
+        return mGain;
+    }
+
+    /**
+     * @return Estimated angular acceleration of the timeline in rad/s^2.
+     */
+    public float getAcceleration() {
+        return mAcceleration;
+    }
+
+    public long getLandedCount() {
+        return mLanded;
+    }
+
+    /**
+     * @return Average distance in media ms between the aimed position and the one reached when
+     * the seek landed.
+     */
+    public double getMeanError() {
+        return mLanded == 0 ? 0 : mErrorSum / mLanded;
+    }
+
+    /**
+     * @return Average distance in media ms between the position reached when a seek landed and
+     * the position at the time it was requested, i.e. the lag without prediction.
+     */
+    public double getMeanLag() {
+        return mLanded == 0 ? 0 : mLagSum / mLanded;
+    }
+
+    /**
+     * Forgets the motion and the pending targets, e.g. when scrubbing restarts. The learned gain
+     * and the error statistics are kept.
+     */
+    public void reset() {
+        mLastTimeMs = 0;
+        mLastVelocity = 0;
+        mAcceleration = 0;
+        mNewest = -1;
+        mRecorded = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "gain=" + mGain + " landed=" + mLanded + " error=" + (int) getMeanError()
+                + "ms lag=" + (int) getMeanLag() + "ms";
+    }
+}
@@ -0,0 +1,349 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.immersion.videoplayer.metrics.SeekMetrics;
+
+/**
+ * Coalescing seek scheduler for tilt driven scrubbing.
+ * <p/>
+ * Only one {@link MediaPlayer#seekTo(int)} is kept in flight at a time. Targets requested while
+ * a seek is running are not queued; only the newest one is remembered and it is issued as soon
+ * as {@link #onSeekComplete(MediaPlayer)} reports that the decoder is free again. Stale targets
+ * are dropped and counted as coalesced.
+ * <p/>
+ * A seek whose completion doesn't arrive within {@link #SEEK_TIMEOUT_MS} is given up on, checked
+ * by a timer so a user who stopped moving doesn't leave the scheduler waiting: the target waiting
+ * for it is issued, or dropped if a newer request is at hand. The player completes seeks in the
+ * order they were issued, so the first completion after giving up is taken for the lost one
+ * turning up late and ignored, unless {@link #STALE_TIMEOUT_MS} has passed.
+ * <p/>
+ * The scheduler must be registered as the player's {@link MediaPlayer.OnSeekCompleteListener}
+ * and, like the player callbacks, is expected to be used from the main thread only.
+ */
+public class SeekScheduler implements MediaPlayer.OnSeekCompleteListener {
+
+    /**
+     * Told about every seek that completes.
+     */
+    public interface Listener {
+
+        /**
+         * @param target    Position the seek was issued for.
+         * @param latencyMs Time between issuing and completing it.
+         */
+        void onSeekLanded(int target, long latencyMs);
+    }
+
+    /**
+     * What the scheduler seeks, the {@link MediaPlayer} outside of tests.
+     */
+    interface Player {
+
+        void seekTo(int msec);
+
+        int getDuration();
+    }
+
+    /**
+     * Some decoders silently drop the completion callback (e.g. when seeking to the position
+     * they are already at). After this long an in-flight seek is considered lost.
+     */
+    static final long SEEK_TIMEOUT_MS = 500;
+
+    /**
+     * A completion of a lost seek arriving later than this is not expected anymore.
+     */
+    static final long STALE_TIMEOUT_MS = 5000;
+
+    private static final int NO_TARGET = -1;
+
+    /**
+     * Weight of the newest latency in the running average.
+     */
+    private static final float LATENCY_SMOOTHING = 0.2f;
+
+    private final Player mPlayer;
+    private final Handler mHandler;
+    private final Runnable mTimeoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            checkTimeout(SystemClock.uptimeMillis());
+        }
+    };
+
+    private boolean mSeekInFlight;
+    private int mInFlightTarget = NO_TARGET;
+    private int mPendingTarget = NO_TARGET;
+    private long mIssuedAt;
+    // completions of seeks given up on that may still arrive, and when the last was issued
+    private int mStaleCompletions;
+    private long mStaleIssuedAt;
+    private long mLastSeekLatency;
+    private float mAverageLatency;
+    private Listener mListener;
+    private SeekMetrics mMetrics;
+
+    private long mIssuedCount;
+    private long mCoalescedCount;
+    private long mCompletedCount;
+    private long mTimedOutCount;
+    private long mLateCount;
+
+    public SeekScheduler(final MediaPlayer mediaPlayer) {
+        this(new Player() {
+            @Override
+            public void seekTo(int msec) {
+                mediaPlayer.seekTo(msec);
+            }
+
+            @Override
+            public int getDuration() {
+                return mediaPlayer.getDuration();
+            }
+        }, new Handler());
+    }
+
+    /**
+     * @param handler Runs the timeout checks, null to leave them to {@link #checkTimeout(long)}.
+     */
+    SeekScheduler(Player player, Handler handler) {
+        mPlayer = player;
+        mHandler = handler;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Reports every seek actually issued to the player and its completion to the metrics.
+     */
+    public void setMetrics(SeekMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Requests a seek to the given position. The seek is issued right away when the player is
+     * idle, otherwise it replaces any target still waiting for the running seek to finish.
+     *
+     * @param msec Target position in milliseconds, clamped to the media duration.
+     */
+    public void seekTo(int msec) {
+        seekTo(msec, SystemClock.uptimeMillis());
+    }
+
+    void seekTo(int msec, long nowMs) {
+        int target = clamp(msec);
+
+        if (mSeekInFlight && nowMs - mIssuedAt >= SEEK_TIMEOUT_MS) {
+            giveUp();
+            if (mPendingTarget != NO_TARGET) {
+                // older than the request at hand, issuing it after would jump back
+                mPendingTarget = NO_TARGET;
+                mCoalescedCount++;
+            }
+        }
+
+        if (!mSeekInFlight) {
+            if (target != mInFlightTarget) {
+                issue(target, nowMs);
+            }
+            return;
+        }
+
+        if (mPendingTarget != NO_TARGET) {
+            mCoalescedCount++;
+        }
+        mPendingTarget = target == mInFlightTarget ? NO_TARGET : target;
+    }
+
+    /**
+     * Gives up on the seek in flight if it timed out, issuing the target waiting for it, or checks
+     * again once it would time out.
+     */
+    void checkTimeout(long nowMs) {
+        if (!mSeekInFlight) {
+            return;
+        }
+        long left = mIssuedAt + SEEK_TIMEOUT_MS - nowMs;
+        if (left > 0) {
+            scheduleTimeout(left);
+            return;
+        }
+        giveUp();
+        if (mPendingTarget != NO_TARGET) {
+            int target = mPendingTarget;
+            mPendingTarget = NO_TARGET;
+            issue(target, nowMs);
+        }
+    }
+
+    private void giveUp() {
+        mSeekInFlight = false;
+        mTimedOutCount++;
+        mStaleCompletions++;
+        mStaleIssuedAt = mIssuedAt;
+        // a retry of the same position must be issued again
+        mInFlightTarget = NO_TARGET;
+    }
+
+    private void scheduleTimeout(long delayMs) {
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mTimeoutCheck);
+            mHandler.postDelayed(mTimeoutCheck, delayMs);
+        }
+    }
+
+    @Override
+    public void onSeekComplete(MediaPlayer mp) {
+        onSeekComplete(SystemClock.uptimeMillis());
+    }
+
+    void onSeekComplete(long now) {
+        if (mStaleCompletions > 0) {
+            if (now - mStaleIssuedAt <= STALE_TIMEOUT_MS) {
+                // completions come in issue order, this one is of a seek given up on
+                mStaleCompletions--;
+                mLateCount++;
+                return;
+            }
+            mStaleCompletions = 0;
+        }
+        if (!mSeekInFlight) {
+            return;
+        }
+        mSeekInFlight = false;
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mTimeoutCheck);
+        }
+        mCompletedCount++;
+        mLastSeekLatency = now - mIssuedAt;
+        if (mMetrics != null) {
+            mMetrics.onSeekComplete(now);
+        }
+        mAverageLatency = mCompletedCount == 1 ? mLastSeekLatency
+                : mAverageLatency + (mLastSeekLatency - mAverageLatency) * LATENCY_SMOOTHING;
+        if (mListener != null) {
+            mListener.onSeekLanded(mInFlightTarget, mLastSeekLatency);
+        }
+
+        if (mPendingTarget != NO_TARGET) {
+            int target = mPendingTarget;
+            mPendingTarget = NO_TARGET;
+            issue(target, now);
+        }
+    }
+
+    /**
+     * Drops any pending target and forgets the in-flight one, e.g. when the player is released.
+     */
+    public void reset() {
+        mSeekInFlight = false;
+        mInFlightTarget = NO_TARGET;
+        mPendingTarget = NO_TARGET;
+        mStaleCompletions = 0;
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mTimeoutCheck);
+        }
+    }
+
+    public boolean isSeeking() {
+        return mSeekInFlight;
+    }
+
+    /**
+     * @return Position of the most recently issued seek, or -1 if none was issued yet or it was
+     * given up on.
+     */
+    public int getLastTarget() {
+        return mInFlightTarget;
+    }
+
+    /**
+     * @return Time between issuing and completing the last finished seek, in milliseconds.
+     */
+    public long getLastSeekLatency() {
+        return mLastSeekLatency;
+    }
+
+    /**
+     * @return Running average of the seek latency, in milliseconds.
+     */
+    public long getAverageSeekLatency() {
+        return (long) mAverageLatency;
+    }
+
+    /**
+     * @return How long a seek requested now is expected to take to land: the average latency,
+     * plus the rest of the running seek it has to wait for.
+     */
+    public long getExpectedDelay() {
+        return getExpectedDelay(SystemClock.uptimeMillis());
+    }
+
+    long getExpectedDelay(long nowMs) {
+        long delay = (long) mAverageLatency;
+        if (mSeekInFlight) {
+            long elapsed = nowMs - mIssuedAt;
+            delay += Math.max(0, delay - elapsed);
+        }
+        return delay;
+    }
+
+    public long getIssuedCount() {
+        return mIssuedCount;
+    }
+
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    public long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    /**
+     * @return Seeks given up on after {@link #SEEK_TIMEOUT_MS}.
+     */
+    public long getTimedOutCount() {
+        return mTimedOutCount;
+    }
+
+    /**
+     * @return Completions of seeks given up on that arrived after all and were ignored.
+     */
+    public long getLateCount() {
+        return mLateCount;
+    }
+
+    private void issue(int target, long nowMs) {
+        mSeekInFlight = true;
+        mInFlightTarget = target;
+        mIssuedAt = nowMs;
+        mIssuedCount++;
+        if (mMetrics != null) {
+            mMetrics.onSeekIssued(mIssuedAt);
+        }
+        scheduleTimeout(SEEK_TIMEOUT_MS);
+        mPlayer.seekTo(target);
+    }
+
+    private int clamp(int msec) {
+        if (msec < 0) {
+            return 0;
+        }
+        int duration = mPlayer.getDuration();
+        return duration > 0 && msec > duration ? duration : msec;
+    }
+
+    @Override
+    public String toString() {
+        return "issued=" + mIssuedCount + " coalesced=" + mCoalescedCount
+                + " completed=" + mCompletedCount + " timedOut=" + mTimedOutCount
+                + " late=" + mLateCount + " lastLatency=" + mLastSeekLatency + "ms"
+                + " avgLatency=" + (long) mAverageLatency + "ms";
+    }
+}
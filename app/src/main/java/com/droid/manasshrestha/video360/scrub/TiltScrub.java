@@ -0,0 +1,136 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import com.droid.manasshrestha.video360.media.KeyframeIndex;
+import com.droid.manasshrestha.video360.sensor.GyroIntegrator;
+
+/**
+ * The tilt scrub step: turns gyroscope samples into timeline motion and the timeline into seek
+ * targets.
+ * <p/>
+ * {@link #onRate} integrates a sample around the device's y axis and rotates the timeline by the
+ * change of the yaw. While the {@link TurntableSpin} runs, sensor noise is ignored; a rate the
+ * user turns the device at pauses the spin and hands the timeline over. {@link #seekTarget} then
+ * aims the seek with the {@link SeekPredictor} and snaps it to a nearby keyframe.
+ * <p/>
+ * Pure Java, times are passed in, so a recorded trace replays through exactly the steps the
+ * activity runs. Main thread only.
+ */
+public class TiltScrub {
+
+    /**
+     * Returned by {@link #onRate}: the timeline moved and a seek is due.
+     */
+    public static final int MOVED = 1;
+
+    /**
+     * Returned by {@link #onRate}: the user took over and the spin was paused.
+     */
+    public static final int SPIN_PAUSED = 2;
+
+    /**
+     * Seek targets this close to a keyframe are moved onto it, which spares the decoder from
+     * decoding forward from the previous one.
+     */
+    static final int KEYFRAME_SNAP_MS = 150;
+
+    private final GyroIntegrator mGyro = new GyroIntegrator(GyroIntegrator.AXIS_Y);
+    private final OrientationTimelineMapper mTimeline;
+    private final TurntableSpin mSpin;
+    private final SeekPredictor mPredictor;
+    private KeyframeIndex mKeyframes;
+    private float mLastYaw;
+    private float mAngularVelocity;
+
+    public TiltScrub(OrientationTimelineMapper timeline, TurntableSpin spin, SeekPredictor predictor) {
+        mTimeline = timeline;
+        mSpin = spin;
+        mPredictor = predictor;
+    }
+
+    /**
+     * Seeks are snapped to the keyframes of the index from now on, null to seek exactly.
+     */
+    public void setKeyframes(KeyframeIndex keyframes) {
+        mKeyframes = keyframes;
+    }
+
+    /**
+     * @param values Rates followed by the drift fields of TYPE_GYROSCOPE_UNCALIBRATED, 0 is
+     *               assumed for drift fields missing past the end of the array.
+     * @return {@link #MOVED} and {@link #SPIN_PAUSED} or'ed together, 0 for neither.
+     */
+    public int onRate(long timestampNs, float[] values, int offset) {
+        boolean drift = values.length - offset >= 6;
+        // the yaw is the angle turned around the device's y axis, positive when tilting right
+        if (!mGyro.onRate(timestampNs, values[offset], values[offset + 1], values[offset + 2],
+                drift ? values[offset + 3] : 0, drift ? values[offset + 4] : 0, drift ? values[offset + 5] : 0)) {
+            return 0;
+        }
+        float yaw = mGyro.getYaw();
+        float delta = yaw - mLastYaw;
+        mLastYaw = yaw;
+        int result = 0;
+        if (Math.abs(mGyro.getYawRate()) >= GyroIntegrator.STILL_RATE) {
+            if (mSpin.isRunning()) {
+                mSpin.pause();
+                result = SPIN_PAUSED;
+            }
+        } else if (mSpin.isRunning()) {
+            // sensor noise must not fight the spin
+            return 0;
+        }
+        mAngularVelocity = mGyro.getYawRate();
+        return mTimeline.rotateBy(delta) ? result | MOVED : result;
+    }
+
+    /**
+     * Advances the spin to the frame time, see {@link TurntableSpin#onFrame(long)}.
+     *
+     * @return Whether the timeline moved and a seek is due.
+     */
+    public boolean onSpinFrame(long frameTimeNanos) {
+        if (!mSpin.onFrame(frameTimeNanos)) {
+            return false;
+        }
+        mAngularVelocity = mSpin.getDirection() * mSpin.getSpeed();
+        return true;
+    }
+
+    /**
+     * Picks the position to seek to for the timeline's current angle and remembers it with the
+     * predictor.
+     *
+     * @param expectedDelayMs How long a seek issued now is expected to take to land.
+     */
+    public int seekTarget(long nowMs, long expectedDelayMs) {
+        // aim where the user will be once the seek lands
+        float aim = mPredictor.aim(nowMs, mAngularVelocity, expectedDelayMs);
+        int target = mTimeline.positionForAngle(aim);
+        if (mKeyframes != null) {
+            target = mKeyframes.snap(target, KEYFRAME_SNAP_MS);
+        }
+        mPredictor.onRequested(target);
+        return target;
+    }
+
+    /**
+     * @return Angular velocity of the timeline in rad/s, from the user or the spin, whichever
+     * moved it last.
+     */
+    public float getAngularVelocity() {
+        return mAngularVelocity;
+    }
+
+    public float getYaw() {
+        return mGyro.getYaw();
+    }
+
+    /**
+     * Starts over from the device's current orientation, e.g. when the sensor is registered again.
+     */
+    public void reset() {
+        mGyro.reset();
+        mLastYaw = 0;
+        mPredictor.reset();
+    }
+}
@@ -0,0 +1,134 @@
+package com.droid.manasshrestha.video360.scrub;
+
+/**
+ * Automatic "turntable" spin through the clip, driven by a frame clock.
+ * <p/>
+ * Each {@link #onFrame(long)} rotates the {@link OrientationTimelineMapper} by the angular speed
+ * times the time since the previous frame, so the spin runs at the same rate whatever the display
+ * refresh rate and however late a frame is. The spin stops by itself at either end of the sweep.
+ * <p/>
+ * Holds no clock of its own: while paused nothing needs to call it.
+ */
+public class TurntableSpin {
+
+    /**
+     * Frame gaps longer than this (e.g. the activity was in the background) advance the spin by
+     * this much only, instead of jumping.
+     */
+    private static final long MAX_FRAME_NS = 100000000L;
+
+    private static final double NS_TO_S = 1e-9;
+
+    private final OrientationTimelineMapper mTimeline;
+
+    private float mSpeed;
+    private int mDirection = 1;
+    private boolean mRunning;
+    private long mLastFrameNanos;
+
+    /**
+     * @param timeline Timeline whose angle is spun.
+     * @param speed    Angular speed in rad/s.
+     */
+    public TurntableSpin(OrientationTimelineMapper timeline, float speed) {
+        mTimeline = timeline;
+        setSpeed(speed);
+    }
+
+    /**
+     * @param speed Angular speed in rad/s, the direction is kept separately.
+     */
+    public void setSpeed(float speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        mSpeed = speed;
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * Re-times the spin so that a whole sweep takes the given time.
+     */
+    public void setSweepTime(int sweepMs) {
+        if (sweepMs <= 0) {
+            throw new IllegalArgumentException("sweep time must be positive: " + sweepMs);
+        }
+        setSpeed(mTimeline.getSweep() * 1000f / sweepMs);
+    }
+
+    /**
+     * @return 1 when spinning towards the end of the clip, -1 towards its start.
+     */
+    public int getDirection() {
+        return mDirection;
+    }
+
+    /**
+     * Starts or resumes the spin. When already at the end it is heading to, the spin turns around.
+     *
+     * @return true if the caller needs to start delivering frames.
+     */
+    public boolean start() {
+        if (mRunning) {
+            return false;
+        }
+        if (atEnd()) {
+            mDirection = -mDirection;
+        }
+        mRunning = true;
+        mLastFrameNanos = 0;
+        return true;
+    }
+
+    public void pause() {
+        mRunning = false;
+    }
+
+    /**
+     * Turns the spin around, keeping it running or paused.
+     */
+    public void reverse() {
+        mDirection = -mDirection;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Advances the spin to the given frame time.
+     *
+     * @param frameTimeNanos Frame time on a monotonic clock, e.g. from Choreographer.
+     * @return true if the angle changed.
+     */
+    public boolean onFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return false;
+        }
+        long last = mLastFrameNanos;
+        mLastFrameNanos = frameTimeNanos;
+        if (last == 0) {
+            return false;
+        }
+        long dt = frameTimeNanos - last;
+        if (dt <= 0) {
+            return false;
+        }
+        if (dt > MAX_FRAME_NS) {
+            dt = MAX_FRAME_NS;
+        }
+        boolean changed = mTimeline.rotateBy((float) (mDirection * mSpeed * (dt * NS_TO_S)));
+        if (atEnd()) {
+            mRunning = false;
+        }
+        return changed;
+    }
+
+    private boolean atEnd() {
+        float angle = mTimeline.getAngle();
+        return mDirection > 0 ? angle >= mTimeline.getSweep() : angle <= 0;
+    }
+}
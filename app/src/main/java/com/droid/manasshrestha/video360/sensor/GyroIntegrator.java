@@ -0,0 +1,277 @@
+package com.droid.manasshrestha.video360.sensor;
+
+/**
+ * Integrates gyroscope samples into an orientation quaternion and publishes the smoothed angle the
+ * device has turned around one of its axes.
+ * <p/>
+ * The integration step is the difference of the sensor event timestamps, not the time the events
+ * happen to be delivered. The bias subtracted from each sample is the drift reported by
+ * TYPE_GYROSCOPE_UNCALIBRATED (values 3 to 5) plus a residual this class estimates itself: once
+ * the corrected rate has stayed below {@link #STILL_RATE} for {@link #STILL_TIME_NS} the device
+ * is considered stationary, the residual is pulled towards the measured rate and nothing is
+ * integrated, so a device lying still doesn't drift.
+ * <p/>
+ * The published yaw is the twist of the orientation around the chosen device axis, unwrapped so
+ * it keeps counting past a full turn, and exponentially smoothed. Pure Java, primitive state
+ * only. Not thread safe.
+ */
+public class GyroIntegrator {
+
+    public static final int AXIS_X = 0;
+    public static final int AXIS_Y = 1;
+    public static final int AXIS_Z = 2;
+
+    /**
+     * Corrected rates below this magnitude (rad/s) count as holding still, the threshold the tilt
+     * detection used before.
+     */
+    public static final float STILL_RATE = 0.05f;
+
+    /**
+     * How long the rate has to stay below {@link #STILL_RATE} before the device counts as
+     * stationary.
+     */
+    public static final long STILL_TIME_NS = 500000000L;
+
+    /**
+     * Time constant of the yaw smoothing.
+     */
+    public static final float DEFAULT_SMOOTHING_S = 0.03f;
+
+    /**
+     * Time constant the residual bias follows the measured rate with while stationary.
+     */
+    private static final float BIAS_TIME_S = 2f;
+
+    /**
+     * Gaps longer than this (e.g. after the listener was unregistered) are not integrated.
+     */
+    static final long MAX_STEP_NS = 200000000L;
+
+    private static final double NS_TO_S = 1e-9;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final int mAxis;
+    private float mSmoothing = DEFAULT_SMOOTHING_S;
+
+    private long mLastTimestamp;
+    private long mStillSinceNs;
+    private boolean mStationary;
+
+    // residual bias on top of the reported drift, rad/s
+    private float mBiasX;
+    private float mBiasY;
+    private float mBiasZ;
+    // last corrected rate
+    private float mRateX;
+    private float mRateY;
+    private float mRateZ;
+
+    private double mW = 1;
+    private double mX;
+    private double mY;
+    private double mZ;
+
+    private double mLastTwist;
+    private double mRawYaw;
+    private double mYaw;
+
+    /**
+     * @param axis One of {@link #AXIS_X}, {@link #AXIS_Y}, {@link #AXIS_Z}, the axis the yaw is
+     *             measured around.
+     */
+    public GyroIntegrator(int axis) {
+        if (axis < AXIS_X || axis > AXIS_Z) {
+            throw new IllegalArgumentException("Invalid axis " + axis);
+        }
+        mAxis = axis;
+    }
+
+    public GyroIntegrator() {
+        this(AXIS_Y);
+    }
+
+    /**
+     * @param seconds Time constant of the yaw smoothing, 0 to publish the raw yaw.
+     */
+    public void setSmoothing(float seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("smoothing must not be negative: " + seconds);
+        }
+        mSmoothing = seconds;
+    }
+
+    /**
+     * Integrates the values of a TYPE_GYROSCOPE_UNCALIBRATED event, or of a TYPE_GYROSCOPE event
+     * which has no drift fields.
+     *
+     * @return true if the published yaw changed.
+     */
+    public boolean onGyroscope(long timestampNs, float[] values) {
+        if (values.length >= 6) {
+            return onRate(timestampNs, values[0], values[1], values[2], values[3], values[4], values[5]);
+        }
+        return onRate(timestampNs, values[0], values[1], values[2], 0, 0, 0);
+    }
+
+    /**
+     * Integrates one sample.
+     *
+     * @param timestampNs Sensor event timestamp.
+     * @param x           Measured rate around the device x axis in rad/s, likewise y and z.
+     * @param driftX      Drift the sensor reports for the x axis in rad/s, likewise y and z.
+     * @return true if the published yaw changed.
+     */
+    public boolean onRate(long timestampNs, float x, float y, float z, float driftX, float driftY, float driftZ) {
+        long last = mLastTimestamp;
+        mLastTimestamp = timestampNs;
+
+        x -= driftX;
+        y -= driftY;
+        z -= driftZ;
+        mRateX = x - mBiasX;
+        mRateY = y - mBiasY;
+        mRateZ = z - mBiasZ;
+
+        long dtNs = timestampNs - last;
+        if (last == 0 || dtNs <= 0 || dtNs > MAX_STEP_NS) {
+            mStillSinceNs = timestampNs;
+            return false;
+        }
+        double dt = dtNs * NS_TO_S;
+
+        float rateSq = mRateX * mRateX + mRateY * mRateY + mRateZ * mRateZ;
+        if (rateSq >= STILL_RATE * STILL_RATE) {
+            mStillSinceNs = timestampNs;
+            mStationary = false;
+        } else if (timestampNs - mStillSinceNs >= STILL_TIME_NS) {
+            mStationary = true;
+        }
+
+        if (mStationary) {
+            // whatever is measured now is bias
+            float k = (float) (dt / (BIAS_TIME_S + dt));
+            mBiasX += (x - mBiasX) * k;
+            mBiasY += (y - mBiasY) * k;
+            mBiasZ += (z - mBiasZ) * k;
+        } else {
+            integrate(mRateX, mRateY, mRateZ, dt);
+        }
+        return smooth(dt);
+    }
+
+    /**
+     * @return Smoothed angle in radians turned around the axis since the last reset, unwrapped.
+     */
+    public float getYaw() {
+        return (float) mYaw;
+    }
+
+    /**
+     * @return Unsmoothed angle in radians turned around the axis since the last reset, unwrapped.
+     */
+    public float getRawYaw() {
+        return (float) mRawYaw;
+    }
+
+    /**
+     * @return Last bias corrected rate around the axis in rad/s.
+     */
+    public float getYawRate() {
+        return mAxis == AXIS_X ? mRateX : mAxis == AXIS_Y ? mRateY : mRateZ;
+    }
+
+    public boolean isStationary() {
+        return mStationary;
+    }
+
+    /**
+     * @param out Receives the estimated residual bias x, y, z in rad/s, on top of the drift the
+     *            sensor reports.
+     */
+    public void getBias(float[] out) {
+        out[0] = mBiasX;
+        out[1] = mBiasY;
+        out[2] = mBiasZ;
+    }
+
+    /**
+     * @param out Receives the orientation relative to the last reset as {@code w, x, y, z}.
+     */
+    public void getQuaternion(float[] out) {
+        out[0] = (float) mW;
+        out[1] = (float) mX;
+        out[2] = (float) mY;
+        out[3] = (float) mZ;
+    }
+
+    /**
+     * Makes the current orientation the reference, yaw 0. The bias estimate is kept.
+     */
+    public void reset() {
+        mLastTimestamp = 0;
+        mStationary = false;
+        mW = 1;
+        mX = mY = mZ = 0;
+        mLastTwist = 0;
+        mRawYaw = 0;
+        mYaw = 0;
+    }
+
+    /**
+     * q = q * exp(w dt / 2), rates are in device coordinates.
+     */
+    private void integrate(float x, float y, float z, double dt) {
+        double rate = Math.sqrt(x * x + y * y + z * z);
+        double half = rate * dt * 0.5;
+        double s;
+        double c;
+        if (half < 1e-4) {
+            // sin(h)/rate ~ dt/2 for tiny steps
+            s = dt * 0.5;
+            c = 1 - half * half * 0.5;
+        } else {
+            s = Math.sin(half) / rate;
+            c = Math.cos(half);
+        }
+        double dx = x * s;
+        double dy = y * s;
+        double dz = z * s;
+
+        double w = mW * c - mX * dx - mY * dy - mZ * dz;
+        double qx = mW * dx + mX * c + mY * dz - mZ * dy;
+        double qy = mW * dy - mX * dz + mY * c + mZ * dx;
+        double qz = mW * dz + mX * dy - mY * dx + mZ * c;
+        double inv = 1 / Math.sqrt(w * w + qx * qx + qy * qy + qz * qz);
+        mW = w * inv;
+        mX = qx * inv;
+        mY = qy * inv;
+        mZ = qz * inv;
+    }
+
+    /**
+     * Updates the unwrapped twist around the axis and the smoothed yaw.
+     */
+    private boolean smooth(double dt) {
+        double component = mAxis == AXIS_X ? mX : mAxis == AXIS_Y ? mY : mZ;
+        double twist = 2 * Math.atan2(component, mW);
+        double delta = twist - mLastTwist;
+        // the twist jumps by 2 pi when the quaternion's sign or the atan2 branch flips
+        while (delta > Math.PI) {
+            delta -= TWO_PI;
+        }
+        while (delta < -Math.PI) {
+            delta += TWO_PI;
+        }
+        mLastTwist = twist;
+        mRawYaw += delta;
+
+        double previous = mYaw;
+        if (mSmoothing <= 0) {
+            mYaw = mRawYaw;
+        } else {
+            mYaw += (mRawYaw - mYaw) * (dt / (mSmoothing + dt));
+        }
+        return mYaw != previous;
+    }
+}
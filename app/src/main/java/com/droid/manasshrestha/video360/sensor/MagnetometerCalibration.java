@@ -0,0 +1,331 @@
+package com.droid.manasshrestha.video360.sensor;
+
+/**
+ * Streaming hard-iron calibration of the magnetometer.
+ * <p/>
+ * Fits a sphere to the recent magnetic field samples: with the offset c and radius R,
+ * {@code |m|^2 = 2 m.c + R^2 - |c|^2} is linear in c and {@code R^2 - |c|^2}, so a least squares
+ * fit only needs the running sums of its normal equations, 14 numbers, exponentially forgotten so
+ * the fit follows a changed offset (a magnetic case, a new mount). The 4x4 system is solved every
+ * {@link #SOLVE_INTERVAL} samples.
+ * <p/>
+ * The confidence combines how well the samples cover different directions (a device only turned
+ * around one axis can't pin the sphere down), how well they sit on the fitted sphere and whether
+ * the fitted field strength is plausible for the earth's field. Each sample is checked against the
+ * fit, or against the plausible field range until there is a confident fit, so callers can skip
+ * samples disturbed by nearby metal instead of feeding them to the orientation.
+ * <p/>
+ * Pure Java, no allocation per sample. Not thread safe.
+ */
+public class MagnetometerCalibration {
+
+    /**
+     * Range of the earth's magnetic field in uT.
+     */
+    public static final float MIN_FIELD = 25;
+    public static final float MAX_FIELD = 65;
+
+    /**
+     * Confidence from which the fit is used to correct and check samples.
+     */
+    public static final float MIN_CONFIDENCE = 0.5f;
+
+    /**
+     * Samples between two solves of the fit.
+     */
+    public static final int SOLVE_INTERVAL = 8;
+
+    /**
+     * Samples the fit roughly remembers, about 10 s at the game rate.
+     */
+    private static final int WINDOW = 500;
+    private static final double FORGET = 1 - 1.0 / WINDOW;
+
+    /**
+     * Samples the distance from the sphere is averaged over.
+     */
+    private static final double RESIDUAL_FORGET = 1 - 1.0 / 50;
+
+    private static final int MIN_SAMPLES = 50;
+
+    /**
+     * Spread along the least covered direction, relative to a full sphere, that counts as full
+     * coverage.
+     */
+    private static final double FULL_COVERAGE = 0.5;
+
+    /**
+     * RMS distance from the sphere relative to its radius at which the fit counts as useless.
+     */
+    private static final double MAX_RESIDUAL = 0.1;
+
+    /**
+     * Distance from the sphere relative to its radius beyond which a sample counts as disturbed.
+     */
+    private static final float MAX_DEVIATION = 0.2f;
+
+    // decayed sums of the normal equations, a = (x, y, z, 1), b = |m|^2
+    private double mN;
+    private double mSx;
+    private double mSy;
+    private double mSz;
+    private double mSxx;
+    private double mSxy;
+    private double mSxz;
+    private double mSyy;
+    private double mSyz;
+    private double mSzz;
+    private double mSxb;
+    private double mSyb;
+    private double mSzb;
+    private double mSb;
+    private int mCount;
+
+    // 4x5 augmented matrix for the solve
+    private final double[] mSystem = new double[20];
+
+    private boolean mHasFit;
+    private float mOffsetX;
+    private float mOffsetY;
+    private float mOffsetZ;
+    private float mRadius;
+    private double mResidualSq;
+    private float mCoverage;
+    private float mConfidence;
+
+    /**
+     * Adds a sample to the fit and checks it.
+     *
+     * @param x   Measured field along the device x axis in uT, likewise y and z.
+     * @param out Receives the sample minus the fitted offset, or the sample itself while there is
+     *            no confident fit.
+     * @return false if the sample looks disturbed and is better left out of the orientation.
+     */
+    public boolean onMagnetometer(float x, float y, float z, float[] out) {
+        accumulate(x, y, z);
+        if (mCount % SOLVE_INTERVAL == 0 && mCount >= MIN_SAMPLES) {
+            solve();
+        }
+
+        if (mHasFit) {
+            float dx = x - mOffsetX;
+            float dy = y - mOffsetY;
+            float dz = z - mOffsetZ;
+            double residual = Math.sqrt(dx * dx + dy * dy + dz * dz) - mRadius;
+            // clipped, so a single disturbed sample doesn't throw away a good fit
+            residual = Math.min(Math.abs(residual), MAX_DEVIATION * mRadius);
+            mResidualSq = mResidualSq * RESIDUAL_FORGET + residual * residual * (1 - RESIDUAL_FORGET);
+            updateConfidence();
+        }
+
+        if (mConfidence >= MIN_CONFIDENCE) {
+            out[0] = x - mOffsetX;
+            out[1] = y - mOffsetY;
+            out[2] = z - mOffsetZ;
+            float strengthSq = out[0] * out[0] + out[1] * out[1] + out[2] * out[2];
+            float min = mRadius * (1 - MAX_DEVIATION);
+            float max = mRadius * (1 + MAX_DEVIATION);
+            return strengthSq >= min * min && strengthSq <= max * max;
+        }
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+        float strengthSq = x * x + y * y + z * z;
+        return strengthSq >= MIN_FIELD * MIN_FIELD && strengthSq <= MAX_FIELD * MAX_FIELD;
+    }
+
+    /**
+     * @return 0 for no usable fit up to 1 for a well covered, consistent fit of a plausible field.
+     */
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    /**
+     * @return Whether samples are corrected with the fit, see {@link #MIN_CONFIDENCE}.
+     */
+    public boolean isCalibrated() {
+        return mConfidence >= MIN_CONFIDENCE;
+    }
+
+    /**
+     * @param out Receives the fitted hard-iron offset x, y, z in uT.
+     */
+    public void getOffset(float[] out) {
+        out[0] = mOffsetX;
+        out[1] = mOffsetY;
+        out[2] = mOffsetZ;
+    }
+
+    /**
+     * @return Fitted field strength in uT, 0 without a fit.
+     */
+    public float getFieldStrength() {
+        return mRadius;
+    }
+
+    /**
+     * @return How well the recent samples cover different directions, 0 to 1.
+     */
+    public float getCoverage() {
+        return mCoverage;
+    }
+
+    public void reset() {
+        mN = mSx = mSy = mSz = 0;
+        mSxx = mSxy = mSxz = mSyy = mSyz = mSzz = 0;
+        mSxb = mSyb = mSzb = mSb = 0;
+        mCount = 0;
+        mHasFit = false;
+        mOffsetX = mOffsetY = mOffsetZ = 0;
+        mRadius = 0;
+        mResidualSq = 0;
+        mCoverage = 0;
+        mConfidence = 0;
+    }
+
+    private void accumulate(double x, double y, double z) {
+        double b = x * x + y * y + z * z;
+        double f = FORGET;
+        mN = mN * f + 1;
+        mSx = mSx * f + x;
+        mSy = mSy * f + y;
+        mSz = mSz * f + z;
+        mSxx = mSxx * f + x * x;
+        mSxy = mSxy * f + x * y;
+        mSxz = mSxz * f + x * z;
+        mSyy = mSyy * f + y * y;
+        mSyz = mSyz * f + y * z;
+        mSzz = mSzz * f + z * z;
+        mSxb = mSxb * f + x * b;
+        mSyb = mSyb * f + y * b;
+        mSzb = mSzb * f + z * b;
+        mSb = mSb * f + b;
+        mCount++;
+    }
+
+    /**
+     * Solves the normal equations for p = (2c, R^2 - |c|^2) and updates the coverage.
+     */
+    private void solve() {
+        double[] m = mSystem;
+        // rows of A'A | A'b
+        set(0, mSxx, mSxy, mSxz, mSx, mSxb);
+        set(1, mSxy, mSyy, mSyz, mSy, mSyb);
+        set(2, mSxz, mSyz, mSzz, mSz, mSzb);
+        set(3, mSx, mSy, mSz, mN, mSb);
+
+        double scale = mSxx + mSyy + mSzz;
+        for (int col = 0; col < 4; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < 4; row++) {
+                if (Math.abs(m[row * 5 + col]) > Math.abs(m[pivot * 5 + col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(m[pivot * 5 + col]) <= scale * 1e-12) {
+                // samples on a plane or a line, no unique sphere
+                mCoverage = 0;
+                return;
+            }
+            if (pivot != col) {
+                for (int i = 0; i < 5; i++) {
+                    double t = m[col * 5 + i];
+                    m[col * 5 + i] = m[pivot * 5 + i];
+                    m[pivot * 5 + i] = t;
+                }
+            }
+            for (int row = 0; row < 4; row++) {
+                if (row == col) {
+                    continue;
+                }
+                double k = m[row * 5 + col] / m[col * 5 + col];
+                for (int i = col; i < 5; i++) {
+                    m[row * 5 + i] -= k * m[col * 5 + i];
+                }
+            }
+        }
+        double cx = m[4] / m[0] / 2;
+        double cy = m[9] / m[6] / 2;
+        double cz = m[14] / m[12] / 2;
+        double radiusSq = m[19] / m[18] + cx * cx + cy * cy + cz * cz;
+        if (radiusSq <= 0) {
+            mCoverage = 0;
+            return;
+        }
+        mOffsetX = (float) cx;
+        mOffsetY = (float) cy;
+        mOffsetZ = (float) cz;
+        mRadius = (float) Math.sqrt(radiusSq);
+        if (!mHasFit) {
+            // start out doubtful, the residual has to prove the fit first
+            mHasFit = true;
+            double residual = MAX_RESIDUAL / 2 * mRadius;
+            mResidualSq = residual * residual;
+        }
+
+        // a full sphere has a variance of R^2 / 3 in every direction
+        double spread = Math.sqrt(3 * minEigenvalue() / radiusSq);
+        mCoverage = (float) Math.min(1, spread / FULL_COVERAGE);
+    }
+
+    private void set(int row, double a, double b, double c, double d, double e) {
+        int i = row * 5;
+        mSystem[i] = a;
+        mSystem[i + 1] = b;
+        mSystem[i + 2] = c;
+        mSystem[i + 3] = d;
+        mSystem[i + 4] = e;
+    }
+
+    /**
+     * @return Smallest eigenvalue of the samples' covariance, the variance along the least
+     * covered direction.
+     */
+    private double minEigenvalue() {
+        double mx = mSx / mN;
+        double my = mSy / mN;
+        double mz = mSz / mN;
+        double a = mSxx / mN - mx * mx;
+        double b = mSyy / mN - my * my;
+        double c = mSzz / mN - mz * mz;
+        double d = mSxy / mN - mx * my;
+        double e = mSyz / mN - my * mz;
+        double f = mSxz / mN - mx * mz;
+
+        // closed form for symmetric 3x3 matrices
+        double q = (a + b + c) / 3;
+        double p1 = d * d + e * e + f * f;
+        double p2 = (a - q) * (a - q) + (b - q) * (b - q) + (c - q) * (c - q) + 2 * p1;
+        double p = Math.sqrt(p2 / 6);
+        if (p < 1e-12) {
+            return q;
+        }
+        double ba = (a - q) / p;
+        double bb = (b - q) / p;
+        double bc = (c - q) / p;
+        double bd = d / p;
+        double be = e / p;
+        double bf = f / p;
+        double det = ba * (bb * bc - be * be) - bd * (bd * bc - be * bf) + bf * (bd * be - bb * bf);
+        double r = Math.max(-1, Math.min(1, det / 2));
+        double phi = Math.acos(r) / 3;
+        return Math.max(0, q + 2 * p * Math.cos(phi + 2 * Math.PI / 3));
+    }
+
+    private void updateConfidence() {
+        if (mRadius < MIN_FIELD || mRadius > MAX_FIELD) {
+            mConfidence = 0;
+            return;
+        }
+        double residual = Math.sqrt(mResidualSq) / mRadius;
+        double fit = Math.max(0, 1 - residual / MAX_RESIDUAL);
+        mConfidence = (float) (mCoverage * fit);
+    }
+
+    @Override
+    public String toString() {
+        return "offset (" + mOffsetX + ", " + mOffsetY + ", " + mOffsetZ + "), field " + mRadius
+                + ", coverage " + mCoverage + ", confidence " + mConfidence;
+    }
+}
@@ -0,0 +1,351 @@
+package com.droid.manasshrestha.video360.sensor;
+
+/**
+ * Device orientation from accelerometer, magnetometer and, when available, gyroscope samples.
+ * <p/>
+ * Accelerometer and magnetometer give an absolute but noisy orientation, computed the same way
+ * as SensorManager.getRotationMatrix. The gyroscope, when it reports, predicts the orientation
+ * between absolute samples. A complementary filter blends the two: every absolute sample pulls
+ * the estimate towards itself by {@link #getGain()}, so gyro drift is corrected slowly while the
+ * jitter of the absolute samples is smoothed out. Without a gyroscope this reduces to exponential
+ * smoothing of the absolute orientation.
+ * <p/>
+ * The estimate is kept as a unit quaternion {@code (w, x, y, z)} rotating device coordinates into
+ * world coordinates (x east, y north, z up). All state is preallocated primitives, no sample
+ * allocates. Not thread safe.
+ */
+public class OrientationFusion {
+
+    /**
+     * Weight of each absolute sample, close to the 1/21 the old root mean square buffer gave
+     * each accelerometer and magnetometer sample.
+     */
+    public static final float DEFAULT_GAIN = 0.05f;
+
+    /**
+     * Same rejection threshold SensorManager.getRotationMatrix uses: the device is in free fall
+     * or the field is parallel to gravity.
+     */
+    private static final float MIN_HORIZONTAL_NORM_SQ = 0.1f * 0.1f;
+    private static final float MIN_GRAVITY_SQ = (0.1f * 9.80665f) * (0.1f * 9.80665f);
+
+    /**
+     * Gyro samples further apart than this are not integrated.
+     */
+    private static final long MAX_GYRO_STEP_NS = 200000000L;
+
+    private static final double NS_TO_S = 1e-9;
+
+    private float mGain = DEFAULT_GAIN;
+    private boolean mRemap;
+
+    private final float[] mAccel = new float[3];
+    private final float[] mMagnet = new float[3];
+    private boolean mHasAccel;
+    private boolean mHasMagnet;
+
+    // fused estimate
+    private float mW = 1;
+    private float mX;
+    private float mY;
+    private float mZ;
+    private boolean mInitialized;
+
+    // last absolute sample
+    private float mAbsW;
+    private float mAbsX;
+    private float mAbsY;
+    private float mAbsZ;
+
+    private long mLastGyroNs;
+
+    /**
+     * @param gain Weight of each absolute sample, between 0 (gyro only) and 1 (absolute only).
+     */
+    public void setGain(float gain) {
+        if (gain <= 0 || gain > 1) {
+            throw new IllegalArgumentException("gain must be in (0, 1]: " + gain);
+        }
+        mGain = gain;
+    }
+
+    public float getGain() {
+        return mGain;
+    }
+
+    /**
+     * Whether {@link #getRotationMatrix(float[])} remaps the device's y axis to x and -x to y,
+     * like {@code remapCoordinateSystem(R, AXIS_Y, AXIS_MINUS_X, R)}. The decision depends on the
+     * display only, so callers make it once per configuration rather than per sample.
+     */
+    public void setRemap(boolean remap) {
+        mRemap = remap;
+    }
+
+    public boolean isRemap() {
+        return mRemap;
+    }
+
+    public void onAccelerometer(float x, float y, float z) {
+        mAccel[0] = x;
+        mAccel[1] = y;
+        mAccel[2] = z;
+        mHasAccel = true;
+        correct();
+    }
+
+    public void onMagnetometer(float x, float y, float z) {
+        mMagnet[0] = x;
+        mMagnet[1] = y;
+        mMagnet[2] = z;
+        mHasMagnet = true;
+        correct();
+    }
+
+    /**
+     * Forgets the last magnetometer sample, e.g. when the field is disturbed. Only the gyroscope
+     * moves the estimate until the next {@link #onMagnetometer}.
+     */
+    public void clearMagnetometer() {
+        mHasMagnet = false;
+    }
+
+    /**
+     * Integrates a gyroscope sample into the estimate.
+     *
+     * @param timestampNs Sensor event timestamp.
+     * @param x           Angular rate around the device x axis in rad/s, likewise y and z.
+     */
+    public void onGyroscope(long timestampNs, float x, float y, float z) {
+        long last = mLastGyroNs;
+        mLastGyroNs = timestampNs;
+        long dtNs = timestampNs - last;
+        if (!mInitialized || last == 0 || dtNs <= 0 || dtNs > MAX_GYRO_STEP_NS) {
+            return;
+        }
+        float halfDt = (float) (dtNs * NS_TO_S * 0.5);
+        float dx = x * halfDt;
+        float dy = y * halfDt;
+        float dz = z * halfDt;
+
+        // q = q * (1, dx, dy, dz), renormalised below; first order is plenty at sensor rates
+        float w = mW - mX * dx - mY * dy - mZ * dz;
+        float qx = mX + mW * dx + mY * dz - mZ * dy;
+        float qy = mY + mW * dy - mX * dz + mZ * dx;
+        float qz = mZ + mW * dz + mX * dy - mY * dx;
+        setNormalized(w, qx, qy, qz);
+    }
+
+    /**
+     * @return Whether an orientation has been computed yet.
+     */
+    public boolean isInitialized() {
+        return mInitialized;
+    }
+
+    /**
+     * Forgets the estimate, e.g. when the listeners were unregistered for a while.
+     */
+    public void reset() {
+        mInitialized = false;
+        mHasAccel = false;
+        mHasMagnet = false;
+        mLastGyroNs = 0;
+        mW = 1;
+        mX = mY = mZ = 0;
+    }
+
+    /**
+     * @return Squared magnitude of the last magnetometer sample in uT^2.
+     */
+    public float getMagneticFieldSq() {
+        return mMagnet[0] * mMagnet[0] + mMagnet[1] * mMagnet[1] + mMagnet[2] * mMagnet[2];
+    }
+
+    /**
+     * @param out Receives {@code w, x, y, z}.
+     */
+    public void getQuaternion(float[] out) {
+        out[0] = mW;
+        out[1] = mX;
+        out[2] = mY;
+        out[3] = mZ;
+    }
+
+    /**
+     * Writes the estimate as a rotation matrix in the layout SensorManager uses.
+     *
+     * @param out Either a 3x3 (9 values) or a 4x4 (16 values) row major matrix.
+     */
+    public void getRotationMatrix(float[] out) {
+        float w = mW;
+        float x = mX;
+        float y = mY;
+        float z = mZ;
+        float r00 = 1 - 2 * (y * y + z * z);
+        float r01 = 2 * (x * y - w * z);
+        float r02 = 2 * (x * z + w * y);
+        float r10 = 2 * (x * y + w * z);
+        float r11 = 1 - 2 * (x * x + z * z);
+        float r12 = 2 * (y * z - w * x);
+        float r20 = 2 * (x * z - w * y);
+        float r21 = 2 * (y * z + w * x);
+        float r22 = 1 - 2 * (x * x + y * y);
+        if (mRemap) {
+            // new x = old y, new y = -old x, z is unchanged
+            float t;
+            t = r00;
+            r00 = r01;
+            r01 = -t;
+            t = r10;
+            r10 = r11;
+            r11 = -t;
+            t = r20;
+            r20 = r21;
+            r21 = -t;
+        }
+
+        if (out.length == 16) {
+            out[0] = r00;
+            out[1] = r01;
+            out[2] = r02;
+            out[3] = 0;
+            out[4] = r10;
+            out[5] = r11;
+            out[6] = r12;
+            out[7] = 0;
+            out[8] = r20;
+            out[9] = r21;
+            out[10] = r22;
+            out[11] = 0;
+            out[12] = 0;
+            out[13] = 0;
+            out[14] = 0;
+            out[15] = 1;
+        } else {
+            out[0] = r00;
+            out[1] = r01;
+            out[2] = r02;
+            out[3] = r10;
+            out[4] = r11;
+            out[5] = r12;
+            out[6] = r20;
+            out[7] = r21;
+            out[8] = r22;
+        }
+    }
+
+    /**
+     * Computes the absolute orientation from the latest accelerometer and magnetometer samples
+     * and blends it into the estimate.
+     */
+    private void correct() {
+        if (!mHasAccel || !mHasMagnet || !absoluteOrientation()) {
+            return;
+        }
+        if (!mInitialized) {
+            mW = mAbsW;
+            mX = mAbsX;
+            mY = mAbsY;
+            mZ = mAbsZ;
+            mInitialized = true;
+            return;
+        }
+        float aw = mAbsW;
+        float ax = mAbsX;
+        float ay = mAbsY;
+        float az = mAbsZ;
+        // q and -q are the same rotation, blend towards the closer one
+        if (mW * aw + mX * ax + mY * ay + mZ * az < 0) {
+            aw = -aw;
+            ax = -ax;
+            ay = -ay;
+            az = -az;
+        }
+        float k = mGain;
+        setNormalized(mW + (aw - mW) * k, mX + (ax - mX) * k, mY + (ay - mY) * k, mZ + (az - mZ) * k);
+    }
+
+    /**
+     * SensorManager.getRotationMatrix without the inclination, converted to a quaternion.
+     *
+     * @return false if the samples don't define an orientation.
+     */
+    private boolean absoluteOrientation() {
+        float ax = mAccel[0];
+        float ay = mAccel[1];
+        float az = mAccel[2];
+        float ex = mMagnet[0];
+        float ey = mMagnet[1];
+        float ez = mMagnet[2];
+
+        if (ax * ax + ay * ay + az * az < MIN_GRAVITY_SQ) {
+            return false;
+        }
+        // H = E x A points east
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        float normH = hx * hx + hy * hy + hz * hz;
+        if (normH < MIN_HORIZONTAL_NORM_SQ) {
+            return false;
+        }
+        float invH = (float) (1.0 / Math.sqrt(normH));
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        float invA = (float) (1.0 / Math.sqrt(ax * ax + ay * ay + az * az));
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+        // M = A x H points north
+        float mx = ay * hz - az * hy;
+        float my = az * hx - ax * hz;
+        float mz = ax * hy - ay * hx;
+
+        // rows are H, M, A
+        float trace = hx + my + az;
+        float w;
+        float x;
+        float y;
+        float z;
+        if (trace > 0) {
+            float s = (float) Math.sqrt(trace + 1) * 2;
+            w = 0.25f * s;
+            x = (ay - mz) / s;
+            y = (hz - ax) / s;
+            z = (mx - hy) / s;
+        } else if (hx > my && hx > az) {
+            float s = (float) Math.sqrt(1 + hx - my - az) * 2;
+            w = (ay - mz) / s;
+            x = 0.25f * s;
+            y = (hy + mx) / s;
+            z = (hz + ax) / s;
+        } else if (my > az) {
+            float s = (float) Math.sqrt(1 + my - hx - az) * 2;
+            w = (hz - ax) / s;
+            x = (hy + mx) / s;
+            y = 0.25f * s;
+            z = (mz + ay) / s;
+        } else {
+            float s = (float) Math.sqrt(1 + az - hx - my) * 2;
+            w = (mx - hy) / s;
+            x = (hz + ax) / s;
+            y = (mz + ay) / s;
+            z = 0.25f * s;
+        }
+        mAbsW = w;
+        mAbsX = x;
+        mAbsY = y;
+        mAbsZ = z;
+        return true;
+    }
+
+    private void setNormalized(float w, float x, float y, float z) {
+        float inv = (float) (1.0 / Math.sqrt(w * w + x * x + y * y + z * z));
+        mW = w * inv;
+        mX = x * inv;
+        mY = y * inv;
+        mZ = z * inv;
+    }
+}
@@ -0,0 +1,159 @@
+package com.droid.manasshrestha.video360.sensor;
+
+/**
+ * Decides whether sensors need to run at full rate, from the motion seen in their own samples.
+ * <p/>
+ * Each gyroscope or accelerometer sample is turned into a motion level: the rotation rate, or how
+ * far the acceleration moved away from its slowly tracked average (gravity plus any steady
+ * offset), each divided by its wake threshold. A level of 1 or more switches to
+ * {@link #MODE_ACTIVE} right away. Going back to {@link #MODE_IDLE} takes the level staying below
+ * {@link #STILL_LEVEL} for {@link #IDLE_AFTER_NS}; levels in between keep the current mode, so a
+ * device held by hand doesn't flap between the two.
+ * <p/>
+ * Pure Java, time comes from the sample timestamps. Not thread safe.
+ */
+public class SamplingPolicy {
+
+    public static final int MODE_ACTIVE = 0;
+    public static final int MODE_IDLE = 1;
+
+    /**
+     * Rotation rate in rad/s that counts as motion.
+     */
+    public static final float GYRO_WAKE_RATE = 0.15f;
+
+    /**
+     * Deviation of the acceleration from its average in m/s^2 that counts as motion.
+     */
+    public static final float ACCEL_WAKE_JERK = 0.6f;
+
+    /**
+     * Fraction of the wake thresholds below which the device counts as still.
+     */
+    public static final float STILL_LEVEL = 0.4f;
+
+    /**
+     * How long the device has to stay still before dropping to the idle rate.
+     */
+    public static final long IDLE_AFTER_NS = 3000000000L;
+
+    /**
+     * Time constant the acceleration average follows with.
+     */
+    private static final float GRAVITY_TIME_S = 0.5f;
+
+    /**
+     * Gaps longer than this restart the gravity estimate, e.g. after re-registering.
+     */
+    private static final long MAX_STEP_NS = 1000000000L;
+
+    private static final double NS_TO_S = 1e-9;
+
+    private int mMode = MODE_ACTIVE;
+    private float mLevel;
+    private long mStillSinceNs;
+    private int mTransitions;
+
+    private long mLastAccelNs;
+    private float mGravityX;
+    private float mGravityY;
+    private float mGravityZ;
+
+    /**
+     * @return {@link #MODE_ACTIVE} or {@link #MODE_IDLE}.
+     */
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * @return Motion level of the last sample, 1 is the wake threshold.
+     */
+    public float getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return Number of mode changes since the last reset.
+     */
+    public int getTransitions() {
+        return mTransitions;
+    }
+
+    /**
+     * @param x Rotation rate around the device x axis in rad/s, likewise y and z.
+     * @return true if the mode changed.
+     */
+    public boolean onGyroscope(long timestampNs, float x, float y, float z) {
+        float rate = (float) Math.sqrt(x * x + y * y + z * z);
+        return onLevel(timestampNs, rate / GYRO_WAKE_RATE);
+    }
+
+    /**
+     * @param x Acceleration along the device x axis in m/s^2, likewise y and z.
+     * @return true if the mode changed.
+     */
+    public boolean onAccelerometer(long timestampNs, float x, float y, float z) {
+        long last = mLastAccelNs;
+        mLastAccelNs = timestampNs;
+        long dtNs = timestampNs - last;
+        if (last == 0 || dtNs <= 0 || dtNs > MAX_STEP_NS) {
+            mGravityX = x;
+            mGravityY = y;
+            mGravityZ = z;
+            return false;
+        }
+        float dx = x - mGravityX;
+        float dy = y - mGravityY;
+        float dz = z - mGravityZ;
+        double dt = dtNs * NS_TO_S;
+        float k = (float) (dt / (GRAVITY_TIME_S + dt));
+        mGravityX += dx * k;
+        mGravityY += dy * k;
+        mGravityZ += dz * k;
+        float jerk = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return onLevel(timestampNs, jerk / ACCEL_WAKE_JERK);
+    }
+
+    /**
+     * Back to {@link #MODE_ACTIVE}, forgetting the motion history.
+     */
+    public void reset() {
+        mMode = MODE_ACTIVE;
+        mLevel = 0;
+        mStillSinceNs = 0;
+        mTransitions = 0;
+        mLastAccelNs = 0;
+    }
+
+    private boolean onLevel(long timestampNs, float level) {
+        mLevel = level;
+        if (level >= 1) {
+            mStillSinceNs = timestampNs;
+            return setMode(MODE_ACTIVE);
+        }
+        if (level >= STILL_LEVEL || mStillSinceNs == 0) {
+            mStillSinceNs = timestampNs;
+            return false;
+        }
+        if (timestampNs - mStillSinceNs >= IDLE_AFTER_NS) {
+            return setMode(MODE_IDLE);
+        }
+        return false;
+    }
+
+    private boolean setMode(int mode) {
+        if (mMode == mode) {
+            return false;
+        }
+        mMode = mode;
+        mTransitions++;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return (mMode == MODE_ACTIVE ? "active" : "idle") + ", level " + mLevel + ", " + mTransitions
+                + " transitions";
+    }
+}
@@ -0,0 +1,263 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * Moves sensor delivery off the main thread.
+ * <p/>
+ * Sensor events are received on a dedicated {@link HandlerThread} and copied into a
+ * {@link SensorRing}. The main thread drains the ring into the {@link SensorRing.Sink} once per
+ * display frame, so a burst of events costs one batch on the next frame instead of one main
+ * thread message each. No frame callback is posted while no events arrive.
+ * <p/>
+ * With {@link #setIdleRate(int, int)} the pump also watches the drained samples with a
+ * {@link SamplingPolicy} and re-registers the sensors at the idle rate while the device lies
+ * still, and at the rate passed to {@link #start} as soon as it moves again.
+ * <p/>
+ * Create, start and stop on the main thread.
+ */
+public class SensorPump implements SensorEventListener {
+
+    private static final String TAG = SensorPump.class.getSimpleName();
+
+    /**
+     * Samples kept between frames, a few frames worth at the fastest rate.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Batching latency suggested for {@link #setIdleRate(int, int)}, short enough that picking
+     * the device up doesn't feel laggy.
+     */
+    public static final int IDLE_REPORT_LATENCY_US = 400000;
+
+    /**
+     * Sampling delay suggested for {@link #setIdleRate(int, int)}, about 15 events a second. The
+     * gyroscope integrators take gaps over 200ms for the sensor having stopped, idle samples must
+     * come well within that or the bias learned while still and the motion that wakes the pump
+     * are lost.
+     */
+    public static final int IDLE_DELAY = SensorManager.SENSOR_DELAY_UI;
+
+    /**
+     * Slowest idle sampling period {@link #setIdleRate(int, int)} accepts, half the integrators'
+     * gap limit so a late event is not taken for a gap.
+     */
+    static final int MAX_IDLE_PERIOD_US = 100000;
+
+    private final SensorRing mRing;
+    private final SensorRing.Sink mSink;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final String mName;
+    private final SamplingPolicy mPolicy = new SamplingPolicy();
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private boolean mSkipUnreliable;
+
+    private SensorManager mManager;
+    private Sensor[] mSensors;
+    private int mActiveDelay;
+    private int mIdleDelay = -1;
+    private int mIdleLatencyUs;
+
+    private final Runnable mScheduleDrain = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(mDrainFrame);
+        }
+    };
+
+    private final Choreographer.FrameCallback mDrainFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            drain();
+        }
+    };
+
+    private final SensorRing.Sink mDispatch = new SensorRing.Sink() {
+        @Override
+        public void onSample(int type, long timestampNs, float[] values, int offset) {
+            observe(type, timestampNs, values, offset);
+            mSink.onSample(type, timestampNs, values, offset);
+        }
+    };
+
+    /**
+     * @param name  Name of the sensor thread.
+     * @param width Values kept per event, see {@link SensorRing}.
+     * @param sink  Receives the events on the main thread.
+     */
+    public SensorPump(String name, int width, SensorRing.Sink sink) {
+        mName = name;
+        mRing = new SensorRing(DEFAULT_CAPACITY, width);
+        mSink = sink;
+    }
+
+    /**
+     * Drops events whose accuracy is SENSOR_STATUS_UNRELIABLE.
+     */
+    public void setSkipUnreliable(boolean skip) {
+        mSkipUnreliable = skip;
+    }
+
+    /**
+     * Lowers the rate while the device lies still. Call before {@link #start}.
+     *
+     * @param delay            Sampling delay while idle, a SENSOR_DELAY constant or microseconds,
+     *                         at most {@link #MAX_IDLE_PERIOD_US}; {@link #IDLE_DELAY} usually.
+     *                         A pump active at a slower rate keeps it and only batches.
+     * @param maxReportLatency Microseconds the sensor hub may batch events for while idle, used
+     *                         from KitKat on. Batched events keep their timestamps, so integrating
+     *                         consumers catch up once the batch arrives.
+     */
+    public void setIdleRate(int delay, int maxReportLatency) {
+        if (mRing.getWidth() < 3) {
+            throw new IllegalStateException("The idle rate needs 3 values per event");
+        }
+        if (periodUs(delay) > MAX_IDLE_PERIOD_US) {
+            throw new IllegalArgumentException("Idle delay " + delay + " samples slower than every "
+                    + MAX_IDLE_PERIOD_US + "us");
+        }
+        mIdleDelay = delay;
+        mIdleLatencyUs = maxReportLatency;
+    }
+
+    /**
+     * @return Nominal sampling period of a SENSOR_DELAY constant or a delay in microseconds.
+     */
+    static int periodUs(int delay) {
+        switch (delay) {
+            case SensorManager.SENSOR_DELAY_FASTEST:
+                return 0;
+            case SensorManager.SENSOR_DELAY_GAME:
+                return 20000;
+            case SensorManager.SENSOR_DELAY_UI:
+                return 66667;
+            case SensorManager.SENSOR_DELAY_NORMAL:
+                return 200000;
+            default:
+                return delay;
+        }
+    }
+
+    /**
+     * Registers for the given sensors, delivering to the sensor thread. Missing sensors are
+     * skipped.
+     *
+     * @return false if none of the sensors could be registered.
+     */
+    public boolean start(SensorManager manager, int delay, Sensor... sensors) {
+        if (mThread == null) {
+            mThread = new HandlerThread(mName, Process.THREAD_PRIORITY_DISPLAY);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+        mManager = manager;
+        mSensors = sensors;
+        mActiveDelay = delay;
+        mPolicy.reset();
+        return register(delay, 0);
+    }
+
+    /**
+     * Unregisters from every sensor and stops the sensor thread. Events already in the ring are
+     * still delivered.
+     */
+    public void stop(SensorManager manager) {
+        manager.unregisterListener(this);
+        mManager = null;
+        mSensors = null;
+        if (mThread != null) {
+            mThread.quit();
+            mThread = null;
+            mHandler = null;
+        }
+    }
+
+    /**
+     * Delivers pending events now instead of on the next frame.
+     */
+    public void drain() {
+        mRing.drain(mIdleDelay < 0 ? mSink : mDispatch);
+    }
+
+    /**
+     * @return Current mode of the idle rate policy, see {@link SamplingPolicy}.
+     */
+    public int getMode() {
+        return mPolicy.getMode();
+    }
+
+    private void observe(int type, long timestampNs, float[] values, int offset) {
+        boolean changed;
+        if (type == Sensor.TYPE_GYROSCOPE || type == Sensor.TYPE_GYROSCOPE_UNCALIBRATED) {
+            // the drift of uncalibrated events is far below the wake rate
+            changed = mPolicy.onGyroscope(timestampNs, values[offset], values[offset + 1], values[offset + 2]);
+        } else if (type == Sensor.TYPE_ACCELEROMETER) {
+            changed = mPolicy.onAccelerometer(timestampNs, values[offset], values[offset + 1], values[offset + 2]);
+        } else {
+            return;
+        }
+        if (changed && mManager != null) {
+            boolean idle = mPolicy.getMode() == SamplingPolicy.MODE_IDLE;
+            Log.d(TAG, mName + (idle ? " idle" : " active"));
+            // a listener can't be registered twice for a sensor, the new rate needs a fresh registration
+            mManager.unregisterListener(this);
+            if (idle) {
+                // never faster than when active
+                register(periodUs(mIdleDelay) > periodUs(mActiveDelay) ? mIdleDelay : mActiveDelay,
+                        mIdleLatencyUs);
+            } else {
+                register(mActiveDelay, 0);
+            }
+        }
+    }
+
+    private boolean register(int delay, int maxReportLatency) {
+        boolean batch = maxReportLatency > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+        boolean registered = false;
+        for (Sensor sensor : mSensors) {
+            if (sensor == null) {
+                continue;
+            }
+            if (batch) {
+                registered |= mManager.registerListener(this, sensor, delay, maxReportLatency, mHandler);
+            } else {
+                registered |= mManager.registerListener(this, sensor, delay, mHandler);
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * @return Events dropped because the main thread didn't drain in time.
+     */
+    public long getOverruns() {
+        return mRing.getOverruns();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (mSkipUnreliable && event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
+            return;
+        }
+        mRing.offer(event.sensor.getType(), event.timestamp, event.values);
+        if (mRing.shouldWake()) {
+            mMainHandler.post(mScheduleDrain);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single producer, single consumer ring of sensor samples.
+ * <p/>
+ * Each slot holds the sensor type, the event timestamp and a fixed number of values in
+ * preallocated primitive arrays, so neither side allocates. The producer (the sensor thread)
+ * copies samples in with {@link #offer(int, long, float[])}, the consumer drains everything
+ * published so far in one batch with {@link #drain(Sink)}.
+ * <p/>
+ * When the ring is full new samples are dropped and counted as overruns: overwriting the oldest
+ * sample would race with a consumer reading it. Size the ring for the longest stall the consumer
+ * may have, a few frames worth of samples.
+ */
+public class SensorRing {
+
+    /**
+     * Receives drained samples.
+     */
+    public interface Sink {
+
+        /**
+         * @param values Backing array of the ring, the sample's values start at {@code offset}.
+         *               Only valid during the call.
+         */
+        void onSample(int type, long timestampNs, float[] values, int offset);
+    }
+
+    private final int mMask;
+    private final int mWidth;
+    private final int[] mTypes;
+    private final long[] mTimestamps;
+    private final float[] mValues;
+
+    /**
+     * Next slot the producer writes, only advanced by the producer.
+     */
+    private final AtomicLong mTail = new AtomicLong();
+    /**
+     * Next slot the consumer reads, only advanced by the consumer.
+     */
+    private final AtomicLong mHead = new AtomicLong();
+    /**
+     * Producer's copy of {@link #mHead}, refreshed only when the ring looks full.
+     */
+    private long mCachedHead;
+
+    private final AtomicLong mOverruns = new AtomicLong();
+    private final AtomicBoolean mArmed = new AtomicBoolean(true);
+
+    /**
+     * @param capacity Number of samples, rounded up to a power of two.
+     * @param width    Values kept per sample, extra values are ignored and missing ones are 0.
+     */
+    public SensorRing(int capacity, int width) {
+        if (capacity < 1 || width < 1) {
+            throw new IllegalArgumentException("Invalid ring " + capacity + "x" + width);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mWidth = width;
+        mTypes = new int[size];
+        mTimestamps = new long[size];
+        mValues = new float[size * width];
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Copies a sample in. Producer thread only.
+     *
+     * @return false if the ring was full and the sample was dropped.
+     */
+    public boolean offer(int type, long timestampNs, float[] values) {
+        long tail = mTail.get();
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead > mMask) {
+                mOverruns.incrementAndGet();
+                return false;
+            }
+        }
+        int slot = (int) tail & mMask;
+        mTypes[slot] = type;
+        mTimestamps[slot] = timestampNs;
+        int offset = slot * mWidth;
+        int n = Math.min(mWidth, values.length);
+        System.arraycopy(values, 0, mValues, offset, n);
+        for (int i = n; i < mWidth; i++) {
+            mValues[offset + i] = 0;
+        }
+        // publishes the slot's contents along with the index
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Tells the producer whether it should wake the consumer up: true once after each
+     * {@link #drain(Sink)}, so a burst of samples costs a single wake up.
+     */
+    public boolean shouldWake() {
+        return mArmed.compareAndSet(true, false);
+    }
+
+    /**
+     * Hands every published sample to the sink, oldest first. Consumer thread only.
+     *
+     * @return Number of samples drained.
+     */
+    public int drain(Sink sink) {
+        // re-arm first, samples published while draining wake the consumer again
+        mArmed.set(true);
+        long head = mHead.get();
+        long tail = mTail.get();
+        for (long i = head; i < tail; i++) {
+            int slot = (int) i & mMask;
+            sink.onSample(mTypes[slot], mTimestamps[slot], mValues, slot * mWidth);
+        }
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return Samples published but not drained yet.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * @return Samples dropped because the ring was full.
+     */
+    public long getOverruns() {
+        return mOverruns.get();
+    }
+}
@@ -0,0 +1,191 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import com.droid.manasshrestha.video360.media.MappedFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Binary trace of sensor samples in a memory-mapped file, for replaying a session off the device.
+ * <p/>
+ * Layout, big endian:
+ * <pre>
+ *  0  int    magic "P3DT"
+ *  4  int    format version
+ *  8  int    values per sample
+ * 12  int    record size in bytes
+ * 16  int    records written
+ * 20  int    record capacity
+ * 24  long   wall clock time the trace started, ms
+ * 32  ...    records: int sensor type, long timestamp ns, float values
+ * </pre>
+ * The file is created at its full capacity up front, so recording is a handful of absolute puts
+ * into the mapping per sample: no allocation, no system call. Once full, further samples are
+ * counted as dropped. The record count in the header is updated with every record, so a trace
+ * cut short by a crash is still readable up to its last sample.
+ * <p/>
+ * A trace is written by one thread, the recorder is a {@link SensorRing.Sink} so it can sit right
+ * behind a {@link SensorPump}.
+ */
+public class SensorTrace implements SensorRing.Sink {
+
+    public static final String EXTENSION = ".p3dt";
+
+    static final int MAGIC = 0x50334454;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 16;
+
+    private final MappedByteBuffer mMap;
+    private final int mWidth;
+    private final int mRecordSize;
+    private final int mCapacity;
+    private final boolean mWritable;
+    private int mCount;
+    private long mDropped;
+
+    private SensorTrace(MappedByteBuffer map, int width, int capacity, int count, boolean writable) {
+        mMap = map;
+        mWidth = width;
+        mRecordSize = recordSize(width);
+        mCapacity = capacity;
+        mCount = count;
+        mWritable = writable;
+    }
+
+    /**
+     * Creates a trace file with room for the given number of samples, replacing any existing one.
+     *
+     * @param width Values recorded per sample.
+     */
+    public static SensorTrace create(File file, int width, int capacity) throws IOException {
+        if (width < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid trace " + capacity + "x" + width);
+        }
+        long length = HEADER_SIZE + (long) capacity * recordSize(width);
+        MappedByteBuffer map = MappedFiles.create(file, length);
+        map.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, width)
+                .putInt(12, recordSize(width))
+                .putInt(COUNT_OFFSET, 0)
+                .putInt(20, capacity)
+                .putLong(24, System.currentTimeMillis());
+        return new SensorTrace(map, width, capacity, 0, true);
+    }
+
+    /**
+     * Maps an existing trace read only.
+     *
+     * @throws IOException if the file is not a trace or is truncated.
+     */
+    public static SensorTrace open(File file) throws IOException {
+        MappedByteBuffer map = MappedFiles.mapReadOnly(file);
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a sensor trace: " + file);
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported trace version " + map.getInt(4));
+        }
+        int width = map.getInt(8);
+        int count = map.getInt(COUNT_OFFSET);
+        int capacity = map.getInt(20);
+        if (width < 1 || map.getInt(12) != recordSize(width) || count < 0 || count > capacity
+                || map.capacity() < HEADER_SIZE + (long) capacity * recordSize(width)) {
+            throw new IOException("Corrupt sensor trace: " + file);
+        }
+        return new SensorTrace(map, width, capacity, count, false);
+    }
+
+    private static int recordSize(int width) {
+        return 4 + 8 + 4 * width;
+    }
+
+    /**
+     * Appends a sample, see {@link #record(int, long, float[], int)}.
+     */
+    @Override
+    public void onSample(int type, long timestampNs, float[] values, int offset) {
+        record(type, timestampNs, values, offset);
+    }
+
+    /**
+     * Appends a sample. Values missing past the end of the array are recorded as 0.
+     *
+     * @return false if the trace is full and the sample was dropped.
+     */
+    public boolean record(int type, long timestampNs, float[] values, int offset) {
+        if (!mWritable) {
+            throw new IllegalStateException("Trace is read only");
+        }
+        if (mCount == mCapacity) {
+            mDropped++;
+            return false;
+        }
+        int position = HEADER_SIZE + mCount * mRecordSize;
+        mMap.putInt(position, type);
+        mMap.putLong(position + 4, timestampNs);
+        position += 12;
+        for (int i = 0; i < mWidth; i++, position += 4) {
+            int index = offset + i;
+            mMap.putFloat(position, index < values.length ? values[index] : 0);
+        }
+        mCount++;
+        mMap.putInt(COUNT_OFFSET, mCount);
+        return true;
+    }
+
+    /**
+     * Feeds every recorded sample to the sink in recording order. The values array handed to the
+     * sink is reused between samples.
+     */
+    public void replay(SensorRing.Sink sink) {
+        float[] values = new float[mWidth];
+        for (int i = 0; i < mCount; i++) {
+            int position = HEADER_SIZE + i * mRecordSize;
+            int type = mMap.getInt(position);
+            long timestamp = mMap.getLong(position + 4);
+            position += 12;
+            for (int v = 0; v < mWidth; v++, position += 4) {
+                values[v] = mMap.getFloat(position);
+            }
+            sink.onSample(type, timestamp, values, 0);
+        }
+    }
+
+    /**
+     * Flushes the recorded samples to storage.
+     */
+    public void force() {
+        if (mWritable) {
+            mMap.force();
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return Samples not recorded because the trace was full.
+     */
+    public long getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * @return Wall clock time the trace was created, ms.
+     */
+    public long getStartTime() {
+        return mMap.getLong(24);
+    }
+}
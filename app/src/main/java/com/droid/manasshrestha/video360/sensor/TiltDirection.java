@@ -0,0 +1,90 @@
+package com.droid.manasshrestha.video360.sensor;
+
+/**
+ * Classifies which way the device is tilted from the gravity measured by the accelerometer.
+ * <p/>
+ * The direction follows the axis with the larger tilt: x towards {@link #LEFT} or {@link #RIGHT},
+ * y towards {@link #BOTTOM} or {@link #TOP}. Both thresholds have a dead band so a device held
+ * near a boundary doesn't flicker: a direction is only entered beyond {@link #ENTER_TILT} and only
+ * left for the center below {@link #EXIT_TILT}, and switching to the other axis needs it to lead
+ * by {@link #SWITCH_MARGIN}.
+ * <p/>
+ * {@link #onAccelerometer(float, float)} reports transitions only, so callers do no work while
+ * the direction holds. Pure Java, not thread safe.
+ */
+public class TiltDirection {
+
+    public static final int CENTER = 0;
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+    public static final int TOP = 3;
+    public static final int BOTTOM = 4;
+
+    /**
+     * Number of directions, for tables indexed by direction.
+     */
+    public static final int COUNT = 5;
+
+    /**
+     * Acceleration in m/s^2 along an axis that tilts away from the center.
+     */
+    public static final float ENTER_TILT = 2.5f;
+
+    /**
+     * Acceleration in m/s^2 both axes have to fall below to return to the center.
+     */
+    public static final float EXIT_TILT = 1.5f;
+
+    /**
+     * How much further in m/s^2 the other axis has to be tilted to switch over to it.
+     */
+    public static final float SWITCH_MARGIN = 0.5f;
+
+    private int mDirection = CENTER;
+
+    /**
+     * @param x Acceleration along the device x axis in m/s^2, likewise y.
+     * @return true if the direction changed.
+     */
+    public boolean onAccelerometer(float x, float y) {
+        float absX = Math.abs(x);
+        float absY = Math.abs(y);
+        int direction = mDirection;
+        if (direction == CENTER) {
+            if (absX > ENTER_TILT || absY > ENTER_TILT) {
+                direction = absX > absY ? horizontal(x) : vertical(y);
+            }
+        } else if (absX < EXIT_TILT && absY < EXIT_TILT) {
+            direction = CENTER;
+        } else if (direction == LEFT || direction == RIGHT) {
+            direction = absY > absX + SWITCH_MARGIN ? vertical(y) : horizontal(x);
+        } else {
+            direction = absX > absY + SWITCH_MARGIN ? horizontal(x) : vertical(y);
+        }
+        if (direction == mDirection) {
+            return false;
+        }
+        mDirection = direction;
+        return true;
+    }
+
+    /**
+     * @return One of {@link #CENTER}, {@link #LEFT}, {@link #RIGHT}, {@link #TOP}, {@link #BOTTOM}.
+     */
+    public int getDirection() {
+        return mDirection;
+    }
+
+    public void reset() {
+        mDirection = CENTER;
+    }
+
+    private static int horizontal(float x) {
+        // tilting the left edge down accelerates along +x
+        return x > 0 ? LEFT : RIGHT;
+    }
+
+    private static int vertical(float y) {
+        return y > 0 ? BOTTOM : TOP;
+    }
+}
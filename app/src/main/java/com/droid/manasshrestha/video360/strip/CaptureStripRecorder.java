@@ -0,0 +1,272 @@
+package com.droid.manasshrestha.video360.strip;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Downscales camera preview frames while a clip is being recorded, so its {@link FrameStrip} is
+ * ready when the recording stops instead of being decoded from the file afterwards.
+ * <p/>
+ * Everything is allocated up front: a pool of RGB_565 frames in one direct buffer, their media
+ * times, and the lookup tables of the nearest neighbour scaling from NV21, computed once per
+ * preview size. A preview frame is converted straight into the pool and the preview buffer can go
+ * back to the camera right away, nothing is allocated per frame. Frames closer than the current
+ * interval to the last one kept are skipped. When the pool is full, every other frame is dropped
+ * and the interval doubles, so a capture of any length fits and stays evenly covered.
+ * <p/>
+ * {@link #fill(FrameStrip)} then copies the kept frame nearest to each slot's time into a strip
+ * of the same frame size. Frames are added on one thread, the strip is filled after the last.
+ */
+public class CaptureStripRecorder {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFrameSize;
+    private final int mMinInterval;
+
+    private final ByteBuffer mPool;
+    private final ShortBuffer mPoolPixels;
+    private final int[] mTimes;
+    private final short[] mRow;
+    private int mCount;
+    private int mInterval;
+    private long mReceived;
+
+    private final int[] mColumns;
+    private final int[] mChromaColumns;
+    private int mSourceWidth;
+    private int mSourceHeight;
+
+    /**
+     * @param width         Frame width in pixels, as in the strip to fill.
+     * @param height        Frame height in pixels.
+     * @param capacity      Frames kept at most.
+     * @param minIntervalMs Shortest time between kept frames.
+     */
+    public CaptureStripRecorder(int width, int height, int capacity, int minIntervalMs) {
+        if (width < 1 || height < 1 || capacity < 2) {
+            throw new IllegalArgumentException("Invalid pool " + capacity + "x" + width + "x" + height);
+        }
+        mWidth = width;
+        mHeight = height;
+        mFrameSize = width * height;
+        mMinInterval = Math.max(1, minIntervalMs);
+        mPool = ByteBuffer.allocateDirect(capacity * mFrameSize * FrameStrip.BYTES_PER_PIXEL)
+                .order(ByteOrder.nativeOrder());
+        mPoolPixels = mPool.asShortBuffer();
+        mTimes = new int[capacity];
+        mRow = new short[width];
+        mColumns = new int[width];
+        mChromaColumns = new int[width];
+        mInterval = mMinInterval;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return Off-heap bytes used by the pool.
+     */
+    public long getFootprint() {
+        return mPool.capacity();
+    }
+
+    /**
+     * @return Frames kept.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return Media time in milliseconds of the i-th frame kept.
+     */
+    public int getTime(int i) {
+        return mTimes[i];
+    }
+
+    /**
+     * @return Current shortest time between kept frames in milliseconds.
+     */
+    public int getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * @return Preview frames offered since the last reset, kept or not.
+     */
+    public long getReceived() {
+        return mReceived;
+    }
+
+    /**
+     * @return Whether the kept frames cover a capture of the given duration: the first within
+     * maxGapMs of its start, the last within maxGapMs of its end and none further apart. Devices
+     * which stop the preview callbacks once the recorder holds the camera keep no frames, or only
+     * those of the first moments.
+     */
+    public boolean covers(int durationMs, int maxGapMs) {
+        if (mCount == 0) {
+            return false;
+        }
+        int last = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mTimes[i] - last > maxGapMs) {
+                return false;
+            }
+            last = mTimes[i];
+        }
+        return durationMs - last <= maxGapMs;
+    }
+
+    /**
+     * Forgets all frames, for the next capture. The pool is kept.
+     */
+    public void reset() {
+        mCount = 0;
+        mInterval = mMinInterval;
+        mReceived = 0;
+    }
+
+    /**
+     * Downscales one NV21 preview frame into the pool.
+     *
+     * @param nv21   Preview buffer, only read during the call.
+     * @param timeMs Media time of the frame, frames before 0 are ignored.
+     * @return Whether the frame was kept.
+     */
+    public boolean onPreviewFrame(byte[] nv21, int sourceWidth, int sourceHeight, int timeMs) {
+        mReceived++;
+        if (timeMs < 0 || nv21.length < sourceWidth * sourceHeight * 3 / 2) {
+            return false;
+        }
+        if (mCount > 0 && timeMs - mTimes[mCount - 1] < mInterval) {
+            return false;
+        }
+        if (mCount == mTimes.length) {
+            compact();
+            if (timeMs - mTimes[mCount - 1] < mInterval) {
+                return false;
+            }
+        }
+        if (sourceWidth != mSourceWidth || sourceHeight != mSourceHeight) {
+            scaleFor(sourceWidth, sourceHeight);
+        }
+
+        int chroma = sourceWidth * sourceHeight;
+        int base = mCount * mFrameSize;
+        for (int y = 0; y < mHeight; y++) {
+            int sourceY = (int) ((long) y * sourceHeight / mHeight);
+            int luma = sourceY * sourceWidth;
+            int vu = chroma + (sourceY >> 1) * sourceWidth;
+            for (int x = 0; x < mWidth; x++) {
+                int c = (nv21[luma + mColumns[x]] & 0xff) - 16;
+                int v = (nv21[vu + mChromaColumns[x]] & 0xff) - 128;
+                int u = (nv21[vu + mChromaColumns[x] + 1] & 0xff) - 128;
+                mRow[x] = rgb565(c, u, v);
+            }
+            mPoolPixels.position(base + y * mWidth);
+            mPoolPixels.put(mRow);
+        }
+        mTimes[mCount++] = timeMs;
+        return true;
+    }
+
+    /**
+     * Fills every slot of the strip with the kept frame nearest to its time.
+     *
+     * @return false if no frame was kept, the strip is left untouched then.
+     */
+    public boolean fill(FrameStrip strip) {
+        if (strip.getWidth() != mWidth || strip.getHeight() != mHeight) {
+            throw new IllegalArgumentException("Strip frames are " + strip.getWidth() + "x"
+                    + strip.getHeight() + ", recorded " + mWidth + "x" + mHeight);
+        }
+        if (mCount == 0) {
+            return false;
+        }
+        int stride = strip.getBytesPerFrame();
+        ByteBuffer source = mPool.duplicate();
+        for (int slot = 0; slot < strip.getFrameCount(); slot++) {
+            int frame = nearest(strip.timeForSlot(slot));
+            source.limit((frame + 1) * stride).position(frame * stride);
+            strip.beginWrite(slot).put(source);
+            strip.commit(slot);
+        }
+        return true;
+    }
+
+    /**
+     * @return Index of the kept frame nearest to the given media time.
+     */
+    int nearest(int timeMs) {
+        int i = Arrays.binarySearch(mTimes, 0, mCount, timeMs);
+        if (i >= 0) {
+            return i;
+        }
+        int hi = -i - 1;
+        if (hi == 0) {
+            return 0;
+        }
+        if (hi == mCount) {
+            return mCount - 1;
+        }
+        return timeMs - mTimes[hi - 1] <= mTimes[hi] - timeMs ? hi - 1 : hi;
+    }
+
+    /**
+     * Keeps every other frame and doubles the interval.
+     */
+    private void compact() {
+        int stride = mFrameSize * FrameStrip.BYTES_PER_PIXEL;
+        ByteBuffer from = mPool.duplicate();
+        ByteBuffer to = mPool.duplicate();
+        int kept = 0;
+        for (int i = 0; i < mCount; i += 2) {
+            if (i != kept) {
+                from.limit((i + 1) * stride).position(i * stride);
+                to.limit((kept + 1) * stride).position(kept * stride);
+                to.put(from);
+                mTimes[kept] = mTimes[i];
+            }
+            kept++;
+        }
+        mCount = kept;
+        mInterval *= 2;
+    }
+
+    private void scaleFor(int sourceWidth, int sourceHeight) {
+        if (sourceWidth < 2 || sourceHeight < 2) {
+            throw new IllegalArgumentException("Invalid preview " + sourceWidth + "x" + sourceHeight);
+        }
+        for (int x = 0; x < mWidth; x++) {
+            int sourceX = (int) ((long) x * sourceWidth / mWidth);
+            mColumns[x] = sourceX;
+            // V and U of each 2x2 block interleave in that order
+            mChromaColumns[x] = sourceX & ~1;
+        }
+        mSourceWidth = sourceWidth;
+        mSourceHeight = sourceHeight;
+    }
+
+    /**
+     * BT.601 video range YUV to RGB_565.
+     */
+    static short rgb565(int c, int u, int v) {
+        int r = clamp((298 * c + 409 * v + 128) >> 8);
+        int g = clamp((298 * c - 100 * u - 208 * v + 128) >> 8);
+        int b = clamp((298 * c + 516 * u + 128) >> 8);
+        return (short) ((r >> 3) << 11 | (g >> 2) << 5 | b >> 3);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+}
@@ -0,0 +1,28 @@
+package com.droid.manasshrestha.video360.strip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of downscaled video frames for the {@link FrameStrip}.
+ * <p/>
+ * Kept free of Android types so the strip can be filled with synthetic frames on a plain JVM.
+ */
+public interface FrameDecoder {
+
+    /**
+     * Decodes the frame shown at the given time, scaled to width x height RGB_565, into the
+     * buffer starting at its position. The buffer has exactly
+     * {@code width * height * FrameStrip.BYTES_PER_PIXEL} bytes remaining.
+     *
+     * @param timeMs Presentation time in milliseconds.
+     * @return false if there is no frame at that time.
+     * @throws IOException if the source can't be decoded.
+     */
+    boolean decode(int timeMs, int width, int height, ByteBuffer out) throws IOException;
+
+    /**
+     * Frees the decoder, called once on the decoding thread when the strip is done.
+     */
+    void release();
+}
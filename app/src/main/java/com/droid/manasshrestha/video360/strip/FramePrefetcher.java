@@ -0,0 +1,232 @@
+package com.droid.manasshrestha.video360.strip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes strip frames ahead of the scrub position while the {@link FrameStrip} is still being
+ * built.
+ * <p/>
+ * Scrubbing is local, the user keeps tilting the same way, so the next {@code window} slots in
+ * the direction of the angular velocity are queued on a single background thread. The queue is
+ * bounded by the window and drops its oldest entries, which the scrub has already passed. When the
+ * direction flips every queued request is cancelled.
+ * <p/>
+ * {@link #onScrub(float, float)} and {@link #lookup(float)} are meant for the scrub thread.
+ */
+public class FramePrefetcher {
+
+    public static final int DEFAULT_WINDOW = 6;
+
+    /**
+     * Angular rates below this (rad/s) don't establish a direction.
+     */
+    private static final float MIN_VELOCITY = 0.05f;
+    private static final long IDLE_TIMEOUT_MS = 1000;
+
+    private final FrameStrip mStrip;
+    private final FrameDecoder mDecoder;
+    private final int mWindow;
+    private final ThreadPoolExecutor mExecutor;
+    private final ByteBuffer mWriter;
+
+    /**
+     * Bumped on every direction change, requests from older generations are stale.
+     */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private int mDirection;
+    private int mFrontier = -1;
+
+    private long mHits;
+    private long mMisses;
+    private final AtomicLong mDecoded = new AtomicLong();
+    private final AtomicLong mWasted = new AtomicLong();
+    private final AtomicLong mCancelled = new AtomicLong();
+
+    /**
+     * @param decoder A decoder used only by the prefetch thread.
+     * @param window  Number of slots to keep decoded ahead of the scrub position.
+     */
+    public FramePrefetcher(FrameStrip strip, FrameDecoder decoder, int window) {
+        mStrip = strip;
+        mDecoder = decoder;
+        mWindow = window;
+        mWriter = strip.newWriter();
+        mExecutor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(window), new ThreadPoolExecutor.DiscardOldestPolicy());
+        // no thread is kept around while the device is held still
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Looks up the frame for an angle like {@link FrameStrip#lookup(float)}, counting a hit when
+     * the exact slot is decoded and a miss otherwise.
+     */
+    public int lookup(float angle) {
+        int slot = mStrip.lookup(angle);
+        if (slot >= 0 && slot == mStrip.slotForAngle(angle)) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return slot;
+    }
+
+    /**
+     * Queues the slots ahead of the given angle.
+     *
+     * @param angle    Current scrub angle in radians.
+     * @param velocity Angular velocity in rad/s, its sign gives the direction.
+     */
+    public void onScrub(float angle, float velocity) {
+        if (mStrip.isComplete() || mExecutor.isShutdown()) {
+            return;
+        }
+        int direction = velocity > MIN_VELOCITY ? 1 : velocity < -MIN_VELOCITY ? -1 : 0;
+        if (direction == 0) {
+            return;
+        }
+        int slot = mStrip.slotForAngle(angle);
+        if (direction != mDirection) {
+            cancelPending();
+            mDirection = direction;
+            mFrontier = slot;
+        } else if ((mFrontier - slot) * direction < 0) {
+            // the scrub overtook the prefetched range
+            mFrontier = slot;
+        }
+
+        int end = slot + direction * mWindow;
+        int generation = mGeneration.get();
+        for (int next = mFrontier + direction; (end - next) * direction >= 0; next += direction) {
+            if (next < 0 || next >= mStrip.getFrameCount()) {
+                break;
+            }
+            mFrontier = next;
+            if (!mStrip.isReady(next)) {
+                mExecutor.execute(new PrefetchTask(next, generation));
+            }
+        }
+    }
+
+    /**
+     * Drops every queued request, e.g. when the scrub direction flips.
+     */
+    public void cancelPending() {
+        mGeneration.incrementAndGet();
+        mCancelled.addAndGet(mExecutor.getQueue().size());
+        mExecutor.getQueue().clear();
+        mDirection = 0;
+    }
+
+    /**
+     * Stops the prefetch thread and releases the decoder once the running decode is done.
+     */
+    public void shutdown() {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        cancelPending();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDecoder.release();
+            }
+        });
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Waits until every queued request has run, for tests.
+     */
+    boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (mExecutor.getCompletedTaskCount() < mExecutor.getTaskCount()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public int getWindow() {
+        return mWindow;
+    }
+
+    public long getHits() {
+        return mHits;
+    }
+
+    public long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return Frames decoded by the prefetcher.
+     */
+    public long getDecoded() {
+        return mDecoded.get();
+    }
+
+    /**
+     * @return Prefetched frames that were already decoded by the builder, or that finished after
+     * their request went stale.
+     */
+    public long getWasted() {
+        return mWasted.get();
+    }
+
+    /**
+     * @return Requests dropped before being decoded.
+     */
+    public long getCancelled() {
+        return mCancelled.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + mHits + " misses=" + mMisses + " decoded=" + mDecoded.get()
+                + " wasted=" + mWasted.get() + " cancelled=" + mCancelled.get();
+    }
+
+    private class PrefetchTask implements Runnable {
+
+        private final int mSlot;
+        private final int mTaskGeneration;
+
+        PrefetchTask(int slot, int generation) {
+            mSlot = slot;
+            mTaskGeneration = generation;
+        }
+
+        @Override
+        public void run() {
+            if (mTaskGeneration != mGeneration.get()) {
+                mCancelled.incrementAndGet();
+                return;
+            }
+            if (mStrip.isReady(mSlot)) {
+                return;
+            }
+            try {
+                if (!mDecoder.decode(mStrip.timeForSlot(mSlot), mStrip.getWidth(), mStrip.getHeight(),
+                        mStrip.beginWrite(mWriter, mSlot))) {
+                    return;
+                }
+            } catch (IOException e) {
+                return;
+            }
+            mDecoded.incrementAndGet();
+            if (mStrip.isReady(mSlot) || mTaskGeneration != mGeneration.get()) {
+                mWasted.incrementAndGet();
+            }
+            mStrip.commit(mSlot);
+        }
+    }
+}
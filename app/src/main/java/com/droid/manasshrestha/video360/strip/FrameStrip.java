@@ -0,0 +1,297 @@
+package com.droid.manasshrestha.video360.strip;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Off-heap strip of pre-decoded, downscaled frames indexed by scrub angle.
+ * <p/>
+ * The sweep {@code [0, sweep]} is divided into {@link #getFrameCount()} evenly spaced slots, slot
+ * {@code i} holding the frame at {@link #timeForSlot(int)}. Frames are stored back to back as
+ * RGB_565 with a fixed stride in a single direct buffer, so finding the frame for an angle is an
+ * index computation and showing it is one copy into a bitmap, no decoder involved.
+ * <p/>
+ * Slot times are spaced evenly over the clip unless the strip is given its own, e.g. the times at
+ * which the camera pointed at evenly spaced angles of its pan. Every slot then covers the same
+ * arc however unevenly the capture was swept, and {@link #angleForTime(int)} finds the angle
+ * showing a media time.
+ * <p/>
+ * Writers fill the strip through {@link #beginWrite(int)} / {@link #commit(int)} while one thread
+ * reads it through {@link #lookup(float)} / {@link #frame(int)}. Additional writer threads use
+ * their own view from {@link #newWriter()}.
+ */
+public class FrameStrip {
+
+    public static final int BYTES_PER_PIXEL = 2;
+
+    /**
+     * Slots are filled coarse to fine in steps of this many slots, so a ready neighbour is never
+     * further away than this.
+     */
+    static final int COARSE_STRIDE = 8;
+
+    private final int mFrameCount;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mStride;
+    private final float mSweep;
+    private final int mDuration;
+    /**
+     * Non decreasing time of each slot, null for slots spaced evenly in time.
+     */
+    private final int[] mSlotTimes;
+
+    private final ByteBuffer mPixels;
+    private final ByteBuffer mReadView;
+    private final ByteBuffer mWriteView;
+    private final boolean[] mReady;
+    /**
+     * Written after every {@link #mReady} update, reading it first makes those updates visible.
+     */
+    private volatile int mReadyCount;
+
+    /**
+     * @param frameCount Number of angle slots.
+     * @param width      Frame width in pixels.
+     * @param height     Frame height in pixels.
+     * @param sweep      Angle in radians covering the whole clip.
+     * @param durationMs Length of the clip in milliseconds.
+     */
+    public FrameStrip(int frameCount, int width, int height, float sweep, int durationMs) {
+        this(frameCount, width, height, sweep, durationMs, null);
+    }
+
+    /**
+     * @param slotTimes Media time in milliseconds of each slot, non decreasing and within the clip,
+     *                  or null to space them evenly. Not copied.
+     */
+    public FrameStrip(int frameCount, int width, int height, float sweep, int durationMs,
+                      int[] slotTimes) {
+        this(frameCount, width, height, sweep, durationMs, slotTimes,
+                ByteBuffer.allocateDirect(frameCount * width * height * BYTES_PER_PIXEL), false);
+    }
+
+    /**
+     * Wraps already decoded frames, e.g. a mapped {@link FrameStripFile}.
+     *
+     * @param pixels Frames back to back, at least {@code frameCount} strides long.
+     * @param ready  Whether every slot already holds its frame.
+     */
+    FrameStrip(int frameCount, int width, int height, float sweep, int durationMs, int[] slotTimes,
+               ByteBuffer pixels, boolean ready) {
+        if (frameCount < 1 || width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid strip " + frameCount + "x" + width + "x" + height);
+        }
+        if (slotTimes != null) {
+            if (slotTimes.length != frameCount) {
+                throw new IllegalArgumentException(slotTimes.length + " slot times for " + frameCount + " slots");
+            }
+            for (int slot = 0; slot < frameCount; slot++) {
+                if (slotTimes[slot] < 0 || slotTimes[slot] > durationMs
+                        || slot > 0 && slotTimes[slot] < slotTimes[slot - 1]) {
+                    throw new IllegalArgumentException("Invalid time " + slotTimes[slot] + " at slot " + slot);
+                }
+            }
+        }
+        mSlotTimes = slotTimes;
+        mFrameCount = frameCount;
+        mWidth = width;
+        mHeight = height;
+        mStride = width * height * BYTES_PER_PIXEL;
+        mSweep = sweep;
+        mDuration = durationMs;
+        if (pixels.capacity() < frameCount * mStride) {
+            throw new IllegalArgumentException("Pixel buffer too small: " + pixels.capacity());
+        }
+
+        mPixels = pixels.order(ByteOrder.nativeOrder());
+        mReadView = mPixels.duplicate();
+        mWriteView = mPixels.duplicate();
+        mReady = new boolean[frameCount];
+        if (ready) {
+            Arrays.fill(mReady, true);
+            mReadyCount = frameCount;
+        }
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public float getSweep() {
+        return mSweep;
+    }
+
+    public int getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * @return Bytes used by a single frame.
+     */
+    public int getBytesPerFrame() {
+        return mStride;
+    }
+
+    /**
+     * @return Off-heap bytes used by the whole strip.
+     */
+    public long getFootprint() {
+        return (long) mStride * mFrameCount;
+    }
+
+    /**
+     * @return Slot the given angle falls into, clamped to the strip.
+     */
+    public int slotForAngle(float angle) {
+        if (angle <= 0 || mFrameCount == 1) {
+            return 0;
+        }
+        if (angle >= mSweep) {
+            return mFrameCount - 1;
+        }
+        return (int) (angle / mSweep * (mFrameCount - 1) + 0.5f);
+    }
+
+    /**
+     * @return Presentation time in milliseconds of the frame stored in the given slot.
+     */
+    public int timeForSlot(int slot) {
+        if (mSlotTimes != null) {
+            return mSlotTimes[slot];
+        }
+        return mFrameCount == 1 ? 0 : (int) ((long) slot * mDuration / (mFrameCount - 1));
+    }
+
+    /**
+     * @return Whether the slots have their own times rather than being spaced evenly in time.
+     */
+    public boolean hasSlotTimes() {
+        return mSlotTimes != null;
+    }
+
+    /**
+     * Inverse of {@link #timeForSlot(int)}, interpolated between slots.
+     *
+     * @return Angle in radians at which the strip shows the given media time, clamped to the sweep.
+     */
+    public float angleForTime(int timeMs) {
+        if (mFrameCount == 1 || timeMs <= timeForSlot(0)) {
+            return 0;
+        }
+        if (timeMs >= timeForSlot(mFrameCount - 1)) {
+            return mSweep;
+        }
+        float slotAngle = mSweep / (mFrameCount - 1);
+        if (mSlotTimes == null) {
+            return (float) timeMs / mDuration * mSweep;
+        }
+        int i = Arrays.binarySearch(mSlotTimes, timeMs);
+        if (i >= 0) {
+            // several slots may share a time, any of them shows it
+            return i * slotAngle;
+        }
+        int hi = -i - 1;
+        float f = (float) (timeMs - mSlotTimes[hi - 1]) / (mSlotTimes[hi] - mSlotTimes[hi - 1]);
+        return (hi - 1 + f) * slotAngle;
+    }
+
+    /**
+     * Finds the ready slot closest to the given angle. While the strip is still being filled the
+     * search is bounded by {@link #COARSE_STRIDE}.
+     *
+     * @return Slot index, or -1 if no frame near that angle is decoded yet.
+     */
+    public int lookup(float angle) {
+        if (mReadyCount == 0) {
+            return -1;
+        }
+        int slot = slotForAngle(angle);
+        if (mReady[slot]) {
+            return slot;
+        }
+        for (int d = 1; d <= COARSE_STRIDE; d++) {
+            if (slot - d >= 0 && mReady[slot - d]) {
+                return slot - d;
+            }
+            if (slot + d < mFrameCount && mReady[slot + d]) {
+                return slot + d;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isReady(int slot) {
+        return mReadyCount > 0 && mReady[slot];
+    }
+
+    public int getReadyCount() {
+        return mReadyCount;
+    }
+
+    public boolean isComplete() {
+        return mReadyCount == mFrameCount;
+    }
+
+    /**
+     * @return A fresh view over all frames, for bulk access off the reading and writing threads.
+     */
+    ByteBuffer duplicatePixels() {
+        ByteBuffer pixels = mPixels.duplicate();
+        pixels.position(0).limit(mFrameCount * mStride);
+        return pixels;
+    }
+
+    /**
+     * Positions the reader's view over the given frame. The returned buffer is reused between
+     * calls and must only be used from the reading thread.
+     */
+    public ByteBuffer frame(int slot) {
+        int start = slot * mStride;
+        mReadView.limit(start + mStride).position(start);
+        return mReadView;
+    }
+
+    /**
+     * Positions the writer's view over the given frame so a decoder can fill it. The returned
+     * buffer is reused between calls and must only be used from the writing thread.
+     */
+    public ByteBuffer beginWrite(int slot) {
+        return beginWrite(mWriteView, slot);
+    }
+
+    /**
+     * @return A view for a writer thread other than the one using {@link #beginWrite(int)}.
+     */
+    public ByteBuffer newWriter() {
+        return mPixels.duplicate();
+    }
+
+    /**
+     * Positions a view from {@link #newWriter()} over the given frame.
+     */
+    public ByteBuffer beginWrite(ByteBuffer writer, int slot) {
+        int start = slot * mStride;
+        writer.limit(start + mStride).position(start);
+        return writer;
+    }
+
+    /**
+     * Publishes a written frame.
+     */
+    public synchronized void commit(int slot) {
+        if (!mReady[slot]) {
+            mReady[slot] = true;
+            mReadyCount = mReadyCount + 1;
+        }
+    }
+}
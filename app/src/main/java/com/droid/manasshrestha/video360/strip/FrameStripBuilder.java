@@ -0,0 +1,130 @@
+package com.droid.manasshrestha.video360.strip;
+
+import java.io.IOException;
+
+/**
+ * Fills a {@link FrameStrip} from a {@link FrameDecoder}, meant to be run once on a background
+ * thread.
+ * <p/>
+ * Slots are decoded coarse to fine, every {@link FrameStrip#COARSE_STRIDE}-th slot first and then
+ * halving the step, so the whole sweep becomes scrubbable at low angular resolution early and
+ * sharpens while the rest decodes.
+ * <p/>
+ * Progress counts only the frames this builder decoded. Slots another thread, such as a
+ * {@link FramePrefetcher}, committed first are skipped, and a frame the decoder can't produce is
+ * left empty, so the count may stay below the frame count even once the build is complete.
+ */
+public class FrameStripBuilder implements Runnable {
+
+    /**
+     * Progress callbacks, invoked on the decoding thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called after each frame the builder decoded, and once the coarse pass is through.
+         *
+         * @param decoded Frames this builder committed so far.
+         * @param coarse  Whether the coarse pass is through, whether or not all of its frames
+         *                decoded, i.e. the sweep is as scrubbable as the clip allows.
+         */
+        void onProgress(FrameStrip strip, int decoded, boolean coarse);
+
+        /**
+         * Every slot was tried.
+         *
+         * @param decoded Frames this builder committed.
+         */
+        void onComplete(FrameStrip strip, int decoded, long elapsedNanos);
+
+        void onError(FrameStrip strip, IOException e);
+    }
+
+    private final FrameStrip mStrip;
+    private final FrameDecoder mDecoder;
+    private final Listener mListener;
+    private volatile boolean mCancelled;
+    private int mDecoded;
+    private boolean mCoarseDone;
+
+    public FrameStripBuilder(FrameStrip strip, FrameDecoder decoder, Listener listener) {
+        mStrip = strip;
+        mDecoder = decoder;
+        mListener = listener;
+    }
+
+    /**
+     * @return Number of frames decoded by the first, coarsest pass, after which every angle has a
+     * ready frame within {@link FrameStrip#COARSE_STRIDE} slots.
+     */
+    public static int coarseFrameCount(int frameCount) {
+        int last = frameCount - 1;
+        return last / FrameStrip.COARSE_STRIDE + 1 + (last % FrameStrip.COARSE_STRIDE != 0 ? 1 : 0);
+    }
+
+    /**
+     * Stops decoding after the frame in progress. Frames already committed stay usable.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        int count = mStrip.getFrameCount();
+        try {
+            for (int step = FrameStrip.COARSE_STRIDE; step >= 1; step /= 2) {
+                for (int slot = 0; slot < count; slot += step) {
+                    if (!decode(slot)) {
+                        return;
+                    }
+                }
+                // the last slot may not lie on the coarse grid, include it in the first pass
+                if (!decode(count - 1)) {
+                    return;
+                }
+                if (!mCoarseDone) {
+                    mCoarseDone = true;
+                    if (mListener != null) {
+                        mListener.onProgress(mStrip, mDecoded, true);
+                    }
+                }
+            }
+            if (mListener != null) {
+                mListener.onComplete(mStrip, mDecoded, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            if (mListener != null) {
+                mListener.onError(mStrip, e);
+            }
+        } finally {
+            mDecoder.release();
+        }
+    }
+
+    /**
+     * @return false if decoding was cancelled.
+     */
+    private boolean decode(int slot) throws IOException {
+        if (mCancelled) {
+            return false;
+        }
+        if (mStrip.isReady(slot)) {
+            return true;
+        }
+        if (mDecoder.decode(mStrip.timeForSlot(slot), mStrip.getWidth(), mStrip.getHeight(),
+                mStrip.beginWrite(slot))) {
+            mStrip.commit(slot);
+            mDecoded++;
+            if (mListener != null) {
+                mListener.onProgress(mStrip, mDecoded, mCoarseDone);
+            }
+        }
+        return true;
+    }
+}
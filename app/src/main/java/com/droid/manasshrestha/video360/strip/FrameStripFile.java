@@ -0,0 +1,261 @@
+package com.droid.manasshrestha.video360.strip;
+
+import com.droid.manasshrestha.video360.media.MappedFiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent {@link FrameStrip} container, stored as a {@code .p3d} file next to the capture.
+ * <p/>
+ * Layout, big endian:
+ * <pre>
+ *  0  int    magic "P3DS"
+ *  4  int    format version
+ *  8  int    frame count
+ * 12  int    frame width
+ * 16  int    frame height
+ * 20  int    frame stride in bytes (RGB_565)
+ * 24  int    clip duration in ms
+ * 28  float  sweep in radians
+ * 32  long   source .mp4 length
+ * 40  long   source .mp4 last modified
+ * 48  int    payload offset
+ * 52  int    CRC32 of bytes 0-51 and the index
+ * 56  ...    index, per frame: float angle, int time ms, int CRC32 of the frame
+ *  .  ...    frames, fixed stride, starting page aligned at the payload offset
+ * </pre>
+ * Angles are always spaced evenly over the sweep. Times are either spaced evenly over the clip or
+ * the strip's own slot times, see {@link FrameStrip#hasSlotTimes()}.
+ * Files are written to a temporary name and renamed, so a strip file is either complete or
+ * absent. {@link #open(File, File)} only checks the header and index, which keeps reopening a
+ * capture cheap; the frames themselves are checked by {@link #verifyFrames(File, FrameStrip)}.
+ */
+public class FrameStripFile {
+
+    public static final String EXTENSION = ".p3d";
+
+    static final int MAGIC = 0x50334453;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 56;
+    static final int INDEX_ENTRY_SIZE = 12;
+    private static final int CRC_OFFSET = 52;
+    private static final int PAGE_SIZE = 4096;
+    private static final float ANGLE_TOLERANCE = 1e-4f;
+
+    private FrameStripFile() {
+    }
+
+    /**
+     * @return The strip file belonging to the given capture.
+     */
+    public static File fileFor(File video) {
+        String name = video.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(video.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+
+    /**
+     * Writes a complete strip next to its source.
+     *
+     * @throws IOException if the strip is incomplete or the file can't be written.
+     */
+    public static void write(FrameStrip strip, File target, File source) throws IOException {
+        if (!strip.isComplete()) {
+            throw new IOException("Strip is incomplete: " + strip.getReadyCount() + "/" + strip.getFrameCount());
+        }
+        int count = strip.getFrameCount();
+        int stride = strip.getBytesPerFrame();
+        int payloadOffset = payloadOffset(count);
+
+        ByteBuffer pixels = strip.duplicatePixels();
+        ByteBuffer header = ByteBuffer.allocate(payloadOffset);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(count)
+                .putInt(strip.getWidth())
+                .putInt(strip.getHeight())
+                .putInt(stride)
+                .putInt(strip.getDuration())
+                .putFloat(strip.getSweep())
+                .putLong(source.length())
+                .putLong(source.lastModified())
+                .putInt(payloadOffset)
+                .putInt(0);
+        byte[] scratch = new byte[PAGE_SIZE];
+        CRC32 crc = new CRC32();
+        for (int slot = 0; slot < count; slot++) {
+            pixels.limit((slot + 1) * stride).position(slot * stride);
+            header.putFloat(angleForSlot(strip, slot))
+                    .putInt(strip.timeForSlot(slot))
+                    .putInt(crc(crc, pixels, scratch));
+        }
+        header.putInt(CRC_OFFSET, headerCrc(crc, header, count));
+        header.clear();
+        pixels.clear();
+
+        File temp = new File(target.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + target);
+        }
+    }
+
+    /**
+     * Maps a strip file read only. No frame is copied to the heap.
+     *
+     * @param source The capture the strip was built from, to detect stale strips.
+     * @throws IOException if the file is missing, corrupt, or doesn't belong to the source.
+     */
+    public static FrameStrip open(File file, File source) throws IOException {
+        MappedByteBuffer map = MappedFiles.mapReadOnly(file);
+
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a strip file: " + file);
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported strip version " + map.getInt(4));
+        }
+        int count = map.getInt(8);
+        int width = map.getInt(12);
+        int height = map.getInt(16);
+        int stride = map.getInt(20);
+        int duration = map.getInt(24);
+        float sweep = map.getFloat(28);
+        int payloadOffset = map.getInt(48);
+
+        if (count < 1 || width < 1 || height < 1 || stride != width * height * FrameStrip.BYTES_PER_PIXEL
+                || payloadOffset != payloadOffset(count)) {
+            throw new IOException("Corrupt strip header: " + file);
+        }
+        if (map.capacity() != payloadOffset + (long) count * stride) {
+            throw new IOException("Strip file has wrong length: " + map.capacity());
+        }
+        if (headerCrc(new CRC32(), map, count) != map.getInt(CRC_OFFSET)) {
+            throw new IOException("Strip header checksum mismatch: " + file);
+        }
+        if (map.getLong(32) != source.length() || map.getLong(40) != source.lastModified()) {
+            throw new IOException("Strip is stale for " + source);
+        }
+
+        map.position(payloadOffset);
+        FrameStrip strip = new FrameStrip(count, width, height, sweep, duration, null, map.slice(), true);
+        int[] slotTimes = null;
+        for (int slot = 0; slot < count; slot++) {
+            int entry = HEADER_SIZE + slot * INDEX_ENTRY_SIZE;
+            if (Math.abs(map.getFloat(entry) - angleForSlot(strip, slot)) > ANGLE_TOLERANCE) {
+                throw new IOException("Strip index doesn't match its geometry at slot " + slot);
+            }
+            int time = map.getInt(entry + 4);
+            if (slotTimes == null && time != strip.timeForSlot(slot)) {
+                // not spaced evenly in time, the strip has its own slot times
+                slotTimes = new int[count];
+                for (int i = 0; i < slot; i++) {
+                    slotTimes[i] = strip.timeForSlot(i);
+                }
+            }
+            if (slotTimes != null) {
+                slotTimes[slot] = time;
+            }
+        }
+        if (slotTimes == null) {
+            return strip;
+        }
+        try {
+            return new FrameStrip(count, width, height, sweep, duration, slotTimes, map.slice(), true);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Strip index holds invalid times: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks every frame against its checksum. Reads the whole payload, so it belongs on a
+     * background thread.
+     *
+     * @param file  The file the strip was opened from.
+     * @param strip The strip returned by {@link #open(File, File)}.
+     * @return Slot of the first corrupt frame, or -1 if all frames are intact.
+     */
+    public static int verifyFrames(File file, FrameStrip strip) throws IOException {
+        int count = strip.getFrameCount();
+        int stride = strip.getBytesPerFrame();
+        ByteBuffer index = ByteBuffer.allocate(count * INDEX_ENTRY_SIZE);
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            while (index.hasRemaining()) {
+                if (channel.read(index, HEADER_SIZE + index.position()) < 0) {
+                    throw new IOException("Truncated strip index: " + file);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        ByteBuffer pixels = strip.duplicatePixels();
+        byte[] scratch = new byte[PAGE_SIZE];
+        CRC32 crc = new CRC32();
+        for (int slot = 0; slot < count; slot++) {
+            pixels.limit((slot + 1) * stride).position(slot * stride);
+            if (crc(crc, pixels, scratch) != index.getInt(slot * INDEX_ENTRY_SIZE + 8)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static float angleForSlot(FrameStrip strip, int slot) {
+        int count = strip.getFrameCount();
+        return count == 1 ? 0 : strip.getSweep() * slot / (count - 1);
+    }
+
+    private static int payloadOffset(int count) {
+        int end = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        return (end + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    private static int headerCrc(CRC32 crc, ByteBuffer file, int count) {
+        crc.reset();
+        for (int i = 0; i < CRC_OFFSET; i++) {
+            crc.update(file.get(i));
+        }
+        int end = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        for (int i = HEADER_SIZE; i < end; i++) {
+            crc.update(file.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * CRC32 of the buffer's remaining bytes, copied through a scratch array since
+     * CRC32.update(ByteBuffer) needs API 26.
+     */
+    private static int crc(CRC32 crc, ByteBuffer buffer, byte[] scratch) {
+        crc.reset();
+        while (buffer.hasRemaining()) {
+            int length = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, length);
+            crc.update(scratch, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,82 @@
+package com.droid.manasshrestha.video360.strip;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link FrameDecoder} backed by {@link MediaMetadataRetriever}. Each frame is drawn scaled into a
+ * reused RGB_565 bitmap whose pixels are then copied into the strip.
+ * <p/>
+ * The clip is opened by the first {@link #decode}, on the decoding thread: setting the data source
+ * parses the container and takes long enough to drop frames on the main thread.
+ */
+public class RetrieverFrameDecoder implements FrameDecoder {
+
+    private final String mVideoPath;
+    private MediaMetadataRetriever mRetriever;
+    private IOException mOpenError;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mDestination = new Rect();
+    private Bitmap mScaled;
+    private Canvas mCanvas;
+
+    public RetrieverFrameDecoder(String videoPath) {
+        mVideoPath = videoPath;
+    }
+
+    /**
+     * @throws IOException every time once the clip failed to open.
+     */
+    private MediaMetadataRetriever open() throws IOException {
+        if (mOpenError != null) {
+            throw mOpenError;
+        }
+        if (mRetriever == null) {
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            try {
+                retriever.setDataSource(mVideoPath);
+            } catch (RuntimeException e) {
+                retriever.release();
+                mOpenError = new IOException("Cannot open " + mVideoPath, e);
+                throw mOpenError;
+            }
+            mRetriever = retriever;
+        }
+        return mRetriever;
+    }
+
+    @Override
+    public boolean decode(int timeMs, int width, int height, ByteBuffer out) throws IOException {
+        Bitmap frame = open().getFrameAtTime(timeMs * 1000L, MediaMetadataRetriever.OPTION_CLOSEST);
+        if (frame == null) {
+            return false;
+        }
+        if (mScaled == null || mScaled.getWidth() != width || mScaled.getHeight() != height) {
+            mScaled = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            mCanvas = new Canvas(mScaled);
+            mDestination.set(0, 0, width, height);
+        }
+        mCanvas.drawBitmap(frame, null, mDestination, mPaint);
+        frame.recycle();
+        mScaled.copyPixelsToBuffer(out);
+        return true;
+    }
+
+    @Override
+    public void release() {
+        if (mRetriever != null) {
+            mRetriever.release();
+            mRetriever = null;
+        }
+        if (mScaled != null) {
+            mScaled.recycle();
+            mScaled = null;
+        }
+    }
+}
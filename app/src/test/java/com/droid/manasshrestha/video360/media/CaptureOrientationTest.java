@@ -0,0 +1,198 @@
+package com.droid.manasshrestha.video360.media;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class CaptureOrientationTest {
+
+    private static final long START_NS = 5000000000L;
+    private static final long STEP_NS = 20000000L;
+    private static final float EPSILON = 1e-3f;
+
+    private File mDir;
+    private File mVideo;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("capture", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mVideo = new File(mDir, "test65.mp4");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    /**
+     * Feeds a device held upright, the camera looking at the given bearing.
+     */
+    private static void feed(CaptureOrientationRecorder recorder, long timestampNs, double bearing) {
+        // turn about the world's up axis by -bearing after standing the device up about x
+        double c = Math.cos(-bearing / 2);
+        double s = Math.sin(-bearing / 2);
+        double h = Math.sqrt(0.5);
+        recorder.onRotationVector(timestampNs, (float) (c * h), (float) (s * h), (float) (h * s),
+                (float) (c * h));
+    }
+
+    private CaptureOrientation record(double... bearings) throws IOException {
+        CaptureOrientationRecorder recorder = new CaptureOrientationRecorder(100);
+        recorder.markStart(START_NS);
+        for (int i = 0; i < bearings.length; i++) {
+            feed(recorder, START_NS + i * STEP_NS, bearings[i]);
+        }
+        return CaptureOrientation.open(recorder.write(mVideo));
+    }
+
+    @Test
+    public void sidecarSitsNextToTheCapture() throws Exception {
+        assertEquals(new File(mDir, "test65" + CaptureOrientation.EXTENSION),
+                CaptureOrientation.fileFor(mVideo));
+    }
+
+    @Test
+    public void convertsRotationVectorToViewAngles() throws Exception {
+        CaptureOrientation capture = record(Math.toRadians(30), Math.toRadians(-45));
+        assertEquals(2, capture.size());
+        assertEquals(Math.toRadians(30), capture.getYaw(0), EPSILON);
+        assertEquals(0, capture.getPitch(0), EPSILON);
+        assertEquals(Math.toRadians(-45), capture.getYaw(1), EPSILON);
+        assertEquals(20, capture.getTime(1));
+        assertEquals(START_NS, capture.getStartTimestamp());
+
+        // lying flat the camera looks straight down, w left out as by older sensors
+        CaptureOrientationRecorder recorder = new CaptureOrientationRecorder(10);
+        recorder.markStart(START_NS);
+        recorder.onRotationVector(START_NS, 0, 0, 0, 0);
+        capture = CaptureOrientation.open(recorder.write(mVideo));
+        assertEquals(-Math.PI / 2, capture.getPitch(0), EPSILON);
+    }
+
+    @Test
+    public void unwrapsTheYawOverWholeTurns() throws Exception {
+        double[] bearings = new double[80];
+        for (int i = 0; i < bearings.length; i++) {
+            bearings[i] = Math.toRadians(i * 5);
+        }
+        CaptureOrientation capture = record(bearings);
+        assertEquals(Math.toRadians(395), capture.getYaw(79), EPSILON);
+        assertEquals(Math.toRadians(395), capture.getPan(), EPSILON);
+    }
+
+    @Test
+    public void panProfileKeepsTheFirstPassOverAnArc() throws Exception {
+        // pans right to 90, back to 45, then on to 120 degrees, in 10 degree steps
+        double[] bearings = {0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 80, 70, 60, 50, 60, 70, 80, 90,
+                100, 110, 120};
+        for (int i = 0; i < bearings.length; i++) {
+            bearings[i] = Math.toRadians(bearings[i]);
+        }
+        CaptureOrientation capture = record(bearings);
+
+        assertEquals(Math.toRadians(120), capture.getPan(), EPSILON);
+        assertEquals(0, capture.timeForPan(0));
+        assertEquals(50, capture.timeForPan((float) Math.toRadians(25)));
+        assertEquals(180, capture.timeForPan((float) Math.toRadians(90)));
+        // past the first pass it continues where the pan went on
+        assertEquals(350, capture.timeForPan((float) Math.toRadians(95)));
+        assertEquals(400, capture.timeForPan((float) Math.toRadians(200)));
+
+        assertEquals(Math.toRadians(25), capture.panForTime(50), EPSILON);
+        // while going back the profile holds the furthest angle reached
+        assertEquals(Math.toRadians(90), capture.panForTime(260), EPSILON);
+        assertEquals(Math.toRadians(120), capture.panForTime(1000), EPSILON);
+        assertEquals(0, capture.panForTime(-10), EPSILON);
+    }
+
+    @Test
+    public void resamplesThePanEvenly() throws Exception {
+        // 40 degrees in the first 40ms, the other 40 over the next 400
+        double[] bearings = new double[23];
+        for (int i = 0; i < bearings.length; i++) {
+            bearings[i] = Math.toRadians(i <= 2 ? i * 20 : 40 + (i - 2) * 2);
+        }
+        CaptureOrientation capture = record(bearings);
+        assertArrayEquals(new int[]{0, 20, 40, 240, 440}, capture.timesForEvenPan(5, 10000));
+        assertArrayEquals(new int[]{0, 20, 40, 240, 300}, capture.timesForEvenPan(5, 300));
+    }
+
+    @Test
+    public void panToTheLeftCountsAsWell() throws Exception {
+        CaptureOrientation capture = record(0, Math.toRadians(-10), Math.toRadians(-20));
+        assertEquals(Math.toRadians(20), capture.getPan(), EPSILON);
+        assertEquals(20, capture.timeForPan((float) Math.toRadians(10)));
+    }
+
+    @Test
+    public void keepsTheNewestSampleBeforeTheStart() throws Exception {
+        CaptureOrientationRecorder recorder = new CaptureOrientationRecorder(10);
+        feed(recorder, START_NS - 3 * STEP_NS, 0.1);
+        feed(recorder, START_NS - STEP_NS, 0.2);
+        recorder.markStart(START_NS);
+        feed(recorder, START_NS + STEP_NS, 0.3);
+
+        CaptureOrientation capture = CaptureOrientation.open(recorder.write(mVideo));
+        assertEquals(2, capture.size());
+        assertEquals(-20, capture.getTime(0));
+        assertEquals(0.2, capture.getYaw(0), EPSILON);
+        assertEquals(20, capture.getTime(1));
+    }
+
+    @Test
+    public void dropsSamplesBeyondTheCapacity() throws Exception {
+        CaptureOrientationRecorder recorder = new CaptureOrientationRecorder(3);
+        recorder.markStart(START_NS);
+        for (int i = 0; i < 5; i++) {
+            feed(recorder, START_NS + i * STEP_NS, i * 0.1);
+        }
+        assertEquals(3, recorder.size());
+        assertEquals(2, recorder.getDropped());
+
+        recorder.reset();
+        assertEquals(0, recorder.size());
+        try {
+            recorder.write(mVideo);
+            fail("wrote an empty sidecar");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsDamagedFiles() throws Exception {
+        record(0, 0.1, 0.2);
+        File file = CaptureOrientation.fileFor(mVideo);
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.setLength(CaptureOrientation.HEADER_SIZE + CaptureOrientation.SAMPLE_SIZE);
+        out.close();
+        try {
+            CaptureOrientation.open(file);
+            fail("opened a truncated sidecar");
+        } catch (IOException expected) {
+        }
+
+        out = new RandomAccessFile(file, "rw");
+        out.writeInt(0);
+        out.close();
+        try {
+            CaptureOrientation.open(file);
+            fail("opened a file without magic");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.droid.manasshrestha.video360.media;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the keyframe index for a 30 s VideoCapture clip, and of a snap lookup.
+ * <p/>
+ * Run with {@code main()} from the IDE, the JVM numbers are an upper bound for the relative
+ * cost on device rather than an absolute figure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KeyframeIndexBenchmark {
+
+    private File mFile;
+    private ByteBuffer mBuffer;
+    private KeyframeIndex mIndex;
+    private int mTarget;
+
+    @Setup
+    public void setUp() throws IOException {
+        Mp4Fixtures clip = Mp4Fixtures.capture();
+        mFile = clip.writeTo(File.createTempFile("capture", ".mp4"));
+        mBuffer = clip.toBuffer();
+        mIndex = KeyframeIndex.fromFile(mFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public KeyframeIndex parseMappedFile() throws IOException {
+        return KeyframeIndex.fromFile(mFile);
+    }
+
+    @Benchmark
+    public KeyframeIndex parseBuffer() throws IOException {
+        return Mp4BoxParser.parse(mBuffer);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int snap() {
+        mTarget = (mTarget + 37) % 30000;
+        return mIndex.snap(mTarget, 150);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KeyframeIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
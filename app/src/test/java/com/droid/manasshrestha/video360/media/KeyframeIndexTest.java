@@ -0,0 +1,145 @@
+package com.droid.manasshrestha.video360.media;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class KeyframeIndexTest {
+
+    @Test
+    public void indexesOneKeyframePerSecond() throws Exception {
+        Mp4Fixtures clip = Mp4Fixtures.capture();
+        KeyframeIndex index = Mp4BoxParser.parse(clip.toBuffer());
+
+        assertEquals(900, index.getSampleCount());
+        assertEquals(30000, index.getDuration());
+        assertEquals(30, index.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(i * 1000, index.getTime(i));
+            assertEquals(i * 30 + 1, index.getSample(i));
+            assertEquals(clip.offsetOf(i * 30 + 1), index.getOffset(i));
+        }
+    }
+
+    @Test
+    public void offsetsFollowMultipleChunkRuns() throws Exception {
+        Mp4Fixtures clip = new Mp4Fixtures(10, 30, 7).withTwoChunkRuns();
+        KeyframeIndex index = Mp4BoxParser.parse(clip.toBuffer());
+
+        assertEquals(43, index.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(clip.offsetOf(index.getSample(i)), index.getOffset(i));
+        }
+    }
+
+    @Test
+    public void compositionOffsetsShiftPresentationTime() throws Exception {
+        KeyframeIndex index = Mp4BoxParser.parse(Mp4Fixtures.capture().withCtts().toBuffer());
+
+        assertEquals(33, index.getTime(0));
+        assertEquals(1033, index.getTime(1));
+    }
+
+    @Test
+    public void lookups() throws Exception {
+        KeyframeIndex index = Mp4BoxParser.parse(Mp4Fixtures.capture().toBuffer());
+
+        assertEquals(2, index.floorIndex(2999));
+        assertEquals(3, index.floorIndex(3000));
+        assertEquals(0, index.floorIndex(-5));
+        assertEquals(29, index.floorIndex(40000));
+        assertEquals(3, index.nearestIndex(2600));
+        assertEquals(2, index.nearestIndex(2400));
+        assertEquals(4000, index.floor(4999));
+
+        assertEquals(5000, index.snap(5100, 150));
+        assertEquals(5200, index.snap(5200, 150));
+        assertEquals(6000, index.snap(5900, 150));
+    }
+
+    @Test
+    public void parsesMemoryMappedFile() throws Exception {
+        File file = File.createTempFile("capture", ".mp4");
+        try {
+            Mp4Fixtures.capture().writeTo(file);
+            KeyframeIndex index = KeyframeIndex.fromFile(file);
+            assertEquals(30, index.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileWithoutMoov() throws Exception {
+        Mp4BoxParser.parse(ByteBuffer.wrap(Mp4Fixtures.box("ftyp", new byte[8])));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFile() throws Exception {
+        byte[] clip = Mp4Fixtures.capture().build();
+        ByteBuffer truncated = ByteBuffer.wrap(clip, 0, clip.length - 200).slice();
+        Mp4BoxParser.parse(truncated);
+    }
+
+    /**
+     * A moov holding a single video track whose stbl is made of the given boxes, ending the file
+     * so that any read past a table runs off the buffer.
+     */
+    private static ByteBuffer videoMoov(byte[]... stbl) {
+        ByteBuffer mdhd = ByteBuffer.allocate(24);
+        mdhd.putInt(12, 1000);
+        ByteBuffer hdlr = ByteBuffer.allocate(12);
+        hdlr.putInt(8, Mp4BoxParser.fourCc("vide"));
+        return ByteBuffer.wrap(Mp4Fixtures.box("moov",
+                Mp4Fixtures.box("trak",
+                        Mp4Fixtures.box("mdia",
+                                Mp4Fixtures.box("mdhd", mdhd.array()),
+                                Mp4Fixtures.box("hdlr", hdlr.array()),
+                                Mp4Fixtures.box("minf",
+                                        Mp4Fixtures.box("stbl", stbl))))));
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void parsesMinimalTrack() throws Exception {
+        KeyframeIndex index = Mp4BoxParser.parse(videoMoov(
+                Mp4Fixtures.box("stts", ints(0, 1, 2, 500)),
+                Mp4Fixtures.box("stsz", ints(0, 0, 2, 100, 100))));
+        assertEquals(2, index.size());
+        assertEquals(500, index.getTime(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsSampleSizesOverrunningTheirBox() throws Exception {
+        // 1000 sample sizes claimed, none stored
+        Mp4BoxParser.parse(videoMoov(
+                Mp4Fixtures.box("stts", ints(0, 1, 1000, 33)),
+                Mp4Fixtures.box("stsz", ints(0, 0, 1000))));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsSyncSamplesOverrunningTheirBox() throws Exception {
+        Mp4BoxParser.parse(videoMoov(
+                Mp4Fixtures.box("stts", ints(0, 1, 2, 500)),
+                Mp4Fixtures.box("stsz", ints(0, 0, 2, 100, 100)),
+                Mp4Fixtures.box("stss", ints(0, 2, 1))));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedTableHeader() throws Exception {
+        Mp4BoxParser.parse(videoMoov(
+                Mp4Fixtures.box("stts", ints(0, 1, 2, 500)),
+                Mp4Fixtures.box("stsz", ints(0, 0))));
+    }
+}
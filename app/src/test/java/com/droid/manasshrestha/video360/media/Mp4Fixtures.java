@@ -0,0 +1,291 @@
+package com.droid.manasshrestha.video360.media;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes synthetic MP4 files laid out the way MediaRecorder writes them: ftyp, mdat, then moov
+ * with an audio and a video track. Sample payloads are zeros, only the sample tables matter.
+ */
+public class Mp4Fixtures {
+
+    public static final int VIDEO_TIMESCALE = 90000;
+
+    private final int mFps;
+    private final int mSeconds;
+    private final int mGop;
+    private int mSampleSize = 5000;
+    private boolean mCtts;
+    private boolean mFirstChunksSmall;
+
+    public Mp4Fixtures(int seconds, int fps, int gop) {
+        mSeconds = seconds;
+        mFps = fps;
+        mGop = gop;
+    }
+
+    /**
+     * A 30 s, 30 fps clip with a keyframe every second, like a 480p VideoCapture recording.
+     */
+    public static Mp4Fixtures capture() {
+        return new Mp4Fixtures(30, 30, 30);
+    }
+
+    public Mp4Fixtures sampleSize(int size) {
+        mSampleSize = size;
+        return this;
+    }
+
+    /**
+     * Adds a ctts box shifting every presentation time by one frame.
+     */
+    public Mp4Fixtures withCtts() {
+        mCtts = true;
+        return this;
+    }
+
+    /**
+     * Starts with ten 3-sample chunks before switching to 5-sample chunks, two stsc runs.
+     */
+    public Mp4Fixtures withTwoChunkRuns() {
+        mFirstChunksSmall = true;
+        return this;
+    }
+
+    public int sampleCount() {
+        return mSeconds * mFps;
+    }
+
+    public int frameDuration() {
+        return VIDEO_TIMESCALE / mFps;
+    }
+
+    public File writeTo(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(build());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    public ByteBuffer toBuffer() throws IOException {
+        return ByteBuffer.wrap(build());
+    }
+
+    /**
+     * @return File offset of the given 1-based sample.
+     */
+    public long offsetOf(int sample) {
+        return mdatPayloadStart() + (long) (sample - 1) * mSampleSize;
+    }
+
+    private int mdatPayloadStart() {
+        return ftyp().length + 8;
+    }
+
+    public byte[] build() throws IOException {
+        int samples = sampleCount();
+        byte[] ftyp = ftyp();
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(ftyp);
+        DataOutputStream out = new DataOutputStream(file);
+        out.writeInt(8 + samples * mSampleSize);
+        out.writeBytes("mdat");
+        out.write(new byte[samples * mSampleSize]);
+
+        int[] chunkSizes = chunkSizes(samples);
+        long[] chunkOffsets = new long[chunkSizes.length];
+        long offset = mdatPayloadStart();
+        for (int i = 0; i < chunkSizes.length; i++) {
+            chunkOffsets[i] = offset;
+            offset += (long) chunkSizes[i] * mSampleSize;
+        }
+
+        byte[] moov = box("moov",
+                box("mvhd", new byte[100]),
+                audioTrak(),
+                videoTrak(samples, chunkOffsets));
+        out.write(moov);
+        out.flush();
+        return file.toByteArray();
+    }
+
+    private byte[] ftyp() {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeBytes("isom");
+            out.writeInt(0);
+            out.writeBytes("isom3gp4");
+            return box("ftyp", body.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int[] chunkSizes(int samples) {
+        int small = mFirstChunksSmall ? Math.min(10, samples / 3) : 0;
+        int rest = samples - small * 3;
+        int[] sizes = new int[small + (rest + 4) / 5];
+        for (int i = 0; i < sizes.length; i++) {
+            if (i < small) {
+                sizes[i] = 3;
+            } else {
+                sizes[i] = Math.min(5, rest);
+                rest -= sizes[i];
+            }
+        }
+        return sizes;
+    }
+
+    private byte[] videoTrak(int samples, long[] chunkOffsets) throws IOException {
+        int keyframes = (samples + mGop - 1) / mGop;
+        int[] stss = new int[keyframes];
+        for (int i = 0; i < keyframes; i++) {
+            stss[i] = i * mGop + 1;
+        }
+
+        ByteArrayOutputStream stsc = new ByteArrayOutputStream();
+        DataOutputStream stscOut = new DataOutputStream(stsc);
+        int small = mFirstChunksSmall ? Math.min(10, samples / 3) : 0;
+        int lastChunkSize = chunkSizes(samples)[chunkOffsets.length - 1];
+        int entries = (small > 0 ? 1 : 0) + 1 + (lastChunkSize != 5 ? 1 : 0);
+        stscOut.writeInt(0);
+        stscOut.writeInt(entries);
+        if (small > 0) {
+            stscOut.writeInt(1);
+            stscOut.writeInt(3);
+            stscOut.writeInt(1);
+        }
+        stscOut.writeInt(small + 1);
+        stscOut.writeInt(5);
+        stscOut.writeInt(1);
+        if (lastChunkSize != 5) {
+            stscOut.writeInt(chunkOffsets.length);
+            stscOut.writeInt(lastChunkSize);
+            stscOut.writeInt(1);
+        }
+
+        byte[] stbl = box("stbl",
+                box("stsd", fullBox(0, 0)),
+                table("stts", new int[]{samples, frameDuration()}),
+                mCtts ? table("ctts", new int[]{samples, frameDuration()}) : new byte[0],
+                table("stss", stss),
+                stsz(samples),
+                box("stsc", stsc.toByteArray()),
+                stco(chunkOffsets));
+        return box("trak",
+                box("tkhd", new byte[84]),
+                box("mdia",
+                        mdhd(VIDEO_TIMESCALE, (long) samples * frameDuration()),
+                        hdlr("vide"),
+                        box("minf", box("vmhd", new byte[12]), stbl)));
+    }
+
+    private byte[] audioTrak() throws IOException {
+        int samples = mSeconds * 8000 / 1024;
+        byte[] stbl = box("stbl",
+                table("stts", new int[]{samples, 1024}),
+                stsz(samples),
+                table("stsc", new int[]{1, samples, 1}),
+                stco(new long[]{8}));
+        return box("trak",
+                box("mdia",
+                        mdhd(8000, (long) samples * 1024),
+                        hdlr("soun"),
+                        box("minf", stbl)));
+    }
+
+    private byte[] stsz(int samples) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(samples);
+        for (int i = 0; i < samples; i++) {
+            out.writeInt(mSampleSize);
+        }
+        return box("stsz", body.toByteArray());
+    }
+
+    private static byte[] stco(long[] offsets) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(0);
+        out.writeInt(offsets.length);
+        for (long offset : offsets) {
+            out.writeInt((int) offset);
+        }
+        return box("stco", body.toByteArray());
+    }
+
+    /**
+     * Full box with an entry count followed by the given ints. For run-length tables the entry
+     * count is derived assuming pairs (stts, ctts) or triples (stsc).
+     */
+    private static byte[] table(String type, int[] values) throws IOException {
+        int width = type.equals("stss") ? 1 : type.equals("stsc") ? 3 : 2;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(0);
+        out.writeInt(values.length / width);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+        return box(type, body.toByteArray());
+    }
+
+    private static byte[] mdhd(int timescale, long duration) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(timescale);
+        out.writeInt((int) duration);
+        out.writeInt(0);
+        return box("mdhd", body.toByteArray());
+    }
+
+    private static byte[] hdlr(String handler) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeBytes(handler);
+        out.write(new byte[13]);
+        return box("hdlr", body.toByteArray());
+    }
+
+    private static byte[] fullBox(int version, int entries) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(version);
+        out.writeInt(entries);
+        return body.toByteArray();
+    }
+
+    static byte[] box(String type, byte[]... children) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (byte[] child : children) {
+                body.write(child);
+            }
+            ByteArrayOutputStream box = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(box);
+            out.writeInt(8 + body.size());
+            out.writeBytes(type);
+            body.writeTo(out);
+            return box.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import com.droid.manasshrestha.video360.media.CaptureOrientation;
+import com.droid.manasshrestha.video360.media.CaptureOrientationRecorder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class OrientationTimelineMapperTest {
+
+    private static final long STEP_NS = 20000000L; // 50 Hz, SENSOR_DELAY_GAME
+    private static final int DURATION = 30000;
+
+    private OrientationTimelineMapper mMapper;
+    private long mTimestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        mMapper = new OrientationTimelineMapper((float) (Math.PI / 2), 0.05f);
+        mMapper.setDuration(DURATION);
+        mMapper.reset(0);
+        mTimestamp = 1000000000L;
+    }
+
+    private void feed(float rate, int samples) {
+        for (int i = 0; i < samples; i++) {
+            mMapper.onRate(mTimestamp, rate);
+            mTimestamp += STEP_NS;
+        }
+    }
+
+    @Test
+    public void firstSampleOnlyStartsIntegration() throws Exception {
+        assertFalse(mMapper.onRate(mTimestamp, 1f));
+        assertEquals(0, mMapper.getPosition());
+    }
+
+    @Test
+    public void halfSweepMapsToMiddleOfClip() throws Exception {
+        // 1 rad/s for (PI / 4) s turns the device by PI / 4, half of the sweep
+        int samples = (int) Math.round(Math.PI / 4 / (STEP_NS * 1e-9));
+        feed(1f, samples + 1);
+
+        assertEquals(Math.PI / 4, mMapper.getAngle(), 0.02);
+        assertEquals(DURATION / 2, mMapper.getPosition(), DURATION * 0.01);
+    }
+
+    @Test
+    public void returningToStartAngleReturnsToStartPosition() throws Exception {
+        feed(0.8f, 50);
+        int forward = mMapper.getPosition();
+        assertTrue(forward > 0);
+
+        feed(-0.8f, 50);
+        assertEquals(0, mMapper.getPosition(), 20);
+    }
+
+    @Test
+    public void positionIsClampedAtBothEnds() throws Exception {
+        feed(5f, 500);
+        assertEquals(DURATION, mMapper.getPosition());
+
+        // no wind-up past the end, the way back starts right away
+        feed(-1f, 2);
+        assertTrue(mMapper.getPosition() < DURATION);
+
+        feed(-5f, 500);
+        assertEquals(0, mMapper.getPosition());
+    }
+
+    @Test
+    public void deadBandIgnoresNoise() throws Exception {
+        feed(0.04f, 1000);
+        feed(-0.04f, 1000);
+        assertEquals(0f, mMapper.getAngle(), 0f);
+    }
+
+    @Test
+    public void longGapsAreNotIntegrated() throws Exception {
+        feed(1f, 2);
+        float angle = mMapper.getAngle();
+
+        mTimestamp += 5000000000L;
+        assertFalse(mMapper.onRate(mTimestamp, 1f));
+        assertEquals(angle, mMapper.getAngle(), 0f);
+    }
+
+    @Test
+    public void resetAnchorsCurrentOrientation() throws Exception {
+        mMapper.reset(DURATION / 4);
+        assertEquals(DURATION / 4, mMapper.getPosition());
+        assertEquals(Math.PI / 8, mMapper.getAngle(), 1e-4);
+    }
+
+    @Test
+    public void rotateByAdvancesProportionally() throws Exception {
+        int steps = 180;
+        for (int i = 0; i < steps; i++) {
+            mMapper.rotateBy(mMapper.getSweep() / steps);
+        }
+        assertEquals(DURATION, mMapper.getPosition(), 1);
+    }
+
+    @Test
+    public void longSessionStaysBounded() throws Exception {
+        // ten minutes at 50 Hz of back and forth sweeping
+        for (int i = 0; i < 600; i++) {
+            feed(i % 2 == 0 ? 2f : -2f, 50);
+        }
+        int position = mMapper.getPosition();
+        assertTrue(position >= 0 && position <= DURATION);
+    }
+
+    @Test
+    public void followsTheCaptureOrientation() throws Exception {
+        // the camera turns 45 degrees in the first second, the other 45 over the next nine
+        CaptureOrientationRecorder recorder = new CaptureOrientationRecorder(10);
+        recorder.markStart(0);
+        recorder.onRotationVector(0, (float) Math.sqrt(0.5), 0, 0, (float) Math.sqrt(0.5));
+        feedCapture(recorder, 1000, Math.PI / 4);
+        feedCapture(recorder, 10000, Math.PI / 2);
+        File video = File.createTempFile("capture", ".mp4");
+        File file = recorder.write(video);
+        CaptureOrientation capture = CaptureOrientation.open(file);
+        video.delete();
+        file.delete();
+
+        mMapper.reset(1000);
+        mMapper.setCaptureOrientation(capture);
+        assertEquals(Math.PI / 4, mMapper.getAngle(), 0.01);
+        assertEquals(1000, mMapper.getPosition(), 10);
+
+        mMapper.rotateBy((float) (Math.PI / 8));
+        assertEquals(5500, mMapper.getPosition(), 50);
+        assertEquals(10000, mMapper.positionForAngle(Math.PI / 2));
+
+        mMapper.setCaptureOrientation(null);
+        assertEquals(5500, mMapper.getPosition(), 50);
+    }
+
+    private static void feedCapture(CaptureOrientationRecorder recorder, int timeMs,
+                                    double bearing) {
+        // upright device turned to the bearing about the world's up axis
+        double c = Math.cos(-bearing / 2) * Math.sqrt(0.5);
+        double s = Math.sin(-bearing / 2) * Math.sqrt(0.5);
+        recorder.onRotationVector(timeMs * 1000000L, (float) c, (float) s, (float) s, (float) c);
+    }
+}
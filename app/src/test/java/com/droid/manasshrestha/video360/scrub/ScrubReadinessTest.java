@@ -0,0 +1,114 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScrubReadinessTest {
+
+    private final List<Integer> mProgress = new ArrayList<>();
+    private long mInteractive = -1;
+    private long mComplete = -1;
+    private int mInteractiveCalls;
+
+    private ScrubReadiness mReadiness;
+
+    @Before
+    public void setUp() throws Exception {
+        mReadiness = new ScrubReadiness(1000, new ScrubReadiness.Listener() {
+            @Override
+            public void onProgress(int percent) {
+                mProgress.add(percent);
+            }
+
+            @Override
+            public void onInteractive(long elapsedMs) {
+                mInteractive = elapsedMs;
+                mInteractiveCalls++;
+            }
+
+            @Override
+            public void onComplete(long elapsedMs) {
+                mComplete = elapsedMs;
+            }
+        });
+    }
+
+    @Test
+    public void interactiveOnceStripCoversSweep() throws Exception {
+        mReadiness.onPlayerReady(1100);
+        mReadiness.onStripProgress(10, 180, false, 1500);
+        assertFalse(mReadiness.isInteractive());
+
+        mReadiness.onStripProgress(24, 180, true, 1800);
+        assertTrue(mReadiness.isInteractive());
+        assertEquals(800, mInteractive);
+        assertEquals(800, mReadiness.getTimeToInteractive());
+        assertFalse(mReadiness.isComplete());
+    }
+
+    @Test
+    public void stripDoneWithFramesMissingFinishesTheStage() throws Exception {
+        mReadiness.onPlayerReady(1100);
+        mReadiness.onKeyframesDone(1150);
+        mReadiness.onStripProgress(20, 180, false, 1500);
+        assertFalse(mReadiness.isInteractive());
+
+        mReadiness.onStripDone(2000);
+        assertTrue(mReadiness.isInteractive());
+        assertTrue(mReadiness.isComplete());
+        assertEquals(100, mReadiness.getProgress());
+    }
+
+    @Test
+    public void waitsForPlayer() throws Exception {
+        mReadiness.onStripProgress(180, 180, true, 1500);
+        assertFalse(mReadiness.isInteractive());
+        mReadiness.onPlayerReady(1700);
+        assertEquals(700, mInteractive);
+    }
+
+    @Test
+    public void keyframesDontGateInteraction() throws Exception {
+        mReadiness.onPlayerReady(1100);
+        mReadiness.onStripFailed(1200);
+        assertTrue(mReadiness.isInteractive());
+        assertFalse(mReadiness.isComplete());
+
+        mReadiness.onKeyframesDone(1300);
+        assertTrue(mReadiness.isComplete());
+        assertEquals(300, mComplete);
+    }
+
+    @Test
+    public void progressIsWeightedAndMonotonic() throws Exception {
+        mReadiness.onPlayerReady(1100);
+        mReadiness.onKeyframesDone(1200);
+        assertEquals(15, mReadiness.getProgress());
+        for (int ready = 1; ready <= 180; ready++) {
+            mReadiness.onStripProgress(ready, 180, ready >= 24, 1200 + ready);
+        }
+        assertEquals(100, mReadiness.getProgress());
+        assertTrue(mReadiness.isComplete());
+        for (int i = 1; i < mProgress.size(); i++) {
+            assertTrue(mProgress.get(i) > mProgress.get(i - 1));
+        }
+        assertEquals(Integer.valueOf(100), mProgress.get(mProgress.size() - 1));
+    }
+
+    @Test
+    public void reportsOnlyOnce() throws Exception {
+        mReadiness.onPlayerReady(1100);
+        mReadiness.onKeyframesDone(1100);
+        mReadiness.onStripProgress(180, 180, true, 1200);
+        mReadiness.onStripProgress(10, 180, false, 1300);
+        mReadiness.onStripFailed(1400);
+        assertEquals(1, mInteractiveCalls);
+        assertEquals(200, mComplete);
+        assertEquals(100, mReadiness.getProgress());
+    }
+}
@@ -0,0 +1,138 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import com.droid.manasshrestha.video360.media.CaptureOrientation;
+import com.droid.manasshrestha.video360.media.CaptureOrientationRecorder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class SeekPredictorTest {
+
+    private static final int DURATION = 10000;
+
+    private OrientationTimelineMapper mTimeline;
+    private SeekPredictor mPredictor;
+
+    @Before
+    public void setUp() throws Exception {
+        mTimeline = new OrientationTimelineMapper();
+        mTimeline.setDuration(DURATION);
+        mTimeline.reset(DURATION / 2);
+        mPredictor = new SeekPredictor(mTimeline);
+    }
+
+    @Test
+    public void extrapolatesConstantVelocity() throws Exception {
+        float angle = mTimeline.getAngle();
+        mPredictor.aim(1000, 0.5f, 100);
+        assertEquals(angle + 0.05f, mPredictor.aim(1016, 0.5f, 100), 1e-4f);
+        assertEquals(0, mPredictor.getAcceleration(), 1e-4f);
+        assertEquals(angle, mPredictor.aim(1032, 0.5f, 0), 1e-6f);
+    }
+
+    @Test
+    public void capsTheLead() throws Exception {
+        float angle = mTimeline.getAngle();
+        assertEquals(angle + 0.1f * SeekPredictor.MAX_LEAD_MS / 1000f, mPredictor.aim(1000, 0.1f, 5000), 1e-4f);
+    }
+
+    @Test
+    public void staysWithinTheSweep() throws Exception {
+        mTimeline.reset(DURATION);
+        assertEquals(mTimeline.getSweep(), mPredictor.aim(1000, 2f, 200), 0f);
+        mTimeline.reset(0);
+        assertEquals(0, mPredictor.aim(1000, -2f, 200), 0f);
+    }
+
+    @Test
+    public void decelerationStopsInsteadOfReversing() throws Exception {
+        float velocity = 1f;
+        float aim = 0;
+        for (long t = 1000; t < 1200; t += 16, velocity -= 0.15f) {
+            aim = mPredictor.aim(t, Math.max(velocity, 0.01f), 300);
+        }
+        assertTrue(mPredictor.getAcceleration() < 0);
+        assertTrue(aim >= mTimeline.getAngle());
+    }
+
+    @Test
+    public void learnsToAimShorterForEarlyStoppers() throws Exception {
+        long t = 1000;
+        for (int i = 0; i < 60; i++, t += 16) {
+            float aim = mPredictor.aim(t, 0.5f, 100);
+            int target = mTimeline.positionForAngle(aim);
+            mPredictor.onRequested(target);
+            // the user only gets half as far as the velocity says
+            mTimeline.rotateBy(0.5f * 0.1f / 2);
+            mPredictor.onLanded(target);
+            mTimeline.reset(DURATION / 2);
+        }
+        assertEquals(0.5f, mPredictor.getGain(), 0.05f);
+        assertEquals(60, mPredictor.getLandedCount());
+        assertTrue(mPredictor.getMeanError() < mPredictor.getMeanLag());
+    }
+
+    @Test
+    public void reportsErrorAndLag() throws Exception {
+        float aim = mPredictor.aim(1000, 1f, 100);
+        int target = mTimeline.positionForAngle(aim);
+        mPredictor.onRequested(target);
+        // lands exactly where aimed
+        mTimeline.rotateBy(0.1f);
+        mPredictor.onLanded(target);
+        assertEquals(0, mPredictor.getMeanError(), 1);
+        assertEquals(0.1 / mTimeline.getSweep() * DURATION, mPredictor.getMeanLag(), 1);
+        assertEquals(1f, mPredictor.getGain(), 1e-3f);
+    }
+
+    @Test
+    public void measuresErrorAndLagAlongTheCaptureOrientation() throws Exception {
+        // the camera turns 45 degrees in the first second, the other 45 over the next nine
+        CaptureOrientationRecorder recorder = new CaptureOrientationRecorder(10);
+        recorder.markStart(0);
+        recorder.onRotationVector(0, (float) Math.sqrt(0.5), 0, 0, (float) Math.sqrt(0.5));
+        feedCapture(recorder, 1000, Math.PI / 4);
+        feedCapture(recorder, 10000, Math.PI / 2);
+        File video = File.createTempFile("capture", ".mp4");
+        File file = recorder.write(video);
+        CaptureOrientation capture = CaptureOrientation.open(file);
+        video.delete();
+        file.delete();
+
+        mTimeline = new OrientationTimelineMapper((float) (Math.PI / 2), 0.05f);
+        mTimeline.setDuration(DURATION);
+        mTimeline.reset(500);
+        mTimeline.setCaptureOrientation(capture);
+        mPredictor = new SeekPredictor(mTimeline);
+
+        float aim = mPredictor.aim(1000, 0, 100);
+        int target = mTimeline.positionForAngle(aim);
+        mPredictor.onRequested(target);
+        // the user reaches 45 degrees, a second into the clip
+        mTimeline.rotateBy((float) (Math.PI / 4) - mTimeline.getAngle());
+        mPredictor.onLanded(target);
+        // linearly the eighth of a turn would be a quarter of the clip
+        assertEquals(500, mPredictor.getMeanLag(), 20);
+        assertEquals(500, mPredictor.getMeanError(), 20);
+    }
+
+    private static void feedCapture(CaptureOrientationRecorder recorder, int timeMs,
+                                    double bearing) {
+        // upright device turned to the bearing about the world's up axis
+        double c = Math.cos(-bearing / 2) * Math.sqrt(0.5);
+        double s = Math.sin(-bearing / 2) * Math.sqrt(0.5);
+        recorder.onRotationVector(timeMs * 1000000L, (float) c, (float) s, (float) s, (float) c);
+    }
+
+    @Test
+    public void ignoresUnknownTargets() throws Exception {
+        mPredictor.aim(1000, 1f, 100);
+        mPredictor.onRequested(1234);
+        mPredictor.onLanded(4321);
+        assertEquals(0, mPredictor.getLandedCount());
+    }
+}
@@ -0,0 +1,165 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SeekSchedulerTest {
+
+    private static final int DURATION = 10000;
+
+    private final List<Integer> mIssued = new ArrayList<Integer>();
+    private final List<Integer> mLanded = new ArrayList<Integer>();
+    private final List<Long> mLatencies = new ArrayList<Long>();
+    private SeekScheduler mScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        mScheduler = new SeekScheduler(new SeekScheduler.Player() {
+            @Override
+            public void seekTo(int msec) {
+                mIssued.add(msec);
+            }
+
+            @Override
+            public int getDuration() {
+                return DURATION;
+            }
+        }, null);
+        mScheduler.setListener(new SeekScheduler.Listener() {
+            @Override
+            public void onSeekLanded(int target, long latencyMs) {
+                mLanded.add(target);
+                mLatencies.add(latencyMs);
+            }
+        });
+    }
+
+    @Test
+    public void coalescesTargetsWhileASeekRuns() throws Exception {
+        mScheduler.seekTo(1000, 0);
+        mScheduler.seekTo(1100, 10);
+        mScheduler.seekTo(1200, 20);
+        mScheduler.seekTo(1300, 30);
+        assertEquals(Arrays.asList(1000), mIssued);
+        assertTrue(mScheduler.isSeeking());
+
+        mScheduler.onSeekComplete(100);
+        assertEquals(Arrays.asList(1000, 1300), mIssued);
+        assertEquals(Arrays.asList(1000), mLanded);
+        assertEquals(Long.valueOf(100), mLatencies.get(0));
+        assertEquals(2, mScheduler.getCoalescedCount());
+
+        mScheduler.onSeekComplete(150);
+        assertFalse(mScheduler.isSeeking());
+        assertEquals(Arrays.asList(1000, 1300), mLanded);
+        assertEquals(2, mScheduler.getCompletedCount());
+    }
+
+    @Test
+    public void clampsAndSkipsTheTargetAlreadyReached() throws Exception {
+        mScheduler.seekTo(-50, 0);
+        mScheduler.onSeekComplete(10);
+        mScheduler.seekTo(0, 20);
+        mScheduler.seekTo(DURATION + 500, 30);
+        assertEquals(Arrays.asList(0, DURATION), mIssued);
+    }
+
+    @Test
+    public void timeoutDropsThePendingTarget() throws Exception {
+        mScheduler.seekTo(1000, 0);
+        mScheduler.seekTo(2000, 100);
+        // the completion of 1000 is late, 3000 is issued as soon as the seek times out
+        mScheduler.seekTo(3000, SeekScheduler.SEEK_TIMEOUT_MS + 1);
+        assertEquals(Arrays.asList(1000, 3000), mIssued);
+        assertEquals(1, mScheduler.getTimedOutCount());
+
+        mScheduler.onSeekComplete(SeekScheduler.SEEK_TIMEOUT_MS + 30);
+        assertTrue(mScheduler.isSeeking());
+        assertEquals(1, mScheduler.getLateCount());
+        mScheduler.onSeekComplete(SeekScheduler.SEEK_TIMEOUT_MS + 80);
+        // 2000 is stale, issuing it would jump back
+        assertEquals(Arrays.asList(1000, 3000), mIssued);
+        assertEquals(Arrays.asList(3000), mLanded);
+        assertEquals(Long.valueOf(79), mLatencies.get(0));
+        assertFalse(mScheduler.isSeeking());
+    }
+
+    @Test
+    public void timerGivesUpWithoutFurtherRequests() throws Exception {
+        mScheduler.seekTo(1000, 0);
+        mScheduler.seekTo(2000, 100);
+        mScheduler.checkTimeout(SeekScheduler.SEEK_TIMEOUT_MS - 1);
+        assertEquals(0, mScheduler.getTimedOutCount());
+
+        // the user stopped moving, the waiting target goes out on the timer
+        mScheduler.checkTimeout(SeekScheduler.SEEK_TIMEOUT_MS);
+        assertEquals(1, mScheduler.getTimedOutCount());
+        assertEquals(Arrays.asList(1000, 2000), mIssued);
+        assertEquals(2000, mScheduler.getLastTarget());
+
+        mScheduler.onSeekComplete(SeekScheduler.SEEK_TIMEOUT_MS + 20);
+        mScheduler.onSeekComplete(SeekScheduler.SEEK_TIMEOUT_MS + 60);
+        assertEquals(Arrays.asList(2000), mLanded);
+        assertFalse(mScheduler.isSeeking());
+    }
+
+    @Test
+    public void retriesTheTargetGivenUpOn() throws Exception {
+        mScheduler.seekTo(1000, 0);
+        mScheduler.checkTimeout(SeekScheduler.SEEK_TIMEOUT_MS);
+        assertFalse(mScheduler.isSeeking());
+        assertEquals(-1, mScheduler.getLastTarget());
+
+        mScheduler.seekTo(1000, SeekScheduler.SEEK_TIMEOUT_MS + 10);
+        assertEquals(Arrays.asList(1000, 1000), mIssued);
+    }
+
+    @Test
+    public void lateCompletionIsMatchedByOrderNotPosition() throws Exception {
+        // targets close together, either completion could have landed anywhere near them
+        mScheduler.seekTo(1000, 0);
+        mScheduler.seekTo(1050, 600);
+        mScheduler.seekTo(1100, 610);
+        assertEquals(Arrays.asList(1000, 1050), mIssued);
+
+        // the lost seek completes after all
+        mScheduler.onSeekComplete(650);
+        assertTrue(mScheduler.isSeeking());
+        assertTrue(mLanded.isEmpty());
+        assertEquals(1, mScheduler.getLateCount());
+        assertEquals(Arrays.asList(1000, 1050), mIssued);
+
+        mScheduler.onSeekComplete(700);
+        assertEquals(Arrays.asList(1050), mLanded);
+        assertEquals(Long.valueOf(100), mLatencies.get(0));
+        assertEquals(Arrays.asList(1000, 1050, 1100), mIssued);
+    }
+
+    @Test
+    public void lostCompletionsAreNotExpectedForever() throws Exception {
+        mScheduler.seekTo(1000, 0);
+        mScheduler.checkTimeout(SeekScheduler.SEEK_TIMEOUT_MS);
+
+        // 1000 never completes
+        long later = SeekScheduler.STALE_TIMEOUT_MS + 10;
+        mScheduler.seekTo(1100, later);
+        mScheduler.onSeekComplete(later + 50);
+        assertEquals(Arrays.asList(1100), mLanded);
+        assertEquals(0, mScheduler.getLateCount());
+    }
+
+    @Test
+    public void expectsToWaitForTheRunningSeek() throws Exception {
+        mScheduler.seekTo(1000, 0);
+        mScheduler.onSeekComplete(100);
+        assertEquals(100, mScheduler.getExpectedDelay(100));
+        mScheduler.seekTo(2000, 200);
+        assertEquals(160, mScheduler.getExpectedDelay(240));
+    }
+}
@@ -0,0 +1,79 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TiltScrubTest {
+
+    private static final long STEP_NS = 5000000L;
+
+    private OrientationTimelineMapper mTimeline;
+    private TurntableSpin mSpin;
+    private TiltScrub mScrub;
+    private long mTime = 1000000000L;
+
+    @Before
+    public void setUp() throws Exception {
+        mTimeline = new OrientationTimelineMapper((float) (Math.PI / 2), 0.05f);
+        mTimeline.setDuration(30000);
+        mTimeline.reset(15000);
+        mSpin = new TurntableSpin(mTimeline, 1f);
+        mScrub = new TiltScrub(mTimeline, mSpin, new SeekPredictor(mTimeline));
+    }
+
+    /**
+     * Turns around the y axis at the given rate for the given number of samples.
+     *
+     * @return The results of {@link TiltScrub#onRate} or'ed together.
+     */
+    private int turn(float rate, int samples) {
+        int steps = 0;
+        float[] values = new float[6];
+        for (int i = 0; i < samples; i++, mTime += STEP_NS) {
+            values[1] = rate;
+            steps |= mScrub.onRate(mTime, values, 0);
+        }
+        return steps;
+    }
+
+    @Test
+    public void turningMovesTheTimeline() throws Exception {
+        assertEquals(TiltScrub.MOVED, turn(1f, 40));
+        assertTrue(mTimeline.getPosition() != 15000);
+        assertEquals(1f, Math.abs(mScrub.getAngularVelocity()), 0.05f);
+
+        int target = mScrub.seekTarget(mTime / 1000000, 100);
+        // aimed ahead of the current position, in the direction of the turn
+        assertEquals(Math.signum(mTimeline.getPosition() - 15000), Math.signum(target - mTimeline.getPosition()), 0f);
+    }
+
+    @Test
+    public void acceptsRatesWithoutDriftFields() throws Exception {
+        float[] values = new float[3];
+        values[1] = 1f;
+        int steps = 0;
+        for (int i = 0; i < 40; i++, mTime += STEP_NS) {
+            steps |= mScrub.onRate(mTime, values, 0);
+        }
+        assertEquals(TiltScrub.MOVED, steps);
+    }
+
+    @Test
+    public void noiseDoesNotFightTheSpin() throws Exception {
+        assertTrue(mSpin.start());
+        float angle = mTimeline.getAngle();
+        assertEquals(0, turn(0.01f, 200));
+        assertTrue(mSpin.isRunning());
+        assertEquals(angle, mTimeline.getAngle(), 0f);
+    }
+
+    @Test
+    public void turningTakesOverFromTheSpin() throws Exception {
+        assertTrue(mSpin.start());
+        int steps = turn(1f, 40);
+        assertEquals(TiltScrub.MOVED | TiltScrub.SPIN_PAUSED, steps);
+        assertFalse(mSpin.isRunning());
+    }
+}
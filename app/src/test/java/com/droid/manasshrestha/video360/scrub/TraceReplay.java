@@ -0,0 +1,154 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import android.hardware.Sensor;
+
+import com.droid.manasshrestha.video360.sensor.OrientationFusion;
+import com.droid.manasshrestha.video360.sensor.SensorRing;
+import com.droid.manasshrestha.video360.sensor.SensorTrace;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a recorded {@link SensorTrace} through the orientation fusion and the tilt scrub on a
+ * plain JVM, so regressions in either can be reproduced without a device.
+ * <p/>
+ * Gyroscope samples go through the same {@link TiltScrub} and {@link SeekScheduler} as in
+ * RewindForward, with the sample timestamps as the clock and a player whose seeks land
+ * {@link #SEEK_LATENCY_MS} after they are issued. The automatic spin is not started, a trace
+ * carries no frame times, and every step that moves the timeline requests a seek instead of once
+ * per posted update.
+ * <p/>
+ * Usage: {@code TraceReplay <trace.p3dt> [durationMs] [rounds]}. Prints the time spent per sample
+ * and the final state, which is identical on every run for the same trace.
+ */
+public class TraceReplay implements SensorRing.Sink {
+
+    static final long SEEK_LATENCY_MS = 80;
+
+    private final OrientationFusion mFusion = new OrientationFusion();
+    private final OrientationTimelineMapper mTimeline = new OrientationTimelineMapper();
+    private final SeekPredictor mPredictor = new SeekPredictor(mTimeline);
+    private final TiltScrub mScrub = new TiltScrub(mTimeline, new TurntableSpin(mTimeline, 1f), mPredictor);
+    private final SeekScheduler mScheduler;
+    private final float[] mMatrix = new float[16];
+    private long mNowMs;
+    private int mSeeking = -1;
+    private long mLandsAt;
+    public int samples;
+    public int seeks;
+
+    public TraceReplay(final int durationMs) {
+        mTimeline.setDuration(durationMs);
+        mTimeline.reset(0);
+        mScheduler = new SeekScheduler(new SeekScheduler.Player() {
+            @Override
+            public void seekTo(int msec) {
+                seeks++;
+                mSeeking = msec;
+                mLandsAt = mNowMs + SEEK_LATENCY_MS;
+            }
+
+            @Override
+            public int getDuration() {
+                return durationMs;
+            }
+        }, null);
+        mScheduler.setListener(new SeekScheduler.Listener() {
+            @Override
+            public void onSeekLanded(int target, long latencyMs) {
+                mPredictor.onLanded(target);
+            }
+        });
+    }
+
+    @Override
+    public void onSample(int type, long timestampNs, float[] values, int offset) {
+        samples++;
+        switch (type) {
+            case Sensor.TYPE_ACCELEROMETER:
+                mFusion.onAccelerometer(values[offset], values[offset + 1], values[offset + 2]);
+                break;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                mFusion.onMagnetometer(values[offset], values[offset + 1], values[offset + 2]);
+                break;
+            case Sensor.TYPE_GYROSCOPE:
+            case Sensor.TYPE_GYROSCOPE_UNCALIBRATED:
+                mFusion.onGyroscope(timestampNs, values[offset], values[offset + 1], values[offset + 2]);
+                scrub(timestampNs, values, offset);
+                break;
+            default:
+                return;
+        }
+        if (mFusion.isInitialized()) {
+            mFusion.getRotationMatrix(mMatrix);
+        }
+    }
+
+    private void scrub(long timestampNs, float[] values, int offset) {
+        long now = timestampNs / 1000000;
+        if (mSeeking >= 0 && now >= mLandsAt) {
+            // completions may issue the pending seek, which lands counting from this one
+            mSeeking = -1;
+            mNowMs = mLandsAt;
+            mScheduler.onSeekComplete(mLandsAt);
+        }
+        mNowMs = now;
+        mScheduler.checkTimeout(now);
+        if ((mScrub.onRate(timestampNs, values, offset) & TiltScrub.MOVED) != 0) {
+            mScheduler.seekTo(mScrub.seekTarget(now, mScheduler.getExpectedDelay(now)), now);
+        }
+    }
+
+    public int getPosition() {
+        return mTimeline.getPosition();
+    }
+
+    public float[] getRotationMatrix() {
+        return mMatrix;
+    }
+
+    public SeekScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    public SeekPredictor getPredictor() {
+        return mPredictor;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("samples=").append(samples)
+                .append(" seeks=").append(seeks)
+                .append(" position=").append(getPosition())
+                .append(" yaw=").append(mScrub.getYaw())
+                .append(" scheduler=[").append(mScheduler)
+                .append("] prediction=[").append(mPredictor)
+                .append("] matrix=[");
+        for (int i = 0; i < 12; i++) {
+            builder.append(i == 0 ? "" : ", ").append(mMatrix[i]);
+        }
+        return builder.append("]").toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: TraceReplay <trace" + SensorTrace.EXTENSION + "> [durationMs] [rounds]");
+            System.exit(2);
+        }
+        SensorTrace trace = SensorTrace.open(new File(args[0]));
+        int duration = args.length > 1 ? Integer.parseInt(args[1]) : 30000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        TraceReplay replay = null;
+        for (int round = 0; round < rounds; round++) {
+            replay = new TraceReplay(duration);
+            long start = System.nanoTime();
+            trace.replay(replay);
+            long elapsed = System.nanoTime() - start;
+            System.out.println("round " + round + ": " + elapsed / Math.max(1, replay.samples) + "ns/sample");
+        }
+        System.out.println(replay);
+    }
+}
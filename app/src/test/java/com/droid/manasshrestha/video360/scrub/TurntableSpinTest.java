@@ -0,0 +1,115 @@
+package com.droid.manasshrestha.video360.scrub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TurntableSpinTest {
+
+    private static final long FRAME_NS = 16666667L;
+    private static final float SWEEP = (float) (Math.PI / 2);
+
+    private OrientationTimelineMapper mTimeline;
+    private TurntableSpin mSpin;
+
+    @Before
+    public void setUp() throws Exception {
+        mTimeline = new OrientationTimelineMapper(SWEEP, 0.05f);
+        mTimeline.setDuration(30000);
+        mTimeline.reset(0);
+        mSpin = new TurntableSpin(mTimeline, 1f);
+    }
+
+    /**
+     * Delivers frames 60 times a second for the given time, returns the last frame time.
+     */
+    private long runFrames(long start, long durationNs) {
+        long t = start;
+        for (; t <= start + durationNs; t += FRAME_NS) {
+            mSpin.onFrame(t);
+        }
+        return t - FRAME_NS;
+    }
+
+    @Test
+    public void idleUntilStarted() throws Exception {
+        assertFalse(mSpin.isRunning());
+        assertFalse(mSpin.onFrame(FRAME_NS));
+        assertFalse(mSpin.onFrame(2 * FRAME_NS));
+        assertEquals(0f, mTimeline.getAngle(), 0f);
+    }
+
+    @Test
+    public void advancesAtConfiguredSpeed() throws Exception {
+        assertTrue(mSpin.start());
+        runFrames(1000000000L, 500000000L);
+        assertEquals(0.5f, mTimeline.getAngle(), 0.02f);
+    }
+
+    @Test
+    public void rateIndependentOfFrameRate() throws Exception {
+        mSpin.start();
+        for (long t = 1000000000L; t <= 1500000000L; t += FRAME_NS / 2) {
+            mSpin.onFrame(t);
+        }
+        assertEquals(0.5f, mTimeline.getAngle(), 0.02f);
+    }
+
+    @Test
+    public void longGapsDontJump() throws Exception {
+        mSpin.start();
+        mSpin.onFrame(1000000000L);
+        mSpin.onFrame(6000000000L);
+        assertEquals(0.1f, mTimeline.getAngle(), 1e-4f);
+    }
+
+    @Test
+    public void pauseHoldsAngleAndResumeSkipsPausedTime() throws Exception {
+        mSpin.start();
+        long t = runFrames(1000000000L, 300000000L);
+        float angle = mTimeline.getAngle();
+
+        mSpin.pause();
+        assertFalse(mSpin.onFrame(t + FRAME_NS));
+        assertEquals(angle, mTimeline.getAngle(), 0f);
+
+        assertTrue(mSpin.start());
+        assertFalse(mSpin.onFrame(t + 20 * FRAME_NS));
+        assertTrue(mSpin.onFrame(t + 21 * FRAME_NS));
+        assertEquals(angle + FRAME_NS * 1e-9f, mTimeline.getAngle(), 1e-4f);
+    }
+
+    @Test
+    public void reverseSpinsBack() throws Exception {
+        mSpin.start();
+        long t = runFrames(1000000000L, 500000000L);
+        mSpin.reverse();
+        runFrames(t + FRAME_NS, 250000000L);
+        assertEquals(-1, mSpin.getDirection());
+        assertEquals(0.25f, mTimeline.getAngle(), 0.02f);
+    }
+
+    @Test
+    public void sweepTimeSetsSpeed() throws Exception {
+        mSpin.setSweepTime(2000);
+        assertEquals(SWEEP / 2, mSpin.getSpeed(), 1e-6f);
+    }
+
+    @Test
+    public void stopsAtEndAndTurnsAroundOnRestart() throws Exception {
+        mSpin.setSweepTime(1000);
+        mSpin.start();
+        runFrames(1000000000L, 1500000000L);
+        assertFalse(mSpin.isRunning());
+        assertEquals(SWEEP, mTimeline.getAngle(), 0f);
+
+        assertTrue(mSpin.start());
+        assertEquals(-1, mSpin.getDirection());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveSpeed() throws Exception {
+        mSpin.setSpeed(0f);
+    }
+}
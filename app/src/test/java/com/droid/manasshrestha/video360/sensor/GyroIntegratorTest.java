@@ -0,0 +1,153 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GyroIntegratorTest {
+
+    private static final long STEP_NS = 5000000L;
+
+    private GyroIntegrator mGyro;
+    private long mTime;
+
+    @Before
+    public void setUp() throws Exception {
+        mGyro = new GyroIntegrator(GyroIntegrator.AXIS_Y);
+        mTime = 1000000000L;
+    }
+
+    /**
+     * Feeds samples every 5ms for the given time.
+     */
+    private void run(long durationNs, float x, float y, float z, float driftY) {
+        for (long end = mTime + durationNs; mTime < end; ) {
+            mTime += STEP_NS;
+            mGyro.onRate(mTime, x, y, z, 0, driftY, 0);
+        }
+    }
+
+    @Test
+    public void integratesRateOverTimestamps() throws Exception {
+        mGyro.setSmoothing(0);
+        mGyro.onRate(mTime, 0, 1f, 0, 0, 0, 0);
+        run(1000000000L, 0, 1f, 0, 0);
+        assertEquals(1f, mGyro.getRawYaw(), 1e-3f);
+        assertEquals(1f, mGyro.getYaw(), 1e-3f);
+        assertEquals(1f, mGyro.getYawRate(), 0f);
+    }
+
+    @Test
+    public void usesEventTimestampsNotSampleCount() throws Exception {
+        mGyro.setSmoothing(0);
+        mGyro.onRate(mTime, 0, -2f, 0, 0, 0, 0);
+        long[] steps = {1000000L, 20000000L, 3000000L, 16000000L, 10000000L};
+        long total = 0;
+        for (int i = 0; i < 50; i++) {
+            mTime += steps[i % steps.length];
+            total += steps[i % steps.length];
+            mGyro.onRate(mTime, 0, -2f, 0, 0, 0, 0);
+        }
+        assertEquals(-2 * total * 1e-9f, mGyro.getRawYaw(), 1e-4f);
+    }
+
+    @Test
+    public void smoothingLagsThenConverges() throws Exception {
+        mGyro.onRate(mTime, 0, 3f, 0, 0, 0, 0);
+        run(100000000L, 0, 3f, 0, 0);
+        assertTrue(mGyro.getYaw() < mGyro.getRawYaw());
+        run(1000000000L, 0, 0, 0, 0);
+        assertEquals(mGyro.getRawYaw(), mGyro.getYaw(), 1e-4f);
+    }
+
+    @Test
+    public void subtractsReportedDrift() throws Exception {
+        mGyro.onRate(mTime, 0, 0.4f, 0, 0, 0.4f, 0);
+        run(1000000000L, 0, 0.4f, 0, 0.4f);
+        assertEquals(0f, mGyro.getRawYaw(), 1e-6f);
+    }
+
+    @Test
+    public void learnsResidualBiasWhileStationary() throws Exception {
+        mGyro.onRate(mTime, 0, 0.03f, 0, 0, 0, 0);
+        run(20000000000L, 0, 0.03f, 0, 0);
+
+        assertTrue(mGyro.isStationary());
+        float[] bias = new float[3];
+        mGyro.getBias(bias);
+        assertEquals(0.03f, bias[1], 1e-3f);
+        // only the half second before the device counted as stationary was integrated
+        assertEquals(0.015f, mGyro.getRawYaw(), 1e-3f);
+
+        mGyro.reset();
+        mGyro.onRate(mTime, 0, 1.03f, 0, 0, 0, 0);
+        run(1000000000L, 0, 1.03f, 0, 0);
+        assertFalse(mGyro.isStationary());
+        assertEquals(1f, mGyro.getRawYaw(), 2e-3f);
+    }
+
+    @Test
+    public void learnsBiasAndIntegratesAtTheIdleRate() throws Exception {
+        long step = SensorPump.periodUs(SensorPump.IDLE_DELAY) * 1000L;
+        // late events must not be taken for gaps either
+        assertTrue(2 * step <= GyroIntegrator.MAX_STEP_NS);
+
+        mGyro.setSmoothing(0);
+        mGyro.onRate(mTime, 0, 0.03f, 0, 0, 0, 0);
+        for (int i = 0; i < 300; i++) {
+            mTime += step;
+            mGyro.onRate(mTime, 0, 0.03f, 0, 0, 0, 0);
+        }
+        assertTrue(mGyro.isStationary());
+        float[] bias = new float[3];
+        mGyro.getBias(bias);
+        assertEquals(0.03f, bias[1], 1e-3f);
+
+        // the turn that wakes the pump still arrives at the idle rate
+        float yaw = mGyro.getRawYaw();
+        for (int i = 0; i < 15; i++) {
+            mTime += step;
+            assertTrue(mGyro.onRate(mTime, 0, 1.03f, 0, 0, 0, 0));
+        }
+        assertFalse(mGyro.isStationary());
+        assertEquals(1f, mGyro.getRawYaw() - yaw, 5e-3f);
+    }
+
+    @Test
+    public void unwrapsPastFullTurn() throws Exception {
+        mGyro.onRate(mTime, 0, 3f, 0, 0, 0, 0);
+        run(3000000000L, 0, 3f, 0, 0);
+        assertEquals(9f, mGyro.getRawYaw(), 1e-2f);
+    }
+
+    @Test
+    public void ignoresRotationAroundOtherAxes() throws Exception {
+        mGyro.onRate(mTime, 1f, 0, 0, 0, 0, 0);
+        run(1000000000L, 1f, 0, 0, 0);
+        assertEquals(0f, mGyro.getRawYaw(), 1e-5f);
+
+        float[] q = new float[4];
+        mGyro.getQuaternion(q);
+        assertEquals(Math.sin(0.5), q[1], 1e-3);
+    }
+
+    @Test
+    public void doesNotIntegrateAcrossGaps() throws Exception {
+        mGyro.setSmoothing(0);
+        mGyro.onRate(mTime, 0, 1f, 0, 0, 0, 0);
+        mTime += 5000000000L;
+        assertFalse(mGyro.onRate(mTime, 0, 1f, 0, 0, 0, 0));
+        assertEquals(0f, mGyro.getRawYaw(), 0f);
+    }
+
+    @Test
+    public void readsDriftFieldsOfUncalibratedEvents() throws Exception {
+        mGyro.setSmoothing(0);
+        float[] values = {0.1f, 1.2f, 0f, 0.1f, 0.2f, 0f};
+        mGyro.onGyroscope(mTime, values);
+        mGyro.onGyroscope(mTime + 100000000L, values);
+        assertEquals(1f, mGyro.getYawRate(), 1e-6f);
+        assertEquals(0.1f, mGyro.getRawYaw(), 1e-4f);
+    }
+}
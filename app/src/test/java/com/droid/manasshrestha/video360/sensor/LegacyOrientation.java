@@ -0,0 +1,140 @@
+package com.droid.manasshrestha.video360.sensor;
+
+/**
+ * The orientation path GyroscopeActivity used before {@link OrientationFusion}, with
+ * SensorManager.getRotationMatrix and remapCoordinateSystem ported to plain Java, as a reference
+ * for tests and benchmarks.
+ */
+public class LegacyOrientation {
+
+    private final float[] mAccelGravityData = new float[3];
+    private final float[] mGeomagneticData = new float[3];
+    private final float[] mBufferedAccelGData = new float[3];
+    private final float[] mBufferedMagnetData = new float[3];
+    private final float[] mRemapped = new float[16];
+    public final float[] rotationMatrix = new float[16];
+
+    /**
+     * loadNewSensorData, rootMeanSquareBuffer, getRotationMatrix and remapCoordinateSystem for one
+     * accelerometer or magnetometer event.
+     */
+    public boolean onSensorChanged(boolean accelerometer, float[] values, boolean remap) {
+        if (accelerometer) {
+            mAccelGravityData[0] = (mAccelGravityData[0] * 2 + values[0]) * 0.33334f;
+            mAccelGravityData[1] = (mAccelGravityData[1] * 2 + values[1]) * 0.33334f;
+            mAccelGravityData[2] = (mAccelGravityData[2] * 2 + values[2]) * 0.33334f;
+        } else {
+            mGeomagneticData[0] = (mGeomagneticData[0] * 1 + values[0]) * 0.5f;
+            mGeomagneticData[1] = (mGeomagneticData[1] * 1 + values[1]) * 0.5f;
+            mGeomagneticData[2] = (mGeomagneticData[2] * 1 + values[2]) * 0.5f;
+            float x = mGeomagneticData[0];
+            float y = mGeomagneticData[1];
+            float z = mGeomagneticData[2];
+            // the field strength check
+            Math.sqrt(x * x + y * y + z * z);
+        }
+        rootMeanSquareBuffer(mBufferedAccelGData, mAccelGravityData);
+        rootMeanSquareBuffer(mBufferedMagnetData, mGeomagneticData);
+        if (!getRotationMatrix(rotationMatrix, mBufferedAccelGData, mBufferedMagnetData)) {
+            return false;
+        }
+        if (remap) {
+            remapYMinusX(rotationMatrix, mRemapped);
+            System.arraycopy(mRemapped, 0, rotationMatrix, 0, 16);
+        }
+        return true;
+    }
+
+    private static void rootMeanSquareBuffer(float[] target, float[] values) {
+        final float amplification = 200.0f;
+        float buffer = 20.0f;
+        for (int i = 0; i < 3; i++) {
+            target[i] += amplification;
+            values[i] += amplification;
+            target[i] = (float) Math.sqrt((target[i] * target[i] * buffer + values[i] * values[i]) / (1 + buffer));
+            target[i] -= amplification;
+            values[i] -= amplification;
+        }
+    }
+
+    /**
+     * SensorManager.getRotationMatrix for a 3x3 or 4x4 matrix, without the inclination.
+     */
+    public static boolean getRotationMatrix(float[] r, float[] gravity, float[] geomagnetic) {
+        float ax = gravity[0];
+        float ay = gravity[1];
+        float az = gravity[2];
+        final float normsqA = ax * ax + ay * ay + az * az;
+        final float g = 9.81f;
+        final float freeFallGravitySquared = 0.01f * g * g;
+        if (normsqA < freeFallGravitySquared) {
+            return false;
+        }
+        final float ex = geomagnetic[0];
+        final float ey = geomagnetic[1];
+        final float ez = geomagnetic[2];
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        final float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (normH < 0.1f) {
+            return false;
+        }
+        final float invH = 1.0f / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        final float invA = 1.0f / (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+        final float mx = ay * hz - az * hy;
+        final float my = az * hx - ax * hz;
+        final float mz = ax * hy - ay * hx;
+        if (r.length == 9) {
+            r[0] = hx;
+            r[1] = hy;
+            r[2] = hz;
+            r[3] = mx;
+            r[4] = my;
+            r[5] = mz;
+            r[6] = ax;
+            r[7] = ay;
+            r[8] = az;
+        } else {
+            r[0] = hx;
+            r[1] = hy;
+            r[2] = hz;
+            r[3] = 0;
+            r[4] = mx;
+            r[5] = my;
+            r[6] = mz;
+            r[7] = 0;
+            r[8] = ax;
+            r[9] = ay;
+            r[10] = az;
+            r[11] = 0;
+            r[12] = 0;
+            r[13] = 0;
+            r[14] = 0;
+            r[15] = 1;
+        }
+        return true;
+    }
+
+    /**
+     * remapCoordinateSystem(in, AXIS_Y, AXIS_MINUS_X, out) for 4x4 matrices.
+     */
+    public static void remapYMinusX(float[] in, float[] out) {
+        for (int row = 0; row < 3; row++) {
+            out[row * 4] = in[row * 4 + 1];
+            out[row * 4 + 1] = -in[row * 4];
+            out[row * 4 + 2] = in[row * 4 + 2];
+            out[row * 4 + 3] = 0;
+        }
+        out[12] = 0;
+        out[13] = 0;
+        out[14] = 0;
+        out[15] = 1;
+    }
+}
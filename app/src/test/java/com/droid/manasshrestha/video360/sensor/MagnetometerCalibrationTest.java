@@ -0,0 +1,110 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MagnetometerCalibrationTest {
+
+    private static final float FIELD = 48;
+
+    private MagnetometerCalibration mCalibration;
+    private final float[] mOut = new float[3];
+    private final Random mRandom = new Random(7);
+
+    @Before
+    public void setUp() throws Exception {
+        mCalibration = new MagnetometerCalibration();
+    }
+
+    /**
+     * Feeds samples of the earth's field seen from random directions, shifted by the offset.
+     */
+    private void tumble(int count, float ox, float oy, float oz, float noise) {
+        for (int i = 0; i < count; i++) {
+            double z = mRandom.nextDouble() * 2 - 1;
+            double a = mRandom.nextDouble() * 2 * Math.PI;
+            double r = Math.sqrt(1 - z * z);
+            mCalibration.onMagnetometer(
+                    (float) (FIELD * r * Math.cos(a) + ox + mRandom.nextGaussian() * noise),
+                    (float) (FIELD * r * Math.sin(a) + oy + mRandom.nextGaussian() * noise),
+                    (float) (FIELD * z + oz + mRandom.nextGaussian() * noise), mOut);
+        }
+    }
+
+    @Test
+    public void findsHardIronOffset() throws Exception {
+        tumble(400, 30, -12, 5, 0.5f);
+        assertTrue(mCalibration.isCalibrated());
+        assertTrue(mCalibration.getConfidence() > 0.8f);
+        float[] offset = new float[3];
+        mCalibration.getOffset(offset);
+        assertArrayEquals(new float[]{30, -12, 5}, offset, 0.5f);
+        assertEquals(FIELD, mCalibration.getFieldStrength(), 0.5f);
+
+        assertTrue(mCalibration.onMagnetometer(30 + FIELD, -12, 5, mOut));
+        assertArrayEquals(new float[]{FIELD, 0, 0}, mOut, 0.5f);
+    }
+
+    @Test
+    public void rejectsDisturbedSamples() throws Exception {
+        tumble(400, 10, 0, 0, 0.5f);
+        assertFalse(mCalibration.onMagnetometer(10 + FIELD * 2, 0, 0, mOut));
+        assertFalse(mCalibration.onMagnetometer(10, FIELD * 0.5f, 0, mOut));
+        assertTrue(mCalibration.onMagnetometer(10, 0, FIELD * 1.05f, mOut));
+    }
+
+    @Test
+    public void usesFieldRangeUntilCalibrated() throws Exception {
+        assertFalse(mCalibration.isCalibrated());
+        assertTrue(mCalibration.onMagnetometer(0, FIELD, 0, mOut));
+        assertArrayEquals(new float[]{0, FIELD, 0}, mOut, 0f);
+        assertFalse(mCalibration.onMagnetometer(0, 90, 0, mOut));
+        assertFalse(mCalibration.onMagnetometer(0, 10, 0, mOut));
+    }
+
+    @Test
+    public void turningAroundOneAxisIsNotEnough() throws Exception {
+        for (int i = 0; i < 400; i++) {
+            double a = i * 0.05;
+            mCalibration.onMagnetometer((float) (FIELD * Math.cos(a)) + 20, (float) (FIELD * Math.sin(a)), 3, mOut);
+        }
+        assertTrue(mCalibration.getCoverage() < 0.1f);
+        assertFalse(mCalibration.isCalibrated());
+    }
+
+    @Test
+    public void implausibleFieldHasNoConfidence() throws Exception {
+        // a sphere, but far too strong for the earth's field
+        for (int i = 0; i < 400; i++) {
+            double z = mRandom.nextDouble() * 2 - 1;
+            double a = mRandom.nextDouble() * 2 * Math.PI;
+            double r = Math.sqrt(1 - z * z);
+            mCalibration.onMagnetometer((float) (200 * r * Math.cos(a)), (float) (200 * r * Math.sin(a)),
+                    (float) (200 * z), mOut);
+        }
+        assertEquals(200, mCalibration.getFieldStrength(), 1f);
+        assertEquals(0, mCalibration.getConfidence(), 0f);
+    }
+
+    @Test
+    public void followsChangedOffset() throws Exception {
+        tumble(400, 0, 0, 0, 0.5f);
+        tumble(3000, 0, 25, 0, 0.5f);
+        float[] offset = new float[3];
+        mCalibration.getOffset(offset);
+        assertArrayEquals(new float[]{0, 25, 0}, offset, 1f);
+        assertTrue(mCalibration.isCalibrated());
+    }
+
+    @Test
+    public void resetForgetsFit() throws Exception {
+        tumble(400, 30, 0, 0, 0.5f);
+        mCalibration.reset();
+        assertFalse(mCalibration.isCalibrated());
+        assertEquals(0, mCalibration.getFieldStrength(), 0f);
+    }
+}
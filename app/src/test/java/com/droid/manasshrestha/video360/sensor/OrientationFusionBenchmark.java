@@ -0,0 +1,98 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per sensor event of the old GyroscopeActivity path (smoothing, root mean square buffers,
+ * getRotationMatrix and remapCoordinateSystem, see {@link LegacyOrientation}) against
+ * {@link OrientationFusion}. The old path's Display lookups are not included.
+ * <p/>
+ * Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OrientationFusionBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private final float[][] mAccel = new float[SAMPLES][3];
+    private final float[][] mMagnet = new float[SAMPLES][3];
+    private final float[] mMatrix = new float[16];
+    private final float[] mQuaternion = new float[4];
+    private LegacyOrientation mLegacy;
+    private OrientationFusion mFusion;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            mAccel[i][0] = 0.3f + (float) random.nextGaussian() * 0.2f;
+            mAccel[i][1] = 9.5f + (float) random.nextGaussian() * 0.2f;
+            mAccel[i][2] = 1.2f + (float) random.nextGaussian() * 0.2f;
+            mMagnet[i][0] = 4f + (float) random.nextGaussian();
+            mMagnet[i][1] = -38f + (float) random.nextGaussian();
+            mMagnet[i][2] = 21f + (float) random.nextGaussian();
+        }
+        mLegacy = new LegacyOrientation();
+        mFusion = new OrientationFusion();
+        mFusion.setRemap(true);
+    }
+
+    @Benchmark
+    public float[] legacy() {
+        int i = mIndex++ & (SAMPLES - 1);
+        boolean accelerometer = (i & 1) == 0;
+        mLegacy.onSensorChanged(accelerometer, accelerometer ? mAccel[i] : mMagnet[i], true);
+        return mLegacy.rotationMatrix;
+    }
+
+    @Benchmark
+    public float[] fusionMatrix() {
+        int i = mIndex++ & (SAMPLES - 1);
+        if ((i & 1) == 0) {
+            mFusion.onAccelerometer(mAccel[i][0], mAccel[i][1], mAccel[i][2]);
+        } else {
+            mFusion.onMagnetometer(mMagnet[i][0], mMagnet[i][1], mMagnet[i][2]);
+        }
+        mFusion.getRotationMatrix(mMatrix);
+        return mMatrix;
+    }
+
+    @Benchmark
+    public float[] fusionQuaternion() {
+        int i = mIndex++ & (SAMPLES - 1);
+        if ((i & 1) == 0) {
+            mFusion.onAccelerometer(mAccel[i][0], mAccel[i][1], mAccel[i][2]);
+        } else {
+            mFusion.onMagnetometer(mMagnet[i][0], mMagnet[i][1], mMagnet[i][2]);
+        }
+        mFusion.getQuaternion(mQuaternion);
+        return mQuaternion;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrientationFusionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
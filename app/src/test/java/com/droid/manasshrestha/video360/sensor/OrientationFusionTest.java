@@ -0,0 +1,153 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OrientationFusionTest {
+
+    private static final float EPS = 1e-4f;
+
+    private OrientationFusion mFusion;
+    private final float[] mMatrix = new float[16];
+    private final float[] mExpected = new float[16];
+
+    @Before
+    public void setUp() throws Exception {
+        mFusion = new OrientationFusion();
+    }
+
+    private void assertMatrix(float[] expected, float[] actual, float eps) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("element " + i, expected[i], actual[i], eps);
+        }
+    }
+
+    @Test
+    public void flatFacingNorthIsIdentity() throws Exception {
+        mFusion.onAccelerometer(0, 0, 9.81f);
+        mFusion.onMagnetometer(0, 22, -40);
+        assertTrue(mFusion.isInitialized());
+
+        mFusion.getRotationMatrix(mMatrix);
+        assertMatrix(new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1}, mMatrix, EPS);
+    }
+
+    @Test
+    public void matchesSensorManagerForArbitraryOrientations() throws Exception {
+        float[][] gravity = {{3.1f, 4.2f, 7.9f}, {-9.1f, 0.4f, 2f}, {0.2f, -9.7f, -1.1f}, {1f, 1f, -9.6f}};
+        float[][] field = {{12f, -30f, 18f}, {-25f, 3f, 35f}, {40f, 5f, -2f}, {-7f, 28f, 30f}};
+        mFusion.setGain(1f);
+        for (int i = 0; i < gravity.length; i++) {
+            mFusion.onAccelerometer(gravity[i][0], gravity[i][1], gravity[i][2]);
+            mFusion.onMagnetometer(field[i][0], field[i][1], field[i][2]);
+            mFusion.getRotationMatrix(mMatrix);
+            assertTrue(LegacyOrientation.getRotationMatrix(mExpected, gravity[i], field[i]));
+            assertMatrix(mExpected, mMatrix, EPS);
+        }
+    }
+
+    @Test
+    public void remapMatchesRemapCoordinateSystem() throws Exception {
+        float[] gravity = {3.1f, 4.2f, 7.9f};
+        float[] field = {12f, -30f, 18f};
+        mFusion.setRemap(true);
+        mFusion.onAccelerometer(gravity[0], gravity[1], gravity[2]);
+        mFusion.onMagnetometer(field[0], field[1], field[2]);
+        mFusion.getRotationMatrix(mMatrix);
+
+        float[] plain = new float[16];
+        LegacyOrientation.getRotationMatrix(plain, gravity, field);
+        LegacyOrientation.remapYMinusX(plain, mExpected);
+        assertMatrix(mExpected, mMatrix, EPS);
+    }
+
+    @Test
+    public void threeByThreeLayout() throws Exception {
+        float[] gravity = {-9.1f, 0.4f, 2f};
+        float[] field = {-25f, 3f, 35f};
+        mFusion.onAccelerometer(gravity[0], gravity[1], gravity[2]);
+        mFusion.onMagnetometer(field[0], field[1], field[2]);
+        float[] matrix = new float[9];
+        float[] expected = new float[9];
+        mFusion.getRotationMatrix(matrix);
+        LegacyOrientation.getRotationMatrix(expected, gravity, field);
+        assertMatrix(expected, matrix, EPS);
+    }
+
+    @Test
+    public void rejectsFreeFall() throws Exception {
+        mFusion.onAccelerometer(0.1f, 0, 0.1f);
+        mFusion.onMagnetometer(0, 22, -40);
+        assertFalse(mFusion.isInitialized());
+    }
+
+    @Test
+    public void gyroscopeIntegratesYaw() throws Exception {
+        mFusion.onAccelerometer(0, 0, 9.81f);
+        mFusion.onMagnetometer(0, 22, -40);
+        long t = 1000000000L;
+        for (int i = 0; i <= 200; i++, t += 5000000L) {
+            mFusion.onGyroscope(t, 0, 0, 1f);
+        }
+        float[] q = new float[4];
+        mFusion.getQuaternion(q);
+        // 1 rad around z: (cos 0.5, 0, 0, sin 0.5)
+        assertEquals(Math.cos(0.5), q[0], 1e-3);
+        assertEquals(Math.sin(0.5), q[3], 1e-3);
+    }
+
+    @Test
+    public void absoluteSamplesPullGyroDriftBack() throws Exception {
+        mFusion.onAccelerometer(0, 0, 9.81f);
+        mFusion.onMagnetometer(0, 22, -40);
+        long t = 1000000000L;
+        for (int i = 0; i < 100; i++, t += 5000000L) {
+            mFusion.onGyroscope(t, 0, 0, 1f);
+        }
+        float[] q = new float[4];
+        mFusion.getQuaternion(q);
+        float drifted = q[3];
+        assertTrue(drifted > 0.2f);
+
+        for (int i = 0; i < 200; i++) {
+            mFusion.onMagnetometer(0, 22, -40);
+        }
+        mFusion.getQuaternion(q);
+        assertEquals(0f, q[3], 1e-3f);
+        assertEquals(1f, q[0], 1e-3f);
+    }
+
+    @Test
+    public void smoothsAbsoluteJitter() throws Exception {
+        mFusion.onAccelerometer(0, 0, 9.81f);
+        mFusion.onMagnetometer(0, 22, -40);
+        // a single sample 90 degrees off moves the estimate by the gain only
+        mFusion.onMagnetometer(22, 0, -40);
+        mFusion.getRotationMatrix(mMatrix);
+        assertEquals(1f, mMatrix[0], 0.01f);
+        assertTrue(Math.abs(mMatrix[1]) > 0.01f);
+    }
+
+    @Test
+    public void staysNormalized() throws Exception {
+        mFusion.onAccelerometer(3.1f, 4.2f, 7.9f);
+        mFusion.onMagnetometer(12f, -30f, 18f);
+        long t = 1000000000L;
+        for (int i = 0; i < 10000; i++, t += 5000000L) {
+            mFusion.onGyroscope(t, 0.3f, -0.7f, 1.1f);
+            if (i % 4 == 0) {
+                mFusion.onAccelerometer(3.1f, 4.2f, 7.9f);
+            }
+        }
+        float[] q = new float[4];
+        mFusion.getQuaternion(q);
+        assertEquals(1f, q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3], 1e-4f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroGain() throws Exception {
+        mFusion.setGain(0f);
+    }
+}
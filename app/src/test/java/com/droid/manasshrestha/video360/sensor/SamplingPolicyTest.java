@@ -0,0 +1,98 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SamplingPolicyTest {
+
+    private static final long STEP_NS = 20000000L;
+
+    private SamplingPolicy mPolicy;
+    private long mTime;
+
+    @Before
+    public void setUp() throws Exception {
+        mPolicy = new SamplingPolicy();
+        mTime = 1000000000L;
+    }
+
+    /**
+     * Feeds gyroscope samples with the given rate for the given time.
+     *
+     * @return Number of mode changes.
+     */
+    private int rotate(float rate, long durationNs) {
+        int changes = 0;
+        for (long end = mTime + durationNs; mTime < end; mTime += STEP_NS) {
+            if (mPolicy.onGyroscope(mTime, 0, rate, 0)) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    @Test
+    public void startsActive() throws Exception {
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+    }
+
+    @Test
+    public void goesIdleOnlyAfterStayingStill() throws Exception {
+        assertEquals(0, rotate(0.01f, SamplingPolicy.IDLE_AFTER_NS - 100000000L));
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+        assertEquals(1, rotate(0.01f, 200000000L));
+        assertEquals(SamplingPolicy.MODE_IDLE, mPolicy.getMode());
+    }
+
+    @Test
+    public void wakesOnFirstMotion() throws Exception {
+        rotate(0, SamplingPolicy.IDLE_AFTER_NS + STEP_NS);
+        assertEquals(SamplingPolicy.MODE_IDLE, mPolicy.getMode());
+        assertTrue(mPolicy.onGyroscope(mTime, 0.3f, 0, 0));
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+    }
+
+    @Test
+    public void handHeldJitterKeepsTheCurrentMode() throws Exception {
+        // between the still and the wake level: never drops to idle
+        float jitter = SamplingPolicy.GYRO_WAKE_RATE * 0.7f;
+        assertEquals(0, rotate(jitter, 10 * SamplingPolicy.IDLE_AFTER_NS));
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+
+        // and doesn't wake an idle device either
+        rotate(0, SamplingPolicy.IDLE_AFTER_NS + STEP_NS);
+        assertEquals(0, rotate(jitter, 10 * SamplingPolicy.IDLE_AFTER_NS));
+        assertEquals(SamplingPolicy.MODE_IDLE, mPolicy.getMode());
+    }
+
+    @Test
+    public void briefMotionRestartsTheStillTimer() throws Exception {
+        rotate(0, SamplingPolicy.IDLE_AFTER_NS - 100000000L);
+        rotate(SamplingPolicy.GYRO_WAKE_RATE * 0.5f, STEP_NS);
+        rotate(0, SamplingPolicy.IDLE_AFTER_NS - 100000000L);
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+    }
+
+    @Test
+    public void accelerometerIgnoresGravityAndWakesOnShake() throws Exception {
+        for (int i = 0; i < 200; i++, mTime += STEP_NS) {
+            mPolicy.onAccelerometer(mTime, 0.3f, 9.7f, 0.5f);
+        }
+        assertEquals(SamplingPolicy.MODE_IDLE, mPolicy.getMode());
+        assertTrue(mPolicy.getLevel() < SamplingPolicy.STILL_LEVEL);
+
+        assertTrue(mPolicy.onAccelerometer(mTime, 1.5f, 9.7f, 0.5f));
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+    }
+
+    @Test
+    public void resetForgetsHistory() throws Exception {
+        rotate(0, SamplingPolicy.IDLE_AFTER_NS + STEP_NS);
+        mPolicy.reset();
+        assertEquals(SamplingPolicy.MODE_ACTIVE, mPolicy.getMode());
+        assertEquals(0, mPolicy.getTransitions());
+        assertEquals(0, rotate(0, SamplingPolicy.IDLE_AFTER_NS - 100000000L));
+    }
+}
@@ -0,0 +1,154 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorRingTest {
+
+    private SensorRing mRing;
+    private final List<float[]> mDrained = new ArrayList<>();
+    private final List<Long> mTimestamps = new ArrayList<>();
+
+    private final SensorRing.Sink mSink = new SensorRing.Sink() {
+        @Override
+        public void onSample(int type, long timestampNs, float[] values, int offset) {
+            float[] copy = new float[4];
+            copy[0] = type;
+            System.arraycopy(values, offset, copy, 1, 3);
+            mDrained.add(copy);
+            mTimestamps.add(timestampNs);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        mRing = new SensorRing(8, 3);
+    }
+
+    private boolean offer(int i) {
+        return mRing.offer(4, i, new float[]{i, i + 0.5f, -i});
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() throws Exception {
+        assertEquals(8, mRing.getCapacity());
+        assertEquals(16, new SensorRing(9, 1).getCapacity());
+        assertEquals(1, new SensorRing(1, 1).getCapacity());
+    }
+
+    @Test
+    public void drainsInOrderWithValues() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(offer(i));
+        }
+        assertEquals(5, mRing.size());
+        assertEquals(5, mRing.drain(mSink));
+        assertEquals(0, mRing.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Long.valueOf(i + 1), mTimestamps.get(i));
+            assertArrayEquals(new float[]{4, i + 1, i + 1.5f, -(i + 1)}, mDrained.get(i), 0f);
+        }
+    }
+
+    @Test
+    public void overrunDropsNewestAndCounts() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            assertTrue(offer(i));
+        }
+        assertFalse(offer(8));
+        assertFalse(offer(9));
+        assertEquals(2, mRing.getOverruns());
+        assertEquals(8, mRing.size());
+
+        mRing.drain(mSink);
+        assertEquals(8, mDrained.size());
+        assertEquals(Long.valueOf(7), mTimestamps.get(7));
+
+        // room again after draining
+        assertTrue(offer(10));
+        assertEquals(2, mRing.getOverruns());
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() throws Exception {
+        int next = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(offer(next++));
+            }
+            mRing.drain(mSink);
+        }
+        assertEquals(500, mTimestamps.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Long.valueOf(i), mTimestamps.get(i));
+        }
+        assertEquals(0, mRing.getOverruns());
+    }
+
+    @Test
+    public void padsShortAndTruncatesLongSamples() throws Exception {
+        mRing.offer(1, 1, new float[]{9, 9, 9});
+        mRing.drain(mSink);
+        mDrained.clear();
+        mRing.offer(1, 2, new float[]{7});
+        mRing.offer(1, 3, new float[]{1, 2, 3, 4, 5, 6});
+        mRing.drain(mSink);
+        assertArrayEquals(new float[]{1, 7, 0, 0}, mDrained.get(0), 0f);
+        assertArrayEquals(new float[]{1, 1, 2, 3}, mDrained.get(1), 0f);
+    }
+
+    @Test
+    public void wakesOncePerDrain() throws Exception {
+        offer(1);
+        assertTrue(mRing.shouldWake());
+        offer(2);
+        assertFalse(mRing.shouldWake());
+        mRing.drain(mSink);
+        assertTrue(mRing.shouldWake());
+        assertFalse(mRing.shouldWake());
+    }
+
+    @Test
+    public void concurrentProducerNeverTearsOrReorders() throws Exception {
+        final SensorRing ring = new SensorRing(16, 3);
+        final int count = 200000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] values = new float[3];
+                for (int i = 0; i < count; i++) {
+                    values[0] = i;
+                    values[1] = i;
+                    values[2] = i;
+                    ring.offer(0, i, values);
+                }
+            }
+        });
+        final long[] last = {-1};
+        final int[] received = {0};
+        SensorRing.Sink sink = new SensorRing.Sink() {
+            @Override
+            public void onSample(int type, long timestampNs, float[] values, int offset) {
+                assertTrue(timestampNs > last[0]);
+                assertEquals((float) timestampNs, values[offset], 0f);
+                assertEquals((float) timestampNs, values[offset + 2], 0f);
+                last[0] = timestampNs;
+                received[0]++;
+            }
+        };
+        producer.start();
+        while (producer.isAlive()) {
+            ring.drain(sink);
+        }
+        producer.join();
+        ring.drain(sink);
+
+        assertEquals(count, received[0] + ring.getOverruns());
+        assertTrue(received[0] > 0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import android.hardware.Sensor;
+
+import com.droid.manasshrestha.video360.scrub.TraceReplay;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorTraceTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("sensors", SensorTrace.EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    /**
+     * Records a device being turned around its y axis and back while lying in a steady field.
+     */
+    private SensorTrace recordTiltSession(int capacity) throws IOException {
+        SensorTrace trace = SensorTrace.create(mFile, 6, capacity);
+        float[] values = new float[6];
+        long t = 1000000000L;
+        for (int i = 0; i < 2000; i++, t += 5000000L) {
+            values[0] = 0.01f;
+            values[1] = (float) Math.sin(i / 200.0) + 0.02f;
+            values[2] = -0.01f;
+            values[3] = 0;
+            values[4] = 0.02f;
+            values[5] = 0;
+            trace.record(Sensor.TYPE_GYROSCOPE_UNCALIBRATED, t, values, 0);
+            if (i % 4 == 0) {
+                trace.record(Sensor.TYPE_ACCELEROMETER, t, new float[]{0.2f, 9.6f, 1.1f}, 0);
+            }
+            if (i % 8 == 0) {
+                trace.record(Sensor.TYPE_MAGNETIC_FIELD, t, new float[]{4f, -38f, 21f}, 0);
+            }
+        }
+        return trace;
+    }
+
+    @Test
+    public void roundTripsSamples() throws Exception {
+        SensorTrace trace = SensorTrace.create(mFile, 3, 16);
+        assertTrue(trace.record(4, 100, new float[]{1, 2, 3}, 0));
+        assertTrue(trace.record(1, 200, new float[]{9, 4, 5, 6}, 1));
+        assertTrue(trace.record(2, 300, new float[]{7}, 0));
+        trace.force();
+
+        SensorTrace reopened = SensorTrace.open(mFile);
+        assertEquals(3, reopened.size());
+        assertEquals(3, reopened.getWidth());
+        assertEquals(16, reopened.getCapacity());
+        assertEquals(trace.getStartTime(), reopened.getStartTime());
+
+        final List<String> samples = new ArrayList<>();
+        reopened.replay(new SensorRing.Sink() {
+            @Override
+            public void onSample(int type, long timestampNs, float[] values, int offset) {
+                samples.add(type + "@" + timestampNs + ":" + values[offset] + "," + values[offset + 1] + ","
+                        + values[offset + 2]);
+            }
+        });
+        assertEquals("4@100:1.0,2.0,3.0", samples.get(0));
+        assertEquals("1@200:4.0,5.0,6.0", samples.get(1));
+        assertEquals("2@300:7.0,0.0,0.0", samples.get(2));
+    }
+
+    @Test
+    public void dropsOnceFull() throws Exception {
+        SensorTrace trace = SensorTrace.create(mFile, 3, 2);
+        assertTrue(trace.record(1, 1, new float[3], 0));
+        assertTrue(trace.record(1, 2, new float[3], 0));
+        assertFalse(trace.record(1, 3, new float[3], 0));
+        assertEquals(2, trace.size());
+        assertEquals(1, trace.getDropped());
+        assertEquals(2, SensorTrace.open(mFile).size());
+    }
+
+    @Test
+    public void headerCountIsCurrentWhileRecording() throws Exception {
+        SensorTrace trace = SensorTrace.create(mFile, 3, 100);
+        for (int i = 0; i < 10; i++) {
+            trace.record(1, i, new float[3], 0);
+        }
+        // no force or close, like a session cut short
+        assertEquals(10, SensorTrace.open(mFile).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[64]);
+        out.close();
+        SensorTrace.open(mFile);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reopenedTraceIsReadOnly() throws Exception {
+        SensorTrace.create(mFile, 3, 4);
+        SensorTrace.open(mFile).record(1, 1, new float[3], 0);
+    }
+
+    @Test
+    public void replayIsDeterministic() throws Exception {
+        SensorTrace trace = recordTiltSession(2000);
+        assertTrue(trace.getDropped() > 0);
+
+        TraceReplay first = new TraceReplay(30000);
+        SensorTrace.open(mFile).replay(first);
+        TraceReplay second = new TraceReplay(30000);
+        SensorTrace.open(mFile).replay(second);
+
+        assertEquals(2000, first.samples);
+        assertTrue(first.seeks > 0);
+        assertTrue(first.getScheduler().getCompletedCount() > 0);
+        assertTrue(first.getPosition() > 0);
+        assertEquals(first.toString(), second.toString());
+    }
+}
@@ -0,0 +1,65 @@
+package com.droid.manasshrestha.video360.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TiltDirectionTest {
+
+    private TiltDirection mTilt;
+
+    @Before
+    public void setUp() throws Exception {
+        mTilt = new TiltDirection();
+    }
+
+    @Test
+    public void classifiesTheDominantAxis() throws Exception {
+        assertTrue(mTilt.onAccelerometer(4, 1));
+        assertEquals(TiltDirection.LEFT, mTilt.getDirection());
+        mTilt.reset();
+        mTilt.onAccelerometer(-4, 1);
+        assertEquals(TiltDirection.RIGHT, mTilt.getDirection());
+        mTilt.reset();
+        mTilt.onAccelerometer(1, -4);
+        assertEquals(TiltDirection.TOP, mTilt.getDirection());
+        mTilt.reset();
+        mTilt.onAccelerometer(1, 4);
+        assertEquals(TiltDirection.BOTTOM, mTilt.getDirection());
+    }
+
+    @Test
+    public void reportsTransitionsOnly() throws Exception {
+        assertFalse(mTilt.onAccelerometer(0.2f, 0.1f));
+        assertTrue(mTilt.onAccelerometer(4, 0));
+        for (int i = 0; i < 100; i++) {
+            assertFalse(mTilt.onAccelerometer(4 + (i % 3) * 0.5f, i % 2));
+        }
+        assertTrue(mTilt.onAccelerometer(0, 0));
+        assertFalse(mTilt.onAccelerometer(0.1f, -0.1f));
+    }
+
+    @Test
+    public void deadBandAroundCenter() throws Exception {
+        // between exit and enter: stays wherever it was
+        assertFalse(mTilt.onAccelerometer(2, 0));
+        assertEquals(TiltDirection.CENTER, mTilt.getDirection());
+        mTilt.onAccelerometer(3, 0);
+        assertFalse(mTilt.onAccelerometer(2, 0));
+        assertEquals(TiltDirection.LEFT, mTilt.getDirection());
+        assertTrue(mTilt.onAccelerometer(1, 1));
+        assertEquals(TiltDirection.CENTER, mTilt.getDirection());
+    }
+
+    @Test
+    public void diagonalDoesNotFlicker() throws Exception {
+        mTilt.onAccelerometer(4, 3.8f);
+        assertEquals(TiltDirection.LEFT, mTilt.getDirection());
+        // y slightly ahead, but within the margin
+        assertFalse(mTilt.onAccelerometer(3.8f, 4));
+        assertFalse(mTilt.onAccelerometer(4, 3.9f));
+        assertTrue(mTilt.onAccelerometer(3, 4));
+        assertEquals(TiltDirection.BOTTOM, mTilt.getDirection());
+    }
+}
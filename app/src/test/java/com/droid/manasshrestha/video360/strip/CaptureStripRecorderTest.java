@@ -0,0 +1,138 @@
+package com.droid.manasshrestha.video360.strip;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CaptureStripRecorderTest {
+
+    private static final int PREVIEW_WIDTH = 8;
+    private static final int PREVIEW_HEIGHT = 4;
+    private static final short WHITE = (short) 0xffff;
+    private static final short BLACK = 0;
+
+    private CaptureStripRecorder mRecorder;
+
+    @Before
+    public void setUp() throws Exception {
+        mRecorder = new CaptureStripRecorder(4, 2, 4, 10);
+    }
+
+    /**
+     * @return An NV21 frame of one luma value, without colour.
+     */
+    private static byte[] frame(int luma) {
+        byte[] nv21 = new byte[PREVIEW_WIDTH * PREVIEW_HEIGHT * 3 / 2];
+        Arrays.fill(nv21, 0, PREVIEW_WIDTH * PREVIEW_HEIGHT, (byte) luma);
+        Arrays.fill(nv21, PREVIEW_WIDTH * PREVIEW_HEIGHT, nv21.length, (byte) 128);
+        return nv21;
+    }
+
+    private boolean offer(int luma, int timeMs) {
+        return mRecorder.onPreviewFrame(frame(luma), PREVIEW_WIDTH, PREVIEW_HEIGHT, timeMs);
+    }
+
+    @Test
+    public void convertsVideoRangeYuv() throws Exception {
+        assertEquals(WHITE, CaptureStripRecorder.rgb565(235 - 16, 0, 0));
+        assertEquals(BLACK, CaptureStripRecorder.rgb565(16 - 16, 0, 0));
+        // pure red: Y 82, U 90, V 240
+        assertEquals((short) 0xf800, CaptureStripRecorder.rgb565(82 - 16, 90 - 128, 240 - 128));
+    }
+
+    @Test
+    public void downscalesByNearestNeighbour() throws Exception {
+        byte[] nv21 = frame(16);
+        // light up the source columns 2 and 6, which the 4 pixel wide frame samples
+        for (int y = 0; y < PREVIEW_HEIGHT; y++) {
+            nv21[y * PREVIEW_WIDTH + 2] = (byte) 235;
+            nv21[y * PREVIEW_WIDTH + 6] = (byte) 235;
+        }
+        assertTrue(mRecorder.onPreviewFrame(nv21, PREVIEW_WIDTH, PREVIEW_HEIGHT, 0));
+
+        FrameStrip strip = new FrameStrip(1, 4, 2, 1f, 0);
+        assertTrue(mRecorder.fill(strip));
+        ByteBuffer pixels = strip.frame(0);
+        for (int y = 0; y < 2; y++) {
+            assertEquals(BLACK, pixels.getShort(pixels.position() + (y * 4) * 2));
+            assertEquals(WHITE, pixels.getShort(pixels.position() + (y * 4 + 1) * 2));
+            assertEquals(BLACK, pixels.getShort(pixels.position() + (y * 4 + 2) * 2));
+            assertEquals(WHITE, pixels.getShort(pixels.position() + (y * 4 + 3) * 2));
+        }
+    }
+
+    @Test
+    public void skipsFramesBeforeTheStartAndWithinTheInterval() throws Exception {
+        assertFalse(offer(128, -5));
+        assertTrue(offer(128, 0));
+        assertFalse(offer(128, 5));
+        assertTrue(offer(128, 10));
+        assertFalse(mRecorder.onPreviewFrame(new byte[4], PREVIEW_WIDTH, PREVIEW_HEIGHT, 40));
+        assertEquals(2, mRecorder.size());
+        assertEquals(5, mRecorder.getReceived());
+    }
+
+    @Test
+    public void fullPoolKeepsEveryOtherFrame() throws Exception {
+        for (int t = 0; t <= 30; t += 10) {
+            assertTrue(offer(16, t));
+        }
+        assertTrue(offer(235, 40));
+        assertEquals(3, mRecorder.size());
+        assertEquals(20, mRecorder.getInterval());
+        assertEquals(0, mRecorder.getTime(0));
+        assertEquals(20, mRecorder.getTime(1));
+        assertEquals(40, mRecorder.getTime(2));
+        assertFalse(offer(16, 50));
+        assertTrue(offer(16, 60));
+
+        mRecorder.reset();
+        assertEquals(0, mRecorder.size());
+        assertEquals(10, mRecorder.getInterval());
+    }
+
+    @Test
+    public void fillsEachSlotWithTheNearestFrame() throws Exception {
+        FrameStrip strip = new FrameStrip(5, 4, 2, 1f, 40);
+        assertFalse(mRecorder.fill(strip));
+        assertEquals(0, strip.getReadyCount());
+
+        offer(16, 0);
+        offer(235, 30);
+        assertTrue(mRecorder.fill(strip));
+        assertTrue(strip.isComplete());
+        short[] expected = {BLACK, BLACK, WHITE, WHITE, WHITE};
+        for (int slot = 0; slot < expected.length; slot++) {
+            ByteBuffer pixels = strip.frame(slot);
+            assertEquals("slot " + slot, expected[slot], pixels.getShort(pixels.position()));
+        }
+    }
+
+    @Test
+    public void coversTheCaptureOnlyWithoutLongGaps() throws Exception {
+        assertFalse(mRecorder.covers(100, 50));
+        offer(16, 20);
+        offer(16, 60);
+        assertTrue(mRecorder.covers(100, 50));
+        // the callbacks stopped once the recorder took the camera
+        assertFalse(mRecorder.covers(1000, 50));
+
+        mRecorder.reset();
+        offer(16, 60);
+        offer(16, 90);
+        assertFalse(mRecorder.covers(100, 50));
+        offer(16, 200);
+        assertFalse(mRecorder.covers(200, 100));
+        assertTrue(mRecorder.covers(200, 110));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsStripsOfAnotherSize() throws Exception {
+        offer(16, 0);
+        mRecorder.fill(new FrameStrip(5, 8, 2, 1f, 40));
+    }
+}
@@ -0,0 +1,199 @@
+package com.droid.manasshrestha.video360.strip;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FramePrefetcherTest {
+
+    private static final float SWEEP = (float) (Math.PI / 2);
+    private static final int FRAMES = 91;
+
+    private FrameStrip mStrip;
+    private FramePrefetcher mPrefetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        mStrip = new FrameStrip(FRAMES, 12, 8, SWEEP, 30000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mPrefetcher != null) {
+            mPrefetcher.shutdown();
+        }
+    }
+
+    private FramePrefetcher newPrefetcher(FrameDecoder decoder, int window) {
+        mPrefetcher = new FramePrefetcher(mStrip, decoder, window);
+        return mPrefetcher;
+    }
+
+    private float angleFor(int slot) {
+        return SWEEP * slot / (FRAMES - 1);
+    }
+
+    private void finish(FramePrefetcher prefetcher) throws InterruptedException {
+        assertTrue(prefetcher.awaitIdle(5000));
+    }
+
+    @Test
+    public void prefetchesWindowInScrubDirection() throws Exception {
+        SyntheticFrameDecoder decoder = new SyntheticFrameDecoder();
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 4);
+        prefetcher.onScrub(angleFor(40), -1f);
+        finish(prefetcher);
+
+        for (int slot = 36; slot < 40; slot++) {
+            assertTrue("slot " + slot, mStrip.isReady(slot));
+            assertEquals(SyntheticFrameDecoder.pixelFor(mStrip.timeForSlot(slot)), mStrip.frame(slot).getShort());
+        }
+        assertFalse(mStrip.isReady(35));
+        assertFalse(mStrip.isReady(40));
+        assertFalse(mStrip.isReady(41));
+        assertEquals(4, prefetcher.getDecoded());
+
+        prefetcher.shutdown();
+        finish(prefetcher);
+        assertTrue(decoder.released);
+    }
+
+    @Test
+    public void shutdownDropsQueuedRequests() throws Exception {
+        GatedDecoder decoder = new GatedDecoder();
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 4);
+        prefetcher.onScrub(angleFor(10), 1f);
+        assertTrue(decoder.started.await(5, TimeUnit.SECONDS));
+        prefetcher.shutdown();
+        decoder.gate.countDown();
+        finish(prefetcher);
+
+        assertEquals(1, mStrip.getReadyCount());
+        assertEquals(3, prefetcher.getCancelled());
+        assertTrue(decoder.released);
+        prefetcher.onScrub(angleFor(20), 1f);
+        assertEquals(1, mStrip.getReadyCount());
+    }
+
+    @Test
+    public void advancesFrontierWithoutRequeueing() throws Exception {
+        SyntheticFrameDecoder decoder = new SyntheticFrameDecoder();
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 4);
+        prefetcher.onScrub(angleFor(10), 1f);
+        finish(prefetcher);
+        prefetcher.onScrub(angleFor(11), 1f);
+        prefetcher.onScrub(angleFor(12), 1f);
+        finish(prefetcher);
+
+        // slots 11 to 16, each requested once
+        assertEquals(6, decoder.decoded);
+        assertEquals(6, mStrip.getReadyCount());
+        assertTrue(mStrip.isReady(16));
+    }
+
+    @Test
+    public void dropsRequestsTheScrubHasPassed() throws Exception {
+        GatedDecoder decoder = new GatedDecoder();
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 4);
+        prefetcher.onScrub(angleFor(10), 1f);
+        assertTrue(decoder.started.await(5, TimeUnit.SECONDS));
+        prefetcher.onScrub(angleFor(11), 1f);
+        prefetcher.onScrub(angleFor(12), 1f);
+        decoder.gate.countDown();
+        finish(prefetcher);
+
+        // 11 was decoding, 12 fell out of the bounded queue
+        assertFalse(mStrip.isReady(12));
+        assertEquals(5, decoder.decoded);
+        assertTrue(mStrip.isReady(16));
+    }
+
+    @Test
+    public void ignoresStillDevice() throws Exception {
+        SyntheticFrameDecoder decoder = new SyntheticFrameDecoder();
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 4);
+        prefetcher.onScrub(angleFor(10), 0.01f);
+        finish(prefetcher);
+
+        assertEquals(0, decoder.decoded);
+    }
+
+    @Test
+    public void directionFlipCancelsQueuedRequests() throws Exception {
+        GatedDecoder decoder = new GatedDecoder();
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 4);
+        prefetcher.onScrub(angleFor(50), 1f);
+        assertTrue(decoder.started.await(5, TimeUnit.SECONDS));
+
+        prefetcher.onScrub(angleFor(50), -1f);
+        decoder.gate.countDown();
+        finish(prefetcher);
+
+        // slot 51 was already decoding, 52 to 54 were dropped
+        assertTrue(mStrip.isReady(51));
+        assertFalse(mStrip.isReady(52));
+        assertFalse(mStrip.isReady(54));
+        for (int slot = 46; slot < 50; slot++) {
+            assertTrue("slot " + slot, mStrip.isReady(slot));
+        }
+        assertEquals(3, prefetcher.getCancelled());
+        assertEquals(1, prefetcher.getWasted());
+    }
+
+    @Test
+    public void skipsFramesTheBuilderAlreadyDecoded() throws Exception {
+        SyntheticFrameDecoder decoder = new SyntheticFrameDecoder();
+        for (int slot = 21; slot <= 24; slot++) {
+            new SyntheticFrameDecoder().decode(mStrip.timeForSlot(slot), 12, 8, mStrip.beginWrite(slot));
+            mStrip.commit(slot);
+        }
+        FramePrefetcher prefetcher = newPrefetcher(decoder, 6);
+        prefetcher.onScrub(angleFor(20), 1f);
+        finish(prefetcher);
+
+        assertEquals(2, decoder.decoded);
+        assertTrue(mStrip.isReady(25));
+        assertTrue(mStrip.isReady(26));
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        FramePrefetcher prefetcher = newPrefetcher(new SyntheticFrameDecoder(), 4);
+        assertEquals(-1, prefetcher.lookup(angleFor(30)));
+        prefetcher.onScrub(angleFor(30), 1f);
+        finish(prefetcher);
+
+        assertEquals(31, prefetcher.lookup(angleFor(31)));
+        assertEquals(34, prefetcher.lookup(angleFor(34)));
+        // falls back to the nearest neighbour, which is still a miss
+        assertEquals(34, prefetcher.lookup(angleFor(35)));
+        assertEquals(2, prefetcher.getHits());
+        assertEquals(2, prefetcher.getMisses());
+    }
+
+    /**
+     * Blocks the first decode until the test opens the gate.
+     */
+    private static class GatedDecoder extends SyntheticFrameDecoder {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public boolean decode(int timeMs, int width, int height, ByteBuffer out) {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            return super.decode(timeMs, width, height, out);
+        }
+    }
+}
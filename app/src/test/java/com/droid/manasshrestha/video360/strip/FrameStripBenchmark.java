@@ -0,0 +1,68 @@
+package com.droid.manasshrestha.video360.strip;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency of the frame strip for the geometry RewindForward uses, with and without copying
+ * the frame out (the copy stands in for Bitmap.copyPixelsFromBuffer).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FrameStripBenchmark {
+
+    private static final float SWEEP = (float) (Math.PI / 2);
+
+    private FrameStrip mStrip;
+    private byte[] mBitmap;
+    private float mAngle;
+
+    @Setup
+    public void setUp() {
+        mStrip = new FrameStrip(180, 240, 160, SWEEP, 30000);
+        new FrameStripBuilder(mStrip, new SyntheticFrameDecoder(), null).run();
+        mBitmap = new byte[mStrip.getBytesPerFrame()];
+    }
+
+    private float nextAngle() {
+        mAngle += 0.0137f;
+        if (mAngle > SWEEP) {
+            mAngle -= SWEEP;
+        }
+        return mAngle;
+    }
+
+    @Benchmark
+    public int lookup() {
+        return mStrip.lookup(nextAngle());
+    }
+
+    @Benchmark
+    public byte[] lookupAndCopy() {
+        mStrip.frame(mStrip.lookup(nextAngle())).get(mBitmap);
+        return mBitmap;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FrameStripBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
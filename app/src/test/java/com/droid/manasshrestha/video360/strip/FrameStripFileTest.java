@@ -0,0 +1,145 @@
+package com.droid.manasshrestha.video360.strip;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class FrameStripFileTest {
+
+    private static final float SWEEP = (float) (Math.PI / 2);
+
+    private File mDir;
+    private File mVideo;
+    private File mStripFile;
+    private FrameStrip mStrip;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("captures", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mVideo = new File(mDir, "test72.mp4");
+        FileOutputStream out = new FileOutputStream(mVideo);
+        out.write(new byte[1234]);
+        out.close();
+        mStripFile = FrameStripFile.fileFor(mVideo);
+
+        mStrip = new FrameStrip(40, 12, 8, SWEEP, 30000);
+        new FrameStripBuilder(mStrip, new SyntheticFrameDecoder(), null).run();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void stripFileSitsNextToVideo() throws Exception {
+        assertEquals(new File(mDir, "test72.p3d"), mStripFile);
+    }
+
+    @Test
+    public void roundTripsFramesAndGeometry() throws Exception {
+        FrameStripFile.write(mStrip, mStripFile, mVideo);
+        FrameStrip reopened = FrameStripFile.open(mStripFile, mVideo);
+
+        assertTrue(reopened.isComplete());
+        assertEquals(mStrip.getFrameCount(), reopened.getFrameCount());
+        assertEquals(mStrip.getWidth(), reopened.getWidth());
+        assertEquals(mStrip.getHeight(), reopened.getHeight());
+        assertEquals(mStrip.getDuration(), reopened.getDuration());
+        assertEquals(mStrip.getSweep(), reopened.getSweep(), 0f);
+        for (int slot = 0; slot < mStrip.getFrameCount(); slot++) {
+            assertEquals(mStrip.frame(slot), reopened.frame(slot));
+        }
+        assertEquals(-1, FrameStripFile.verifyFrames(mStripFile, reopened));
+        assertFalse(new File(mStripFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void roundTripsSlotTimes() throws Exception {
+        int[] times = new int[40];
+        for (int slot = 0; slot < times.length; slot++) {
+            times[slot] = slot * slot * 10;
+        }
+        FrameStrip strip = new FrameStrip(40, 12, 8, SWEEP, 30000, times);
+        new FrameStripBuilder(strip, new SyntheticFrameDecoder(), null).run();
+        FrameStripFile.write(strip, mStripFile, mVideo);
+        FrameStrip reopened = FrameStripFile.open(mStripFile, mVideo);
+
+        assertTrue(reopened.hasSlotTimes());
+        for (int slot = 0; slot < times.length; slot++) {
+            assertEquals(times[slot], reopened.timeForSlot(slot));
+            assertEquals(strip.frame(slot), reopened.frame(slot));
+        }
+        FrameStripFile.write(mStrip, mStripFile, mVideo);
+        assertFalse(FrameStripFile.open(mStripFile, mVideo).hasSlotTimes());
+    }
+
+    @Test(expected = IOException.class)
+    public void refusesIncompleteStrip() throws Exception {
+        FrameStripFile.write(new FrameStrip(40, 12, 8, SWEEP, 30000), mStripFile, mVideo);
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsStaleStrip() throws Exception {
+        FrameStripFile.write(mStrip, mStripFile, mVideo);
+        RandomAccessFile video = new RandomAccessFile(mVideo, "rw");
+        video.setLength(4321);
+        video.close();
+        FrameStripFile.open(mStripFile, mVideo);
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsCorruptIndex() throws Exception {
+        FrameStripFile.write(mStrip, mStripFile, mVideo);
+        flipByte(FrameStripFile.HEADER_SIZE + 5);
+        FrameStripFile.open(mStripFile, mVideo);
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsTruncatedFile() throws Exception {
+        FrameStripFile.write(mStrip, mStripFile, mVideo);
+        RandomAccessFile file = new RandomAccessFile(mStripFile, "rw");
+        file.setLength(file.length() - 100);
+        file.close();
+        FrameStripFile.open(mStripFile, mVideo);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        FrameStripFile.open(mVideo, mVideo);
+    }
+
+    @Test
+    public void verifyFindsCorruptFrame() throws Exception {
+        FrameStripFile.write(mStrip, mStripFile, mVideo);
+        long length = mStripFile.length();
+        flipByte(length - mStrip.getBytesPerFrame() * 3 + 7);
+
+        FrameStrip reopened = FrameStripFile.open(mStripFile, mVideo);
+        assertEquals(mStrip.getFrameCount() - 3, FrameStripFile.verifyFrames(mStripFile, reopened));
+    }
+
+    private void flipByte(long position) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mStripFile, "rw");
+        try {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xff);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.droid.manasshrestha.video360.strip;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameStripTest {
+
+    private static final float SWEEP = (float) (Math.PI / 2);
+    private static final int DURATION = 30000;
+
+    private FrameStrip mStrip;
+
+    @Before
+    public void setUp() throws Exception {
+        mStrip = new FrameStrip(181, 24, 16, SWEEP, DURATION);
+    }
+
+    @Test
+    public void footprintIsFixedStride() throws Exception {
+        assertEquals(24 * 16 * 2, mStrip.getBytesPerFrame());
+        assertEquals(181L * 24 * 16 * 2, mStrip.getFootprint());
+    }
+
+    @Test
+    public void slotsCoverSweepAndTimelineEvenly() throws Exception {
+        assertEquals(0, mStrip.slotForAngle(-1f));
+        assertEquals(90, mStrip.slotForAngle(SWEEP / 2));
+        assertEquals(180, mStrip.slotForAngle(SWEEP * 2));
+        assertEquals(0, mStrip.timeForSlot(0));
+        assertEquals(15000, mStrip.timeForSlot(90));
+        assertEquals(DURATION, mStrip.timeForSlot(180));
+    }
+
+    @Test
+    public void lookupIsEmptyUntilFramesAreCommitted() throws Exception {
+        assertEquals(-1, mStrip.lookup(SWEEP / 2));
+        mStrip.commit(90);
+        assertEquals(90, mStrip.lookup(SWEEP / 2));
+    }
+
+    @Test
+    public void lookupFallsBackToNearbyReadySlot() throws Exception {
+        mStrip.commit(88);
+        assertEquals(88, mStrip.lookup(SWEEP / 2));
+        assertEquals(-1, mStrip.lookup(0f));
+    }
+
+    @Test
+    public void builderFillsEverySlotWithItsFrame() throws Exception {
+        SyntheticFrameDecoder decoder = new SyntheticFrameDecoder();
+        new FrameStripBuilder(mStrip, decoder, null).run();
+
+        assertTrue(mStrip.isComplete());
+        assertEquals(181, decoder.decoded);
+        assertTrue(decoder.released);
+        for (int slot = 0; slot < mStrip.getFrameCount(); slot++) {
+            ByteBuffer frame = mStrip.frame(slot);
+            assertEquals(mStrip.getBytesPerFrame(), frame.remaining());
+            assertEquals(SyntheticFrameDecoder.pixelFor(mStrip.timeForSlot(slot)),
+                    frame.getShort(frame.limit() - 2));
+        }
+    }
+
+    @Test
+    public void coarsePassMakesWholeSweepScrubbable() throws Exception {
+        final FrameStrip strip = mStrip;
+        final int coarse = FrameStripBuilder.coarseFrameCount(strip.getFrameCount());
+        final FrameStripBuilder[] builder = new FrameStripBuilder[1];
+        builder[0] = new FrameStripBuilder(strip, new SyntheticFrameDecoder(), new FrameStripBuilder.Listener() {
+            @Override
+            public void onProgress(FrameStrip s, int decoded, boolean coarsePass) {
+                if (coarsePass) {
+                    assertEquals(coarse, decoded);
+                    builder[0].cancel();
+                }
+            }
+
+            @Override
+            public void onComplete(FrameStrip s, int decoded, long elapsedNanos) {
+                fail("cancelled build completed");
+            }
+
+            @Override
+            public void onError(FrameStrip s, IOException e) {
+                fail(e.getMessage());
+            }
+        });
+        builder[0].run();
+
+        assertFalse(strip.isComplete());
+        for (int i = 0; i <= 1000; i++) {
+            assertTrue(strip.lookup(SWEEP * i / 1000) >= 0);
+        }
+    }
+
+    @Test
+    public void completesWithFramesMissingAndCountsOnlyItsOwn() throws Exception {
+        // another thread got to slot 40 first, the decoder fails on slot 16 of the coarse grid
+        mStrip.commit(40);
+        final int[] reported = {-1, -1};
+        FrameStripBuilder builder = new FrameStripBuilder(mStrip, new SyntheticFrameDecoder() {
+            @Override
+            public boolean decode(int timeMs, int width, int height, ByteBuffer out) {
+                return timeMs != mStrip.timeForSlot(16) && super.decode(timeMs, width, height, out);
+            }
+        }, new FrameStripBuilder.Listener() {
+            @Override
+            public void onProgress(FrameStrip s, int decoded, boolean coarse) {
+                if (coarse && reported[0] < 0) {
+                    reported[0] = decoded;
+                }
+            }
+
+            @Override
+            public void onComplete(FrameStrip s, int decoded, long elapsedNanos) {
+                reported[1] = decoded;
+            }
+
+            @Override
+            public void onError(FrameStrip s, IOException e) {
+                fail(e.getMessage());
+            }
+        });
+        builder.run();
+
+        int coarse = FrameStripBuilder.coarseFrameCount(mStrip.getFrameCount());
+        assertEquals(coarse - 2, reported[0]);
+        assertEquals(mStrip.getFrameCount() - 2, reported[1]);
+        assertFalse(mStrip.isReady(16));
+        assertEquals(mStrip.getFrameCount() - 1, mStrip.getReadyCount());
+    }
+
+    @Test
+    public void coarseFrameCountIncludesLastSlot() throws Exception {
+        assertEquals(24, FrameStripBuilder.coarseFrameCount(181));
+        assertEquals(23, FrameStripBuilder.coarseFrameCount(177));
+        assertEquals(1, FrameStripBuilder.coarseFrameCount(1));
+    }
+
+    @Test
+    public void slotTimesFollowThePan() throws Exception {
+        // the first half of the sweep was filmed in the first second, the rest over the next nine
+        int[] times = {0, 500, 1000, 5500, 10000};
+        FrameStrip strip = new FrameStrip(5, 24, 16, SWEEP, 10000, times);
+        assertTrue(strip.hasSlotTimes());
+        assertFalse(mStrip.hasSlotTimes());
+        assertEquals(1000, strip.timeForSlot(2));
+        assertEquals(SWEEP / 2, strip.angleForTime(1000), 1e-5f);
+        assertEquals(SWEEP * 5 / 8, strip.angleForTime(3250), 1e-5f);
+        assertEquals(SWEEP, strip.angleForTime(20000), 0f);
+        assertEquals(0, strip.angleForTime(-1), 0f);
+
+        assertEquals(SWEEP / 2, mStrip.angleForTime(DURATION / 2), 1e-5f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSlotTimesGoingBack() throws Exception {
+        new FrameStrip(3, 24, 16, SWEEP, 10000, new int[]{0, 500, 400});
+    }
+}
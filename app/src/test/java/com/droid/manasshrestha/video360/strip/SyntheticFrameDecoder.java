@@ -0,0 +1,32 @@
+package com.droid.manasshrestha.video360.strip;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fills every pixel of a frame with its presentation time, so tests can tell which frame a slot
+ * holds by reading any pixel back.
+ */
+public class SyntheticFrameDecoder implements FrameDecoder {
+
+    public int decoded;
+    public boolean released;
+
+    @Override
+    public boolean decode(int timeMs, int width, int height, ByteBuffer out) {
+        decoded++;
+        short value = pixelFor(timeMs);
+        while (out.remaining() >= 2) {
+            out.putShort(value);
+        }
+        return true;
+    }
+
+    @Override
+    public void release() {
+        released = true;
+    }
+
+    public static short pixelFor(int timeMs) {
+        return (short) (timeMs / 10);
+    }
+}
@@ -0,0 +1,131 @@
+package com.immersion.videoplayer.haptics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache bounded by the bytes its values hold, for the loaded IVT buffers.
+ * <p/>
+ * {@link #put(Object, Object, int)} evicts the least recently used entries until the total fits
+ * the budget again, but never the entry just put, so a single buffer larger than the budget is
+ * still kept until the next one arrives. It reports how many it evicted, so the owner can drop
+ * whatever it derived from them.
+ * <p/>
+ * Pure Java, not thread safe.
+ */
+public class BufferCache<K, V> {
+
+    private static final class Entry<V> {
+        final V value;
+        final int bytes;
+
+        Entry(V value, int bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long mBudget;
+    // access order, least recently used first
+    private final LinkedHashMap<K, Entry<V>> mEntries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    private long mBytes;
+    private long mEvictions;
+
+    /**
+     * @param budget Bytes the values may hold together.
+     */
+    public BufferCache(long budget) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Invalid budget " + budget);
+        }
+        mBudget = budget;
+    }
+
+    /**
+     * @return The value, now the most recently used, or null if it isn't cached.
+     */
+    public V get(K key) {
+        Entry<V> entry = mEntries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Caches the value as the most recently used, replacing any value of the key.
+     *
+     * @param bytes Bytes the value holds.
+     * @return Number of other entries evicted to fit the budget.
+     */
+    public int put(K key, V value, int bytes) {
+        Entry<V> old = mEntries.put(key, new Entry<V>(value, bytes));
+        if (old != null) {
+            mBytes -= old.bytes;
+        }
+        mBytes += bytes;
+
+        int evicted = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = mEntries.entrySet().iterator();
+        while (mBytes > mBudget && mEntries.size() > 1) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            mBytes -= eldest.getValue().bytes;
+            it.remove();
+            evicted++;
+        }
+        mEvictions += evicted;
+        return evicted;
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = mEntries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        mBytes -= entry.bytes;
+        return entry.value;
+    }
+
+    public void clear() {
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    /**
+     * @return The values from the least to the most recently used, without touching their order.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<V>(mEntries.size());
+        for (Entry<V> entry : mEntries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return Bytes the cached values hold.
+     */
+    public long getBytes() {
+        return mBytes;
+    }
+
+    public long getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * @return Entries evicted for lack of space since the cache was created.
+     */
+    public long getEvictions() {
+        return mEvictions;
+    }
+
+    @Override
+    public String toString() {
+        return size() + " buffers, " + mBytes + " of " + mBudget + " bytes, " + mEvictions + " evicted";
+    }
+}
@@ -0,0 +1,138 @@
+package com.immersion.videoplayer.haptics;
+
+import java.util.Arrays;
+
+/**
+ * Effect names of the loaded IVT buffers, each mapped to the buffer defining it and its index in
+ * there, so playing an effect by name is a single lookup.
+ * <p/>
+ * An open addressing table with linear probing in parallel arrays, kept at most half full. The
+ * cached {@link String#hashCode()} of the name is compared before the name itself, so a lookup
+ * allocates nothing and rarely calls {@code equals}. Built once per buffer when it loads; a name
+ * defined by several buffers maps to the one indexed last.
+ * <p/>
+ * Pure Java, not thread safe. To read one while buffers load, build a {@link #EffectIndex(EffectIndex)
+ * copy}, add to it and publish it whole; lookups don't write, so an index no longer added to may
+ * be shared.
+ *
+ * @param <B> Buffer type, {@link com.immersion.uhl.IVTBuffer} on the device.
+ */
+public class EffectIndex<B> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] mNames;
+    private int[] mHashes;
+    private Object[] mBuffers;
+    private int[] mIndices;
+    private int mSize;
+
+    public EffectIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * An index mapping the names of the other, which stays as it is.
+     */
+    public EffectIndex(EffectIndex<B> other) {
+        mNames = other.mNames.clone();
+        mHashes = other.mHashes.clone();
+        mBuffers = other.mBuffers.clone();
+        mIndices = other.mIndices.clone();
+        mSize = other.mSize;
+    }
+
+    private void allocate(int capacity) {
+        mNames = new String[capacity];
+        mHashes = new int[capacity];
+        mBuffers = new Object[capacity];
+        mIndices = new int[capacity];
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        // spread the high bits, the table only looks at the low ones
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Maps the name to the effect at the index of the buffer, replacing an earlier mapping.
+     */
+    public void put(String name, B buffer, int effectIndex) {
+        if ((mSize + 1) * 2 > mNames.length) {
+            rehash(mNames.length * 2);
+        }
+        int hash = hash(name);
+        int mask = mNames.length - 1;
+        int slot = hash & mask;
+        while (mNames[slot] != null) {
+            if (mHashes[slot] == hash && mNames[slot].equals(name)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (mNames[slot] == null) {
+            mSize++;
+        }
+        mNames[slot] = name;
+        mHashes[slot] = hash;
+        mBuffers[slot] = buffer;
+        mIndices[slot] = effectIndex;
+    }
+
+    private void rehash(int capacity) {
+        String[] names = mNames;
+        int[] hashes = mHashes;
+        Object[] buffers = mBuffers;
+        int[] indices = mIndices;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) {
+                continue;
+            }
+            int slot = hashes[i] & mask;
+            while (mNames[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mNames[slot] = names[i];
+            mHashes[slot] = hashes[i];
+            mBuffers[slot] = buffers[i];
+            mIndices[slot] = indices[i];
+        }
+    }
+
+    /**
+     * @return Slot of the effect for {@link #getBuffer(int)} and {@link #getEffectIndex(int)}, -1
+     * if no loaded buffer defines it.
+     */
+    public int find(String name) {
+        int hash = hash(name);
+        int mask = mNames.length - 1;
+        for (int slot = hash & mask; mNames[slot] != null; slot = (slot + 1) & mask) {
+            if (mHashes[slot] == hash && mNames[slot].equals(name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public B getBuffer(int slot) {
+        return (B) mBuffers[slot];
+    }
+
+    public int getEffectIndex(int slot) {
+        return mIndices[slot];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        Arrays.fill(mNames, null);
+        Arrays.fill(mBuffers, null);
+        mSize = 0;
+    }
+}
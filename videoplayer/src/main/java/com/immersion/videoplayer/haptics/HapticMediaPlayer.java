@@ -13,6 +13,7 @@ package com.immersion.videoplayer.haptics;
 import android.content.Context;
 import android.media.MediaPlayer;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.immersion.hapticmediasdk.HapticContentSDK;
@@ -31,8 +32,6 @@ import timber.log.Timber;
  */
 public class HapticMediaPlayer extends MediaPlayer {
 
-    private static int HAPTIC_SYNC_INTERVAL = 1000;
-
     /**
      * Haptic SDK player instance
      */
@@ -43,21 +42,27 @@ public class HapticMediaPlayer extends MediaPlayer {
      */
     private Handler mHandler = new Handler();
 
+    /**
+     * Paces the syncs and measures the drift between the tracks
+     */
+    private final HapticSync mSync = new HapticSync();
+
     private boolean isHaptFilePresent = false;
     private boolean mWasPaused = false;
 
     /**
-     * Used to synchronize the haptic track to the media player at
-     * specific intervals.
+     * Used to synchronize the haptic track to the media player, more
+     * often while the tracks drift apart.
      */
     private Runnable syncHapticPlayer = new Runnable() {
         @Override
         public void run() {
             try {
                 if (isPlaying()) {
-
-                    mHapticPlayer.update(getCurrentPosition());
-                    mHandler.postDelayed(syncHapticPlayer,HAPTIC_SYNC_INTERVAL /*todo DataHolder.HAPTIC_SYNC_INTERVAL*/);
+                    int position = getCurrentPosition();
+                    long now = SystemClock.uptimeMillis();
+                    mHapticPlayer.update(position);
+                    mHandler.postDelayed(syncHapticPlayer, mSync.onSync(position, now));
                 }
             } catch (IllegalStateException e) {
                 // calling isPlaying() after completion results in IllegalStateException.
@@ -123,6 +128,8 @@ public class HapticMediaPlayer extends MediaPlayer {
             mHapticPlayer.play();
         }
 
+        mHandler.removeCallbacks(syncHapticPlayer);
+        mSync.restart();
         mHandler.post(syncHapticPlayer);
 
         mWasPaused = false;
@@ -135,6 +142,7 @@ public class HapticMediaPlayer extends MediaPlayer {
             return;
         }
 
+        mHandler.removeCallbacks(syncHapticPlayer);
         mHapticPlayer.stop();
     }
 
@@ -146,6 +154,7 @@ public class HapticMediaPlayer extends MediaPlayer {
         }
 
         mWasPaused = true;
+        mHandler.removeCallbacks(syncHapticPlayer);
         mHapticPlayer.pause();
     }
 
@@ -157,9 +166,24 @@ public class HapticMediaPlayer extends MediaPlayer {
         }
 
         mHapticPlayer.seek(mSec);
+        mSync.restart();
+        if (isPlaying()) {
+            // sync soon after the jump rather than at the backed off interval
+            mHandler.removeCallbacks(syncHapticPlayer);
+            mHandler.postDelayed(syncHapticPlayer, mSync.getInterval());
+        }
+    }
+
+    /**
+     * Drift between the media and haptic tracks and how often they are synced, e.g. to dump on
+     * demand.
+     */
+    public HapticSync getHapticSync() {
+        return mSync;
     }
 
     public void releaseAll() {
+        mHandler.removeCallbacks(syncHapticPlayer);
         release();
         if (mHapticPlayer != null) {
             mHapticPlayer = null;
@@ -0,0 +1,122 @@
+package com.immersion.videoplayer.haptics;
+
+import com.immersion.videoplayer.metrics.Histogram;
+
+/**
+ * Paces the updates that keep the haptic track on the media clock.
+ * <p/>
+ * The haptic SDK doesn't report its position: after {@code update(position)} it plays on from
+ * there by its own clock, and nothing tells how far it got. What can be measured is how far the
+ * media clock strays from the clock the haptics are assumed to run by: the drift is the media
+ * position at a sync minus the position of the last sync plus the time since. It includes the
+ * jitter of {@code getCurrentPosition()}, which advances in steps of a decoded audio buffer, so it
+ * bounds the haptic offset only as far as the SDK keeps time with the uptime clock.
+ * <p/>
+ * Right after a start, resume or seek the tracks are synced every {@link #MIN_INTERVAL_MS}. While
+ * the drift stays within {@link #DRIFT_THRESHOLD_MS} the interval doubles up to
+ * {@link #MAX_INTERVAL_MS}; a larger drift tightens it again. A media clock that keeps time thus
+ * costs an SDK call every few seconds instead of every second, and one that strays is followed
+ * more closely.
+ * <p/>
+ * Pure Java, times in milliseconds of one clock (SystemClock.uptimeMillis() on the device). Call
+ * it from one thread; the drift histogram may be read from any.
+ */
+public class HapticSync {
+
+    public static final int MIN_INTERVAL_MS = 100;
+    public static final int MAX_INTERVAL_MS = 4000;
+    /**
+     * Drift taken as keeping time. Above the steps {@code getCurrentPosition()} advances in, so
+     * its jitter alone doesn't hold the interval at the minimum, and still below the offset at
+     * which haptics are felt out of sync.
+     */
+    public static final int DRIFT_THRESHOLD_MS = 80;
+
+    private static final long[] DRIFT_BOUNDS = {
+            1, 2, 4, 8, 12, 16, 20, 25, 33, 50, 66, 100, 150, 200, 300, 500, 1000};
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final Histogram mDrift = new Histogram("media clock drift ms", DRIFT_BOUNDS);
+    private int mInterval = MIN_INTERVAL_MS;
+    private long mSyncedAt = NONE;
+    private int mSyncedPosition;
+    private int mLastDrift;
+    private long mSyncs;
+
+    /**
+     * Starts over after a start, resume or seek: the next sync measures no drift, as the clocks
+     * stood still or jumped, and syncs follow closely again.
+     */
+    public void restart() {
+        mSyncedAt = NONE;
+        mInterval = MIN_INTERVAL_MS;
+    }
+
+    /**
+     * Records a sync of the haptic track to the media position and measures the drift of the media
+     * clock against {@code nowMs} since the last one.
+     *
+     * @param positionMs Media position the haptic track is updated to.
+     * @param nowMs      Current time.
+     * @return Milliseconds until the next sync.
+     */
+    public int onSync(int positionMs, long nowMs) {
+        mSyncs++;
+        if (mSyncedAt != NONE) {
+            long expected = mSyncedPosition + (nowMs - mSyncedAt);
+            mLastDrift = (int) (positionMs - expected);
+            mDrift.record(Math.abs(mLastDrift));
+            if (Math.abs(mLastDrift) <= DRIFT_THRESHOLD_MS) {
+                mInterval = Math.min(MAX_INTERVAL_MS, mInterval * 2);
+            } else {
+                mInterval = MIN_INTERVAL_MS;
+            }
+        }
+        mSyncedAt = nowMs;
+        mSyncedPosition = positionMs;
+        return mInterval;
+    }
+
+    /**
+     * @return Milliseconds between the last sync and the next.
+     */
+    public int getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * @return Drift measured at the last sync, positive if the media clock ran ahead.
+     */
+    public int getLastDrift() {
+        return mLastDrift;
+    }
+
+    /**
+     * @return Absolute drift measured at each sync.
+     */
+    public Histogram getDrift() {
+        return mDrift;
+    }
+
+    /**
+     * @return Updates sent to the haptic track.
+     */
+    public long getSyncCount() {
+        return mSyncs;
+    }
+
+    /**
+     * Clears the statistics, not the pacing.
+     */
+    public void reset() {
+        mDrift.reset();
+        mLastDrift = 0;
+        mSyncs = 0;
+    }
+
+    @Override
+    public String toString() {
+        return mSyncs + " haptic syncs, every " + mInterval + "ms\n" + mDrift;
+    }
+}
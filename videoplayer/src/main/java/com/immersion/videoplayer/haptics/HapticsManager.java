@@ -1,6 +1,8 @@
 package com.immersion.videoplayer.haptics;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
 import android.util.Log;
 
 import com.immersion.uhl.Device;
@@ -15,9 +17,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class responsible for loading HapticEffects from
@@ -25,10 +34,18 @@ import java.util.Map;
  * Currently, ivt file is loaded from assets and hapt from sdcard from given file location.
  * All events defined on Manifest will be passed on this class and then it calls
  * IVTBUffer and com.immersion.uhl.Device to play those effects
+ * <p/>
+ * IVT files are read on a background thread, see {@link #loadIVTFileAsync(String)} and
+ * {@link #preloadIVTFiles(String...)}, and kept in a cache of at most {@link #IVT_CACHE_BYTES}
+ * that drops the least recently used buffers. Playing an effect takes no lock the loader holds: it
+ * looks the name up in an index the loader builds aside and publishes whole.
  */
 public class HapticsManager {
     private static final String LOG_TAG = HapticsManager.class.getName();
-    private static final boolean DEBUG = true;
+    /**
+     * Logs loads and failed effects. Off in release builds: effects play every few frames.
+     */
+    private static final boolean DEBUG = false;
     private static HapticsManager sInstance;
 
     private static final String INVALID_EFFECT_INDEX = "VIBE_E_INVALID_ARGUMENT";
@@ -47,14 +64,45 @@ public class HapticsManager {
     public static final String FULL_FILE_NAME_IN_ASSETS = "%s%s";
     private static final int DEFAULT_UHL_FALLBACK_EFFECT = Launcher.BOUNCE_66;
 
+    /**
+     * Bytes of IVT data kept loaded, plenty for the effects of a few videos.
+     */
+    public static final long IVT_CACHE_BYTES = 1024 * 1024;
+    private static final long LOADER_IDLE_TIMEOUT_MS = 1000;
+
 
     private Context mContext;
     private static Device mDevice;
-    private HashMap<String, IVTBuffer> mIVTBuffersMap;
+    /**
+     * Guarded by itself, even reads reorder it.
+     */
+    private final BufferCache<String, LoadedIVT> mIVTBuffers = new BufferCache<String, LoadedIVT>(IVT_CACHE_BYTES);
+    /**
+     * Effects of the cached buffers, replaced by {@link #publish} and never changed once published.
+     */
+    private volatile EffectIndex<LoadedIVT> mEffects = new EffectIndex<LoadedIVT>();
+    /**
+     * Loads in flight, so a file asked for twice is read once.
+     */
+    private final HashMap<String, FutureTask<IVTBuffer>> mLoading = new HashMap<String, FutureTask<IVTBuffer>>();
+    private final ThreadPoolExecutor mLoader;
     protected Launcher mUHLLauncher;
-    private IVTBuffer mCurrentIVTBuffer;
+    private volatile IVTBuffer mCurrentIVTBuffer;
     private boolean isMute;
 
+    /**
+     * A cached buffer and the path it is cached under, so playing its effects keeps it cached.
+     */
+    private static final class LoadedIVT {
+        final String path;
+        final IVTBuffer buffer;
+
+        LoadedIVT(String path, IVTBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
     public static HapticsManager getInstance(Context context) {
         if (sInstance == null) {
             synchronized (HapticsManager.class) {
@@ -94,7 +142,10 @@ public class HapticsManager {
 
     private HapticsManager(Context context) {
         mContext = context;
-        mIVTBuffersMap = new HashMap<String, IVTBuffer>();
+        mLoader = new ThreadPoolExecutor(1, 1, LOADER_IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        // no thread is kept around once the effects are loaded
+        mLoader.allowCoreThreadTimeOut(true);
         mDevice = Device.newDevice(context, 0);
         mUHLLauncher = new Launcher(context);
     }
@@ -103,16 +154,180 @@ public class HapticsManager {
         this.ivtLocationFromXml = ivtFileLocationFromXml;
     }
 
+    /**
+     * Loads the file and waits for it, then makes it the current buffer. Unlike
+     * {@link #loadIVTFileAsync(String)} it never waits behind preloads: a file nobody reads yet is
+     * read on the calling thread, and one still queued on the loader is taken off the queue and
+     * read here.
+     *
+     * @throws FileNotFoundException if the file cannot be loaded, or the wait was interrupted.
+     */
     public void loadIVTFile(String filePath) throws FileNotFoundException {
         mCurrentIVTBuffer = null;
-        IVTBuffer ivtBuffer;
-        if (!mIVTBuffersMap.containsKey(filePath)) {
-            ivtBuffer = loadIVTFileFromSdcardOrAssets(mContext, filePath);
-            mIVTBuffersMap.put(filePath, ivtBuffer);
+        FutureTask<IVTBuffer> load;
+        boolean runHere = false;
+        synchronized (this) {
+            load = cachedLoad(filePath);
+            if (load == null) {
+                load = mLoading.get(filePath);
+                if (load == null) {
+                    load = newLoad(filePath);
+                    runHere = true;
+                } else {
+                    // false once the loader started it, then it's only waited for
+                    runHere = mLoader.remove(load);
+                }
+            }
+        }
+        if (runHere) {
+            load.run();
+        }
+        try {
+            mCurrentIVTBuffer = load.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof FileNotFoundException) {
+                throw (FileNotFoundException) cause;
+            }
+            FileNotFoundException notFound = new FileNotFoundException("Cannot load " + filePath);
+            notFound.initCause(cause);
+            throw notFound;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileNotFoundException("Interrupted loading " + filePath);
+        }
+    }
+
+    /**
+     * Loads an IVT file on the loader thread, unless it is cached or being loaded already, and
+     * indexes its effects.
+     *
+     * @return The buffer once loaded; {@link Future#get()} throws an {@link ExecutionException}
+     * caused by a {@link FileNotFoundException} if the file is found nowhere.
+     */
+    public synchronized Future<IVTBuffer> loadIVTFileAsync(String filePath) {
+        FutureTask<IVTBuffer> load = cachedLoad(filePath);
+        if (load == null) {
+            load = mLoading.get(filePath);
+            if (load == null) {
+                load = newLoad(filePath);
+                mLoader.execute(load);
+            }
+        }
+        return load;
+    }
+
+    /**
+     * @return A load already done if the file is cached, now as the most recently used, else null.
+     */
+    private FutureTask<IVTBuffer> cachedLoad(String filePath) {
+        final LoadedIVT cached;
+        synchronized (mIVTBuffers) {
+            cached = mIVTBuffers.get(filePath);
+        }
+        if (cached == null) {
+            return null;
+        }
+        FutureTask<IVTBuffer> done = new FutureTask<IVTBuffer>(new Callable<IVTBuffer>() {
+            @Override
+            public IVTBuffer call() {
+                return cached.buffer;
+            }
+        });
+        done.run();
+        return done;
+    }
+
+    /**
+     * Creates a load of the file and registers it in flight, the caller runs it. Call with the
+     * lock held.
+     */
+    private FutureTask<IVTBuffer> newLoad(final String filePath) {
+        FutureTask<IVTBuffer> load = new FutureTask<IVTBuffer>(new Callable<IVTBuffer>() {
+            @Override
+            public IVTBuffer call() throws IOException {
+                IVTBuffer ivtBuffer = null;
+                try {
+                    byte[] bytes = loadIVTFileFromSdcardOrAssets(mContext, filePath);
+                    ivtBuffer = publish(filePath, new IVTBuffer(bytes), bytes.length);
+                    return ivtBuffer;
+                } finally {
+                    if (ivtBuffer == null) {
+                        loadFailed(filePath);
+                    }
+                }
+            }
+        });
+        mLoading.put(filePath, load);
+        return load;
+    }
+
+    /**
+     * Starts loading the IVT files a video is going to play, so their effects are indexed by the
+     * time playback starts and the ones cached stay the most recently used.
+     *
+     * @return One future per file, like {@link #loadIVTFileAsync(String)}.
+     */
+    public List<Future<IVTBuffer>> preloadIVTFiles(String... filePaths) {
+        List<Future<IVTBuffer>> futures = new ArrayList<Future<IVTBuffer>>(filePaths.length);
+        for (String filePath : filePaths) {
+            futures.add(loadIVTFileAsync(filePath));
+        }
+        return futures;
+    }
+
+    /**
+     * Caches the buffer and publishes an index with its effects. Players go on with the previous
+     * index until the new one is complete.
+     */
+    private synchronized IVTBuffer publish(String filePath, IVTBuffer ivtBuffer, int bytes) {
+        mLoading.remove(filePath);
+        LoadedIVT loaded = new LoadedIVT(filePath, ivtBuffer);
+        List<LoadedIVT> cached = null;
+        synchronized (mIVTBuffers) {
+            if (mIVTBuffers.put(filePath, loaded, bytes) > 0) {
+                cached = mIVTBuffers.values();
+            }
+        }
+        EffectIndex<LoadedIVT> effects;
+        if (cached != null) {
+            // names of evicted buffers have to go, and may be defined by others again
+            effects = new EffectIndex<LoadedIVT>();
+            for (LoadedIVT entry : cached) {
+                indexEffects(effects, entry);
+            }
         } else {
-            ivtBuffer = mIVTBuffersMap.get(filePath);
+            effects = new EffectIndex<LoadedIVT>(mEffects);
+            indexEffects(effects, loaded);
+        }
+        mEffects = effects;
+        if (DEBUG)
+            Log.d(LOG_TAG, "Loaded " + filePath + ", " + effects.size() + " effects");
+        return ivtBuffer;
+    }
+
+    private synchronized void loadFailed(String filePath) {
+        mLoading.remove(filePath);
+    }
+
+    /**
+     * Adds the effects of a buffer to a name index.
+     */
+    private static void indexEffects(EffectIndex<LoadedIVT> effects, LoadedIVT loaded) {
+        int count = loaded.buffer.getEffectCount();
+        for (int i = 0; i < count; i++) {
+            effects.put(loaded.buffer.getEffectName(i), loaded, i);
         }
-        mCurrentIVTBuffer = ivtBuffer;
+    }
+
+    /**
+     * @return Slot of the effect in the index, -1 if none of its buffers defines it.
+     */
+    private static int findEffect(EffectIndex<LoadedIVT> effects, String name) {
+        int slot = effects.find(name);
+        if (slot < 0 && DEBUG)
+            Log.e(LOG_TAG, "Cannot find effect with name " + name);
+        return slot;
     }
 
     public IVTBuffer getCurrentIVTBuffer() {
@@ -128,9 +343,17 @@ public class HapticsManager {
                 throw new IllegalStateException("No buffers currently loaded. Use loadIVTFile()");
             }
             int effectIndex = 0;
-            mCurrentIVTBuffer = mIVTBuffersMap.get(filename);
+            LoadedIVT loaded;
+            synchronized (mIVTBuffers) {
+                loaded = mIVTBuffers.get(filename);
+            }
+            IVTBuffer buffer = loaded == null ? null : loaded.buffer;
+            mCurrentIVTBuffer = buffer;
+            if (buffer == null) {
+                throw new IllegalStateException(filename + " is not loaded. Use loadIVTFile()");
+            }
             try {
-                effectIndex = mCurrentIVTBuffer.getEffectIndexFromName(ivtEffect);
+                effectIndex = buffer.getEffectIndexFromName(ivtEffect);
             } catch (RuntimeException e) {
                 if (e.getMessage().equals(INVALID_EFFECT_NAME)) {
                     throw new IllegalArgumentException("Cannot find effect with name " + ivtEffect);
@@ -139,7 +362,7 @@ public class HapticsManager {
                 }
             }
             try {
-                mDevice.playIVTEffect(mCurrentIVTBuffer, effectIndex);
+                mDevice.playIVTEffect(buffer, effectIndex);
             } catch (RuntimeException e) {
                 if (e.getMessage().equals(INVALID_EFFECT_INDEX)) {
                     throw new IllegalArgumentException("Cannot find effect with id " + effectIndex);
@@ -172,17 +395,22 @@ public class HapticsManager {
             mUHLLauncher.play(defEffect);
     }
 
-    private IVTBuffer loadIVTFileFromSdcardOrAssets(Context context, String fileName) throws FileNotFoundException {
-        File sdCardFile;
-        //First preference from file
-        sdCardFile = new File(ivtLocationFromXml);
-        IVTBuffer ivtBuffer = null;
+    /**
+     * Runs on the loader thread, or on the caller of {@link #loadIVTFile(String)}.
+     */
+    private byte[] loadIVTFileFromSdcardOrAssets(Context context, String fileName) throws FileNotFoundException {
+        File sdCardFile = null;
+        byte[] ivtBuffer = null;
 
-        if (DEBUG)
-            Log.d(LOG_TAG, "Trying to load ivt file from Xml Given SDCard: " + sdCardFile.getAbsolutePath());
-        if (sdCardFile.exists()) {
+        //First preference from file
+        if (ivtLocationFromXml != null) {
+            sdCardFile = new File(ivtLocationFromXml);
+            if (DEBUG)
+                Log.d(LOG_TAG, "Trying to load ivt file from Xml Given SDCard: " + sdCardFile.getAbsolutePath());
+        }
+        if (sdCardFile != null && sdCardFile.exists()) {
             try {
-                ivtBuffer = createIVTBufferFromFile(sdCardFile);
+                ivtBuffer = IVTReader.read(sdCardFile);
             } catch (IOException e) {
                 e.printStackTrace();
                 if (DEBUG)
@@ -200,7 +428,7 @@ public class HapticsManager {
                 Log.d(LOG_TAG, "Trying to load ivt file from SDCard: " + sdCardFile.getAbsolutePath());
             if (sdCardFile.exists()) {
                 try {
-                    ivtBuffer = createIVTBufferFromFile(sdCardFile);
+                    ivtBuffer = IVTReader.read(sdCardFile);
                 } catch (IOException e) {
                     e.printStackTrace();
                     if (DEBUG)
@@ -215,8 +443,7 @@ public class HapticsManager {
             if (DEBUG)
                 Log.d(LOG_TAG, "Trying to load " + fileNameInAssets + " from assets");
             try {
-                InputStream is = context.getAssets().open(fileNameInAssets);
-                ivtBuffer = createIVTBufferFromInputStream(is);
+                ivtBuffer = readAsset(context.getAssets(), fileNameInAssets);
             } catch (IOException e) {
                 e.printStackTrace();
                 if (DEBUG)
@@ -232,136 +459,105 @@ public class HapticsManager {
         return ivtBuffer;
     }
 
-    private IVTBuffer createIVTBufferFromInputStream(InputStream is) throws IOException {
-        long length = is.available();
-
-        if (length > Integer.MAX_VALUE) {
-            throw new IOException("File is too large!");
-        }
-
-        byte[] bytes = new byte[(int) length];
-
-        int offset = 0;
-        int numRead = 0;
-
-        while (offset < bytes.length && (numRead = is.read(bytes, offset, bytes.length - offset)) >= 0) {
-            offset += numRead;
+    /**
+     * Reads an uncompressed asset straight from the APK through its channel, a compressed one
+     * through the inflating stream.
+     */
+    private static byte[] readAsset(AssetManager assets, String fileName) throws IOException {
+        AssetFileDescriptor descriptor;
+        try {
+            descriptor = assets.openFd(fileName);
+        } catch (FileNotFoundException e) {
+            // thrown for compressed assets as well as missing ones
+            return IVTReader.read(assets.open(fileName));
         }
-
-        if (offset < bytes.length) {
-            throw new IOException("Could not completely read file");
+        try {
+            FileInputStream in = descriptor.createInputStream();
+            try {
+                return IVTReader.read(in.getChannel(), descriptor.getStartOffset(), descriptor.getLength());
+            } finally {
+                in.close();
+            }
+        } finally {
+            descriptor.close();
         }
-
-        is.close();
-
-        return new IVTBuffer(bytes);
-    }
-
-    protected IVTBuffer createIVTBufferFromFile(File ivtFile) throws IOException {
-        InputStream in = new FileInputStream(ivtFile);
-        return createIVTBufferFromInputStream(in);
     }
 
+    /**
+     * Plays the effect over and over. An effect that is not loaded or that the device fails to
+     * play falls back to the UHL effect, see {@link #fallBack(int)}.
+     */
     public void playRepeatedFromIVT(String name, int uhlFallBackEffect) {
-        boolean needFallBack = false;
-        if (DEBUG)
-            Log.d(LOG_TAG, String.format("Trying to play %s effect from ivt", name));
-        try {
-            if (mCurrentIVTBuffer == null) {
-                throw new IllegalStateException("No buffers currently loaded. Use loadIVTFile()");
-            }
-            int effectIndex = 0;
-            for (Map.Entry<String, IVTBuffer> entry : mIVTBuffersMap.entrySet()) {
-                if (entry.getKey().contains(name)) {
-                    mCurrentIVTBuffer = entry.getValue();
-                }
-            }
-
-            try {
-                effectIndex = mCurrentIVTBuffer.getEffectIndexFromName(name);
-            } catch (RuntimeException e) {
-                if (e.getMessage().equals(INVALID_EFFECT_NAME)) {
-                    throw new IllegalArgumentException("Cannot find effect with name " + name);
-                } else {
-                    throw e;
-                }
-            }
-            try {
-                if (!isMute)
-                    mDevice.playIVTEffectRepeat(mCurrentIVTBuffer, effectIndex, (byte) ImmVibe.VIBE_REPEAT_COUNT_INFINITE);
-            } catch (RuntimeException e) {
-                if (e.getMessage().equals(INVALID_EFFECT_INDEX)) {
-                    throw new IllegalArgumentException("Cannot find effect with id " + effectIndex);
-                } else {
-                    throw e;
-                }
-            }
-        } catch (IllegalStateException e) {
-            if (DEBUG)
-                Log.e(LOG_TAG, e.getMessage());
-            needFallBack = true;
-        } catch (IllegalArgumentException e) {
-            if (DEBUG)
-                Log.e(LOG_TAG, e.getMessage());
-            needFallBack = true;
+        // buffer and index from one snapshot, a load publishing meanwhile can't split them
+        EffectIndex<LoadedIVT> effects = mEffects;
+        int slot = findEffect(effects, name);
+        if (slot < 0) {
+            fallBack(uhlFallBackEffect);
+            return;
         }
-        if (needFallBack) {
-            if (DEBUG)
-                Log.d(LOG_TAG, String.format("Playing a file failed. Just play effect from UHL with id %d",
-                        uhlFallBackEffect));
+        IVTBuffer buffer = use(effects.getBuffer(slot));
+        int effectIndex = effects.getEffectIndex(slot);
+        try {
+            if (!isMute)
+                mDevice.playIVTEffectRepeat(buffer, effectIndex, (byte) ImmVibe.VIBE_REPEAT_COUNT_INFINITE);
+        } catch (RuntimeException e) {
+            playFailed(effectIndex, e);
+            fallBack(uhlFallBackEffect);
         }
     }
 
+    /**
+     * Plays the effect once. An effect that is not loaded or that the device fails to play falls
+     * back to the UHL effect, see {@link #fallBack(int)}.
+     */
     public void playFromIVT(String name, int uhlFallBackEffect) {
-        boolean needFallBack = false;
-        if (DEBUG)
-            Log.d(LOG_TAG, String.format("Trying to play %s effect from ivt", name));
+        EffectIndex<LoadedIVT> effects = mEffects;
+        int slot = findEffect(effects, name);
+        if (slot < 0) {
+            fallBack(uhlFallBackEffect);
+            return;
+        }
+        IVTBuffer buffer = use(effects.getBuffer(slot));
+        int effectIndex = effects.getEffectIndex(slot);
         try {
-            if (mCurrentIVTBuffer == null) {
-                throw new IllegalStateException("No buffers currently loaded. Use loadIVTFile()");
-            }
-            int effectIndex = 0;
-            for (Map.Entry<String, IVTBuffer> entry : mIVTBuffersMap.entrySet()) {
-                if (entry.getKey().contains(name)) {
-                    mCurrentIVTBuffer = entry.getValue();
-                }
-            }
+            if (!isMute)
+                mDevice.playIVTEffect(buffer, effectIndex);
+        } catch (RuntimeException e) {
+            playFailed(effectIndex, e);
+            fallBack(uhlFallBackEffect);
+        }
+    }
 
-            try {
-                effectIndex = mCurrentIVTBuffer.getEffectIndexFromName(name);
-            } catch (RuntimeException e) {
-                if (e.getMessage().equals(INVALID_EFFECT_NAME)) {
-                    throw new IllegalArgumentException("Cannot find effect with name " + name);
-                } else {
-                    throw e;
-                }
-            }
-            try {
-                if (!isMute)
-                    mDevice.playIVTEffect(mCurrentIVTBuffer, effectIndex);
-            } catch (RuntimeException e) {
-                if (e.getMessage().equals(INVALID_EFFECT_INDEX)) {
-                    throw new IllegalArgumentException("Cannot find effect with id " + effectIndex);
-                } else {
-                    throw e;
-                }
-            }
-        } catch (IllegalStateException e) {
-            if (DEBUG)
-                Log.e(LOG_TAG, e.getMessage());
-            needFallBack = true;
-        } catch (IllegalArgumentException e) {
-            if (DEBUG)
-                Log.e(LOG_TAG, e.getMessage());
-            needFallBack = true;
+    /**
+     * Makes the buffer the current one and its cache entry the most recently used, so preloads
+     * evict buffers that play no more before it.
+     */
+    private IVTBuffer use(LoadedIVT loaded) {
+        synchronized (mIVTBuffers) {
+            mIVTBuffers.get(loaded.path);
         }
-        if (needFallBack) {
-            if (DEBUG)
-                Log.d(LOG_TAG, String.format("Playing a file failed. Just play effect from UHL with id %d",
-                        uhlFallBackEffect));
+        mCurrentIVTBuffer = loaded.buffer;
+        return loaded.buffer;
+    }
+
+    private void playFailed(int effectIndex, RuntimeException e) {
+        if (DEBUG) {
+            if (INVALID_EFFECT_INDEX.equals(e.getMessage()))
+                Log.e(LOG_TAG, "Cannot find effect with id " + effectIndex);
+            else
+                Log.e(LOG_TAG, "Cannot play effect with id " + effectIndex, e);
         }
     }
 
+    /**
+     * Called when an IVT effect can't be played. The UHL effect standing in for it is logged,
+     * not played, and the video goes on without haptics for that effect.
+     */
+    private void fallBack(int uhlFallBackEffect) {
+        if (DEBUG)
+            Log.d(LOG_TAG, "Playing a file failed. Just play effect from UHL with id " + uhlFallBackEffect);
+    }
+
 
     public void stop() {
         mUHLLauncher.stop();
@@ -375,14 +571,15 @@ public class HapticsManager {
 
     public void playFromIVT(int index, int uhlFallBackEffect) {
         boolean needFallBack = false;
+        IVTBuffer buffer = mCurrentIVTBuffer;
         try {
-            if (mCurrentIVTBuffer == null) {
+            if (buffer == null) {
                 if (DEBUG)
                     throw new IllegalStateException("No buffers currently loaded. Use loadIVTFile()");
             }
             try {
                 if (!isMute)
-                    mDevice.playIVTEffect(mCurrentIVTBuffer, index);
+                    mDevice.playIVTEffect(buffer, index);
             } catch (RuntimeException e) {
                 if (e.getMessage().equals(INVALID_EFFECT_INDEX)) {
                     if (DEBUG)
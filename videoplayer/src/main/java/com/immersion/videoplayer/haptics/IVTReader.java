@@ -0,0 +1,95 @@
+package com.immersion.videoplayer.haptics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the bytes of IVT files for {@link com.immersion.uhl.IVTBuffer}.
+ * <p/>
+ * Sizes come from the file or the asset descriptor, never from {@link InputStream#available()},
+ * which only tells what can be read without blocking. Files of at least {@link #MAP_THRESHOLD}
+ * bytes are memory mapped and copied out in one go, smaller ones read through their channel.
+ * Blocking, meant for the loader thread.
+ */
+public class IVTReader {
+
+    /**
+     * Below this mapping costs more than it saves.
+     */
+    static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final int STREAM_CHUNK = 8 * 1024;
+
+    private IVTReader() {
+    }
+
+    public static byte[] read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            long length = channel.size();
+            if (length < MAP_THRESHOLD) {
+                return read(channel, 0, length);
+            }
+            checkLength(length);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            byte[] bytes = new byte[(int) length];
+            map.get(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads {@code length} bytes from {@code position} on, e.g. an uncompressed asset inside the
+     * APK. Leaves the channel open.
+     *
+     * @throws IOException if the channel ends early.
+     */
+    public static byte[] read(FileChannel channel, long position, long length) throws IOException {
+        checkLength(length);
+        byte[] bytes = new byte[(int) length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Could not completely read file");
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a stream of unknown length to its end, e.g. a compressed asset, and closes it.
+     */
+    public static byte[] read(InputStream in) throws IOException {
+        try {
+            byte[] bytes = new byte[STREAM_CHUNK];
+            int length = 0;
+            int read;
+            while ((read = in.read(bytes, length, bytes.length - length)) >= 0) {
+                length += read;
+                if (length == bytes.length) {
+                    checkLength(2L * length);
+                    bytes = Arrays.copyOf(bytes, 2 * length);
+                }
+            }
+            return Arrays.copyOf(bytes, length);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void checkLength(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File is too large!");
+        }
+    }
+}
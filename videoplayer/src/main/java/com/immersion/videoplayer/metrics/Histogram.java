@@ -0,0 +1,154 @@
+package com.immersion.videoplayer.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with fixed buckets.
+ * <p/>
+ * Each bucket counts the values up to its upper bound, the last one everything above the highest
+ * bound. Recording is a binary search plus a few atomic increments, so it is cheap enough for
+ * every seek and every frame and safe from any thread; it never allocates. Readers see each
+ * counter consistently but not a consistent snapshot of all of them, which is fine for metrics.
+ */
+public class Histogram {
+
+    private final String mName;
+    private final long[] mBounds;
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param name   Name used in {@link #toString()}, including the unit.
+     * @param bounds Ascending upper bounds of the buckets, inclusive.
+     */
+    public Histogram(String name, long... bounds) {
+        if (bounds.length == 0) {
+            throw new IllegalArgumentException("no buckets");
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("bounds not ascending at " + i);
+            }
+        }
+        mName = name;
+        mBounds = bounds.clone();
+        mCounts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long value) {
+        int bucket = Arrays.binarySearch(mBounds, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        mCounts.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @return Number of buckets, one more than the bounds.
+     */
+    public int getBucketCount() {
+        return mCounts.length();
+    }
+
+    /**
+     * @return Values recorded in the bucket up to {@code getBound(bucket)}.
+     */
+    public long getBucket(int bucket) {
+        return mCounts.get(bucket);
+    }
+
+    /**
+     * @return Upper bound of the bucket, {@link Long#MAX_VALUE} for the last one.
+     */
+    public long getBound(int bucket) {
+        return bucket < mBounds.length ? mBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    public double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * @return Largest value recorded, 0 if none.
+     */
+    public long getMax() {
+        return mCount.get() == 0 ? 0 : mMax.get();
+    }
+
+    /**
+     * @param fraction 0 to 1, e.g. 0.99 for the 99th percentile.
+     * @return Upper bound of the bucket holding the percentile, the largest value recorded if it
+     * falls into the last bucket, 0 if nothing was recorded.
+     */
+    public long getPercentile(double fraction) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < mBounds.length; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return mBounds[i];
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * One line: count, mean, percentiles, max and the non empty buckets as {@code <=bound:count}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(mName);
+        builder.append(": n=").append(getCount())
+                .append(" mean=").append(Math.round(getMean()))
+                .append(" p50=").append(getPercentile(0.5))
+                .append(" p90=").append(getPercentile(0.9))
+                .append(" p99=").append(getPercentile(0.99))
+                .append(" max=").append(getMax())
+                .append(" |");
+        for (int i = 0; i < mCounts.length(); i++) {
+            long count = mCounts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            if (i < mBounds.length) {
+                builder.append(" <=").append(mBounds[i]);
+            } else {
+                builder.append(" >").append(mBounds[mBounds.length - 1]);
+            }
+            builder.append(':').append(count);
+        }
+        return builder.toString();
+    }
+}
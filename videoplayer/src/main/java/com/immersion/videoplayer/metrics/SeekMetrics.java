@@ -0,0 +1,149 @@
+package com.immersion.videoplayer.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Responsiveness metrics of one seek path: how long seeks take to complete, how far the shown
+ * frame trails the input that asked for it, and how often seeks are issued.
+ * <p/>
+ * The owner of the path reports what happens, with times in milliseconds of one clock
+ * (SystemClock.uptimeMillis() on the device):
+ * <ul>
+ * <li>{@link #onMotion(long)} when the input moves, e.g. the device turns or the seek bar is
+ * dragged. Only the oldest motion not yet answered by a frame is kept.</li>
+ * <li>{@link #onSeekIssued(long)} when a seek is handed to the player. The pending motion is
+ * attached to it.</li>
+ * <li>{@link #onSeekComplete(long)} when the player reports the seek done, which gives the seek
+ * latency and, for a seek with motion attached, the motion-to-photon lag.</li>
+ * <li>{@link #onFrameShown(long)} when a frame answering the motion is shown without a seek, e.g.
+ * from a frame strip.</li>
+ * </ul>
+ * With several seeks in flight, as a plain MediaPlayer allows, the latency is measured from the
+ * first seek issued since the last completion, i.e. how long the user waited for any frame.
+ * Seeks per second are taken from the gap to the previous seek; gaps over {@link #MAX_RATE_GAP_MS}
+ * start a new burst and are not counted.
+ * <p/>
+ * Pure Java and lock free, every method may be called from any thread.
+ */
+public class SeekMetrics {
+
+    /**
+     * Seeks further apart than this aren't part of the same scrub.
+     */
+    public static final long MAX_RATE_GAP_MS = 1000;
+
+    private static final long[] MS_BOUNDS = {
+            1, 2, 4, 8, 16, 25, 33, 50, 66, 100, 150, 200, 300, 500, 1000, 2000};
+    private static final long[] RATE_BOUNDS = {1, 2, 3, 5, 8, 10, 15, 20, 30, 45, 60, 90, 120};
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final String mName;
+    private final Histogram mLatency = new Histogram("seek latency ms", MS_BOUNDS);
+    private final Histogram mLag = new Histogram("motion to photon ms", MS_BOUNDS);
+    private final Histogram mRate = new Histogram("seeks/s", RATE_BOUNDS);
+
+    private final AtomicLong mPendingMotion = new AtomicLong(NONE);
+    private final AtomicLong mSeekMotion = new AtomicLong(NONE);
+    private final AtomicLong mIssuedAt = new AtomicLong(NONE);
+    private final AtomicLong mLastIssue = new AtomicLong(NONE);
+
+    /**
+     * @param name Names the seek path in dumps.
+     */
+    public SeekMetrics(String name) {
+        mName = name;
+    }
+
+    public void onMotion(long timeMs) {
+        mPendingMotion.compareAndSet(NONE, timeMs);
+    }
+
+    public void onSeekIssued(long timeMs) {
+        long last = mLastIssue.getAndSet(timeMs);
+        if (last != NONE && timeMs - last <= MAX_RATE_GAP_MS && timeMs >= last) {
+            mRate.record(1000 / Math.max(1, timeMs - last));
+        }
+        mIssuedAt.compareAndSet(NONE, timeMs);
+
+        long motion = mPendingMotion.getAndSet(NONE);
+        if (motion != NONE && !mSeekMotion.compareAndSet(NONE, motion)) {
+            // the seek in flight answers older motion, this one waits for a later frame
+            mPendingMotion.compareAndSet(NONE, motion);
+        }
+    }
+
+    public void onSeekComplete(long timeMs) {
+        long issued = mIssuedAt.getAndSet(NONE);
+        if (issued != NONE) {
+            mLatency.record(timeMs - issued);
+        }
+        long motion = mSeekMotion.getAndSet(NONE);
+        if (motion != NONE) {
+            mLag.record(timeMs - motion);
+        }
+    }
+
+    public void onFrameShown(long timeMs) {
+        long motion = mPendingMotion.getAndSet(NONE);
+        if (motion != NONE) {
+            mLag.record(timeMs - motion);
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public Histogram getLatency() {
+        return mLatency;
+    }
+
+    public Histogram getLag() {
+        return mLag;
+    }
+
+    public Histogram getRate() {
+        return mRate;
+    }
+
+    /**
+     * Clears the histograms and forgets seeks and motion in flight.
+     */
+    public void reset() {
+        mLatency.reset();
+        mLag.reset();
+        mRate.reset();
+        mPendingMotion.set(NONE);
+        mSeekMotion.set(NONE);
+        mIssuedAt.set(NONE);
+        mLastIssue.set(NONE);
+    }
+
+    /**
+     * Appends the histograms to the file, headed by the name and the wall clock time.
+     */
+    public void dump(File file) throws IOException {
+        Writer writer = new FileWriter(file, true);
+        try {
+            writer.write("# " + mName + " " + System.currentTimeMillis() + "\n");
+            writer.write(mLatency + "\n");
+            writer.write(mLag + "\n");
+            writer.write(mRate + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * The name and one line per histogram, short enough for a logcat entry.
+     */
+    @Override
+    public String toString() {
+        return mName + "\n" + mLatency + "\n" + mLag + "\n" + mRate;
+    }
+}
@@ -0,0 +1,81 @@
+package com.immersion.videoplayer.utils;
+
+/**
+ * Media time as text, {@code mm:ss} or {@code h:mm:ss} like the controller always showed it,
+ * written into a reused char buffer so formatting never allocates.
+ * <p/>
+ * Only whole seconds are visible, so {@link #set(int)} reports whether the text changed and
+ * callers can leave their view alone otherwise. Pass the buffer on with
+ * {@code TextView.setText(getChars(), 0, length())}. Digits are ASCII whatever the locale.
+ */
+public class TimeText {
+
+    // h:mm:ss with up to 5 hour digits, far beyond any int of milliseconds
+    private final char[] mChars = new char[11];
+    private int mLength;
+    private int mSeconds = -1;
+
+    /**
+     * @return Whether the visible text changed.
+     */
+    public boolean set(int timeMs) {
+        int totalSeconds = Math.max(0, timeMs / 1000);
+        if (totalSeconds == mSeconds) {
+            return false;
+        }
+        mSeconds = totalSeconds;
+
+        int seconds = totalSeconds % 60;
+        int minutes = (totalSeconds / 60) % 60;
+        int hours = totalSeconds / 3600;
+
+        int i = 0;
+        if (hours > 0) {
+            i = appendNumber(hours, i);
+            mChars[i++] = ':';
+        }
+        mChars[i++] = (char) ('0' + minutes / 10);
+        mChars[i++] = (char) ('0' + minutes % 10);
+        mChars[i++] = ':';
+        mChars[i++] = (char) ('0' + seconds / 10);
+        mChars[i++] = (char) ('0' + seconds % 10);
+        mLength = i;
+        return true;
+    }
+
+    private int appendNumber(int value, int i) {
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int d = digits - 1; d >= 0; d--) {
+            mChars[i + d] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return i + digits;
+    }
+
+    /**
+     * @return The buffer holding the text in its first {@link #length()} chars. Overwritten by
+     * the next change.
+     */
+    public char[] getChars() {
+        return mChars;
+    }
+
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * Forgets the last time, so the next {@link #set(int)} reports a change.
+     */
+    public void invalidate() {
+        mSeconds = -1;
+    }
+
+    @Override
+    public String toString() {
+        return new String(mChars, 0, mLength);
+    }
+}
@@ -38,10 +38,12 @@ import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -62,10 +64,10 @@ import android.widget.TextView;
 
 import com.immersion.videoplayer.R;
 import com.immersion.videoplayer.interfaces.EventHandler;
+import com.immersion.videoplayer.metrics.SeekMetrics;
+import com.immersion.videoplayer.utils.TimeText;
 
 import java.lang.ref.WeakReference;
-import java.util.Formatter;
-import java.util.Locale;
 
 import timber.log.Timber;
 
@@ -102,8 +104,13 @@ public class MediaController extends FrameLayout implements View.OnClickListener
     private static final int TEN_SECONDS = 10000;
     private static final int FADE_OUT = 1;
     private static final int SHOW_PROGRESS = 2;
-    private StringBuilder mFormatBuilder;
-    private Formatter mFormatter;
+    private static final int PROGRESS_MAX = 1000;
+
+    // progress views are only touched when what they show changes
+    private final ProgressPacer mProgressPacer = new ProgressPacer(PROGRESS_MAX);
+    private final TimeText mCurrentTimeText = new TimeText();
+    private final TimeText mEndTimeText = new TimeText();
+    private int mSecondaryProgress = -1;
 
     private ImageButton imgPlayPause;
     private ImageView imgHapticButton;
@@ -119,6 +126,7 @@ public class MediaController extends FrameLayout implements View.OnClickListener
     private boolean hide;
     private EventHandler eventHandler;
     private int elapsedTime;
+    private SeekMetrics mSeekMetrics;
 
     /*Initialize media player*/
     public MediaController(Context context) {
@@ -163,6 +171,14 @@ public class MediaController extends FrameLayout implements View.OnClickListener
         updatePausePlay();
     }
 
+    /**
+     * Drags of the {@link SeekBar} are reported to the metrics as motion, answered by the seek
+     * they cause.
+     */
+    public void setSeekMetrics(SeekMetrics metrics) {
+        mSeekMetrics = metrics;
+    }
+
     /**
      * Set the view that acts as the anchor for the control view.
      * This can for example be a VideoView, or your Activity's main view.
@@ -210,10 +226,13 @@ public class MediaController extends FrameLayout implements View.OnClickListener
         seekBarMediaController.setProgressDrawable(seekBarDrawable);
 
         seekBarMediaController.setOnSeekBarChangeListener(mSeekListener);
-        seekBarMediaController.setMax(1000);
+        seekBarMediaController.setMax(PROGRESS_MAX);
 
-        mFormatBuilder = new StringBuilder();
-        mFormatter = new Formatter(mFormatBuilder, Locale.getDefault());
+        // fresh views show nothing yet
+        mProgressPacer.invalidate();
+        mCurrentTimeText.invalidate();
+        mEndTimeText.invalidate();
+        mSecondaryProgress = -1;
 
         txtVideoTitle.setText(videoTitle);
         if (elapsedTime > 0)
@@ -327,7 +346,7 @@ public class MediaController extends FrameLayout implements View.OnClickListener
                         super.onAnimationEnd(animation);
                         if (hide) {
                             mAnchor.removeView(MediaController.this);
-                            mHandler.removeMessages(SHOW_PROGRESS);
+                            stopProgress();
                             hide = false;
                             showControls = false;
                         }
@@ -357,22 +376,11 @@ public class MediaController extends FrameLayout implements View.OnClickListener
     }
 
     /**
-     * function to convert millisecond to second, minute and hour and return the formatted value
-     *
-     * @param timeMs : millisecond time got from system
+     * Shows the time in the text view if its text changes.
      */
-    private String stringForTime(int timeMs) {
-        int totalSeconds = timeMs / 1000;
-
-        int seconds = totalSeconds % 60;
-        int minutes = (totalSeconds / 60) % 60;
-        int hours = totalSeconds / 3600;
-
-        mFormatBuilder.setLength(0);
-        if (hours > 0) {
-            return mFormatter.format("%d:%02d:%02d", hours, minutes, seconds).toString();
-        } else {
-            return mFormatter.format("%02d:%02d", minutes, seconds).toString();
+    private static void showTime(TextView view, TimeText text, int timeMs) {
+        if (view != null && text.set(timeMs)) {
+            view.setText(text.getChars(), 0, text.length());
         }
     }
 
@@ -388,7 +396,8 @@ public class MediaController extends FrameLayout implements View.OnClickListener
 
     /*
     * sets progress to {@link SeekBar} and
-    * sets running time and video total time into the view
+    * sets running time and video total time into the view,
+    * each only if what it shows changes
     * */
     private int setProgress() {
         if (mPlayer == null || dragging) {
@@ -398,25 +407,42 @@ public class MediaController extends FrameLayout implements View.OnClickListener
         int position = mPlayer.getCurrentPosition();
         int duration = mPlayer.getDuration();
         if (seekBarMediaController != null) {
+            mProgressPacer.setTrackPixels(seekBarMediaController.getWidth()
+                    - seekBarMediaController.getPaddingLeft() - seekBarMediaController.getPaddingRight());
             if (duration > 0) {
-                // use long to avoid overflow
-                long pos = 1000L * position / duration;
-                seekBarMediaController.setProgress((int) pos);
+                int progress = mProgressPacer.progressFor(position, duration);
+                if (mProgressPacer.updatePixel(progress)) {
+                    seekBarMediaController.setProgress(progress);
+                }
+            }
+            int secondary = mPlayer.getBufferPercentage() * 10;
+            if (secondary != mSecondaryProgress) {
+                mSecondaryProgress = secondary;
+                seekBarMediaController.setSecondaryProgress(secondary);
             }
-            int percent = mPlayer.getBufferPercentage();
-            seekBarMediaController.setSecondaryProgress(percent * 10);
         }
 
-        if (txtEndTime != null) {
-            txtEndTime.setText(stringForTime(duration));
-        }
-        if (txtCurrentTime != null) {
-            txtCurrentTime.setText(stringForTime(position));
-        }
+        showTime(txtEndTime, mEndTimeText, duration);
+        showTime(txtCurrentTime, mCurrentTimeText, position);
 
         return position;
     }
 
+    /**
+     * Updates the progress on the frame at which it next visibly changes, see {@link ProgressPacer}.
+     */
+    private void scheduleProgress(int position) {
+        Choreographer choreographer = Choreographer.getInstance();
+        choreographer.removeFrameCallback((MessageHandler) mHandler);
+        choreographer.postFrameCallbackDelayed((MessageHandler) mHandler,
+                mProgressPacer.nextDelay(position, mPlayer.getDuration()));
+    }
+
+    private void stopProgress() {
+        mHandler.removeMessages(SHOW_PROGRESS);
+        Choreographer.getInstance().removeFrameCallback((MessageHandler) mHandler);
+    }
+
     @Override
     public boolean onTrackballEvent(MotionEvent ev) {
         Timber.d("TrackBallEvent");
@@ -542,7 +568,7 @@ public class MediaController extends FrameLayout implements View.OnClickListener
             // the {@link SeekBar} and b) once the user is done dragging the thumb
             // we will post one of these messages to the queue again and
             // this ensures that there will be exactly one message queued up.
-            mHandler.removeMessages(SHOW_PROGRESS);
+            stopProgress();
         }
 
         public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
@@ -556,14 +582,17 @@ public class MediaController extends FrameLayout implements View.OnClickListener
 
             long duration = mPlayer.getDuration();
             long newPosition = (duration * progress) / 1000L;
-            mPlayer.seekTo((int) newPosition);
-            if (txtCurrentTime != null) {
-                txtCurrentTime.setText(stringForTime((int) newPosition));
+            if (mSeekMetrics != null) {
+                mSeekMetrics.onMotion(SystemClock.uptimeMillis());
             }
+            mPlayer.seekTo((int) newPosition);
+            showTime(txtCurrentTime, mCurrentTimeText, (int) newPosition);
         }
 
         public void onStopTrackingTouch(SeekBar bar) {
             dragging = false;
+            // the thumb is wherever the user left it
+            mProgressPacer.invalidate();
             setProgress();
             updatePausePlay();
 
@@ -648,7 +677,11 @@ public class MediaController extends FrameLayout implements View.OnClickListener
         }
     }
 
-    private static class MessageHandler extends Handler {
+    /**
+     * Handles the controller's messages and, as the frame callback of the progress updates, the
+     * frames {@link #scheduleProgress(int)} asks for.
+     */
+    private static class MessageHandler extends Handler implements Choreographer.FrameCallback {
         private final WeakReference<MediaController> mView;
         private SeekBarListener mSeekBarListener;
 
@@ -663,23 +696,34 @@ public class MediaController extends FrameLayout implements View.OnClickListener
                 return;
             }
 
-            int pos;
             switch (msg.what) {
                 case FADE_OUT:
                     view.hide();
                     break;
                 case SHOW_PROGRESS:
-                    pos = view.setProgress();
-                    if (!view.dragging && view.mPlayer.isPlaying()) {
-                        msg = obtainMessage(SHOW_PROGRESS);
-                        sendMessageDelayed(msg, 1);
-                        if (mSeekBarListener != null)
-                            mSeekBarListener.onSeek(pos);
-                    }
+                    showProgress(view);
                     break;
             }
         }
 
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            MediaController view = mView.get();
+            if (view == null || view.mPlayer == null) {
+                return;
+            }
+            showProgress(view);
+        }
+
+        private void showProgress(MediaController view) {
+            int pos = view.setProgress();
+            if (!view.dragging && view.mPlayer.isPlaying()) {
+                view.scheduleProgress(pos);
+                if (mSeekBarListener != null)
+                    mSeekBarListener.onSeek(pos);
+            }
+        }
+
         public void setSeekBarListener(SeekBarListener listener) {
             mSeekBarListener = listener;
         }
@@ -6,6 +6,7 @@ import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
 import android.view.Gravity;
@@ -14,13 +15,12 @@ import android.view.SurfaceView;
 import android.widget.FrameLayout;
 
 import com.immersion.videoplayer.haptics.HapticMediaPlayer;
+import com.immersion.videoplayer.metrics.SeekMetrics;
 import com.immersion.videoplayer.model.Video;
 import com.immersion.videoplayer.utils.ResourceUtils;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.List;
 
 import timber.log.Timber;
 
@@ -35,15 +35,23 @@ import timber.log.Timber;
  * enable the manager to be able to "remember" the duration the MediaPlayer was at.
  * <p/>
  * Apart from the setup, this also allows the user to register callbacks which will be invoked
- * based on the duration and start factor supplied.
+ * based on the duration and start factor supplied. They are kept by a {@link TimelineScheduler}
+ * driven by one timer on the main thread, armed only for the next callback due while playing.
  */
 public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
         MediaPlayer.OnPreparedListener,
+        MediaPlayer.OnSeekCompleteListener,
         AudioManager.OnAudioFocusChangeListener,
         MediaPlayerController {
 
     private final Handler mHandler = new Handler(Looper.getMainLooper());
-    private final List<ScheduledTask> tasks = new ArrayList<>();
+    private final TimelineScheduler mTimeline = new TimelineScheduler();
+    private final Runnable mTimelineTick = new Runnable() {
+        @Override
+        public void run() {
+            tickTimeline();
+        }
+    };
     private final WeakReference<Context> mContext;
 
     private Context context;
@@ -66,6 +74,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
     private boolean mPrepared;
     private boolean mKeepPlayPauseHidden;
     private static final int START_POINT = 0;
+    private final SeekMetrics mSeekMetrics = new SeekMetrics("player");
 
     /**
      * Constructs the MediaPlayerManager and immediately starts the MediaPlayer.
@@ -140,6 +149,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
         mPlayer = new HapticMediaPlayer();
         mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
         mPlayer.setOnPreparedListener(this);
+        mPlayer.setOnSeekCompleteListener(this);
         mPlayer.setOnErrorListener(mOnErrorListener);
         mPlayer.setOnCompletionListener(getOnCompletionListener());
     }
@@ -151,6 +161,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
     private void initController() {
         mController = new MediaController(mContext.get());
         mController.setMediaPlayer(this);
+        mController.setSeekMetrics(mSeekMetrics);
         mController.setSeekBarListener(mSeekBarListener);
         mController.setCurrentTitle(getVideo().title);
         mController.setElapsedTime(getVideo().elapsedTime);
@@ -172,6 +183,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
                 hidePlayPause(true);
             }
             mPlayer.start();
+            tickTimeline();
         }
     }
 
@@ -180,6 +192,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
         if (mPlayer != null) {
             mStateHolder.set(PlayerStateHolder.States.MANUALLY_PAUSED);
             mPlayer.pause();
+            mHandler.removeCallbacks(mTimelineTick);
             mController.showPlayPause();
             showController(true);
         }
@@ -210,10 +223,44 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
         mKeepPlayPauseHidden = false; //reset
 
         if (mPlayer != null) {
+            mSeekMetrics.onSeekIssued(SystemClock.uptimeMillis());
+            mTimeline.seekTo(pos);
             mPlayer.seekTo(pos);
         }
     }
 
+    @Override
+    public void onSeekComplete(MediaPlayer mp) {
+        mSeekMetrics.onSeekComplete(SystemClock.uptimeMillis());
+        tickTimeline();
+    }
+
+    /**
+     * Runs the callbacks playback has reached and, while playing, arms the timer for the next
+     * one. Waking up early, e.g. after a stall, just re-arms it for the rest.
+     */
+    private void tickTimeline() {
+        mHandler.removeCallbacks(mTimelineTick);
+        if (mPlayer == null || !mPrepared) {
+            return;
+        }
+        mTimeline.advance(mPlayer.getCurrentPosition());
+        // a callback may have released or paused the player
+        if (mPlayer != null && mPlayer.isPlaying()) {
+            long delay = mTimeline.nextDelay(mPlayer.getCurrentPosition());
+            if (delay >= 0) {
+                mHandler.postDelayed(mTimelineTick, delay);
+            }
+        }
+    }
+
+    /**
+     * Seek latency, seek bar lag and seek rate of this player, e.g. to dump on demand.
+     */
+    public SeekMetrics getSeekMetrics() {
+        return mSeekMetrics;
+    }
+
     /**
      * MediaPlayer pause or playing state
      */
@@ -246,7 +293,9 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
      * @param duration Determines when the callback is to be run.
      */
     public void registerCallback(Runnable callback, boolean fromEnd, long duration) {
-        tasks.add(new ScheduledTask(callback, fromEnd, duration));
+        mTimeline.add(new ScheduledTask(callback, fromEnd, duration));
+        // it may be due before the one the timer waits for
+        tickTimeline();
     }
 
     /**
@@ -255,16 +304,15 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
      * @param callback Callback to be unregistered.
      */
     private void unregisterCallback(Runnable callback) {
-        mHandler.removeCallbacks(callback);
+        mTimeline.remove(callback);
     }
 
     /**
      * Clear all callbacks ever set.
      */
     public void unregisterAllCallbacks() {
-        for (ScheduledTask task : tasks) {
-            unregisterCallback(task.getCallback());
-        }
+        mTimeline.clear();
+        mHandler.removeCallbacks(mTimelineTick);
     }
 
     /**
@@ -334,6 +382,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
      */
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
+        mHandler.removeCallbacks(mTimelineTick);
         mCurrentVideoDurationPosition = getCurrentPosition();
         mPlayer.releaseAll();
         mPlayer = null;
@@ -354,6 +403,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
             if (mPlayer.isPlaying()) {
                 mPlayer.pause();
             }
+            mHandler.removeCallbacks(mTimelineTick);
         }
     }
 
@@ -397,6 +447,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
         if (mPlayer != null && mPlayer.isPlaying()) {
             mPlayer.pause();
         }
+        mHandler.removeCallbacks(mTimelineTick);
     }
 
     /**
@@ -441,6 +492,7 @@ public abstract class MediaPlayerManager implements SurfaceHolder.Callback,
     @Override
     public void onPrepared(MediaPlayer mp) {
         mPrepared = true;
+        mTimeline.setDuration(mp.getDuration());
         /*
         * Fits video to mobile screen according to video proportion
         * calculates height of mobile screen and sets video proportion to set height and width of video being played
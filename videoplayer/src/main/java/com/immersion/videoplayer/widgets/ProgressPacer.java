@@ -0,0 +1,109 @@
+package com.immersion.videoplayer.widgets;
+
+/**
+ * Paces the updates of the controller's progress while a video plays.
+ * <p/>
+ * The {@link android.widget.SeekBar} only moves visibly when its thumb reaches the next pixel of
+ * the track, and the time text only changes once a second. {@link #nextDelay(int, int)} is the
+ * time until the earlier of the two at normal playback speed, so a long video on a narrow bar is
+ * updated a few times a second instead of every millisecond, and {@link #updatePixel(int)} tells
+ * whether a new progress value would be visible at all.
+ * <p/>
+ * Pure Java, no allocation.
+ */
+public class ProgressPacer {
+
+    /**
+     * Shortest delay, one frame at 60 Hz.
+     */
+    public static final int MIN_DELAY_MS = 16;
+    /**
+     * Longest delay, for the time text.
+     */
+    public static final int MAX_DELAY_MS = 1000;
+
+    private final int mMax;
+    private int mTrackPixels;
+    private int mPixel = -1;
+
+    /**
+     * @param max Maximum progress of the seek bar.
+     */
+    public ProgressPacer(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Invalid max " + max);
+        }
+        mMax = max;
+    }
+
+    /**
+     * @param pixels Width of the seek bar's track, 0 while it isn't laid out.
+     */
+    public void setTrackPixels(int pixels) {
+        if (pixels != mTrackPixels) {
+            mTrackPixels = pixels;
+            mPixel = -1;
+        }
+    }
+
+    /**
+     * @return Seek bar progress for the position.
+     */
+    public int progressFor(int position, int duration) {
+        if (duration <= 0 || position <= 0) {
+            return 0;
+        }
+        // use long to avoid overflow
+        return (int) Math.min(mMax, (long) mMax * position / duration);
+    }
+
+    /**
+     * Records the progress about to be shown.
+     *
+     * @return false if the thumb would stay on the same pixel, so the seek bar needn't be touched.
+     */
+    public boolean updatePixel(int progress) {
+        int pixel = pixelFor(progress);
+        if (pixel == mPixel) {
+            return false;
+        }
+        mPixel = pixel;
+        return true;
+    }
+
+    /**
+     * Forgets the pixel shown, e.g. after the user dragged the thumb.
+     */
+    public void invalidate() {
+        mPixel = -1;
+    }
+
+    /**
+     * @return Milliseconds until the thumb reaches its next pixel or the time text its next
+     * second, within {@link #MIN_DELAY_MS} and {@link #MAX_DELAY_MS}.
+     */
+    public int nextDelay(int position, int duration) {
+        position = Math.max(0, position);
+        long delay = 1000 - position % 1000;
+        int steps = steps();
+        int pixel = pixelFor(progressFor(position, duration));
+        if (duration > 0 && pixel < steps) {
+            // the first progress showing the next pixel, then the first position reaching it
+            long progress = ((long) (pixel + 1) * mMax + steps - 1) / steps;
+            long next = (progress * duration + mMax - 1) / mMax;
+            delay = Math.min(delay, next - position);
+        }
+        return (int) Math.max(MIN_DELAY_MS, Math.min(MAX_DELAY_MS, delay));
+    }
+
+    /**
+     * @return Distinct thumb positions: pixels of the track, but no more than progress values.
+     */
+    private int steps() {
+        return mTrackPixels > 0 ? Math.min(mTrackPixels, mMax) : mMax;
+    }
+
+    private int pixelFor(int progress) {
+        return (int) ((long) progress * steps() / mMax);
+    }
+}
@@ -0,0 +1,218 @@
+package com.immersion.videoplayer.widgets;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Runs {@link ScheduledTask}s when playback reaches their media position.
+ * <p/>
+ * Tasks wait in a priority queue keyed on their position, those counted from the end once the
+ * duration is known. Playback is reported through {@link #advance(int)}, which runs every task up
+ * to the position, and {@link #seekTo(int)}, which skips the tasks jumped over going forward and
+ * re-arms the ones passed already going back. Passed tasks are kept in a second queue ordered the
+ * other way, so a rewind only touches the tasks it re-arms. Adding, running and re-arming a task
+ * costs O(log n), which keeps thousands of cue points cheap.
+ * <p/>
+ * Playback that moves back without a seek being reported, e.g. replaying after completion or
+ * looping, is taken for one: an {@link #advance(int)} more than {@link #REWIND_TOLERANCE_MS} behind
+ * the position reached re-arms the tasks as {@link #seekTo(int)} would.
+ * <p/>
+ * The owner drives it with a single timer: after each {@link #advance(int)} it waits
+ * {@link #nextDelay(int)} and stops waiting while paused. Tasks at the same position run in the
+ * order they were added. Pure Java, not thread safe; the player uses it on the main thread.
+ */
+public class TimelineScheduler {
+
+    /**
+     * Positions reported this far behind the one reached are still taken for playback going on,
+     * players report the position with some jitter.
+     */
+    static final int REWIND_TOLERANCE_MS = 200;
+
+    private static final class Entry {
+        final ScheduledTask task;
+        final long sequence;
+        long position;
+
+        Entry(ScheduledTask task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> EARLIEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.position != b.position) {
+                return a.position < b.position ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1;
+        }
+    };
+
+    private static final Comparator<Entry> LATEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return EARLIEST_FIRST.compare(b, a);
+        }
+    };
+
+    private final PriorityQueue<Entry> mUpcoming = new PriorityQueue<>(16, EARLIEST_FIRST);
+    private final PriorityQueue<Entry> mPassed = new PriorityQueue<>(16, LATEST_FIRST);
+    /**
+     * Tasks counted from the end while the duration is unknown.
+     */
+    private final List<Entry> mUnresolved = new ArrayList<>();
+    private long mSequence;
+    private int mDuration;
+    private long mPosition = -1;
+
+    /**
+     * Adds a task. One that lies before the current position waits for a rewind.
+     */
+    public void add(ScheduledTask task) {
+        Entry entry = new Entry(task, mSequence++);
+        if (task.getStartFactor() && mDuration <= 0) {
+            mUnresolved.add(entry);
+            return;
+        }
+        schedule(entry);
+    }
+
+    /**
+     * Removes every task running the callback. O(n).
+     */
+    public void remove(Runnable callback) {
+        removeFrom(mUpcoming, callback);
+        removeFrom(mPassed, callback);
+        removeFrom(mUnresolved, callback);
+    }
+
+    private static void removeFrom(Iterable<Entry> entries, Runnable callback) {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            if (it.next().task.getCallback() == callback) {
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        mUpcoming.clear();
+        mPassed.clear();
+        mUnresolved.clear();
+    }
+
+    /**
+     * Resolves the tasks counted from the end, e.g. once the player is prepared. A different
+     * duration, i.e. other media, places them anew.
+     */
+    public void setDuration(int durationMs) {
+        if (durationMs == mDuration) {
+            return;
+        }
+        mDuration = durationMs;
+        if (durationMs <= 0) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(mUnresolved);
+        mUnresolved.clear();
+        for (Iterator<Entry> it = mUpcoming.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.task.getStartFactor()) {
+                entries.add(entry);
+                it.remove();
+            }
+        }
+        for (Iterator<Entry> it = mPassed.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.task.getStartFactor()) {
+                entries.add(entry);
+                it.remove();
+            }
+        }
+        for (Entry entry : entries) {
+            schedule(entry);
+        }
+    }
+
+    private void schedule(Entry entry) {
+        ScheduledTask task = entry.task;
+        entry.position = task.getStartFactor() ? mDuration - task.getDuration() : task.getDuration();
+        if (entry.position <= mPosition) {
+            mPassed.add(entry);
+        } else {
+            mUpcoming.add(entry);
+        }
+    }
+
+    /**
+     * Runs, in position order, every task up to the position playback has reached. A position
+     * further back than {@link #REWIND_TOLERANCE_MS} counts as a {@link #seekTo(int)} first.
+     *
+     * @return Number of tasks run.
+     */
+    public int advance(int positionMs) {
+        if (positionMs < mPosition - REWIND_TOLERANCE_MS) {
+            seekTo(positionMs);
+        }
+        int run = 0;
+        Entry next;
+        while ((next = mUpcoming.peek()) != null && next.position <= positionMs) {
+            mUpcoming.poll();
+            mPassed.add(next);
+            mPosition = Math.max(mPosition, next.position);
+            run++;
+            next.task.getCallback().run();
+        }
+        mPosition = Math.max(mPosition, positionMs);
+        return run;
+    }
+
+    /**
+     * Notes a jump of the playback position. Going forward, the tasks jumped over are passed
+     * without running; a task right at the target runs with the next {@link #advance(int)}. Going
+     * back, the tasks from the target on are re-armed.
+     */
+    public void seekTo(int positionMs) {
+        Entry entry;
+        if (positionMs > mPosition) {
+            while ((entry = mUpcoming.peek()) != null && entry.position < positionMs) {
+                mPassed.add(mUpcoming.poll());
+            }
+        } else {
+            while ((entry = mPassed.peek()) != null && entry.position >= positionMs) {
+                mUpcoming.add(mPassed.poll());
+            }
+        }
+        mPosition = positionMs - 1;
+    }
+
+    /**
+     * @return Milliseconds of playback until the next task is due, 0 if one is due already, -1
+     * if none is left ahead.
+     */
+    public long nextDelay(int positionMs) {
+        Entry next = mUpcoming.peek();
+        if (next == null) {
+            return -1;
+        }
+        return Math.max(0, next.position - positionMs);
+    }
+
+    /**
+     * @return Tasks still ahead of the playback position.
+     */
+    public int getUpcomingCount() {
+        return mUpcoming.size();
+    }
+
+    /**
+     * @return All tasks, including those passed and those waiting for the duration.
+     */
+    public int size() {
+        return mUpcoming.size() + mPassed.size() + mUnresolved.size();
+    }
+}
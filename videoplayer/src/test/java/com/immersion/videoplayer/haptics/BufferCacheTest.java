@@ -0,0 +1,60 @@
+package com.immersion.videoplayer.haptics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BufferCacheTest {
+
+    private BufferCache<String, String> mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mCache = new BufferCache<String, String>(100);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws Exception {
+        assertEquals(0, mCache.put("a", "A", 40));
+        assertEquals(0, mCache.put("b", "B", 40));
+        assertEquals("A", mCache.get("a"));
+
+        assertEquals(1, mCache.put("c", "C", 40));
+        assertNull(mCache.get("b"));
+        assertEquals(Arrays.asList("A", "C"), mCache.values());
+        assertEquals(80, mCache.getBytes());
+        assertEquals(1, mCache.getEvictions());
+    }
+
+    @Test
+    public void keepsABufferLargerThanTheBudget() throws Exception {
+        mCache.put("a", "A", 10);
+        mCache.put("b", "B", 10);
+        assertEquals(2, mCache.put("huge", "H", 150));
+        assertEquals(1, mCache.size());
+        assertEquals("H", mCache.get("huge"));
+
+        assertEquals(1, mCache.put("a", "A", 10));
+        assertEquals(10, mCache.getBytes());
+    }
+
+    @Test
+    public void replacingAKeyAccountsForTheNewSize() throws Exception {
+        mCache.put("a", "A", 60);
+        mCache.put("b", "B", 30);
+        assertEquals(0, mCache.put("a", "A2", 20));
+        assertEquals(50, mCache.getBytes());
+        // the replaced key is the most recently used
+        assertEquals(Arrays.asList("B", "A2"), mCache.values());
+
+        assertEquals("B", mCache.remove("b"));
+        assertNull(mCache.remove("b"));
+        assertEquals(20, mCache.getBytes());
+        mCache.clear();
+        assertEquals(0, mCache.getBytes());
+        assertEquals(0, mCache.size());
+    }
+}
@@ -0,0 +1,76 @@
+package com.immersion.videoplayer.haptics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EffectIndexTest {
+
+    private EffectIndex<String> mIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        mIndex = new EffectIndex<String>();
+    }
+
+    @Test
+    public void findsEveryEffectAcrossGrowth() throws Exception {
+        for (int buffer = 0; buffer < 20; buffer++) {
+            for (int effect = 0; effect < 30; effect++) {
+                mIndex.put("effect_" + buffer + "_" + effect, "buffer" + buffer, effect);
+            }
+        }
+        assertEquals(600, mIndex.size());
+        for (int buffer = 0; buffer < 20; buffer++) {
+            for (int effect = 0; effect < 30; effect++) {
+                int slot = mIndex.find("effect_" + buffer + "_" + effect);
+                assertTrue(slot >= 0);
+                assertEquals("buffer" + buffer, mIndex.getBuffer(slot));
+                assertEquals(effect, mIndex.getEffectIndex(slot));
+            }
+        }
+        assertEquals(-1, mIndex.find("effect_20_0"));
+        assertEquals(-1, mIndex.find(""));
+    }
+
+    @Test
+    public void laterBufferWins() throws Exception {
+        mIndex.put("Bounce", "first", 3);
+        mIndex.put("Bounce", "second", 7);
+        assertEquals(1, mIndex.size());
+        int slot = mIndex.find("Bounce");
+        assertEquals("second", mIndex.getBuffer(slot));
+        assertEquals(7, mIndex.getEffectIndex(slot));
+    }
+
+    @Test
+    public void collidingNamesStayApart() throws Exception {
+        // "Aa" and "BB" share a hash code
+        mIndex.put("Aa", "buffer", 1);
+        mIndex.put("BB", "buffer", 2);
+        assertEquals(1, mIndex.getEffectIndex(mIndex.find("Aa")));
+        assertEquals(2, mIndex.getEffectIndex(mIndex.find("BB")));
+
+        mIndex.clear();
+        assertEquals(0, mIndex.size());
+        assertEquals(-1, mIndex.find("Aa"));
+    }
+
+    @Test
+    public void copyLeavesTheOriginalAlone() throws Exception {
+        mIndex.put("Bounce", "first", 3);
+        EffectIndex<String> copy = new EffectIndex<String>(mIndex);
+        copy.put("Bounce", "second", 7);
+        for (int effect = 0; effect < 30; effect++) {
+            copy.put("effect_" + effect, "second", effect);
+        }
+
+        assertEquals(1, mIndex.size());
+        assertEquals("first", mIndex.getBuffer(mIndex.find("Bounce")));
+        assertEquals(-1, mIndex.find("effect_0"));
+        assertEquals(31, copy.size());
+        assertEquals("second", copy.getBuffer(copy.find("Bounce")));
+        assertEquals(29, copy.getEffectIndex(copy.find("effect_29")));
+    }
+}
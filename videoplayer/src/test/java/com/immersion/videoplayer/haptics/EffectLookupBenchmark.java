@@ -0,0 +1,142 @@
+package com.immersion.videoplayer.haptics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding an effect by name with many IVT buffers loaded: the scan HapticsManager used
+ * before {@link EffectIndex}, {@code contains} over every buffer path and a name search in the
+ * current buffer that throws on a miss, against a single index lookup. Neither side formats the
+ * debug log, which playFromIVT no longer does on release builds.
+ * <p/>
+ * IVTBuffer needs the UHL native library, so buffers are modelled by their effect names. Run with
+ * {@code main()} from the IDE, the JVM numbers are an upper bound for the relative cost on device
+ * rather than an absolute figure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EffectLookupBenchmark {
+
+    private static final int EFFECTS_PER_BUFFER = 32;
+
+    /**
+     * The part of IVTBuffer the lookup uses.
+     */
+    private static final class NamedBuffer {
+        final String[] names;
+
+        NamedBuffer(String[] names) {
+            this.names = names;
+        }
+
+        int getEffectIndexFromName(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new RuntimeException("VIBE_E_FAIL");
+        }
+    }
+
+    @Param({"1", "16", "128"})
+    public int buffers;
+
+    private final HashMap<String, NamedBuffer> mBuffersMap = new HashMap<String, NamedBuffer>();
+    private NamedBuffer mCurrent;
+    private final EffectIndex<NamedBuffer> mIndex = new EffectIndex<NamedBuffer>();
+    private String[] mNames;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mNames = new String[buffers * EFFECTS_PER_BUFFER];
+        for (int b = 0; b < buffers; b++) {
+            String[] names = new String[EFFECTS_PER_BUFFER];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "effect_" + b + "_" + i;
+                mNames[b * EFFECTS_PER_BUFFER + i] = names[i];
+            }
+            NamedBuffer buffer = new NamedBuffer(names);
+            mBuffersMap.put("hvuc/ivt/pack_" + b + ".ivt", buffer);
+            for (int i = 0; i < names.length; i++) {
+                mIndex.put(names[i], buffer, i);
+            }
+            mCurrent = buffer;
+        }
+    }
+
+    private String nextName() {
+        mNext = (mNext + 1) % mNames.length;
+        return mNames[mNext];
+    }
+
+    /**
+     * The old playFromIVT up to the device call.
+     */
+    private int legacyFind(String name) {
+        try {
+            for (Map.Entry<String, NamedBuffer> entry : mBuffersMap.entrySet()) {
+                if (entry.getKey().contains(name)) {
+                    mCurrent = entry.getValue();
+                }
+            }
+            try {
+                return mCurrent.getEffectIndexFromName(name);
+            } catch (RuntimeException e) {
+                if (e.getMessage().equals("VIBE_E_FAIL")) {
+                    throw new IllegalArgumentException("Cannot find effect with name " + name);
+                }
+                throw e;
+            }
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int legacyScan() {
+        return legacyFind(nextName());
+    }
+
+    @Benchmark
+    public int legacyScanMiss() {
+        return legacyFind("missing");
+    }
+
+    @Benchmark
+    public int index() {
+        return mIndex.getEffectIndex(mIndex.find(nextName()));
+    }
+
+    @Benchmark
+    public int indexMiss() {
+        return mIndex.find("missing");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EffectLookupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
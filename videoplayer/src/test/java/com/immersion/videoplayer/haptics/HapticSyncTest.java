@@ -0,0 +1,72 @@
+package com.immersion.videoplayer.haptics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HapticSyncTest {
+
+    private HapticSync mSync;
+
+    @Before
+    public void setUp() throws Exception {
+        mSync = new HapticSync();
+    }
+
+    @Test
+    public void firstSyncMeasuresNothing() throws Exception {
+        assertEquals(HapticSync.MIN_INTERVAL_MS, mSync.onSync(5000, 100));
+        assertEquals(1, mSync.getSyncCount());
+        assertEquals(0, mSync.getDrift().getCount());
+    }
+
+    @Test
+    public void backsOffWhileInSync() throws Exception {
+        long now = 0;
+        int position = 0;
+        int interval = mSync.onSync(position, now);
+        int[] expected = {200, 400, 800, 1600, 3200, 4000, 4000};
+        for (int next : expected) {
+            now += interval;
+            position += interval;
+            interval = mSync.onSync(position, now);
+            assertEquals(next, interval);
+        }
+        assertEquals(expected.length, mSync.getDrift().getCount());
+        assertEquals(0, mSync.getDrift().getMax());
+    }
+
+    @Test
+    public void tightensOnDrift() throws Exception {
+        mSync.onSync(0, 0);
+        mSync.onSync(100, 100);
+        // position jitter within the threshold
+        assertEquals(400, mSync.onSync(360, 300));
+        assertEquals(60, mSync.getLastDrift());
+
+        // the media clock fell behind by more than the threshold
+        assertEquals(HapticSync.MIN_INTERVAL_MS, mSync.onSync(640, 700));
+        assertEquals(-120, mSync.getLastDrift());
+        assertEquals(120, mSync.getDrift().getMax());
+    }
+
+    @Test
+    public void restartsAfterSeek() throws Exception {
+        mSync.onSync(0, 0);
+        mSync.onSync(100, 100);
+        assertEquals(400, mSync.onSync(300, 300));
+
+        mSync.restart();
+        assertEquals(HapticSync.MIN_INTERVAL_MS, mSync.getInterval());
+        // the jump isn't drift
+        assertEquals(HapticSync.MIN_INTERVAL_MS, mSync.onSync(60000, 310));
+        assertEquals(2, mSync.getDrift().getCount());
+        assertEquals(200, mSync.onSync(60100, 410));
+
+        mSync.reset();
+        assertEquals(0, mSync.getSyncCount());
+        assertEquals(0, mSync.getDrift().getCount());
+        assertEquals(200, mSync.getInterval());
+    }
+}
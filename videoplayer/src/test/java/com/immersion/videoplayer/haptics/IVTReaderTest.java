@@ -0,0 +1,94 @@
+package com.immersion.videoplayer.haptics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class IVTReaderTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("effects", ".ivt");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void readsSmallAndMappedFiles() throws Exception {
+        byte[] small = bytes(1000);
+        write(small);
+        assertArrayEquals(small, IVTReader.read(mFile));
+
+        byte[] large = bytes(IVTReader.MAP_THRESHOLD + 123);
+        write(large);
+        assertArrayEquals(large, IVTReader.read(mFile));
+    }
+
+    @Test
+    public void readsARangeOfAChannel() throws Exception {
+        write(bytes(500));
+        RandomAccessFile in = new RandomAccessFile(mFile, "r");
+        try {
+            byte[] range = IVTReader.read(in.getChannel(), 100, 50);
+            assertEquals(50, range.length);
+            assertEquals((byte) (100 * 31), range[0]);
+            assertEquals((byte) (149 * 31), range[49]);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAChannelEndingEarly() throws Exception {
+        write(bytes(100));
+        RandomAccessFile in = new RandomAccessFile(mFile, "r");
+        try {
+            IVTReader.read(in.getChannel(), 60, 50);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void readsStreamsPastTheirFirstChunk() throws Exception {
+        byte[] bytes = bytes(20000);
+        // a stream whose available() would say 0
+        assertArrayEquals(bytes, IVTReader.read(new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        }));
+        assertEquals(0, IVTReader.read(new ByteArrayInputStream(new byte[0])).length);
+    }
+}
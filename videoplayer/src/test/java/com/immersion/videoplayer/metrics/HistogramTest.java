@@ -0,0 +1,109 @@
+package com.immersion.videoplayer.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void countsValuesIntoTheirBuckets() throws Exception {
+        Histogram histogram = new Histogram("test", 10, 20, 50);
+        histogram.record(0);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(50);
+        histogram.record(51);
+        histogram.record(1000);
+
+        assertEquals(4, histogram.getBucketCount());
+        assertEquals(2, histogram.getBucket(0));
+        assertEquals(1, histogram.getBucket(1));
+        assertEquals(1, histogram.getBucket(2));
+        assertEquals(2, histogram.getBucket(3));
+        assertEquals(Long.MAX_VALUE, histogram.getBound(3));
+        assertEquals(6, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(1122 / 6.0, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void percentilesReportBucketBounds() throws Exception {
+        Histogram histogram = new Histogram("test", 10, 20, 50);
+        for (int i = 0; i < 90; i++) {
+            histogram.record(5);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(15);
+        }
+        histogram.record(70);
+
+        assertEquals(10, histogram.getPercentile(0.5));
+        assertEquals(10, histogram.getPercentile(0.9));
+        assertEquals(20, histogram.getPercentile(0.99));
+        // beyond the last bound the largest value is all there is
+        assertEquals(70, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void emptyAndReset() throws Exception {
+        Histogram histogram = new Histogram("test", 10);
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(0.5));
+        assertEquals(0, histogram.getMean(), 0);
+
+        histogram.record(-5);
+        assertEquals(-5, histogram.getMax());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getBucket(0));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsortedBounds() throws Exception {
+        new Histogram("test", 10, 5);
+    }
+
+    @Test
+    public void loseNoCountsUnderContention() throws Exception {
+        final Histogram histogram = new Histogram("test", 1, 2, 4, 8);
+        final int perThread = 100000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record((i + offset) % 10);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = 0;
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            total += histogram.getBucket(i);
+        }
+        assertEquals(threads.length * perThread, histogram.getCount());
+        assertEquals(histogram.getCount(), total);
+        assertEquals(9, histogram.getMax());
+    }
+
+    @Test
+    public void describesNonEmptyBuckets() throws Exception {
+        Histogram histogram = new Histogram("latency ms", 10, 20);
+        histogram.record(3);
+        histogram.record(30);
+        String text = histogram.toString();
+        assertTrue(text, text.startsWith("latency ms: n=2"));
+        assertTrue(text, text.contains("<=10:1"));
+        assertTrue(text, text.contains(">20:1"));
+        assertFalse(text, text.contains("<=20"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.immersion.videoplayer.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+import static org.junit.Assert.*;
+
+public class SeekMetricsTest {
+
+    private SeekMetrics mMetrics;
+
+    @Before
+    public void setUp() throws Exception {
+        mMetrics = new SeekMetrics("test");
+    }
+
+    @Test
+    public void measuresSeekLatencyAndLag() throws Exception {
+        mMetrics.onMotion(1000);
+        mMetrics.onMotion(1010);
+        mMetrics.onSeekIssued(1020);
+        mMetrics.onSeekComplete(1100);
+
+        assertEquals(1, mMetrics.getLatency().getCount());
+        assertEquals(80, mMetrics.getLatency().getMax());
+        // from the oldest motion the frame answers
+        assertEquals(1, mMetrics.getLag().getCount());
+        assertEquals(100, mMetrics.getLag().getMax());
+    }
+
+    @Test
+    public void seekWithoutMotionHasNoLag() throws Exception {
+        mMetrics.onSeekIssued(0);
+        mMetrics.onSeekComplete(50);
+        assertEquals(1, mMetrics.getLatency().getCount());
+        assertEquals(0, mMetrics.getLag().getCount());
+
+        // a completion without a seek, e.g. one issued before the metrics were attached
+        mMetrics.onSeekComplete(60);
+        assertEquals(1, mMetrics.getLatency().getCount());
+    }
+
+    @Test
+    public void overlappingSeeksCountFromTheFirst() throws Exception {
+        mMetrics.onSeekIssued(100);
+        mMetrics.onSeekIssued(150);
+        mMetrics.onSeekComplete(300);
+        mMetrics.onSeekComplete(320);
+
+        assertEquals(1, mMetrics.getLatency().getCount());
+        assertEquals(200, mMetrics.getLatency().getMax());
+    }
+
+    @Test
+    public void motionDuringASeekWaitsForTheNextFrame() throws Exception {
+        mMetrics.onMotion(0);
+        mMetrics.onSeekIssued(10);
+        mMetrics.onMotion(40);
+        mMetrics.onSeekIssued(50);
+        mMetrics.onSeekComplete(100);
+        assertEquals(100, mMetrics.getLag().getMax());
+
+        mMetrics.onFrameShown(130);
+        assertEquals(2, mMetrics.getLag().getCount());
+        assertEquals(95, mMetrics.getLag().getMean(), 1e-9);
+    }
+
+    @Test
+    public void framesWithoutSeeksMeasureLag() throws Exception {
+        mMetrics.onMotion(500);
+        mMetrics.onFrameShown(516);
+        mMetrics.onFrameShown(533);
+
+        assertEquals(1, mMetrics.getLag().getCount());
+        assertEquals(16, mMetrics.getLag().getMax());
+        assertEquals(0, mMetrics.getLatency().getCount());
+    }
+
+    @Test
+    public void seekRateSkipsPausesBetweenBursts() throws Exception {
+        for (int i = 0; i < 11; i++) {
+            mMetrics.onSeekIssued(i * 50);
+        }
+        mMetrics.onSeekIssued(500 + SeekMetrics.MAX_RATE_GAP_MS + 1);
+
+        assertEquals(10, mMetrics.getRate().getCount());
+        assertEquals(20, mMetrics.getRate().getMax());
+    }
+
+    @Test
+    public void dumpsAllHistograms() throws Exception {
+        mMetrics.onSeekIssued(0);
+        mMetrics.onSeekComplete(40);
+        File file = File.createTempFile("seek-metrics", ".txt");
+        try {
+            mMetrics.dump(file);
+            mMetrics.dump(file);
+
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            int lines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (lines == 1) {
+                    assertTrue(line, line.startsWith("# test "));
+                } else if (lines == 2) {
+                    assertTrue(line, line.startsWith("seek latency ms: n=1"));
+                }
+            }
+            reader.close();
+            assertEquals(8, lines);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void resetForgetsSeeksInFlight() throws Exception {
+        mMetrics.onMotion(0);
+        mMetrics.onSeekIssued(0);
+        mMetrics.reset();
+        mMetrics.onSeekComplete(100);
+        mMetrics.onFrameShown(100);
+
+        assertEquals(0, mMetrics.getLatency().getCount());
+        assertEquals(0, mMetrics.getLag().getCount());
+    }
+}
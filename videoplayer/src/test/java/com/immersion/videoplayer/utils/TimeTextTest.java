@@ -0,0 +1,45 @@
+package com.immersion.videoplayer.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimeTextTest {
+
+    @Test
+    public void formatsMinutesAndHours() throws Exception {
+        TimeText text = new TimeText();
+        assertTrue(text.set(0));
+        assertEquals("00:00", text.toString());
+        assertTrue(text.set(61000));
+        assertEquals("01:01", text.toString());
+        assertTrue(text.set(3723000));
+        assertEquals("1:02:03", text.toString());
+        assertTrue(text.set(12 * 3600000));
+        assertEquals("12:00:00", text.toString());
+        assertTrue(text.set(Integer.MAX_VALUE));
+        assertEquals("596:31:23", text.toString());
+        assertEquals(9, text.length());
+    }
+
+    @Test
+    public void reportsOnlyVisibleChanges() throws Exception {
+        TimeText text = new TimeText();
+        assertTrue(text.set(1000));
+        char[] chars = text.getChars();
+        assertFalse(text.set(1999));
+        assertTrue(text.set(2000));
+        assertSame(chars, text.getChars());
+        assertEquals("00:02", text.toString());
+
+        text.invalidate();
+        assertTrue(text.set(2000));
+    }
+
+    @Test
+    public void clampsNegativeTimes() throws Exception {
+        TimeText text = new TimeText();
+        assertTrue(text.set(-5000));
+        assertEquals("00:00", text.toString());
+    }
+}
@@ -0,0 +1,63 @@
+package com.immersion.videoplayer.widgets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProgressPacerTest {
+
+    private ProgressPacer mPacer;
+
+    @Before
+    public void setUp() throws Exception {
+        mPacer = new ProgressPacer(1000);
+    }
+
+    @Test
+    public void mapsPositionsOntoProgress() throws Exception {
+        assertEquals(500, mPacer.progressFor(15000, 30000));
+        assertEquals(1000, mPacer.progressFor(31000, 30000));
+        assertEquals(0, mPacer.progressFor(15000, 0));
+        assertEquals(999, mPacer.progressFor(Integer.MAX_VALUE - 1, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void touchesTheSeekBarOnlyWhenTheThumbMoves() throws Exception {
+        mPacer.setTrackPixels(100);
+        assertTrue(mPacer.updatePixel(500));
+        assertFalse(mPacer.updatePixel(509));
+        assertTrue(mPacer.updatePixel(510));
+
+        mPacer.invalidate();
+        assertTrue(mPacer.updatePixel(510));
+        mPacer.setTrackPixels(200);
+        assertTrue(mPacer.updatePixel(510));
+    }
+
+    @Test
+    public void waitsForTheNextPixel() throws Exception {
+        // 300ms per pixel
+        mPacer.setTrackPixels(100);
+        assertEquals(300, mPacer.nextDelay(0, 30000));
+        assertEquals(150, mPacer.nextDelay(150, 30000));
+        assertEquals(300, mPacer.nextDelay(300, 30000));
+    }
+
+    @Test
+    public void waitsForTheNextSecondOnLongVideos() throws Exception {
+        // over 7s per pixel
+        mPacer.setTrackPixels(500);
+        assertEquals(600, mPacer.nextDelay(400, 3600000));
+        assertEquals(ProgressPacer.MAX_DELAY_MS, mPacer.nextDelay(0, 3600000));
+    }
+
+    @Test
+    public void neverUpdatesFasterThanFrames() throws Exception {
+        mPacer.setTrackPixels(1000);
+        assertEquals(ProgressPacer.MIN_DELAY_MS, mPacer.nextDelay(100, 2000));
+        // before layout every progress value counts
+        mPacer.setTrackPixels(0);
+        assertEquals(30, mPacer.nextDelay(0, 30000));
+    }
+}
@@ -0,0 +1,176 @@
+package com.immersion.videoplayer.widgets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimelineSchedulerTest {
+
+    private TimelineScheduler mScheduler;
+    private List<String> mRun;
+
+    @Before
+    public void setUp() throws Exception {
+        mScheduler = new TimelineScheduler();
+        mRun = new ArrayList<>();
+    }
+
+    private Runnable cue(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRun.add(name);
+            }
+        };
+    }
+
+    private void add(String name, boolean fromEnd, long at) {
+        mScheduler.add(new ScheduledTask(cue(name), fromEnd, at));
+    }
+
+    @Test
+    public void runsTasksInPositionOrderAsPlaybackReachesThem() throws Exception {
+        add("c", false, 3000);
+        add("a", false, 1000);
+        add("b", false, 2000);
+        add("b2", false, 2000);
+
+        assertEquals(1000, mScheduler.nextDelay(0));
+        assertEquals(0, mScheduler.advance(999));
+        assertEquals(1, mScheduler.advance(1000));
+        assertEquals(1000, mScheduler.nextDelay(1000));
+        assertEquals(3, mScheduler.advance(5000));
+        assertEquals(Arrays.asList("a", "b", "b2", "c"), mRun);
+        assertEquals(-1, mScheduler.nextDelay(5000));
+        // already run, not again
+        assertEquals(0, mScheduler.advance(6000));
+    }
+
+    @Test
+    public void resolvesTasksFromTheEndOnceTheDurationIsKnown() throws Exception {
+        add("end", true, 5000);
+        add("start", false, 0);
+        assertEquals(0, mScheduler.nextDelay(0));
+        assertEquals(1, mScheduler.getUpcomingCount());
+        assertEquals(2, mScheduler.size());
+
+        mScheduler.setDuration(30000);
+        assertEquals(2, mScheduler.getUpcomingCount());
+        mScheduler.advance(0);
+        assertEquals(25000, mScheduler.nextDelay(0));
+
+        // other media moves it
+        mScheduler.setDuration(10000);
+        assertEquals(5000, mScheduler.nextDelay(0));
+        mScheduler.advance(5000);
+        assertEquals(Arrays.asList("start", "end"), mRun);
+    }
+
+    @Test
+    public void seekingForwardSkipsTheTasksJumpedOver() throws Exception {
+        add("a", false, 1000);
+        add("b", false, 2000);
+        add("c", false, 3000);
+
+        mScheduler.seekTo(2000);
+        assertEquals(0, mScheduler.nextDelay(2000));
+        mScheduler.advance(2000);
+        assertEquals(Arrays.asList("b"), mRun);
+        assertEquals(1, mScheduler.getUpcomingCount());
+    }
+
+    @Test
+    public void rewindingReArmsPassedTasks() throws Exception {
+        add("a", false, 1000);
+        add("b", false, 2000);
+        add("c", false, 3000);
+        mScheduler.advance(2500);
+
+        mScheduler.seekTo(1500);
+        assertEquals(2, mScheduler.getUpcomingCount());
+        assertEquals(500, mScheduler.nextDelay(1500));
+        mScheduler.advance(3000);
+        assertEquals(Arrays.asList("a", "b", "b", "c"), mRun);
+
+        mScheduler.seekTo(0);
+        assertEquals(3, mScheduler.getUpcomingCount());
+    }
+
+    @Test
+    public void replayingAfterCompletionRunsTheTasksAgain() throws Exception {
+        add("start", false, 0);
+        add("a", false, 1000);
+        mScheduler.setDuration(3000);
+        add("end", true, 0);
+        mScheduler.advance(0);
+        mScheduler.advance(3000);
+        assertEquals(-1, mScheduler.nextDelay(3000));
+
+        // started again without a seek, as a completed or looping player does
+        assertEquals(1, mScheduler.advance(0));
+        assertEquals(1000, mScheduler.nextDelay(0));
+        mScheduler.advance(3000);
+        assertEquals(Arrays.asList("start", "a", "end", "start", "a", "end"), mRun);
+    }
+
+    @Test
+    public void positionJitterDoesNotReArmTasks() throws Exception {
+        add("a", false, 1000);
+        mScheduler.advance(1050);
+        assertEquals(0, mScheduler.advance(1050 - TimelineScheduler.REWIND_TOLERANCE_MS));
+        mScheduler.advance(2000);
+        assertEquals(Arrays.asList("a"), mRun);
+    }
+
+    @Test
+    public void tasksAddedBehindThePositionWaitForARewind() throws Exception {
+        mScheduler.advance(5000);
+        add("late", false, 1000);
+        assertEquals(-1, mScheduler.nextDelay(5000));
+        mScheduler.seekTo(0);
+        mScheduler.advance(1000);
+        assertEquals(Arrays.asList("late"), mRun);
+    }
+
+    @Test
+    public void removesTasksByCallback() throws Exception {
+        Runnable shared = cue("x");
+        mScheduler.add(new ScheduledTask(shared, false, 1000));
+        mScheduler.add(new ScheduledTask(shared, true, 1000));
+        add("y", false, 2000);
+        mScheduler.remove(shared);
+        assertEquals(1, mScheduler.size());
+
+        mScheduler.clear();
+        assertEquals(0, mScheduler.size());
+        assertEquals(-1, mScheduler.nextDelay(0));
+    }
+
+    @Test
+    public void scalesToThousandsOfCues() throws Exception {
+        final int[] count = new int[1];
+        Runnable cue = new Runnable() {
+            @Override
+            public void run() {
+                count[0]++;
+            }
+        };
+        for (int i = 0; i < 10000; i++) {
+            // added out of order
+            mScheduler.add(new ScheduledTask(cue, false, (i * 7919L) % 10000 * 10));
+        }
+        int position = 0;
+        while (mScheduler.nextDelay(position) >= 0) {
+            position += (int) Math.max(1, mScheduler.nextDelay(position));
+            mScheduler.advance(position);
+        }
+        assertEquals(10000, count[0]);
+        mScheduler.seekTo(50000);
+        assertEquals(5000, mScheduler.getUpcomingCount());
+    }
+}